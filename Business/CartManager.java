@@ -1,20 +1,55 @@
 package business;
 
+import business.product.Product;
+import business.product.ProductManager;
+import business.shop.CatalogueSnapshot;
+import business.shop.LoyaltyTracker;
+import business.shop.Shop;
+import business.shop.ShopManager;
+import metrics.Metrics;
+import metrics.Operation;
+
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 /**
- * Esta clase se utiliza para gestionar un conjunto de productos en un carrito de compras.
+ * Esta clase se utiliza para gestionar un conjunto de productos en un carrito de compras y su cobro.
  */
 public class CartManager {
     ArrayList<Cart> cartProducts;
+    private final ProductManager productManager;
+    private final ShopManager shopManager;
+    private String customer;
 
     /**
      * Construye un nuevo CartManager con la lista de productos en el carrito especificada.
      * @param cartProducts la lista de productos en el carrito
+     * @param productManager el gestor del que se obtienen los productos del carrito
+     * @param shopManager el gestor del que se obtienen las tiendas del carrito y al que se suman las ganancias
      */
-    public CartManager(ArrayList<Cart> cartProducts) {
+    public CartManager(ArrayList<Cart> cartProducts, ProductManager productManager, ShopManager shopManager) {
         this.cartProducts = cartProducts;
+        this.productManager = productManager;
+        this.shopManager = shopManager;
+        this.customer = LoyaltyTracker.GUEST;
+    }
+
+    /**
+     * Obtiene el cliente que está comprando.
+     * @return el nombre del cliente
+     */
+    public String getCustomer() {
+        return customer;
+    }
+
+    /**
+     * Cambia el cliente que está comprando. Lo que gaste a partir de ahora en las tiendas de fidelización cuenta
+     * para él.
+     * @param customer el nombre del cliente; si está vacío se compra como invitado
+     */
+    public void setCustomer(String customer) {
+        this.customer = customer == null || customer.isBlank() ? LoyaltyTracker.GUEST : customer.trim();
     }
 
     /**
@@ -24,4 +59,84 @@ public class CartManager {
     public ArrayList<Cart> getCartProducts() {
         return cartProducts;
     }
-}
\ No newline at end of file
+
+    /**
+     * Añade una unidad de un producto de una tienda al carrito.
+     * @param productName el nombre del producto
+     * @param shopName el nombre de la tienda donde se compra
+     */
+    public void addToCart(String productName, String shopName) {
+        cartProducts.add(new Cart(productName, shopName));
+    }
+
+    /**
+     * Vacía el carrito.
+     * @return true si el carrito tenía productos, false si ya estaba vacío
+     */
+    public boolean clearCart() {
+        if (cartProducts.isEmpty()) {
+            return false;
+        }
+        cartProducts.clear();
+        return true;
+    }
+
+    /**
+     * Obtiene las líneas que se cobrarían si se cobrara ahora el carrito, una por producto. No modifica ni el carrito
+     * ni las tiendas.
+     * @param timestamp Momento del cobro, en milisegundos desde 1970.
+     * @return Ventas del carrito. Los productos o tiendas que ya no existen no se cuentan.
+     */
+    public List<Sale> calculateSales(long timestamp) {
+        List<Sale> sales = new ArrayList<>(cartProducts.size());
+        for (Cart cart : cartProducts) {
+            Product product = productManager.getProductByName(cart.getProductName());
+            Shop shop = shopManager.findShopByName(cart.getShopName());
+            if (product != null && shop != null) {
+                double priceAtShop = getPriceAtShop(shop, product);
+                sales.add(new Sale(timestamp, cart.getShopName(), product.getName(), customer, priceAtShop,
+                        shop.calculateDiscount(priceAtShop, product), shopManager.isRegularCustomer(customer, shop)));
+            }
+        }
+        return sales;
+    }
+
+    /**
+     * Cobra el carrito: guarda cada línea en el libro de ventas, suma a cada tienda lo que ha ganado, suma al cliente
+     * lo que ha gastado en las tiendas de fidelización y vacía el carrito. Las ganancias se actualizan una vez por
+     * tienda, así que la réplica local se guarda una vez por tienda y no una por producto.
+     * @return Ganancias de esta compra por nombre de tienda.
+     */
+    public HashMap<String, Double> checkout() {
+        long start = System.nanoTime();
+        try {
+            List<Sale> sales = calculateSales(System.currentTimeMillis());
+            shopManager.getSalesLedger().record(sales);
+            HashMap<String, Double> shopEarnings = new HashMap<>();
+            for (Sale sale : sales) {
+                shopEarnings.merge(sale.getShopName(), sale.getNet(), Double::sum);
+            }
+            for (Map.Entry<String, Double> entry : shopEarnings.entrySet()) {
+                shopManager.updateEarnings(shopManager.findShopByName(entry.getKey()), entry.getValue());
+            }
+            shopManager.recordLoyaltySpend(customer, shopEarnings);
+            cartProducts.clear();
+            return shopEarnings;
+        } finally {
+            Metrics.recordOperation(Operation.CART_CHECKOUT, start);
+        }
+    }
+
+    /**
+     * Obtiene el precio de un producto en el catálogo de una tienda. Si el producto aparece varias veces cuenta la
+     * última entrada.
+     * @param shop la tienda
+     * @param product el producto
+     * @return el precio en la tienda, o 0 si no está en su catálogo
+     */
+    public static double getPriceAtShop(Shop shop, Product product) {
+        CatalogueSnapshot catalogue = shop.getCatalogueSnapshot();
+        int index = catalogue.lastIndexOf(product.getName());
+        return index < 0 ? 0.0 : catalogue.getEntries().get(index).getPriceAtShop();
+    }
+}
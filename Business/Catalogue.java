@@ -1,11 +1,12 @@
 package business;
 
 /**
- * Esta clase representa un catálogo de productos con atributos para el nombre del producto y su precio en la tienda
+ * Esta clase representa un catálogo de productos con atributos para el nombre del producto y su precio en la tienda.
+ * Es inmutable: para cambiar el precio la tienda sustituye la entrada por una nueva (ver CatalogueSnapshot).
  */
 public class Catalogue {
     private final String productName;
-    private double priceAtShop;
+    private final double priceAtShop;
 
     /**
      * Constructor de la clase Catalogue.*
@@ -0,0 +1,524 @@
+package business;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Índice para autocompletar nombres (de productos, marcas o tiendas) a partir de su principio, sin distinguir
+ * mayúsculas, de más a menos popular. Los nombres se guardan en un árbol ternario de búsqueda (ternary search tree):
+ * cada nodo tiene una letra y tres hijos, para las letras menores, la siguiente letra y las mayores, así que buscar
+ * un principio de n letras cuesta n pasos más unas pocas comparaciones por letra.
+ * Cada nodo guarda además los MAX_SUGGESTIONS nombres más populares que empiezan por el principio que representa,
+ * de modo que autocompletar no recorre el subárbol. Las listas no se modifican una vez creadas y los nodos de una
+ * cola sin ramas comparten la misma, así que la mayoría de nodos no tienen lista propia.
+ * Al subir la popularidad de un nombre basta con colocarlo en la lista de cada nodo de su camino; al bajarla o
+ * quitarlo, esas listas se recalculan de abajo arriba a partir de las de sus hijos.
+ */
+public class CompletionIndex {
+    /** Número máximo de sugerencias que se guardan en cada nodo. */
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final int NONE = -1;
+    private static final int[] NO_ENTRIES = new int[0];
+
+    private char[] split;
+    private int[] lo;
+    private int[] eq;
+    private int[] hi;
+    private int[] entryAt;
+    private int[][] top;
+    private int nodes;
+
+    private String[] keys;
+    private String[] names;
+    private long[] weights;
+    private int entries;
+    private int[] freeEntries;
+    private int freeCount;
+    private int size;
+
+    /**
+     * Constructor. Crea un índice vacío.
+     */
+    public CompletionIndex() {
+        clear();
+    }
+
+    /**
+     * Vuelve a construir el índice con todos los nombres y su popularidad. Los nombres se insertan en orden de
+     * mediana para que las ramas de letras menores y mayores queden equilibradas, y las listas de cada nodo se
+     * calculan después en un solo recorrido.
+     * @param weightsByName Popularidad por nombre. Si dos nombres solo se diferencian en mayúsculas cuenta uno.
+     */
+    public synchronized void rebuild(Map<String, Long> weightsByName) {
+        clear();
+        String[] sorted = new String[weightsByName.size()];
+        long[] sortedWeights = new long[sorted.length];
+        int count = 0;
+        for (Map.Entry<String, Long> entry : weightsByName.entrySet()) {
+            if (entry.getKey() != null && !entry.getKey().isEmpty()) {
+                sorted[count++] = entry.getKey();
+            }
+        }
+        sorted = Arrays.copyOf(sorted, count);
+        Arrays.sort(sorted, String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < count; i++) {
+            sortedWeights[i] = weightsByName.get(sorted[i]);
+        }
+        insertBalanced(sorted, sortedWeights, 0, count);
+        if (nodes > 0) {
+            computeTop(0);
+        }
+    }
+
+    /**
+     * Añade un nombre o cambia su popularidad.
+     * @param name Nombre.
+     * @param weight Popularidad; con la misma, va antes el nombre menor alfabéticamente.
+     */
+    public synchronized void put(String name, long weight) {
+        if (name == null || name.isEmpty()) {
+            return;
+        }
+        String key = keyOf(name);
+        int node = insert(key);
+        int entry = entryAt[node];
+        if (entry == NONE) {
+            entry = newEntry(key, name, weight);
+            entryAt[node] = entry;
+            offerAlongPath(key, entry);
+            return;
+        }
+        long previous = weights[entry];
+        names[entry] = name;
+        weights[entry] = weight;
+        if (weight >= previous) {
+            offerAlongPath(key, entry);
+        } else {
+            recomputeAlongPath(key);
+        }
+    }
+
+    /**
+     * Quita un nombre.
+     * @param name Nombre, sin distinguir mayúsculas.
+     */
+    public synchronized void remove(String name) {
+        if (name == null || name.isEmpty()) {
+            return;
+        }
+        String key = keyOf(name);
+        int node = nodeOf(key);
+        if (node == NONE || entryAt[node] == NONE) {
+            return;
+        }
+        int entry = entryAt[node];
+        entryAt[node] = NONE;
+        recomputeAlongPath(key);
+        keys[entry] = null;
+        names[entry] = null;
+        if (freeCount == freeEntries.length) {
+            freeEntries = Arrays.copyOf(freeEntries, Math.max(16, freeCount * 2));
+        }
+        freeEntries[freeCount++] = entry;
+        size--;
+    }
+
+    /**
+     * Obtiene los nombres más populares que empiezan por un texto.
+     * @param prefix Principio del nombre, sin distinguir mayúsculas. Si está vacío se devuelven los más populares.
+     * @param k Número máximo de nombres; como mucho MAX_SUGGESTIONS.
+     * @return Nombres, del más al menos popular.
+     */
+    public synchronized List<String> complete(String prefix, int k) {
+        List<String> results = new ArrayList<>();
+        if (nodes == 0 || k <= 0) {
+            return results;
+        }
+        int[] suggestions;
+        if (prefix == null || prefix.isEmpty()) {
+            suggestions = mergeSiblings(0, NONE);
+        } else {
+            int node = nodeOf(keyOf(prefix));
+            if (node == NONE) {
+                return results;
+            }
+            suggestions = top[node];
+        }
+        for (int i = 0; i < suggestions.length && i < k; i++) {
+            results.add(names[suggestions[i]]);
+        }
+        return results;
+    }
+
+    /**
+     * Busca un nombre exacto, sin distinguir mayúsculas.
+     * @param name Nombre.
+     * @return El nombre tal como se guardó, o null si no está.
+     */
+    public synchronized String find(String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        int node = nodeOf(keyOf(name));
+        return node == NONE || entryAt[node] == NONE ? null : names[entryAt[node]];
+    }
+
+    /**
+     * Obtiene el número de nombres del índice.
+     * @return Número de nombres.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Vacía el índice.
+     */
+    private void clear() {
+        split = new char[16];
+        lo = new int[16];
+        eq = new int[16];
+        hi = new int[16];
+        entryAt = new int[16];
+        top = new int[16][];
+        nodes = 0;
+        keys = new String[16];
+        names = new String[16];
+        weights = new long[16];
+        entries = 0;
+        freeEntries = new int[0];
+        freeCount = 0;
+        size = 0;
+    }
+
+    /**
+     * Inserta sin calcular listas los nombres de un tramo ordenado, empezando por su mediana.
+     * @param sorted Nombres ordenados.
+     * @param sortedWeights Popularidad de cada nombre.
+     * @param from Inicio del tramo, incluido.
+     * @param to Final del tramo, excluido.
+     */
+    private void insertBalanced(String[] sorted, long[] sortedWeights, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        String key = keyOf(sorted[middle]);
+        int node = insert(key);
+        if (entryAt[node] == NONE) {
+            entryAt[node] = newEntry(key, sorted[middle], sortedWeights[middle]);
+        }
+        insertBalanced(sorted, sortedWeights, from, middle);
+        insertBalanced(sorted, sortedWeights, middle + 1, to);
+    }
+
+    /**
+     * Busca el nodo de la última letra de una clave.
+     * @param key Clave en minúsculas.
+     * @return Nodo, o NONE si ninguna clave empieza así.
+     */
+    private int nodeOf(String key) {
+        int node = nodes > 0 ? 0 : NONE;
+        int i = 0;
+        while (node != NONE) {
+            char letter = key.charAt(i);
+            if (letter < split[node]) {
+                node = lo[node];
+            } else if (letter > split[node]) {
+                node = hi[node];
+            } else if (++i == key.length()) {
+                return node;
+            } else {
+                node = eq[node];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Obtiene el nodo de la última letra de una clave, creando los que falten. El nodo nuevo se crea antes de
+     * enlazarlo porque crearlo puede sustituir los arrays.
+     * @param key Clave en minúsculas, no vacía.
+     * @return Nodo.
+     */
+    private int insert(String key) {
+        if (nodes == 0) {
+            newNode(key.charAt(0));
+        }
+        int node = 0;
+        int i = 0;
+        while (true) {
+            char letter = key.charAt(i);
+            if (letter < split[node]) {
+                if (lo[node] == NONE) {
+                    int child = newNode(letter);
+                    lo[node] = child;
+                }
+                node = lo[node];
+            } else if (letter > split[node]) {
+                if (hi[node] == NONE) {
+                    int child = newNode(letter);
+                    hi[node] = child;
+                }
+                node = hi[node];
+            } else if (++i == key.length()) {
+                return node;
+            } else {
+                if (eq[node] == NONE) {
+                    int child = newNode(key.charAt(i));
+                    eq[node] = child;
+                }
+                node = eq[node];
+            }
+        }
+    }
+
+    /**
+     * Crea un nodo sin hijos.
+     * @param letter Letra del nodo.
+     * @return Posición del nodo.
+     */
+    private int newNode(char letter) {
+        if (nodes == split.length) {
+            int capacity = nodes * 2;
+            split = Arrays.copyOf(split, capacity);
+            lo = Arrays.copyOf(lo, capacity);
+            eq = Arrays.copyOf(eq, capacity);
+            hi = Arrays.copyOf(hi, capacity);
+            entryAt = Arrays.copyOf(entryAt, capacity);
+            top = Arrays.copyOf(top, capacity);
+        }
+        int node = nodes++;
+        split[node] = letter;
+        lo[node] = NONE;
+        eq[node] = NONE;
+        hi[node] = NONE;
+        entryAt[node] = NONE;
+        top[node] = NO_ENTRIES;
+        return node;
+    }
+
+    /**
+     * Guarda un nombre nuevo, reutilizando el hueco de uno quitado si lo hay.
+     * @param key Clave en minúsculas.
+     * @param name Nombre original.
+     * @param weight Popularidad.
+     * @return Posición del nombre.
+     */
+    private int newEntry(String key, String name, long weight) {
+        int entry;
+        if (freeCount > 0) {
+            entry = freeEntries[--freeCount];
+        } else {
+            if (entries == keys.length) {
+                int capacity = entries * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                names = Arrays.copyOf(names, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            entry = entries++;
+        }
+        keys[entry] = key;
+        names[entry] = name;
+        weights[entry] = weight;
+        size++;
+        return entry;
+    }
+
+    /**
+     * Coloca un nombre en la lista de cada nodo de su camino, sabiendo que su popularidad no ha bajado.
+     * @param key Clave del nombre.
+     * @param entry Posición del nombre.
+     */
+    private void offerAlongPath(String key, int entry) {
+        int node = 0;
+        int i = 0;
+        while (node != NONE) {
+            char letter = key.charAt(i);
+            if (letter < split[node]) {
+                node = lo[node];
+            } else if (letter > split[node]) {
+                node = hi[node];
+            } else {
+                top[node] = offer(top[node], entry);
+                if (++i == key.length()) {
+                    return;
+                }
+                node = eq[node];
+            }
+        }
+    }
+
+    /**
+     * Recalcula de abajo arriba las listas de los nodos del camino de una clave.
+     * @param key Clave.
+     */
+    private void recomputeAlongPath(String key) {
+        int[] path = new int[key.length()];
+        int node = 0;
+        int i = 0;
+        while (node != NONE && i < key.length()) {
+            char letter = key.charAt(i);
+            if (letter < split[node]) {
+                node = lo[node];
+            } else if (letter > split[node]) {
+                node = hi[node];
+            } else {
+                path[i++] = node;
+                node = eq[node];
+            }
+        }
+        for (int j = i - 1; j >= 0; j--) {
+            top[path[j]] = mergeNode(path[j]);
+        }
+    }
+
+    /**
+     * Calcula las listas de todo un subárbol, de las hojas hacia arriba.
+     * @param root Nodo raíz del subárbol.
+     */
+    private void computeTop(int root) {
+        int[] stack = new int[64];
+        boolean[] expanded = new boolean[64];
+        int depth = 0;
+        stack[depth] = root;
+        expanded[depth++] = false;
+        while (depth > 0) {
+            int node = stack[depth - 1];
+            if (expanded[depth - 1]) {
+                depth--;
+                top[node] = mergeNode(node);
+                continue;
+            }
+            expanded[depth - 1] = true;
+            if (depth + 3 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+                expanded = Arrays.copyOf(expanded, stack.length);
+            }
+            if (lo[node] != NONE) {
+                stack[depth] = lo[node];
+                expanded[depth++] = false;
+            }
+            if (eq[node] != NONE) {
+                stack[depth] = eq[node];
+                expanded[depth++] = false;
+            }
+            if (hi[node] != NONE) {
+                stack[depth] = hi[node];
+                expanded[depth++] = false;
+            }
+        }
+    }
+
+    /**
+     * Calcula la lista de un nodo: su propio nombre, si acaba en él, y los de todos los nodos del árbol de su
+     * siguiente letra.
+     * @param node Nodo.
+     * @return Lista nueva, o la del único nodo del que sale si no cambia nada.
+     */
+    private int[] mergeNode(int node) {
+        return mergeSiblings(eq[node], entryAt[node]);
+    }
+
+    /**
+     * Mezcla las listas de todos los nodos de un árbol de letras alternativas (unidos por lo y hi) con un nombre.
+     * @param first Raíz del árbol de letras, o NONE.
+     * @param own Nombre que se añade, o NONE.
+     * @return Lista con los MAX_SUGGESTIONS más populares.
+     */
+    private int[] mergeSiblings(int first, int own) {
+        if (first != NONE && own == NONE && lo[first] == NONE && hi[first] == NONE) {
+            return top[first];
+        }
+        int[] merged = own == NONE ? NO_ENTRIES : new int[]{own};
+        if (first == NONE) {
+            return merged;
+        }
+        int[] stack = new int[32];
+        int depth = 0;
+        stack[depth++] = first;
+        while (depth > 0) {
+            int node = stack[--depth];
+            for (int entry : top[node]) {
+                merged = offer(merged, entry);
+            }
+            if (depth + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            if (lo[node] != NONE) {
+                stack[depth++] = lo[node];
+            }
+            if (hi[node] != NONE) {
+                stack[depth++] = hi[node];
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Coloca un nombre en una lista ordenada de más a menos popular, sin modificarla.
+     * @param list Lista actual.
+     * @param entry Nombre.
+     * @return La misma lista si no cambia, o una nueva.
+     */
+    private int[] offer(int[] list, int entry) {
+        int position = NONE;
+        for (int i = 0; i < list.length; i++) {
+            if (list[i] == entry) {
+                position = i;
+                break;
+            }
+        }
+        int length = position == NONE ? Math.min(list.length + 1, MAX_SUGGESTIONS) : list.length;
+        int insertAt = 0;
+        while (insertAt < list.length && (list[insertAt] == entry || before(list[insertAt], entry))) {
+            insertAt++;
+        }
+        if (position == NONE && insertAt >= MAX_SUGGESTIONS) {
+            return list;
+        }
+        int[] updated = new int[length];
+        int target = 0;
+        for (int i = 0; i < list.length && target < length; i++) {
+            if (i == insertAt) {
+                updated[target++] = entry;
+                if (target == length) {
+                    break;
+                }
+            }
+            if (list[i] != entry) {
+                updated[target++] = list[i];
+            }
+        }
+        if (target < length) {
+            updated[target] = entry;
+        }
+        return updated;
+    }
+
+    /**
+     * Indica si un nombre va antes que otro en las sugerencias.
+     * @param a Primer nombre.
+     * @param b Segundo nombre.
+     * @return true si a es más popular, o igual de popular y menor alfabéticamente.
+     */
+    private boolean before(int a, int b) {
+        if (weights[a] != weights[b]) {
+            return weights[a] > weights[b];
+        }
+        return keys[a].compareTo(keys[b]) < 0;
+    }
+
+    /**
+     * Normaliza un nombre para usarlo como clave.
+     * @param name Nombre.
+     * @return Nombre en minúsculas.
+     */
+    private static String keyOf(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
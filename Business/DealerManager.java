@@ -1,18 +1,18 @@
 package business;
 import business.product.Product;
 import business.product.ProductManager;
+import business.shop.Offer;
 import business.shop.Shop;
 import business.shop.ShopManager;
-import persistence.ApiHelper;
 
 import java.util.ArrayList;
+import java.util.List;
 /**
  * Esta clase se encarga de hacer de intermediario entre los dos managers
  */
 public class DealerManager {
     private ShopManager shopManager;
     private ProductManager productManager;
-    private ApiHelper apiHelper;
 
     /**
      * Constructor de la clase DealerManager.
@@ -22,7 +22,6 @@ public class DealerManager {
     public DealerManager(ShopManager shopManager, ProductManager productManager) {
         this.shopManager = shopManager;
         this.productManager = productManager;
-        this.apiHelper = new ApiHelper();
     }
 
     /**
@@ -36,10 +35,12 @@ public class DealerManager {
         if(shopManager.nameShopExists(shopName)){
             Shop shop = shopManager.findShopByName(shopName);
             if(shop!= null){
-                ArrayList<Catalogue> catalogue = shop.getCatalogue();
+                List<Catalogue> catalogue = shop.getCatalogue();
+                ArrayList<String> productNames = new ArrayList<>(catalogue.size());
                 for(Catalogue item: catalogue){
-                    String productName = item.getProductName();
-                    Product product = productManager.getProductByName(productName);
+                    productNames.add(item.getProductName());
+                }
+                for(Product product: productManager.getProductsByNames(productNames)){
                     if(product != null){
                         productsInCatalogue.add(product);
                     }
@@ -52,29 +53,16 @@ public class DealerManager {
     /**
      * Muestra la información de las tiendas que tienen un producto específico en su catálogo.*
      * @param product El producto cuyo nombre se utilizará para buscar en los catálogos de las tiendas.
-     * @return Una lista de objetos Shop que tienen el producto especificado en su catálogo.
-     * Si no se encuentran tiendas con el producto, se devuelve una lista vacía.
+     * @param customer El nombre del cliente, que decide el precio en las tiendas de fidelización.
+     * @return Una lista de objetos Shop que tienen el producto especificado en su catálogo, de la más barata a la
+     * más cara para el cliente. Si no se encuentran tiendas con el producto, se devuelve una lista vacía.
      */
-    public ArrayList<Shop> showInfoShops(Product product){
-        ArrayList <Shop> shops;
-        ArrayList <Shop> results = new ArrayList<>();
-
-        if(apiHelper.isConnected()) {
-            shops = shopManager.shopArrayList();
-        }else{
-            shops = shopManager.getShopList();
-        }
-
-        String productName = product.getName();
-
-        for (Shop s: shops) {
-            for (Catalogue catalogueItem: s.getCatalogue()) {
-                String catalogueProductName = catalogueItem.getProductName();
-                   if (catalogueProductName.equalsIgnoreCase(productName)) {
-                       results.add(s);
-                   }
-            }
+    public ArrayList<Shop> showInfoShops(Product product, String customer){
+        List<Offer> offers = shopManager.getOffers(product, customer);
+        ArrayList<Shop> results = new ArrayList<>(offers.size());
+        for (Offer offer : offers) {
+            results.add(offer.getShop());
         }
-       return results;
+        return results;
     }
 }
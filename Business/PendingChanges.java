@@ -0,0 +1,206 @@
+package business;
+
+import metrics.ActionAccounting;
+import persistence.PendingChangesJsonDAO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+/**
+ * Esta clase registra qué entidades (productos o tiendas, identificadas por nombre) se han modificado o eliminado
+ * en la réplica local y todavía no se han enviado a la API. Cada marca lleva un número de secuencia para que, al
+ * confirmar una sincronización, no se pierdan los cambios hechos mientras esta estaba en curso.
+ * Cada marca recuerda también la ejecución de la acción que la hizo (ActionAccounting), para que la sincronización
+ * le cargue las llamadas con que la envía. Solo se recuerda en memoria: los cambios recuperados de una ejecución
+ * anterior del programa se cargan a la propia sincronización, igual que los reintentos de los cambios que no se han
+ * enviado porque su acción había superado el presupuesto.
+ */
+public class PendingChanges {
+    private final PendingChangesJsonDAO pendingChangesJsonDAO;
+    private final LinkedHashMap<String, Long> upserts;
+    private final LinkedHashMap<String, Long> removals;
+    private final HashMap<String, ActionAccounting.Scope> origins;
+    private long sequence;
+
+    /**
+     * Constructor. Recupera los cambios pendientes guardados en una ejecución anterior.
+     * @param pendingChangesJsonDAO DAO del fichero donde se guardan los cambios pendientes.
+     */
+    public PendingChanges(PendingChangesJsonDAO pendingChangesJsonDAO) {
+        this.pendingChangesJsonDAO = pendingChangesJsonDAO;
+        this.upserts = new LinkedHashMap<>();
+        this.removals = new LinkedHashMap<>();
+        this.origins = new HashMap<>();
+        for (String name : pendingChangesJsonDAO.loadUpserts()) {
+            upserts.put(name, ++sequence);
+        }
+        for (String name : pendingChangesJsonDAO.loadRemovals()) {
+            removals.put(name, ++sequence);
+        }
+    }
+
+    /**
+     * Marca una entidad como creada o modificada localmente.
+     * @param name Nombre de la entidad.
+     */
+    public synchronized void markUpsert(String name) {
+        String key = name.toLowerCase();
+        removals.remove(key);
+        upserts.put(key, ++sequence);
+        setOrigin(key);
+        save();
+    }
+
+    /**
+     * Marca una entidad como eliminada localmente.
+     * @param name Nombre de la entidad.
+     */
+    public synchronized void markRemoval(String name) {
+        String key = name.toLowerCase();
+        upserts.remove(key);
+        removals.put(key, ++sequence);
+        setOrigin(key);
+        save();
+    }
+
+    /**
+     * Indica si una entidad tiene una modificación local pendiente de enviar.
+     * @param name Nombre de la entidad.
+     * @return true si está pendiente de enviar.
+     */
+    public synchronized boolean isUpsert(String name) {
+        return upserts.containsKey(name.toLowerCase());
+    }
+
+    /**
+     * Indica si una entidad tiene una eliminación local pendiente de enviar.
+     * @param name Nombre de la entidad.
+     * @return true si está pendiente de eliminar.
+     */
+    public synchronized boolean isRemoval(String name) {
+        return removals.containsKey(name.toLowerCase());
+    }
+
+    /**
+     * Toma una copia de los cambios pendientes para enviarlos a la API.
+     * @return Copia de los cambios pendientes en este momento.
+     */
+    public synchronized Snapshot snapshot() {
+        return new Snapshot(new LinkedHashMap<>(upserts), new LinkedHashMap<>(removals), new HashMap<>(origins));
+    }
+
+    /**
+     * Da por enviados los cambios de una copia, salvo los que se hayan vuelto a marcar después de tomarla.
+     * @param snapshot Copia obtenida con snapshot() y enviada correctamente.
+     */
+    public synchronized void acknowledge(Snapshot snapshot) {
+        for (Map.Entry<String, Long> entry : snapshot.upserts.entrySet()) {
+            upserts.remove(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : snapshot.removals.entrySet()) {
+            removals.remove(entry.getKey(), entry.getValue());
+        }
+        for (String key : snapshot.released) {
+            origins.remove(key, snapshot.origins.get(key));
+        }
+        origins.keySet().removeIf(key -> !upserts.containsKey(key) && !removals.containsKey(key));
+        save();
+    }
+
+    /**
+     * Recuerda la acción en curso como la que ha hecho el último cambio de una entidad.
+     * @param key Nombre de la entidad en minúsculas.
+     */
+    private void setOrigin(String key) {
+        ActionAccounting.Scope origin = ActionAccounting.current();
+        if (origin != null) {
+            origins.put(key, origin);
+        } else {
+            origins.remove(key);
+        }
+    }
+
+    /**
+     * Guarda los cambios pendientes en el fichero.
+     */
+    private void save() {
+        pendingChangesJsonDAO.save(new ArrayList<>(upserts.keySet()), new ArrayList<>(removals.keySet()));
+    }
+
+    /**
+     * Copia inmutable de los cambios pendientes en un instante dado.
+     */
+    public static class Snapshot {
+        private final Map<String, Long> upserts;
+        private final Map<String, Long> removals;
+        private final Map<String, ActionAccounting.Scope> origins;
+        private final Set<String> released = new HashSet<>();
+
+        /**
+         * Constructor.
+         * @param upserts Nombres modificados con su número de secuencia.
+         * @param removals Nombres eliminados con su número de secuencia.
+         * @param origins Ejecución de la acción que hizo el último cambio de cada nombre.
+         */
+        private Snapshot(Map<String, Long> upserts, Map<String, Long> removals, Map<String, ActionAccounting.Scope> origins) {
+            this.upserts = upserts;
+            this.removals = removals;
+            this.origins = origins;
+        }
+
+        /**
+         * Obtiene la ejecución de la acción que hizo el último cambio de una entidad.
+         * @param name Nombre de la entidad.
+         * @return Ámbito de la acción, o null si no se conoce.
+         */
+        public ActionAccounting.Scope getOrigin(String name) {
+            return origins.get(name.toLowerCase());
+        }
+
+        /**
+         * Deja fuera de la copia un cambio que no se ha enviado, para que al confirmarla siga pendiente.
+         * @param name Nombre de la entidad.
+         */
+        void withhold(String name) {
+            String key = name.toLowerCase();
+            upserts.remove(key);
+            removals.remove(key);
+        }
+
+        /**
+         * Indica que, al confirmar la copia, el cambio de una entidad deje de cargarse a la acción que lo hizo y sus
+         * reintentos se carguen a la sincronización, salvo que la acción lo haya vuelto a marcar mientras tanto.
+         * @param name Nombre de la entidad.
+         */
+        void releaseOrigin(String name) {
+            released.add(name.toLowerCase());
+        }
+
+        /**
+         * Obtiene los nombres (en minúsculas) modificados localmente.
+         * @return Nombres de las entidades a enviar.
+         */
+        public Iterable<String> getUpserts() {
+            return upserts.keySet();
+        }
+
+        /**
+         * Obtiene los nombres (en minúsculas) eliminados localmente.
+         * @return Nombres de las entidades a eliminar.
+         */
+        public Iterable<String> getRemovals() {
+            return removals.keySet();
+        }
+
+        /**
+         * Indica si la copia no contiene ningún cambio.
+         * @return true si no hay nada que enviar.
+         */
+        public boolean isEmpty() {
+            return upserts.isEmpty() && removals.isEmpty();
+        }
+    }
+}
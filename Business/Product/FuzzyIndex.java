@@ -0,0 +1,357 @@
+package business.product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Índice para buscar productos aunque el texto tenga erratas ("Samsugn" encuentra "Samsung"). Los nombres y las
+ * marcas se parten en palabras, y las palabras distintas se guardan en un BK-tree según su distancia de edición
+ * (Levenshtein): cada hijo cuelga de su padre por la distancia entre los dos, así que al buscar las palabras a
+ * distancia k o menos de una consulta que está a distancia d de un nodo solo hay que bajar por los hijos a distancia
+ * entre d - k y d + k, y se descarta la mayor parte del árbol sin compararla. Cada nodo guarda además la mayor
+ * distancia de sus hijos, así que la distancia con él solo se calcula hasta ese límite y se deja de calcular en
+ * cuanto se sabe que lo supera.
+ * Los nodos se guardan en arrays paralelos y las palabras no se borran del árbol: al quitar un producto se quita de
+ * la lista de productos de sus palabras, y el árbol se vuelve a construir cuando se carga una lista completa.
+ */
+public class FuzzyIndex {
+    private static final int NONE = -1;
+    private static final Product[] NO_PRODUCTS = new Product[0];
+    private static final Comparator<Match> BY_DISTANCE = Comparator.comparingInt(match -> match.distance);
+
+    private final Map<String, Integer> nodeByTerm;
+    private String[] terms;
+    private Product[][] postings;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] edge;
+    private int[] maxChildEdge;
+    private int size;
+
+    /**
+     * Producto encontrado, con la suma de las distancias de las palabras de la consulta.
+     */
+    private static final class Match {
+        private final Product product;
+        private int distance;
+        private int matchedWords;
+        private int lastDistance;
+
+        private Match(Product product) {
+            this.product = product;
+        }
+    }
+
+    /**
+     * Constructor. Crea un índice vacío.
+     */
+    public FuzzyIndex() {
+        this.nodeByTerm = new HashMap<>();
+        clear();
+    }
+
+    /**
+     * Vuelve a construir el índice con una lista de productos completa, por ejemplo después de cargar la réplica o
+     * de sincronizar con la API.
+     * @param products Lista de productos actual.
+     */
+    public synchronized void rebuild(List<Product> products) {
+        clear();
+        for (Product product : products) {
+            add(product);
+        }
+    }
+
+    /**
+     * Añade un producto nuevo al índice.
+     * @param product Producto creado.
+     */
+    public synchronized void add(Product product) {
+        for (String term : termsOf(product)) {
+            int node = nodeOf(term);
+            Product[] posting = postings[node];
+            Product[] copy = Arrays.copyOf(posting, posting.length + 1);
+            copy[posting.length] = product;
+            postings[node] = copy;
+        }
+    }
+
+    /**
+     * Quita un producto del índice.
+     * @param product Producto eliminado.
+     */
+    public synchronized void remove(Product product) {
+        for (String term : termsOf(product)) {
+            Integer node = nodeByTerm.get(term);
+            if (node == null) {
+                continue;
+            }
+            Product[] posting = postings[node];
+            for (int i = 0; i < posting.length; i++) {
+                if (posting[i] == product) {
+                    Product[] copy = new Product[posting.length - 1];
+                    System.arraycopy(posting, 0, copy, 0, i);
+                    System.arraycopy(posting, i + 1, copy, i, posting.length - i - 1);
+                    postings[node] = copy;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Busca los productos cuyo nombre o marca tienen, para cada palabra de la consulta, una palabra parecida. Las
+     * palabras de hasta 2 letras tienen que coincidir exactamente; las de 3 a 5 admiten una errata y las más largas,
+     * dos.
+     * @param text Texto de búsqueda.
+     * @return Productos encontrados, de menor a mayor suma de distancias; con la misma distancia, en el orden en que
+     * se han encontrado.
+     */
+    public synchronized List<Product> search(String text) {
+        List<String> words = tokenize(text);
+        List<Product> results = new ArrayList<>();
+        if (words.isEmpty() || size == 0) {
+            return results;
+        }
+        Map<Product, Match> matches = new IdentityHashMap<>();
+        List<Match> found = new ArrayList<>();
+        int[] previous = new int[64];
+        int[] current = new int[64];
+        int[] stack = new int[64];
+        for (int w = 0; w < words.size(); w++) {
+            char[] word = words.get(w).toCharArray();
+            int tolerance = toleranceOf(word.length);
+            int top = 0;
+            stack[top++] = 0;
+            while (top > 0) {
+                int node = stack[--top];
+                String term = terms[node];
+                if (previous.length <= term.length()) {
+                    previous = new int[term.length() + 1];
+                    current = new int[term.length() + 1];
+                }
+                int distance = distance(word, term, previous, current, maxChildEdge[node] + tolerance);
+                if (distance <= tolerance) {
+                    for (Product product : postings[node]) {
+                        Match match = matches.get(product);
+                        if (match == null) {
+                            if (w > 0) {
+                                continue;
+                            }
+                            match = new Match(product);
+                            matches.put(product, match);
+                            found.add(match);
+                        }
+                        if (match.matchedWords == w) {
+                            match.matchedWords++;
+                            match.distance += distance;
+                            match.lastDistance = distance;
+                        } else if (match.matchedWords == w + 1 && distance < match.lastDistance) {
+                            match.distance -= match.lastDistance - distance;
+                            match.lastDistance = distance;
+                        }
+                    }
+                }
+                for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                    if (Math.abs(edge[child] - distance) <= tolerance) {
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, stack.length * 2);
+                        }
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+        found.removeIf(match -> match.matchedWords < words.size());
+        found.sort(BY_DISTANCE);
+        for (Match match : found) {
+            results.add(match.product);
+        }
+        return results;
+    }
+
+    /**
+     * Obtiene el número de palabras distintas del árbol.
+     * @return Número de nodos.
+     */
+    public synchronized int termCount() {
+        return size;
+    }
+
+    /**
+     * Vacía el índice.
+     */
+    private void clear() {
+        nodeByTerm.clear();
+        terms = new String[16];
+        postings = new Product[16][];
+        firstChild = new int[16];
+        nextSibling = new int[16];
+        edge = new int[16];
+        maxChildEdge = new int[16];
+        size = 0;
+    }
+
+    /**
+     * Obtiene el nodo de una palabra, colgándolo del árbol si aún no está.
+     * @param term Palabra en minúsculas.
+     * @return Posición del nodo.
+     */
+    private int nodeOf(String term) {
+        Integer existing = nodeByTerm.get(term);
+        if (existing != null) {
+            return existing;
+        }
+        int node = newNode(term);
+        if (node > 0) {
+            char[] word = term.toCharArray();
+            int[] previous = new int[64];
+            int[] current = new int[64];
+            int parent = 0;
+            while (true) {
+                String parentTerm = terms[parent];
+                if (previous.length <= parentTerm.length()) {
+                    previous = new int[parentTerm.length() + 1];
+                    current = new int[parentTerm.length() + 1];
+                }
+                int distance = distance(word, parentTerm, previous, current, Integer.MAX_VALUE);
+                int child = firstChild[parent];
+                while (child != NONE && edge[child] != distance) {
+                    child = nextSibling[child];
+                }
+                if (child == NONE) {
+                    edge[node] = distance;
+                    nextSibling[node] = firstChild[parent];
+                    firstChild[parent] = node;
+                    maxChildEdge[parent] = Math.max(maxChildEdge[parent], distance);
+                    break;
+                }
+                parent = child;
+            }
+        }
+        nodeByTerm.put(term, node);
+        return node;
+    }
+
+    /**
+     * Reserva un nodo nuevo sin colgarlo del árbol.
+     * @param term Palabra del nodo.
+     * @return Posición del nodo.
+     */
+    private int newNode(String term) {
+        if (size == terms.length) {
+            int capacity = terms.length * 2;
+            terms = Arrays.copyOf(terms, capacity);
+            postings = Arrays.copyOf(postings, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            edge = Arrays.copyOf(edge, capacity);
+            maxChildEdge = Arrays.copyOf(maxChildEdge, capacity);
+        }
+        int node = size++;
+        terms[node] = term;
+        postings[node] = NO_PRODUCTS;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        maxChildEdge[node] = 0;
+        return node;
+    }
+
+    /**
+     * Calcula la distancia de Levenshtein entre una palabra y la de un nodo, con dos filas de trabajo reutilizadas.
+     * Si la distancia supera un límite se deja de calcular: la diferencia de longitudes ya es una cota inferior, y
+     * ninguna fila tiene un valor menor que la anterior.
+     * @param word Palabra de la consulta.
+     * @param term Palabra del nodo.
+     * @param previous Fila de trabajo de al menos term.length() + 1 posiciones.
+     * @param current Fila de trabajo del mismo tamaño.
+     * @param limit Distancia máxima que interesa.
+     * @return Número mínimo de letras que hay que insertar, borrar o cambiar, o limit + 1 si es mayor que limit.
+     */
+    private static int distance(char[] word, String term, int[] previous, int[] current, int limit) {
+        int columns = term.length();
+        if (Math.abs(word.length - columns) > limit) {
+            return limit + 1;
+        }
+        for (int j = 0; j <= columns; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= word.length; i++) {
+            current[0] = i;
+            int rowMin = i;
+            char letter = word[i - 1];
+            for (int j = 1; j <= columns; j++) {
+                int cost = letter == term.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[columns];
+    }
+
+    /**
+     * Obtiene cuántas erratas se admiten en una palabra de la consulta.
+     * @param length Longitud de la palabra.
+     * @return Distancia máxima.
+     */
+    private static int toleranceOf(int length) {
+        if (length <= 2) {
+            return 0;
+        }
+        return length <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Obtiene las palabras distintas del nombre y la marca de un producto.
+     * @param product Producto.
+     * @return Palabras en minúsculas, sin repetir.
+     */
+    private static List<String> termsOf(Product product) {
+        List<String> words = tokenize(product.getName());
+        for (String word : tokenize(product.getBrand())) {
+            if (!words.contains(word)) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Parte un texto en palabras formadas por letras y números.
+     * @param text Texto, que puede ser null.
+     * @return Palabras en minúsculas, sin repetir y en el orden en que aparecen.
+     */
+    private static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean inWord = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                String word = lower.substring(start, i);
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+}
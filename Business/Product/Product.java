@@ -5,6 +5,8 @@ import java.util.ArrayList;
 /**
  * La clase Product representa un producto en el sistema de gestión de compras.
  * Contiene información como nombre, marca, categoría, precio y reviews asociadas.
+ * Las reseñas pueden no estar cargadas: en ese caso el producto guarda solo cuántas hay y la suma de sus
+ * valoraciones, y las carga con su ReviewLoader la primera vez que se piden.
  */
 public abstract class Product {
     private String name;
@@ -12,6 +14,10 @@ public abstract class Product {
     private double mrp;
     private String category;
     private ArrayList<Review> reviews;
+    private int reviewCount;
+    private long ratingSum;
+    private ReviewLoader reviewLoader;
+    private long lastModified;
     /**
      * Constructor que inicializa un nuevo objeto Product con la información básica del producto.
      *
@@ -26,6 +32,7 @@ public abstract class Product {
         this.mrp = mrp;
         this.category = category;
         this.reviews = new ArrayList<>();
+        this.lastModified = System.currentTimeMillis();
     }
     /**
      * Obtiene el nombre del producto.
@@ -43,6 +50,14 @@ public abstract class Product {
     public String getBrand() {
         return brand;
     }
+    /**
+     * Obtiene la categoría del producto (GENERAL, REDUCED o SUPER_REDUCED).
+     *
+     * @return String de la categoría del producto.
+     */
+    public String getCategory() {
+        return category;
+    }
     /**
      * Obtiene el precio de venta
      *
@@ -52,28 +67,124 @@ public abstract class Product {
         return mrp;
     }
     /**
-     * Obtiene la lista de valoraciones asociadas al producto.
+     * Obtiene la lista de valoraciones asociadas al producto, cargándola si todavía no se ha cargado.
      *
-     * @return La lista de valoraciones del producto.
+     * @return La lista de valoraciones del producto, o null si no se ha podido cargar.
      */
-    public ArrayList<Review> getReviews(){
+    public synchronized ArrayList<Review> getReviews(){
+        if (reviews == null && reviewLoader != null) {
+            ArrayList<Review> loaded = reviewLoader.loadReviews(name);
+            if (loaded != null) {
+                reviewLoader = null;
+                setReviews(loaded);
+            }
+        }
         return reviews;
     }
     /**
-     * Agrega una nueva reseña al producto.
+     * Indica si las reseñas del producto están cargadas en memoria.
+     *
+     * @return true si están cargadas.
+     */
+    public synchronized boolean hasReviewsLoaded() {
+        return reviews != null;
+    }
+    /**
+     * Obtiene el número de reseñas sin necesidad de cargarlas.
+     *
+     * @return Número de reseñas.
+     */
+    public synchronized int getReviewCount() {
+        return reviewCount;
+    }
+    /**
+     * Obtiene la valoración media de las reseñas sin necesidad de cargarlas.
+     *
+     * @return Valoración media, o 0 si no hay reseñas.
+     */
+    public synchronized double getAverageReviewRating() {
+        return reviewCount == 0 ? 0 : (double) ratingSum / reviewCount;
+    }
+    /**
+     * Agrega una nueva reseña al producto. Si las reseñas guardadas no se pueden cargar no se agrega: empezar una
+     * lista vacía haría que al guardar se perdieran las anteriores.
      *
      * @param review La reseña a agregar.
+     * @return true si se ha agregado, false si no se han podido cargar las reseñas del producto.
      */
-    public void addReview(Review review) {
+    public synchronized boolean addReview(Review review) {
+        if (getReviews() == null) {
+            return false;
+        }
         reviews.add(review);
+        reviewCount++;
+        ratingSum += review.getRating();
+        touch();
+        return true;
     }
     /**
      * Establece la lista de reseñas del producto.
      *
      * @param reviews La lista de reseñas.
      */
-    public void setReviews(ArrayList<Review> reviews) {
+    public synchronized void setReviews(ArrayList<Review> reviews) {
         this.reviews = reviews;
+        this.reviewLoader = null;
+        this.reviewCount = 0;
+        this.ratingSum = 0;
+        if (reviews != null) {
+            for (Review review : reviews) {
+                reviewCount++;
+                ratingSum += review.getRating();
+            }
+        }
+    }
+    /**
+     * Deja el producto sin las reseñas cargadas, conservando solo su número y la suma de sus valoraciones.
+     * Se usa al leer productos como proyección ligera y para liberar memoria cuando las reseñas ya están guardadas
+     * en un sitio del que el cargador puede volver a leerlas.
+     *
+     * @param reviewCount Número de reseñas.
+     * @param ratingSum Suma de las valoraciones.
+     * @param reviewLoader Cargador con el que se leerán las reseñas cuando se pidan.
+     */
+    public synchronized void setReviewSummary(int reviewCount, long ratingSum, ReviewLoader reviewLoader) {
+        this.reviews = null;
+        this.reviewCount = reviewCount;
+        this.ratingSum = ratingSum;
+        this.reviewLoader = reviewLoader;
+    }
+    /**
+     * Libera las reseñas cargadas. A partir de aquí se vuelven a leer con el cargador cuando se pidan.
+     *
+     * @param reviewLoader Cargador con el que se leerán las reseñas.
+     */
+    public synchronized void releaseReviews(ReviewLoader reviewLoader) {
+        if (reviewLoader != null) {
+            setReviewSummary(reviewCount, ratingSum, reviewLoader);
+        }
+    }
+    /**
+     * Obtiene el instante de la última modificación del producto, usado para resolver conflictos al sincronizar.
+     *
+     * @return Milisegundos desde epoch de la última modificación, o 0 si se desconoce.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+    /**
+     * Restaura el instante de la última modificación, por ejemplo al leer el producto de un fichero o de la API.
+     *
+     * @param lastModified Milisegundos desde epoch de la última modificación, o 0 si se desconoce.
+     */
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+    /**
+     * Marca el producto como modificado en este instante.
+     */
+    public void touch() {
+        lastModified = Math.max(lastModified + 1, System.currentTimeMillis());
     }
     /**
      * Método abstracto para calcular el precio final del producto. Debe ser implementado por las subclases.
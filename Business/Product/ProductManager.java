@@ -1,105 +1,192 @@
 package business.product;
+import business.CompletionIndex;
+import business.PendingChanges;
 import business.Review;
-import com.google.gson.JsonSyntaxException;
-import persistence.ApiException;
-import persistence.ApiHelper;
+import metrics.Metrics;
+import metrics.Operation;
+import persistence.PendingChangesJsonDAO;
 import persistence.ProductJsonDAO;
-import persistence.ProductApiJsonDAO;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 /**
  * La clase ProductManager gestiona las operaciones relacionadas con los productos en el sistema.
  * Esto incluye la creación, eliminación, búsqueda y valoración de productos.
+ * Todas las lecturas y escrituras se hacen sobre la réplica local (products.json); los cambios quedan marcados como
+ * pendientes y SyncManager se encarga de enviarlos a la API y de traer los cambios remotos.
+ * Los productos se cargan sin sus reseñas, que se leen del fichero solo cuando se piden; después de cada guardado
+ * se vuelven a liberar.
+ * La clasificación por valoración (RatingRanking) se actualiza con cada cambio, así que pedir los mejor valorados
+ * no recorre los productos ni sus reseñas.
+ * Las búsquedas que no encuentran el texto tal cual en ningún nombre ni marca se repiten admitiendo erratas con un
+ * FuzzyIndex, que también se actualiza con cada cambio.
+ * Los nombres de producto y las marcas se autocompletan con dos CompletionIndex: los productos por número de reseñas
+ * y las marcas por número de productos. El de productos sirve además para comprobar si un nombre existe sin recorrer
+ * la lista.
+ * Mientras la réplica se carga en segundo plano (ver deferSavesUntilLoaded), los cambios no se escriben en
+ * products.json: se guardan al integrar la lista cargada, para no sustituir el fichero por uno que solo tenga los
+ * productos creados antes de leerlo.
  */
 public class ProductManager {
-    private ProductApiJsonDAO productApiJsonDAO;
+    private static final String PENDING_FILE_PATH = "products.pending.json";
     private final ProductJsonDAO productJsonDAO;
-    private ArrayList<Product> productList;
-    private ApiHelper apiHelper;
+    private final PendingChanges pendingChanges;
+    private final ReviewLoader reviewLoader;
+    private final RatingRanking ratingRanking;
+    private final FuzzyIndex fuzzyIndex;
+    private final CompletionIndex productNames;
+    private final CompletionIndex brandNames;
+    private final Map<String, Long> brandCounts;
+    private volatile ArrayList<Product> productList;
+    private boolean savesDeferred;
+    private boolean unsavedChanges;
 
     /**
      * Constructor que inicializa un nuevo ProductManager.
      * @throws FileNotFoundException exception para la utilización de ficheros
      */
     public ProductManager() throws IOException {
-        this.apiHelper = new ApiHelper();
-        this.productApiJsonDAO = new ProductApiJsonDAO();
         this.productJsonDAO =  new ProductJsonDAO();
+        this.pendingChanges = new PendingChanges(new PendingChangesJsonDAO(PENDING_FILE_PATH));
+        this.reviewLoader = productJsonDAO::loadReviews;
+        this.ratingRanking = new RatingRanking();
+        this.fuzzyIndex = new FuzzyIndex();
+        this.productNames = new CompletionIndex();
+        this.brandNames = new CompletionIndex();
+        this.brandCounts = new HashMap<>();
         this.productList = new ArrayList<>();
     }
     /**
-     * Crea un producto y lo agrega a la lista de productos. Si la API está conectada, también intenta guardar el producto mediante la API y en el almacenamiento local.
+     * Crea un producto, lo agrega a la réplica local y lo marca como pendiente de enviar a la API.
      *
      * @param name Nombre del producto.
      * @param brand Marca del producto.
      * @param mrp Precio máximo de venta al público.
      * @param category Categoría del producto (GENERAL, REDUCED, SUPER_REDUCED).
      * @param averageRating Valoración media del producto, necesaria para productos con categoría REDUCED.
-     * @return Verdadero si el producto se crea y guarda correctamente, falso en caso de una excepción.
+     * @return Verdadero si el producto se crea, falso si la categoría no es válida.
      */
-    public boolean createProduct(String name,String brand, double mrp, String category, double averageRating){
-        if(apiHelper.isConnected()) {
+    public synchronized boolean createProduct(String name,String brand, double mrp, String category, double averageRating){
+        long start = System.nanoTime();
+        try {
+            Product product;
             if ("GENERAL".equalsIgnoreCase(category)) {
-                GeneralProduct generalProduct = new GeneralProduct(name, brand, mrp);
-                try {
-                    productList.add(generalProduct);
-                    productApiJsonDAO.saveProduct(generalProduct);
-                }catch(ApiException e){
-                    return false;
-                }
-            }
-            if ("REDUCED".equalsIgnoreCase(category)) {
-                ReducedProduct reducedProduct = new ReducedProduct(name, brand, mrp, averageRating);
-                try {
-                    productList.add(reducedProduct);
-                    productApiJsonDAO.saveProduct(reducedProduct);
-                }catch (ApiException e){
-                    return false;
-                }
-            }
-            if ("SUPER_REDUCED".equalsIgnoreCase(category)) {
-                SuperReducedProduct superReducedProduct = new SuperReducedProduct(name, brand, mrp);
-                try {
-                    productList.add(superReducedProduct);
-                    productApiJsonDAO.saveProduct(superReducedProduct);
-                }catch(ApiException e){
-                    return false;
-                }
+                product = new GeneralProduct(name, brand, mrp);
+            } else if ("REDUCED".equalsIgnoreCase(category)) {
+                product = new ReducedProduct(name, brand, mrp, averageRating);
+            } else if ("SUPER_REDUCED".equalsIgnoreCase(category)) {
+                product = new SuperReducedProduct(name, brand, mrp);
+            } else {
+                return false;
             }
-        }else{
-            if ("GENERAL".equalsIgnoreCase(category)) {
-                GeneralProduct generalProduct = new GeneralProduct(name, brand, mrp);
-                    productList.add(generalProduct);
-                    productJsonDAO.saveProducts(productList);
-            }
-            if ("REDUCED".equalsIgnoreCase(category)) {
-                ReducedProduct reducedProduct = new ReducedProduct(name, brand, mrp, averageRating);
-                productList.add(reducedProduct);
-                productJsonDAO.saveProducts(productList);
-            }
-            if ("SUPER_REDUCED".equalsIgnoreCase(category)) {
-                SuperReducedProduct superReducedProduct = new SuperReducedProduct(name, brand, mrp);
-                productList.add(superReducedProduct);
-                productJsonDAO.saveProducts(productList);
+            ArrayList<Product> updated = new ArrayList<>(productList);
+            updated.add(product);
+            productList = updated;
+            saveProducts(updated);
+            pendingChanges.markUpsert(name);
+            ratingRanking.update(product);
+            fuzzyIndex.add(product);
+            productNames.put(product.getName(), product.getReviewCount());
+            addBrand(product.getBrand(), 1);
+            return true;
+        } finally {
+            Metrics.recordOperation(Operation.PRODUCT_CREATE, start);
+        }
+    }
+
+    /**
+     * Carga la lista completa de productos de la réplica local (products.json), sin sus reseñas.
+     * No modifica la lista gestionada; para ello se usa replaceProductList.
+     *
+     * @return Lista de productos leída.
+     * @throws IOException Si falla la lectura del fichero local.
+     */
+    public ArrayList<Product> fetchProducts() throws IOException {
+        return productJsonDAO.loadProducts();
+    }
+
+    /**
+     * Sustituye la lista de productos gestionada por una lista recién cargada. Los productos creados mientras se
+     * cargaba la lista y que no aparecen en ella se conservan al final.
+     *
+     * @param loaded Lista de productos cargada.
+     */
+    public synchronized void replaceProductList(ArrayList<Product> loaded) {
+        for (Product product : productList) {
+            if (findByName(loaded, product.getName()) == null) {
+                loaded.add(product);
             }
         }
-        return true;
+        productList = loaded;
+        ratingRanking.synchronize(loaded);
+        fuzzyIndex.rebuild(loaded);
+        rebuildNames(loaded);
+        resumeSaves();
+    }
+
+    /**
+     * Deja de escribir products.json hasta que se integre la lista cargada con replaceProductList (o se llame a
+     * resumeSaves). Se usa mientras la réplica se carga en segundo plano.
+     */
+    public synchronized void deferSavesUntilLoaded() {
+        savesDeferred = true;
+    }
+
+    /**
+     * Vuelve a escribir products.json y guarda los cambios hechos mientras estaba aplazado. Se llama sola al
+     * integrar la lista cargada; si la carga falla hay que llamarla para no perder los cambios.
+     */
+    public synchronized void resumeSaves() {
+        savesDeferred = false;
+        if (unsavedChanges) {
+            unsavedChanges = false;
+            saveProducts(productList);
+        }
+    }
+
+    /**
+     * Obtiene los cambios locales pendientes de enviar a la API.
+     *
+     * @return Copia de los cambios pendientes.
+     */
+    public PendingChanges.Snapshot getPendingChanges() {
+        return pendingChanges.snapshot();
     }
 
     /**
-    * Carga y devuelve una lista de productos utilizando la API del DAO de productos.
-    * @return Una lista de objetos Product cargados. Si ocurre una excepción, devuelve una lista vacía.
+     * Termina una sincronización: da por enviados los cambios indicados y sustituye la réplica por la lista remota,
+     * conservando la versión local de los productos que se han vuelto a modificar mientras se sincronizaba.
+     *
+     * @param remote Lista de productos de la API después de aplicar los cambios enviados.
+     * @param synced Cambios que se han enviado correctamente.
      */
-    public ArrayList<Product> productArrayList(){
-        ArrayList<Product> productArrayList = new ArrayList<>();
-            try {
-                productArrayList = productApiJsonDAO.loadProducts();
-            } catch (ApiException | JsonSyntaxException e) {
-                System.out.println(e.getMessage());
+    public synchronized void completeSync(ArrayList<Product> remote, PendingChanges.Snapshot synced) {
+        pendingChanges.acknowledge(synced);
+        ArrayList<Product> merged = new ArrayList<>(remote.size());
+        for (Product remoteProduct : remote) {
+            String name = remoteProduct.getName();
+            if (pendingChanges.isRemoval(name)) {
+                continue;
+            }
+            Product localProduct = pendingChanges.isUpsert(name) ? findByName(productList, name) : null;
+            merged.add(localProduct != null ? localProduct : remoteProduct);
+        }
+        for (Product localProduct : productList) {
+            if (pendingChanges.isUpsert(localProduct.getName()) && findByName(merged, localProduct.getName()) == null) {
+                merged.add(localProduct);
             }
-        return productArrayList;
+        }
+        productList = merged;
+        saveProducts(merged);
+        ratingRanking.synchronize(merged);
+        fuzzyIndex.rebuild(merged);
+        rebuildNames(merged);
     }
 
     /**
@@ -117,19 +204,7 @@ public class ProductManager {
      * @param name con el nombre del producto.
      */
     public boolean nameProductExists (String name){
-        boolean exists = false;
-        ArrayList<Product> products = new ArrayList<>();
-        if(apiHelper.isConnected()){
-            products = productArrayList();
-        }else{
-            products = getProductList();
-        }
-        for(Product product: products){
-            if(product.getName().equalsIgnoreCase(name)){
-                exists = true;
-            }
-        }
-        return exists;
+        return name != null && productNames.find(name) != null;
     }
 
     /**
@@ -139,42 +214,63 @@ public class ProductManager {
      * @return un producto tipo Product con el nombre que queremos buscar
      */
     public Product getProductByName(String name){
-        ArrayList<Product> products = new ArrayList<>();
-        if(apiHelper.isConnected()){
-            products = productArrayList();
-        }else{
-            products = getProductList();
+        long start = System.nanoTime();
+        try {
+            return findByName(productList, name);
+        } finally {
+            Metrics.recordOperation(Operation.PRODUCT_LOOKUP, start);
         }
-        for(Product product: products){
-            if(product.getName().equalsIgnoreCase(name)){
-                return product;
-            }
-        }
-        return null;
     }
 
     /**
-     * Elimina un producto de la lista de productos gestionados por su índice.
+     * Obtiene varios productos por nombre de una sola vez, por ejemplo todos los de un catálogo. Se resuelven contra
+     * una misma versión de la lista de productos, recorriéndola una sola vez, en lugar de buscar cada nombre por
+     * separado.
      *
-     * @param index Índice del producto a eliminar.
+     * @param names Nombres de los productos, sin distinguir mayúsculas.
+     * @return Lista con el producto de cada nombre en el mismo orden, con null en los nombres que no existen.
      */
-    public void removeProduct(int index){
-        if(index >= 0 && index < productList.size()){
-            Product productToRemove = productList.remove(index);
-            productList.remove(productToRemove);
-            productJsonDAO.saveProducts(productList);
+    public ArrayList<Product> getProductsByNames(Collection<String> names) {
+        long start = System.nanoTime();
+        try {
+            ArrayList<Product> snapshot = productList;
+            Map<String, Product> byName = new HashMap<>(snapshot.size() * 2);
+            for (Product product : snapshot) {
+                byName.putIfAbsent(product.getName().toLowerCase(Locale.ROOT), product);
+            }
+            ArrayList<Product> results = new ArrayList<>(names.size());
+            for (String name : names) {
+                results.add(name != null ? byName.get(name.toLowerCase(Locale.ROOT)) : null);
+            }
+            return results;
+        } finally {
+            Metrics.recordOperation(Operation.PRODUCT_BATCH_LOOKUP, start);
         }
     }
+
     /**
-     * Elimina un producto de la lista y de la API utilizando su índice en la lista de productos.
+     * Elimina un producto de la lista de productos gestionados por su índice y lo marca como pendiente de eliminar en la API.
      *
-     * @param index Índice del producto a eliminar en la lista de productos.
-     * @param productList Lista de productos de donde se eliminará el producto.
-     * @throws ApiException Si ocurre un error al eliminar el producto de la API.
+     * @param index Índice del producto a eliminar.
      */
-    public void removeProductFromApi(int index, ArrayList<Product> productList) throws ApiException {
-        if(index <= productList.size()){
-            productApiJsonDAO.removeProduct("P1-G70", index);
+    public synchronized void removeProduct(int index){
+        long start = System.nanoTime();
+        try {
+            if(index >= 0 && index < productList.size()){
+                ArrayList<Product> updated = new ArrayList<>(productList);
+                Product productToRemove = updated.remove(index);
+                productList = updated;
+                saveProducts(updated);
+                pendingChanges.markRemoval(productToRemove.getName());
+                ratingRanking.remove(productToRemove);
+                fuzzyIndex.remove(productToRemove);
+                if (findByName(updated, productToRemove.getName()) == null) {
+                    productNames.remove(productToRemove.getName());
+                }
+                addBrand(productToRemove.getBrand(), -1);
+            }
+        } finally {
+            Metrics.recordOperation(Operation.PRODUCT_REMOVE, start);
         }
     }
 
@@ -184,94 +280,184 @@ public class ProductManager {
      * @return Verdadero si el precio es menor o igual al precio máximo de venta al público de algún producto, falso en caso contrario.
      */
     public boolean priceProductExceed(double price){
-        boolean ok = false;
-        ArrayList<Product> products;
-        if(apiHelper.isConnected()){
-            products = productArrayList();
-            for (Product p : products) {
-                if (price <= p.getMrp()) {
-                    ok = true;
-                    break;
-                }
-            }
-
-        }else{
-            products = getProductList();
-            for (Product p : products) {
-                if (price <= p.getMrp()) {
-                    ok = true;
-                    break;
-                }
+        for (Product p : productList) {
+            if (price <= p.getMrp()) {
+                return true;
             }
         }
-
-        return ok;
+        return false;
     }
     /**
      * Busca productos que coincidan con el texto de búsqueda en su nombre o marca y devuelve una lista de los productos encontrados.
+     * Si ningún nombre ni marca contiene el texto, se buscan los productos con palabras parecidas (ver FuzzyIndex),
+     * de más a menos parecidos.
      *
      * @param searchInput Texto de búsqueda para comparar con el nombre o marca de los productos.
      * @return Lista de productos que coinciden con el criterio de búsqueda.
      */
     public ArrayList<Product> searchProducts (String searchInput){
-        ArrayList<Product> results = new ArrayList<>();
-        ArrayList<Product> products = new ArrayList<>();
-        if(apiHelper.isConnected()){
-            products = productArrayList();
-        }else{
-            products = getProductList();
-        }
-        for(Product product: products){
-            if(matchProduct(product, searchInput)){
-                results.add(product);
+        long start = System.nanoTime();
+        try {
+            ArrayList<Product> results = new ArrayList<>();
+            String text = searchInput.toLowerCase(Locale.ROOT);
+            for(Product product: productList){
+                if(matchProduct(product, text)){
+                    results.add(product);
+                }
             }
+            if (results.isEmpty()) {
+                results.addAll(fuzzyIndex.search(searchInput));
+            }
+            return results;
+        } finally {
+            Metrics.recordOperation(Operation.PRODUCT_SEARCH, start);
         }
-        return results;
     }
 
     /**
-     * Comprueba si un producto coincide con el texto de búsqueda en su nombre o marca.
+     * Comprueba si un producto coincide con el texto de búsqueda en su nombre o marca, sin distinguir mayúsculas y
+     * sin crear copias en minúsculas de cada nombre.
      *
      * @param product Producto a comparar.
-     * @param text Texto de búsqueda.
+     * @param text Texto de búsqueda en minúsculas.
      * @return Verdadero si el nombre o la marca del producto contienen el texto de búsqueda, falso en caso contrario.
      */
-    private boolean matchProduct(Product product, String text){
-        String productName = product.getName().toLowerCase();
-        String brand = product.getBrand().toLowerCase();
-        text = text.toLowerCase();
-        boolean nameMatch = productName.contains(text);
-        boolean brandMatch = brand.contains(text);
-        return nameMatch || brandMatch;
+    private static boolean matchProduct(Product product, String text){
+        return containsIgnoreCase(product.getName(), text) || containsIgnoreCase(product.getBrand(), text);
     }
 
     /**
-     * Agrega una reseña de producto con calificación y comentario a un producto.
+     * Comprueba si un texto contiene otro sin distinguir mayúsculas. Solo se compara el resto del texto en las
+     * posiciones donde coincide la primera letra.
+     *
+     * @param value Texto donde buscar, que puede ser null.
+     * @param text Texto a buscar, en minúsculas.
+     * @return Verdadero si value contiene text.
+     */
+    private static boolean containsIgnoreCase(String value, String text) {
+        if (value == null) {
+            return false;
+        }
+        if (text.isEmpty()) {
+            return true;
+        }
+        char first = text.charAt(0);
+        int rest = text.length() - 1;
+        for (int i = 0; i + rest < value.length(); i++) {
+            char letter = value.charAt(i);
+            if ((letter == first || Character.toLowerCase(letter) == first)
+                    && value.regionMatches(true, i + 1, text, 1, rest)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Agrega una reseña de producto con calificación y comentario a un producto, la guarda en la réplica local y
+     * marca el producto como pendiente de enviar a la API.
      *
      * @param rating la puntuación que se le va a poner al producto
      * @param comment el comentario que se le va a poner al producto
      * @param product el producto que le tenemos que añadir la reseña
+     * @return true si se ha agregado, false si no se han podido leer las reseñas que ya tenía el producto
      */
-    public void addProductReview(int rating, String comment, Product product){
-        boolean api;
-        if(apiHelper.isConnected()){
-            api = true;
-        }else{
-            api = false;
+    public synchronized boolean addProductReview(int rating, String comment, Product product){
+        long start = System.nanoTime();
+        try {
+            Review review = new Review(rating, comment);
+            if (!product.addReview(review)) {
+                return false;
+            }
+
+            saveProducts(productList);
+            pendingChanges.markUpsert(product.getName());
+            ratingRanking.update(product);
+            productNames.put(product.getName(), product.getReviewCount());
+            return true;
+        } finally {
+            Metrics.recordOperation(Operation.PRODUCT_REVIEW, start);
         }
+    }
 
-        if(product.getReviews() == null){
-            product.setReviews(new ArrayList<>());
+    /**
+     * Obtiene los productos mejor valorados según la media de sus reseñas. Con la misma media va primero el que
+     * tiene más reseñas; los productos sin reseñas no aparecen.
+     *
+     * @param k Número máximo de productos.
+     * @return Hasta k productos, del mejor al peor valorado.
+     */
+    public List<Product> getTopRated(int k) {
+        long start = System.nanoTime();
+        try {
+            return ratingRanking.top(k);
+        } finally {
+            Metrics.recordOperation(Operation.PRODUCT_TOP_RATED, start);
         }
-        Review review = new Review(rating, comment);
-        product.addReview(review);
+    }
 
-        if (api) {
-            productApiJsonDAO.updateProduct(product);
-        } else {
-            productJsonDAO.saveProducts(productList);
+    /**
+     * Obtiene los productos mejor valorados de una categoría.
+     *
+     * @param category Categoría (GENERAL, REDUCED o SUPER_REDUCED), sin distinguir mayúsculas.
+     * @param k Número máximo de productos.
+     * @return Hasta k productos, del mejor al peor valorado.
+     */
+    public List<Product> getTopRatedByCategory(String category, int k) {
+        long start = System.nanoTime();
+        try {
+            return ratingRanking.topByCategory(category, k);
+        } finally {
+            Metrics.recordOperation(Operation.PRODUCT_TOP_RATED, start);
         }
+    }
 
+    /**
+     * Obtiene los productos mejor valorados de una marca.
+     *
+     * @param brand Marca, sin distinguir mayúsculas.
+     * @param k Número máximo de productos.
+     * @return Hasta k productos, del mejor al peor valorado.
+     */
+    public List<Product> getTopRatedByBrand(String brand, int k) {
+        long start = System.nanoTime();
+        try {
+            return ratingRanking.topByBrand(brand, k);
+        } finally {
+            Metrics.recordOperation(Operation.PRODUCT_TOP_RATED, start);
+        }
+    }
+
+    /**
+     * Autocompleta un nombre de producto: obtiene los nombres que empiezan por un texto, de más a menos reseñas.
+     *
+     * @param prefix Principio del nombre, sin distinguir mayúsculas.
+     * @param k Número máximo de nombres.
+     * @return Hasta k nombres de producto.
+     */
+    public List<String> completeProductName(String prefix, int k) {
+        long start = System.nanoTime();
+        try {
+            return productNames.complete(prefix, k);
+        } finally {
+            Metrics.recordOperation(Operation.NAME_COMPLETE, start);
+        }
+    }
+
+    /**
+     * Autocompleta una marca: obtiene las marcas que empiezan por un texto, de más a menos productos.
+     *
+     * @param prefix Principio de la marca, sin distinguir mayúsculas.
+     * @param k Número máximo de marcas.
+     * @return Hasta k marcas.
+     */
+    public List<String> completeBrand(String prefix, int k) {
+        long start = System.nanoTime();
+        try {
+            return brandNames.complete(prefix, k);
+        } finally {
+            Metrics.recordOperation(Operation.NAME_COMPLETE, start);
+        }
     }
 
     /**
@@ -283,4 +469,87 @@ public class ProductManager {
     public ArrayList<Review> getReviews(Product product){
         return product.getReviews();
     }
+
+    /**
+     * Guarda una lista de productos en la réplica local. Las reseñas que no están cargadas no se cargan: se copian
+     * del fichero actual al escribir. Si el guardado termina bien se liberan las de todos los productos.
+     * Mientras el guardado está aplazado solo se anota que hay cambios.
+     *
+     * @param products Lista de productos a guardar.
+     */
+    private void saveProducts(List<Product> products) {
+        if (savesDeferred) {
+            unsavedChanges = true;
+            return;
+        }
+        if (productJsonDAO.saveProducts(products)) {
+            for (Product product : products) {
+                product.releaseReviews(reviewLoader);
+            }
+        }
+    }
+
+    /**
+     * Busca un producto por nombre, sin distinguir mayúsculas, en una lista dada.
+     *
+     * @param products Lista donde buscar.
+     * @param name Nombre del producto.
+     * @return El primer producto con ese nombre, o null si no hay ninguno.
+     */
+    private static Product findByName(ArrayList<Product> products, String name) {
+        for (Product product : products) {
+            if (product.getName().equalsIgnoreCase(name)) {
+                return product;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Vuelve a construir los índices de nombres y marcas con una lista de productos completa.
+     *
+     * @param products Lista de productos actual.
+     */
+    private void rebuildNames(ArrayList<Product> products) {
+        Map<String, Long> reviewsByName = new HashMap<>(products.size() * 2);
+        brandCounts.clear();
+        Map<String, String> brandByKey = new HashMap<>();
+        for (Product product : products) {
+            reviewsByName.merge(product.getName(), (long) product.getReviewCount(), Math::max);
+            String brand = product.getBrand();
+            if (brand != null && !brand.isEmpty()) {
+                String key = brand.toLowerCase(Locale.ROOT);
+                brandCounts.merge(key, 1L, Long::sum);
+                brandByKey.putIfAbsent(key, brand);
+            }
+        }
+        Map<String, Long> productsByBrand = new HashMap<>(brandByKey.size() * 2);
+        for (Map.Entry<String, String> entry : brandByKey.entrySet()) {
+            productsByBrand.put(entry.getValue(), brandCounts.get(entry.getKey()));
+        }
+        productNames.rebuild(reviewsByName);
+        brandNames.rebuild(productsByBrand);
+    }
+
+    /**
+     * Suma o resta productos a una marca en el índice de marcas; la marca se quita cuando se queda sin productos.
+     *
+     * @param brand Marca del producto.
+     * @param delta 1 al crear un producto, -1 al eliminarlo.
+     */
+    private void addBrand(String brand, long delta) {
+        if (brand == null || brand.isEmpty()) {
+            return;
+        }
+        String key = brand.toLowerCase(Locale.ROOT);
+        long count = brandCounts.getOrDefault(key, 0L) + delta;
+        if (count > 0) {
+            brandCounts.put(key, count);
+            String shown = brandNames.find(brand);
+            brandNames.put(shown != null ? shown : brand, count);
+        } else {
+            brandCounts.remove(key);
+            brandNames.remove(brand);
+        }
+    }
 }
@@ -0,0 +1,199 @@
+package business.product;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Clasificación de los productos por valoración media, mantenida al día a medida que cambian las reseñas en lugar de
+ * recorrer todos los productos y sus reseñas cada vez. Cada producto con al menos una reseña está en una lista
+ * ordenada (skip list) general y en las de su categoría y su marca, ordenadas por valoración media, después por
+ * número de reseñas y por último por nombre. Actualizar un producto cuesta O(log n) y pedir los K mejores,
+ * O(log n + K).
+ * Las modificaciones se hacen de una en una; las consultas pueden hacerse a la vez desde cualquier hilo y, mientras se
+ * actualiza un producto, pueden no verlo durante un instante.
+ */
+public class RatingRanking {
+    private static final Comparator<Entry> ORDER = Comparator.comparingDouble((Entry entry) -> entry.average).reversed()
+            .thenComparing(Comparator.comparingInt((Entry entry) -> entry.count).reversed())
+            .thenComparing(entry -> entry.key);
+
+    private final ConcurrentSkipListSet<Entry> overall;
+    private final Map<String, ConcurrentSkipListSet<Entry>> byCategory;
+    private final Map<String, ConcurrentSkipListSet<Entry>> byBrand;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Posición de un producto en la clasificación, con la valoración que tenía al actualizarlo.
+     */
+    private static final class Entry {
+        private final String key;
+        private final Product product;
+        private final double average;
+        private final int count;
+
+        private Entry(String key, Product product, double average, int count) {
+            this.key = key;
+            this.product = product;
+            this.average = average;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Constructor. Crea una clasificación vacía.
+     */
+    public RatingRanking() {
+        this.overall = new ConcurrentSkipListSet<>(ORDER);
+        this.byCategory = new ConcurrentHashMap<>();
+        this.byBrand = new ConcurrentHashMap<>();
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Vuelve a colocar un producto según sus reseñas actuales. Los productos sin reseñas no aparecen en la
+     * clasificación.
+     * @param product Producto creado o con reseñas nuevas.
+     */
+    public synchronized void update(Product product) {
+        String key = keyOf(product.getName());
+        int count = product.getReviewCount();
+        double average = product.getAverageReviewRating();
+        Entry previous = entries.get(key);
+        if (previous != null && previous.product == product && previous.count == count && previous.average == average) {
+            return;
+        }
+        if (previous != null) {
+            unlink(previous);
+        }
+        if (count == 0) {
+            return;
+        }
+        Entry entry = new Entry(key, product, average, count);
+        entries.put(key, entry);
+        overall.add(entry);
+        byCategory.computeIfAbsent(keyOf(product.getCategory()), k -> new ConcurrentSkipListSet<>(ORDER)).add(entry);
+        byBrand.computeIfAbsent(keyOf(product.getBrand()), k -> new ConcurrentSkipListSet<>(ORDER)).add(entry);
+    }
+
+    /**
+     * Quita un producto de la clasificación.
+     * @param product Producto eliminado.
+     */
+    public synchronized void remove(Product product) {
+        Entry previous = entries.get(keyOf(product.getName()));
+        if (previous != null) {
+            unlink(previous);
+        }
+    }
+
+    /**
+     * Ajusta la clasificación a una lista de productos completa, por ejemplo después de cargar la réplica o de
+     * sincronizar con la API. Solo se recolocan los productos que han cambiado y se quitan los que ya no están.
+     * @param products Lista de productos actual.
+     */
+    public synchronized void synchronize(List<Product> products) {
+        Set<String> present = new HashSet<>(products.size() * 2);
+        for (Product product : products) {
+            if (present.add(keyOf(product.getName()))) {
+                update(product);
+            }
+        }
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (!present.contains(entry.key)) {
+                iterator.remove();
+                unlinkFromSets(entry);
+            }
+        }
+    }
+
+    /**
+     * Obtiene los productos mejor valorados.
+     * @param k Número máximo de productos.
+     * @return Hasta k productos, del mejor al peor valorado.
+     */
+    public List<Product> top(int k) {
+        return first(overall, k);
+    }
+
+    /**
+     * Obtiene los productos mejor valorados de una categoría.
+     * @param category Categoría (GENERAL, REDUCED o SUPER_REDUCED), sin distinguir mayúsculas.
+     * @param k Número máximo de productos.
+     * @return Hasta k productos, del mejor al peor valorado.
+     */
+    public List<Product> topByCategory(String category, int k) {
+        return first(byCategory.get(keyOf(category)), k);
+    }
+
+    /**
+     * Obtiene los productos mejor valorados de una marca.
+     * @param brand Marca, sin distinguir mayúsculas.
+     * @param k Número máximo de productos.
+     * @return Hasta k productos, del mejor al peor valorado.
+     */
+    public List<Product> topByBrand(String brand, int k) {
+        return first(byBrand.get(keyOf(brand)), k);
+    }
+
+    /**
+     * Recorre los primeros elementos de una lista ordenada.
+     * @param ranking Lista ordenada, o null si no hay ninguna.
+     * @param k Número máximo de productos.
+     * @return Productos de los primeros k elementos.
+     */
+    private static List<Product> first(ConcurrentSkipListSet<Entry> ranking, int k) {
+        List<Product> results = new ArrayList<>(Math.max(0, Math.min(k, 64)));
+        if (ranking == null) {
+            return results;
+        }
+        Iterator<Entry> iterator = ranking.iterator();
+        while (results.size() < k && iterator.hasNext()) {
+            results.add(iterator.next().product);
+        }
+        return results;
+    }
+
+    /**
+     * Quita una entrada del índice y de las listas ordenadas.
+     * @param entry Entrada a quitar.
+     */
+    private void unlink(Entry entry) {
+        entries.remove(entry.key, entry);
+        unlinkFromSets(entry);
+    }
+
+    /**
+     * Quita una entrada de las listas ordenadas.
+     * @param entry Entrada a quitar.
+     */
+    private void unlinkFromSets(Entry entry) {
+        overall.remove(entry);
+        ConcurrentSkipListSet<Entry> category = byCategory.get(keyOf(entry.product.getCategory()));
+        if (category != null) {
+            category.remove(entry);
+        }
+        ConcurrentSkipListSet<Entry> brand = byBrand.get(keyOf(entry.product.getBrand()));
+        if (brand != null) {
+            brand.remove(entry);
+        }
+    }
+
+    /**
+     * Normaliza un nombre, categoría o marca para usarlo como clave.
+     * @param value Texto original, que puede ser null.
+     * @return Texto en minúsculas, o cadena vacía si es null.
+     */
+    private static String keyOf(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+}
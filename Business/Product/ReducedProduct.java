@@ -34,6 +34,14 @@ public class ReducedProduct extends Product{
         super(name, brand, mrp, "REDUCED");
         this.averageRating = averageRating;
     }
+    /**
+     * Obtiene la valoración promedio con la que se calcula la tasa de impuesto.
+     *
+     * @return La valoración promedio del producto.
+     */
+    public double getAverageRating() {
+        return averageRating;
+    }
     /**
      * Calcula el precio final del producto. Los productos con valoraciones por encima de un cierto
      * umbral aplican una tasa impositiva aún más baja.
@@ -0,0 +1,18 @@
+package business.product;
+
+import business.Review;
+
+import java.util.ArrayList;
+
+/**
+ * Carga bajo demanda las reseñas de un producto que se ha leído sin ellas (ver Product.getReviews).
+ */
+@FunctionalInterface
+public interface ReviewLoader {
+    /**
+     * Carga las reseñas de un producto.
+     * @param productName Nombre del producto.
+     * @return Lista de reseñas (vacía si el producto no tiene), o null si no se han podido leer.
+     */
+    ArrayList<Review> loadReviews(String productName);
+}
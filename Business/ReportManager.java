@@ -0,0 +1,71 @@
+package business;
+
+import business.product.Product;
+import business.product.ProductManager;
+import business.shop.Shop;
+import business.shop.ShopManager;
+import metrics.Metrics;
+import metrics.Operation;
+import persistence.ReportCsvWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+/**
+ * Esta clase se encarga de exportar un informe con las ganancias de cada tienda y todas las entradas
+ * de sus catálogos, con el precio bruto y el neto calculado según el modelo de negocio de la tienda.
+ */
+public class ReportManager {
+    private final ShopManager shopManager;
+    private final ProductManager productManager;
+
+    /**
+     * Constructor de la clase ReportManager.
+     * @param shopManager El gestor de tiendas del que se obtienen las tiendas y sus catálogos.
+     * @param productManager El gestor de productos del que se obtienen los productos.
+     */
+    public ReportManager(ShopManager shopManager, ProductManager productManager) {
+        this.shopManager = shopManager;
+        this.productManager = productManager;
+    }
+
+    /**
+     * Exporta el informe al fichero indicado. Las filas se escriben a medida que se recorren los catálogos,
+     * resolviendo cada producto contra un índice construido una sola vez.
+     * @param path Ruta del fichero de destino.
+     * @return Número de filas de datos escritas.
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    public long exportReport(Path path) throws IOException {
+        long start = System.nanoTime();
+        try {
+            ArrayList<Shop> shops = shopManager.getShopList();
+            ArrayList<Product> products = productManager.getProductList();
+
+            HashMap<String, Product> productsByName = new HashMap<>();
+            for (Product product : products) {
+                productsByName.putIfAbsent(product.getName().toLowerCase(), product);
+            }
+
+            try (ReportCsvWriter writer = new ReportCsvWriter(path)) {
+                for (Shop shop : shops) {
+                    writer.writeShop(shop.getName(), shop.businessModel, shop.getEarnings());
+                }
+                for (Shop shop : shops) {
+                    for (Catalogue item : shop.getCatalogue()) {
+                        Product product = productsByName.get(item.getProductName().toLowerCase());
+                        if (product != null) {
+                            double gross = item.getPriceAtShop();
+                            double net = shop.calculateDiscount(gross, product);
+                            writer.writeItem(shop.getName(), product.getName(), product.getBrand(), product.getCategory(), gross, net);
+                        }
+                    }
+                }
+                return writer.getRows();
+            }
+        } finally {
+            Metrics.recordOperation(Operation.REPORT_EXPORT, start);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package business;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Acumulados de ventas por franja de tiempo y por tienda, que se actualizan con cada venta escrita en el libro de
+ * ventas. Así los informes de ingresos por hora o las ganancias de cada tienda no tienen que recorrer el libro:
+ * cada venta cuesta una suma en su franja y otra en su tienda.
+ */
+public class RevenueRollup {
+    /** Duración de una franja de una hora, en milisegundos. */
+    public static final long HOUR = 3_600_000L;
+
+    private final long bucketMillis;
+    private final TreeMap<Long, Bucket> buckets;
+    private final Map<String, Bucket> byShop;
+
+    /**
+     * Acumulado de un conjunto de ventas.
+     */
+    public static final class Bucket {
+        private final long start;
+        private double gross;
+        private double net;
+        private long lines;
+        private long discountedLines;
+        private final Map<String, Double> netByShop;
+
+        private Bucket(long start) {
+            this.start = start;
+            this.netByShop = new HashMap<>();
+        }
+
+        private Bucket(Bucket other) {
+            this.start = other.start;
+            this.gross = other.gross;
+            this.net = other.net;
+            this.lines = other.lines;
+            this.discountedLines = other.discountedLines;
+            this.netByShop = new HashMap<>(other.netByShop);
+        }
+
+        private void add(Sale sale, boolean perShop) {
+            gross += sale.getGross();
+            net += sale.getNet();
+            lines++;
+            if (sale.isDiscounted()) {
+                discountedLines++;
+            }
+            if (perShop) {
+                netByShop.merge(sale.getShopName(), sale.getNet(), Double::sum);
+            }
+        }
+
+        /**
+         * Obtener el inicio de la franja
+         * @return long milisegundos desde 1970, o 0 si el acumulado es de una tienda
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * Obtener la suma de los precios en tienda
+         * @return double gross
+         */
+        public double getGross() {
+            return gross;
+        }
+
+        /**
+         * Obtener la suma de lo que han ganado las tiendas
+         * @return double net
+         */
+        public double getNet() {
+            return net;
+        }
+
+        /**
+         * Obtener el número de productos vendidos
+         * @return long lines
+         */
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * Obtener el número de productos vendidos con descuento de cliente habitual
+         * @return long discountedLines
+         */
+        public long getDiscountedLines() {
+            return discountedLines;
+        }
+
+        /**
+         * Obtener lo que ha ganado cada tienda en la franja
+         * @return Ganancias por nombre de tienda; vacío si el acumulado es de una tienda
+         */
+        public Map<String, Double> getNetByShop() {
+            return netByShop;
+        }
+    }
+
+    /**
+     * Constructor. Crea unos acumulados vacíos.
+     * @param bucketMillis Duración de cada franja, en milisegundos.
+     */
+    public RevenueRollup(long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = new TreeMap<>();
+        this.byShop = new HashMap<>();
+    }
+
+    /**
+     * Suma una venta a su franja y a su tienda.
+     * @param sale Venta.
+     */
+    public synchronized void add(Sale sale) {
+        long start = Math.floorDiv(sale.getTimestamp(), bucketMillis) * bucketMillis;
+        buckets.computeIfAbsent(start, Bucket::new).add(sale, true);
+        byShop.computeIfAbsent(sale.getShopName(), name -> new Bucket(0)).add(sale, false);
+    }
+
+    /**
+     * Obtiene las franjas con ventas entre dos momentos, de la más antigua a la más reciente.
+     * @param from Inicio, incluido, en milisegundos desde 1970.
+     * @param to Final, excluido, en milisegundos desde 1970.
+     * @return Copia de las franjas cuyo inicio está en el intervalo.
+     */
+    public synchronized List<Bucket> getBuckets(long from, long to) {
+        List<Bucket> result = new ArrayList<>();
+        for (Bucket bucket : buckets.subMap(from, to).values()) {
+            result.add(new Bucket(bucket));
+        }
+        return result;
+    }
+
+    /**
+     * Obtiene los acumulados de cada tienda desde la primera venta del libro.
+     * @return Copia de los acumulados por nombre de tienda.
+     */
+    public synchronized Map<String, Bucket> getShopTotals() {
+        Map<String, Bucket> result = new HashMap<>();
+        for (Map.Entry<String, Bucket> entry : byShop.entrySet()) {
+            result.put(entry.getKey(), new Bucket(entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Obtiene la duración de cada franja.
+     * @return Milisegundos.
+     */
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+}
@@ -0,0 +1,92 @@
+package business;
+
+/**
+ * Una línea de un cobro: un producto vendido en una tienda. Es inmutable; se guarda en el libro de ventas
+ * (SalesLedger) tal como se cobró.
+ */
+public class Sale {
+    private final long timestamp;
+    private final String shopName;
+    private final String productName;
+    private final String customer;
+    private final double gross;
+    private final double net;
+    private final boolean discounted;
+
+    /**
+     * Constructor de la clase Sale.
+     * @param timestamp Momento del cobro, en milisegundos desde 1970.
+     * @param shopName Nombre de la tienda.
+     * @param productName Nombre del producto.
+     * @param customer Nombre del cliente.
+     * @param gross Precio del producto en la tienda.
+     * @param net Lo que gana la tienda después de aplicar su modelo de negocio.
+     * @param discounted true si el cliente era habitual y pagaba el precio con descuento.
+     */
+    public Sale(long timestamp, String shopName, String productName, String customer, double gross, double net,
+                boolean discounted) {
+        this.timestamp = timestamp;
+        this.shopName = shopName;
+        this.productName = productName;
+        this.customer = customer;
+        this.gross = gross;
+        this.net = net;
+        this.discounted = discounted;
+    }
+
+    /**
+     * Obtener el momento del cobro
+     * @return long milisegundos desde 1970
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Obtener el nombre de la tienda
+     * @return String de shopName
+     */
+    public String getShopName() {
+        return shopName;
+    }
+
+    /**
+     * Obtener el nombre del producto
+     * @return String de productName
+     */
+    public String getProductName() {
+        return productName;
+    }
+
+    /**
+     * Obtener el nombre del cliente
+     * @return String de customer
+     */
+    public String getCustomer() {
+        return customer;
+    }
+
+    /**
+     * Obtener el precio del producto en la tienda
+     * @return double gross
+     */
+    public double getGross() {
+        return gross;
+    }
+
+    /**
+     * Obtener lo que gana la tienda con la venta
+     * @return double net
+     */
+    public double getNet() {
+        return net;
+    }
+
+    /**
+     * Indica si se aplicó el descuento de cliente habitual
+     * @return boolean discounted
+     */
+    public boolean isDiscounted() {
+        return discounted;
+    }
+}
@@ -0,0 +1,131 @@
+package business;
+
+import persistence.SalesLedgerDAO;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Libro de ventas: guarda cada línea cobrada (tienda, producto, cliente, precio en tienda, ganancia y si se aplicó
+ * el descuento de cliente habitual) y mantiene los ingresos por hora y por tienda a medida que se escriben. Las
+ * ganancias de cada tienda se pueden reconstruir leyendo el libro desde el principio, así que una actualización de
+ * ganancias perdida ya no se pierde para siempre.
+ * El libro se abre y se lee la primera vez que se usa, de modo que las herramientas que no cobran no lo tocan.
+ * Abierto solo para consultar, se lee sin modificar el fichero y no se pueden añadir ventas.
+ */
+public class SalesLedger {
+    private final SalesLedgerDAO salesLedgerDAO;
+    private final RevenueRollup rollup;
+    private final boolean readOnly;
+    private boolean loaded;
+    private long replayed;
+
+    /**
+     * Constructor.
+     * @param filePath Ruta del fichero del libro.
+     */
+    public SalesLedger(String filePath) {
+        this(filePath, false);
+    }
+
+    /**
+     * Constructor.
+     * @param filePath Ruta del fichero del libro.
+     * @param readOnly true para solo consultar el libro, sin modificar el fichero.
+     */
+    public SalesLedger(String filePath, boolean readOnly) {
+        this.salesLedgerDAO = new SalesLedgerDAO(filePath);
+        this.rollup = new RevenueRollup(RevenueRollup.HOUR);
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Añade las ventas de un cobro al libro y a los acumulados, y espera a que estén en disco. Los cobros que llegan
+     * a la vez desde varios hilos se guardan en disco de una sola vez.
+     * @param sales Ventas del cobro.
+     * @return true si se han guardado, false si no se ha podido escribir el libro o se ha abierto solo para consultar.
+     */
+    public boolean record(List<Sale> sales) {
+        if (sales.isEmpty()) {
+            return true;
+        }
+        if (readOnly) {
+            return false;
+        }
+        try {
+            load();
+            long position = salesLedgerDAO.append(sales);
+            for (Sale sale : sales) {
+                rollup.add(sale);
+            }
+            salesLedgerDAO.sync(position);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Obtiene los ingresos por hora entre dos momentos.
+     * @param from Inicio, incluido, en milisegundos desde 1970.
+     * @param to Final, excluido, en milisegundos desde 1970.
+     * @return Franjas con ventas, de la más antigua a la más reciente.
+     */
+    public List<RevenueRollup.Bucket> getHourlyRevenue(long from, long to) {
+        loadQuietly();
+        return rollup.getBuckets(from, to);
+    }
+
+    /**
+     * Obtiene los totales de cada tienda desde la primera venta del libro, que dan sus ganancias.
+     * @return Totales por nombre de tienda.
+     */
+    public Map<String, RevenueRollup.Bucket> getShopTotals() {
+        loadQuietly();
+        return rollup.getShopTotals();
+    }
+
+    /**
+     * Obtiene cuántas ventas había en el libro al abrirlo.
+     * @return Número de ventas leídas.
+     */
+    public long getReplayedSales() {
+        loadQuietly();
+        return replayed;
+    }
+
+    /**
+     * Fuerza a disco el libro y lo cierra. Después ya no se pueden añadir ventas.
+     */
+    public synchronized void close() {
+        try {
+            salesLedgerDAO.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Abre el libro y lee sus ventas si no se ha hecho antes.
+     * @throws IOException Si no se puede abrir o leer el fichero.
+     */
+    private synchronized void load() throws IOException {
+        if (!loaded) {
+            replayed = readOnly ? salesLedgerDAO.read(rollup) : salesLedgerDAO.replay(rollup);
+            loaded = true;
+        }
+    }
+
+    /**
+     * Abre el libro para consultarlo; si no se puede, los acumulados se quedan como estén.
+     */
+    private void loadQuietly() {
+        try {
+            load();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package business.shop;
+
+import metrics.ActionAccounting;
+
+/**
+ * Un cambio en el catálogo de una tienda: un producto añadido, eliminado o con un precio nuevo. También se usa para
+ * las ganancias nuevas de la tienda después de un cobro, que así se guardan y se envían como un solo campo en lugar
+ * de reescribir y volver a subir la tienda entera.
+ * Los cambios se guardan en un registro que solo crece (ver CatalogueLogDAO) y se envían a la API uno a uno, de modo
+ * que lo que se escribe depende del cambio y no del tamaño del catálogo.
+ * Mientras el programa está en marcha el cambio recuerda la ejecución de la acción que lo hizo, a la que la
+ * sincronización carga las llamadas con que lo envía; no se guarda en el registro. Si esa acción ha superado su
+ * presupuesto, el cambio se reintenta en el ciclo siguiente sin acción, a cargo de la sincronización.
+ */
+public class CatalogueChange {
+    /**
+     * Tipos de cambio.
+     */
+    public enum Type {
+        /** Producto añadido al catálogo. */
+        ADD,
+        /** Producto eliminado del catálogo. */
+        REMOVE,
+        /** Precio nuevo de un producto que ya estaba en el catálogo. */
+        PRICE,
+        /** Ganancias totales nuevas de la tienda; el importe va en el precio y el producto queda vacío. */
+        EARNINGS
+    }
+
+    private final Type type;
+    private final String shopName;
+    private final String productName;
+    private final double priceAtShop;
+    private final long lastModified;
+    private volatile ActionAccounting.Scope origin;
+
+    /**
+     * Constructor de la clase CatalogueChange, para un cambio sin acción conocida (por ejemplo, leído del registro).
+     * @param type Tipo de cambio.
+     * @param shopName Nombre de la tienda.
+     * @param productName Nombre del producto.
+     * @param priceAtShop Precio del producto en la tienda; no se usa en las eliminaciones.
+     * @param lastModified Instante de modificación de la tienda justo después del cambio.
+     */
+    public CatalogueChange(Type type, String shopName, String productName, double priceAtShop, long lastModified) {
+        this(type, shopName, productName, priceAtShop, lastModified, null);
+    }
+
+    /**
+     * Constructor de la clase CatalogueChange.
+     * @param type Tipo de cambio.
+     * @param shopName Nombre de la tienda.
+     * @param productName Nombre del producto.
+     * @param priceAtShop Precio del producto en la tienda; no se usa en las eliminaciones.
+     * @param lastModified Instante de modificación de la tienda justo después del cambio.
+     * @param origin Ejecución de la acción que ha hecho el cambio, o null si no se conoce.
+     */
+    public CatalogueChange(Type type, String shopName, String productName, double priceAtShop, long lastModified,
+                           ActionAccounting.Scope origin) {
+        this.type = type;
+        this.shopName = shopName;
+        this.productName = productName;
+        this.priceAtShop = priceAtShop;
+        this.lastModified = lastModified;
+        this.origin = origin;
+    }
+
+    /**
+     * Obtiene el tipo de cambio.
+     * @return Tipo de cambio.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Obtiene el nombre de la tienda.
+     * @return Nombre de la tienda.
+     */
+    public String getShopName() {
+        return shopName;
+    }
+
+    /**
+     * Obtiene el nombre del producto.
+     * @return Nombre del producto.
+     */
+    public String getProductName() {
+        return productName;
+    }
+
+    /**
+     * Obtiene el precio del producto en la tienda.
+     * @return Precio del producto.
+     */
+    public double getPriceAtShop() {
+        return priceAtShop;
+    }
+
+    /**
+     * Obtiene el instante de modificación de la tienda justo después del cambio.
+     * @return Milisegundos desde epoch.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Obtiene la ejecución de la acción que ha hecho el cambio.
+     * @return Ámbito de la acción, o null si no se conoce.
+     */
+    public ActionAccounting.Scope getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Olvida la acción que ha hecho el cambio, para que los reintentos se carguen a la sincronización.
+     */
+    public void clearOrigin() {
+        origin = null;
+    }
+
+    /**
+     * Aplica el cambio a una tienda. Aplicarlo más de una vez deja la tienda igual, así que se puede repetir sobre
+     * una copia que ya lo contenga.
+     * @param shop Tienda a modificar.
+     */
+    public void applyTo(Shop shop) {
+        long before = shop.getLastModified();
+        if (type == Type.REMOVE) {
+            shop.removeFromCatalogue(productName);
+        } else if (type == Type.EARNINGS) {
+            shop.setEarnings(priceAtShop);
+        } else {
+            shop.addToCatalogue(productName, priceAtShop);
+        }
+        shop.setLastModified(Math.max(before, lastModified));
+    }
+}
@@ -0,0 +1,127 @@
+package business.shop;
+
+import business.Catalogue;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Versión inmutable del catálogo de una tienda. Cada cambio en el catálogo crea una copia con el cambio aplicado y
+ * el número de versión siguiente, y la tienda la publica sustituyendo la anterior, así que quien esté recorriendo
+ * una versión la termina sin bloqueos ni ConcurrentModificationException y sin ver cambios a medias.
+ */
+public final class CatalogueSnapshot {
+    private static final Catalogue[] EMPTY = new Catalogue[0];
+
+    private final Catalogue[] entries;
+    private final long version;
+    private final List<Catalogue> view;
+
+    /**
+     * Constructor. La lista se copia, así que los cambios posteriores en ella no afectan a la versión.
+     * @param entries Entradas del catálogo.
+     * @param version Número de versión.
+     */
+    CatalogueSnapshot(List<Catalogue> entries, long version) {
+        this(entries == null ? EMPTY : entries.toArray(EMPTY), version);
+    }
+
+    /**
+     * Constructor que adopta un array sin copiarlo; quien lo llama no debe volver a modificarlo.
+     * @param entries Entradas del catálogo.
+     * @param version Número de versión.
+     */
+    private CatalogueSnapshot(Catalogue[] entries, long version) {
+        this.entries = entries;
+        this.version = version;
+        this.view = new EntryList(entries);
+    }
+
+    /**
+     * Obtiene las entradas del catálogo.
+     * @return Lista no modificable.
+     */
+    public List<Catalogue> getEntries() {
+        return view;
+    }
+
+    /**
+     * Obtiene el número de versión. Empieza en 0 al crear o cargar la tienda y aumenta en 1 con cada cambio.
+     * @return Número de versión.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Busca la posición de un producto en el catálogo.
+     * @param productName Nombre del producto, sin distinguir mayúsculas.
+     * @return Posición de la última entrada del producto, o -1 si no está.
+     */
+    public int lastIndexOf(String productName) {
+        for (int i = entries.length - 1; i >= 0; i--) {
+            if (entries[i] != null && entries[i].getProductName().equalsIgnoreCase(productName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Crea la versión siguiente con una entrada añadida al final.
+     * @param entry Entrada nueva.
+     * @return Versión nueva.
+     */
+    CatalogueSnapshot withAdded(Catalogue entry) {
+        Catalogue[] copy = new Catalogue[entries.length + 1];
+        System.arraycopy(entries, 0, copy, 0, entries.length);
+        copy[entries.length] = entry;
+        return new CatalogueSnapshot(copy, version + 1);
+    }
+
+    /**
+     * Crea la versión siguiente con una entrada sustituida.
+     * @param index Posición de la entrada.
+     * @param entry Entrada nueva.
+     * @return Versión nueva.
+     */
+    CatalogueSnapshot withReplaced(int index, Catalogue entry) {
+        Catalogue[] copy = entries.clone();
+        copy[index] = entry;
+        return new CatalogueSnapshot(copy, version + 1);
+    }
+
+    /**
+     * Crea la versión siguiente sin una entrada.
+     * @param index Posición de la entrada.
+     * @return Versión nueva.
+     */
+    CatalogueSnapshot withRemoved(int index) {
+        Catalogue[] copy = new Catalogue[entries.length - 1];
+        System.arraycopy(entries, 0, copy, 0, index);
+        System.arraycopy(entries, index + 1, copy, index, entries.length - index - 1);
+        return new CatalogueSnapshot(copy, version + 1);
+    }
+
+    /**
+     * Vista de solo lectura sobre el array de una versión, sin copiarlo.
+     */
+    private static final class EntryList extends AbstractList<Catalogue> implements RandomAccess {
+        private final Catalogue[] entries;
+
+        private EntryList(Catalogue[] entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public Catalogue get(int index) {
+            return entries[index];
+        }
+
+        @Override
+        public int size() {
+            return entries.length;
+        }
+    }
+}
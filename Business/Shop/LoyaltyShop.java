@@ -3,7 +3,7 @@ package business.shop;
 import business.Catalogue;
 import business.product.Product;
 
-import java.util.ArrayList;
+import java.util.List;
 /**
  * Herencia de Shop para implementar una tienda con un programa de lealtad, sin ofrecer descuentos específicos.
  */
@@ -17,7 +17,7 @@ public class LoyaltyShop extends Shop {
      * @param catalogue El catálogo de productos ofrecidos por la tienda.
      * @param loyaltyThreshold El umbral de lealtad para calificar en el programa de lealtad de la tienda.
      */
-    public LoyaltyShop(String name, String description, int since, ArrayList<Catalogue> catalogue, double loyaltyThreshold) {
+    public LoyaltyShop(String name, String description, int since, List<Catalogue> catalogue, double loyaltyThreshold) {
         super (name, description, since, "LOYALTY",catalogue);
         this.loyaltyThreshold = loyaltyThreshold;
     }
@@ -0,0 +1,218 @@
+package business.shop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lo que ha gastado cada cliente en cada tienda de fidelización, para saber si es cliente habitual de ella: lo es
+ * cuando lo que ha hecho ganar a la tienda llega a su umbral. Antes se comparaban las ganancias totales de la tienda
+ * con el umbral, de modo que todos los clientes pasaban a ser habituales a la vez.
+ * Los clientes y las tiendas se identifican por nombre, sin distinguir mayúsculas, y se les asigna un número la
+ * primera vez que aparecen. El gasto de cada pareja se guarda en céntimos en una tabla de direccionamiento abierto
+ * de longs, con el número del cliente y el de la tienda en la misma clave, así que cada pareja ocupa entre 20 y 45
+ * bytes, sin objetos, y la consulta cuesta lo mismo con millones de parejas.
+ */
+public class LoyaltyTracker {
+    /** Cliente con el que se compra si no se indica otro. */
+    public static final String GUEST = "guest";
+
+    private static final long EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, Integer> customerIds;
+    private final ArrayList<String> customerNames;
+    private final Map<String, Integer> shopIds;
+    private final ArrayList<String> shopNames;
+    private long[] keys;
+    private long[] spent;
+    private int size;
+
+    /**
+     * Recibe cada pareja de cliente y tienda con lo que ha gastado.
+     */
+    public interface SpendVisitor {
+        /**
+         * Recibe una pareja.
+         * @param customer Nombre del cliente.
+         * @param shopName Nombre de la tienda.
+         * @param cents Gasto en céntimos.
+         */
+        void visit(String customer, String shopName, long cents);
+    }
+
+    /**
+     * Constructor. Crea un registro vacío.
+     */
+    public LoyaltyTracker() {
+        this.customerIds = new HashMap<>();
+        this.customerNames = new ArrayList<>();
+        this.shopIds = new HashMap<>();
+        this.shopNames = new ArrayList<>();
+        this.keys = new long[INITIAL_CAPACITY];
+        this.spent = new long[INITIAL_CAPACITY];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Suma un gasto de un cliente en una tienda.
+     * @param customer Nombre del cliente.
+     * @param shopName Nombre de la tienda.
+     * @param cents Gasto en céntimos.
+     * @return Gasto total del cliente en la tienda, en céntimos.
+     */
+    public synchronized long addSpend(String customer, String shopName, long cents) {
+        long key = keyOf(idOf(customerIds, customerNames, customer), idOf(shopIds, shopNames, shopName));
+        int slot = slotOf(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        spent[slot] += cents;
+        long total = spent[slot];
+        if (size * 4L > keys.length * 3L) {
+            resize();
+        }
+        return total;
+    }
+
+    /**
+     * Obtiene lo que ha gastado un cliente en una tienda.
+     * @param customer Nombre del cliente.
+     * @param shopName Nombre de la tienda.
+     * @return Gasto en céntimos, 0 si no ha comprado nunca en ella.
+     */
+    public synchronized long getSpend(String customer, String shopName) {
+        Integer customerId = customerIds.get(normalize(customer));
+        Integer shopId = shopIds.get(normalize(shopName));
+        if (customerId == null || shopId == null) {
+            return 0;
+        }
+        long key = keyOf(customerId, shopId);
+        int slot = slotOf(key);
+        return keys[slot] == key ? spent[slot] : 0;
+    }
+
+    /**
+     * Indica si un cliente es habitual en una tienda de fidelización.
+     * @param customer Nombre del cliente.
+     * @param shop Tienda.
+     * @return true si lo que ha gastado en la tienda llega a su umbral.
+     */
+    public boolean isRegular(String customer, LoyaltyShop shop) {
+        return getSpend(customer, shop.getName()) >= toCents(shop.getLoyaltyThreshold());
+    }
+
+    /**
+     * Obtiene el número de parejas de cliente y tienda con algún gasto.
+     * @return Número de parejas.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Recorre todas las parejas con su gasto, por ejemplo para guardarlas.
+     * @param visitor Receptor de las parejas.
+     */
+    public synchronized void forEach(SpendVisitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            long key = keys[slot];
+            if (key != EMPTY) {
+                visitor.visit(customerNames.get((int) (key >>> 32)), shopNames.get((int) key), spent[slot]);
+            }
+        }
+    }
+
+    /**
+     * Convierte un importe a céntimos.
+     * @param amount Importe.
+     * @return Importe redondeado a céntimos.
+     */
+    public static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Obtiene el número de un cliente o de una tienda, asignándole uno nuevo si no lo tenía.
+     * @param ids Números por nombre normalizado.
+     * @param names Nombres por número.
+     * @param name Nombre.
+     * @return Número asignado.
+     */
+    private static int idOf(Map<String, Integer> ids, ArrayList<String> names, String name) {
+        String key = normalize(name);
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = names.size();
+            ids.put(key, id);
+            names.add(name == null || name.isBlank() ? GUEST : name);
+        }
+        return id;
+    }
+
+    /**
+     * Normaliza un nombre para usarlo como clave. Los clientes sin nombre son el invitado.
+     * @param name Nombre.
+     * @return Nombre en minúsculas.
+     */
+    private static String normalize(String name) {
+        return name == null || name.isBlank() ? GUEST : name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Combina el número del cliente y el de la tienda en una clave.
+     * @param customerId Número del cliente.
+     * @param shopId Número de la tienda.
+     * @return Clave, nunca negativa.
+     */
+    private static long keyOf(int customerId, int shopId) {
+        return ((long) customerId << 32) | shopId;
+    }
+
+    /**
+     * Busca la posición de una clave, o la posición libre donde iría.
+     * @param key Clave.
+     * @return Posición en la tabla.
+     */
+    private int slotOf(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Dobla el tamaño de la tabla y vuelve a colocar las parejas.
+     */
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldSpent = spent;
+        keys = new long[oldKeys.length * 2];
+        spent = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                spent[slot] = oldSpent[i];
+            }
+        }
+    }
+
+    /**
+     * Mezcla los bits de una clave (finalizador de SplitMix64) para repartir las claves consecutivas.
+     * @param key Clave.
+     * @return Hash de la clave.
+     */
+    private static int hash(long key) {
+        long z = key * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (z ^ (z >>> 31));
+    }
+}
@@ -1,7 +1,7 @@
 package business.shop;
 import business.product.Product;
 import business.Catalogue;
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Herencia de Shop para implementar una tienda enfocada en maximizar ganancias, sin ofrecer descuentos.
@@ -14,7 +14,7 @@ public class MaxProfitShop extends Shop{
      * @param since El año de fundación de la tienda.
      * @param catalogue El catálogo de productos ofrecidos por la tienda.
      */
-    public MaxProfitShop (String name, String description, int since, ArrayList<Catalogue> catalogue) {
+    public MaxProfitShop (String name, String description, int since, List<Catalogue> catalogue) {
         super(name, description, since, "MAX_PROFIT",catalogue);
     }
     /**
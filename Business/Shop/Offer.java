@@ -0,0 +1,46 @@
+package business.shop;
+
+/**
+ * Una tienda que vende un producto, con el precio de su catálogo y el precio que paga el cliente en ella.
+ */
+public class Offer {
+    private final Shop shop;
+    private final double priceAtShop;
+    private final double effectivePrice;
+
+    /**
+     * Constructor de la clase Offer.
+     * @param shop Tienda que vende el producto.
+     * @param priceAtShop Precio del producto en el catálogo de la tienda.
+     * @param effectivePrice Precio que paga el cliente según el modelo de negocio de la tienda.
+     */
+    public Offer(Shop shop, double priceAtShop, double effectivePrice) {
+        this.shop = shop;
+        this.priceAtShop = priceAtShop;
+        this.effectivePrice = effectivePrice;
+    }
+
+    /**
+     * Obtiene la tienda.
+     * @return Tienda que vende el producto.
+     */
+    public Shop getShop() {
+        return shop;
+    }
+
+    /**
+     * Obtiene el precio del producto en el catálogo de la tienda.
+     * @return Precio de catálogo.
+     */
+    public double getPriceAtShop() {
+        return priceAtShop;
+    }
+
+    /**
+     * Obtiene el precio que paga el cliente en la tienda.
+     * @return Precio efectivo.
+     */
+    public double getEffectivePrice() {
+        return effectivePrice;
+    }
+}
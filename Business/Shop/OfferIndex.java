@@ -0,0 +1,370 @@
+package business.shop;
+
+import business.Catalogue;
+import business.product.Product;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice de las tiendas que venden cada producto, ordenadas por el precio que paga el cliente, para no recorrer
+ * todos los catálogos al buscar dónde se vende un producto o dónde es más barato.
+ * El precio de cada oferta es el que da calculateDiscount según el modelo de negocio de la tienda, salvo en las
+ * tiendas de fidelización en las que el cliente aún no es habitual (ver LoyaltyTracker), donde paga el precio de
+ * catálogo (como al cobrar el carrito). Por eso las ofertas de cada producto se guardan en tres grupos ordenados por
+ * precio de catálogo: tiendas patrocinadas, tiendas de fidelización y el resto. Como el precio de un producto crece
+ * con el precio de catálogo, al consultar basta con separar las patrocinadas según si el producto es de su marca y
+ * las de fidelización según si el cliente es habitual, y mezclar las secuencias ordenadas, y el índice no necesita
+ * los productos para mantenerse.
+ * Las modificaciones se hacen de una en una y sustituyen las ofertas del producto afectado por una copia nueva; las
+ * consultas no se bloquean.
+ */
+public class OfferIndex {
+    private static final Comparator<Entry> BY_PRICE = Comparator.comparingDouble((Entry entry) -> entry.priceAtShop)
+            .thenComparing(entry -> entry.shop.getName());
+    private static final Entry[] NONE = new Entry[0];
+
+    private volatile Map<String, Offers> byProduct;
+    private final LoyaltyTracker loyaltyTracker;
+
+    /**
+     * Oferta guardada: una tienda y el precio del producto en su catálogo.
+     */
+    private static final class Entry {
+        private final Shop shop;
+        private final double priceAtShop;
+
+        private Entry(Shop shop, double priceAtShop) {
+            this.shop = shop;
+            this.priceAtShop = priceAtShop;
+        }
+    }
+
+    /**
+     * Ofertas de un producto, en tres grupos ordenados por precio de catálogo: tiendas patrocinadas, tiendas de
+     * fidelización y el resto. No se modifican una vez creadas.
+     */
+    private static final class Offers {
+        private final Entry[] regular;
+        private final Entry[] sponsored;
+        private final Entry[] loyalty;
+
+        private Offers(Entry[] regular, Entry[] sponsored, Entry[] loyalty) {
+            this.regular = regular;
+            this.sponsored = sponsored;
+            this.loyalty = loyalty;
+        }
+
+        private boolean isEmpty() {
+            return regular.length == 0 && sponsored.length == 0 && loyalty.length == 0;
+        }
+    }
+
+    /**
+     * Constructor. Crea un índice vacío.
+     * @param loyaltyTracker Gasto de cada cliente en las tiendas de fidelización.
+     */
+    public OfferIndex(LoyaltyTracker loyaltyTracker) {
+        this.byProduct = new ConcurrentHashMap<>();
+        this.loyaltyTracker = loyaltyTracker;
+    }
+
+    /**
+     * Vuelve a construir el índice a partir de una lista de tiendas completa, por ejemplo después de cargar la
+     * réplica o de sincronizar con la API. Si un producto aparece varias veces en un catálogo cuenta el último precio.
+     * @param shops Lista de tiendas actual.
+     */
+    public synchronized void rebuild(List<Shop> shops) {
+        Map<String, Map<Shop, Double>> prices = new HashMap<>();
+        for (Shop shop : shops) {
+            for (Catalogue item : shop.getCatalogue()) {
+                prices.computeIfAbsent(keyOf(item.getProductName()), key -> new IdentityHashMap<>())
+                        .put(shop, item.getPriceAtShop());
+            }
+        }
+        Map<String, Offers> rebuilt = new ConcurrentHashMap<>(prices.size() * 2);
+        for (Map.Entry<String, Map<Shop, Double>> product : prices.entrySet()) {
+            List<Entry> regular = new ArrayList<>();
+            List<Entry> sponsored = new ArrayList<>();
+            List<Entry> loyalty = new ArrayList<>();
+            for (Map.Entry<Shop, Double> offer : product.getValue().entrySet()) {
+                Entry entry = new Entry(offer.getKey(), offer.getValue());
+                if (offer.getKey() instanceof LoyaltyShop) {
+                    loyalty.add(entry);
+                } else if (offer.getKey() instanceof SponsoredShop) {
+                    sponsored.add(entry);
+                } else {
+                    regular.add(entry);
+                }
+            }
+            rebuilt.put(product.getKey(), new Offers(sorted(regular), sorted(sponsored), sorted(loyalty)));
+        }
+        byProduct = rebuilt;
+    }
+
+    /**
+     * Añade todas las entradas del catálogo de una tienda nueva.
+     * @param shop Tienda creada.
+     */
+    public synchronized void addShop(Shop shop) {
+        for (Catalogue item : shop.getCatalogue()) {
+            put(shop, item.getProductName(), item.getPriceAtShop());
+        }
+    }
+
+    /**
+     * Vuelve a leer la oferta de una tienda para un producto después de añadirlo a su catálogo, cambiar su precio o
+     * quitarlo. Si el producto aparece varias veces en el catálogo cuenta el último precio, como en
+     * Controller.getPriceProduct.
+     * @param shop Tienda modificada.
+     * @param productName Nombre del producto.
+     */
+    public synchronized void update(Shop shop, String productName) {
+        CatalogueSnapshot catalogue = shop.getCatalogueSnapshot();
+        int index = catalogue.lastIndexOf(productName);
+        if (index >= 0) {
+            put(shop, productName, catalogue.getEntries().get(index).getPriceAtShop());
+        } else {
+            remove(shop, productName);
+        }
+    }
+
+    /**
+     * Añade la oferta de una tienda para un producto o cambia su precio.
+     * @param shop Tienda.
+     * @param productName Nombre del producto.
+     * @param priceAtShop Precio del producto en la tienda.
+     */
+    private void put(Shop shop, String productName, double priceAtShop) {
+        String key = keyOf(productName);
+        Offers current = byProduct.get(key);
+        Entry[] regular = current == null ? NONE : without(current.regular, shop);
+        Entry[] sponsored = current == null ? NONE : without(current.sponsored, shop);
+        Entry[] loyalty = current == null ? NONE : without(current.loyalty, shop);
+        Entry entry = new Entry(shop, priceAtShop);
+        if (shop instanceof LoyaltyShop) {
+            loyalty = with(loyalty, entry);
+        } else if (shop instanceof SponsoredShop) {
+            sponsored = with(sponsored, entry);
+        } else {
+            regular = with(regular, entry);
+        }
+        byProduct.put(key, new Offers(regular, sponsored, loyalty));
+    }
+
+    /**
+     * Quita la oferta de una tienda para un producto.
+     * @param shop Tienda.
+     * @param productName Nombre del producto.
+     */
+    private void remove(Shop shop, String productName) {
+        String key = keyOf(productName);
+        Offers current = byProduct.get(key);
+        if (current == null) {
+            return;
+        }
+        Offers remaining = new Offers(without(current.regular, shop), without(current.sponsored, shop),
+                without(current.loyalty, shop));
+        if (remaining.isEmpty()) {
+            byProduct.remove(key);
+        } else {
+            byProduct.put(key, remaining);
+        }
+    }
+
+    /**
+     * Obtiene todas las tiendas que venden un producto, de la más barata a la más cara para un cliente.
+     * @param product Producto.
+     * @param customer Nombre del cliente.
+     * @return Ofertas ordenadas por precio efectivo; vacía si ninguna tienda lo vende.
+     */
+    public List<Offer> offers(Product product, String customer) {
+        Offers current = byProduct.get(keyOf(product.getName()));
+        if (current == null) {
+            return new ArrayList<>();
+        }
+        List<Offer> regular = new ArrayList<>(current.regular.length);
+        for (Entry entry : current.regular) {
+            regular.add(toOffer(entry, product, true));
+        }
+        List<Offer> otherBrand = new ArrayList<>();
+        List<Offer> sponsorBrand = new ArrayList<>();
+        for (Entry entry : current.sponsored) {
+            (isSponsorBrand(entry, product) ? sponsorBrand : otherBrand).add(toOffer(entry, product, true));
+        }
+        List<Offer> fullPrice = new ArrayList<>();
+        List<Offer> discounted = new ArrayList<>();
+        for (Entry entry : current.loyalty) {
+            boolean habitual = loyaltyTracker.isRegular(customer, (LoyaltyShop) entry.shop);
+            (habitual ? discounted : fullPrice).add(toOffer(entry, product, habitual));
+        }
+        return merge(merge(merge(merge(regular, otherBrand), sponsorBrand), fullPrice), discounted);
+    }
+
+    /**
+     * Obtiene la tienda donde un producto es más barato para un cliente. Entre las tiendas patrocinadas solo hace
+     * falta mirar la más barata cuya marca es la del producto y la más barata de otra marca, y entre las de
+     * fidelización la más barata en la que el cliente es habitual y la más barata en la que no lo es.
+     * @param product Producto.
+     * @param customer Nombre del cliente.
+     * @return La oferta más barata, o null si ninguna tienda lo vende.
+     */
+    public Offer best(Product product, String customer) {
+        Offers current = byProduct.get(keyOf(product.getName()));
+        if (current == null) {
+            return null;
+        }
+        Offer best = current.regular.length > 0 ? toOffer(current.regular[0], product, true) : null;
+        boolean seenSponsorBrand = false;
+        boolean seenOtherBrand = false;
+        for (int i = 0; i < current.sponsored.length && !(seenSponsorBrand && seenOtherBrand); i++) {
+            Entry entry = current.sponsored[i];
+            boolean matches = isSponsorBrand(entry, product);
+            if (matches ? seenSponsorBrand : seenOtherBrand) {
+                continue;
+            }
+            if (matches) {
+                seenSponsorBrand = true;
+            } else {
+                seenOtherBrand = true;
+            }
+            best = cheaper(best, toOffer(entry, product, true));
+        }
+        boolean seenFullPrice = false;
+        boolean seenDiscounted = false;
+        for (int i = 0; i < current.loyalty.length && !(seenFullPrice && seenDiscounted); i++) {
+            Entry entry = current.loyalty[i];
+            boolean habitual = loyaltyTracker.isRegular(customer, (LoyaltyShop) entry.shop);
+            if (habitual ? seenDiscounted : seenFullPrice) {
+                continue;
+            }
+            if (habitual) {
+                seenDiscounted = true;
+            } else {
+                seenFullPrice = true;
+            }
+            best = cheaper(best, toOffer(entry, product, habitual));
+        }
+        return best;
+    }
+
+    /**
+     * Elige la más barata de dos ofertas. Con el mismo precio se queda la primera.
+     * @param best Mejor oferta hasta ahora, o null.
+     * @param offer Oferta nueva.
+     * @return La oferta más barata.
+     */
+    private static Offer cheaper(Offer best, Offer offer) {
+        return best == null || offer.getEffectivePrice() < best.getEffectivePrice() ? offer : best;
+    }
+
+    /**
+     * Indica si un producto es de la marca que patrocina una tienda patrocinada.
+     * @param entry Oferta de una tienda patrocinada.
+     * @param product Producto.
+     * @return true si la tienda aplica el descuento de su marca al producto.
+     */
+    private static boolean isSponsorBrand(Entry entry, Product product) {
+        return product.getBrand().equals(((SponsoredShop) entry.shop).getSponsorBrand());
+    }
+
+    /**
+     * Mezcla dos listas de ofertas ordenadas por precio efectivo. Con el mismo precio va antes la de la primera.
+     * @param first Primera lista.
+     * @param second Segunda lista.
+     * @return Lista ordenada con las ofertas de las dos.
+     */
+    private static List<Offer> merge(List<Offer> first, List<Offer> second) {
+        if (second.isEmpty()) {
+            return first;
+        }
+        List<Offer> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while (i < first.size() || j < second.size()) {
+            if (j == second.size() || (i < first.size()
+                    && first.get(i).getEffectivePrice() <= second.get(j).getEffectivePrice())) {
+                merged.add(first.get(i++));
+            } else {
+                merged.add(second.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Calcula el precio efectivo de una oferta con el calculateDiscount de la tienda.
+     * @param entry Oferta guardada.
+     * @param product Producto.
+     * @param discounted false si el cliente paga el precio de catálogo (tienda de fidelización en la que aún no es
+     *                   habitual).
+     * @return Oferta con el precio que paga el cliente.
+     */
+    private static Offer toOffer(Entry entry, Product product, boolean discounted) {
+        double effective = discounted ? entry.shop.calculateDiscount(entry.priceAtShop, product) : entry.priceAtShop;
+        return new Offer(entry.shop, entry.priceAtShop, effective);
+    }
+
+    /**
+     * Ordena un grupo de ofertas.
+     * @param entries Ofertas.
+     * @return Array ordenado por precio de catálogo.
+     */
+    private static Entry[] sorted(List<Entry> entries) {
+        Entry[] array = entries.toArray(NONE);
+        Arrays.sort(array, BY_PRICE);
+        return array;
+    }
+
+    /**
+     * Inserta una oferta en un grupo ordenado.
+     * @param entries Grupo actual.
+     * @param entry Oferta nueva.
+     * @return Copia del grupo con la oferta en su posición.
+     */
+    private static Entry[] with(Entry[] entries, Entry entry) {
+        int position = Arrays.binarySearch(entries, entry, BY_PRICE);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        Entry[] copy = new Entry[entries.length + 1];
+        System.arraycopy(entries, 0, copy, 0, position);
+        copy[position] = entry;
+        System.arraycopy(entries, position, copy, position + 1, entries.length - position);
+        return copy;
+    }
+
+    /**
+     * Quita las ofertas de una tienda de un grupo.
+     * @param entries Grupo actual.
+     * @param shop Tienda.
+     * @return El mismo grupo si la tienda no estaba, o una copia sin ella.
+     */
+    private static Entry[] without(Entry[] entries, Shop shop) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].shop == shop) {
+                Entry[] copy = new Entry[entries.length - 1];
+                System.arraycopy(entries, 0, copy, 0, i);
+                System.arraycopy(entries, i + 1, copy, i, entries.length - i - 1);
+                return copy;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Normaliza el nombre de un producto para usarlo como clave.
+     * @param productName Nombre del producto.
+     * @return Nombre en minúsculas, o cadena vacía si es null.
+     */
+    private static String keyOf(String productName) {
+        return productName == null ? "" : productName.toLowerCase(Locale.ROOT);
+    }
+}
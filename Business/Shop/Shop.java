@@ -2,7 +2,7 @@ package business.shop;
 import business.Catalogue;
 import business.product.Product;
 
-import java.util.ArrayList;
+import java.util.List;
 /**
  * La clase representa una tienda y almacena información sobre ella, como su nombre, descripción, año de fundación, ganancias, modelo de negocio y un catálogo de productos que ofrece.
  */
@@ -12,7 +12,8 @@ public abstract class Shop {
     private int since;
     private double earnings;
     public String businessModel;
-    private final ArrayList<Catalogue> catalogue;
+    private volatile CatalogueSnapshot catalogue;
+    private long lastModified;
     /**
      * Constructor de la clase Shop.
      *
@@ -20,15 +21,17 @@ public abstract class Shop {
      * @param description La descripción de la tienda.
      * @param since El año de fundación de la tienda.
      * @param businessModel El modelo de negocio de la tienda.
-     * @param catalogue El catálogo de productos de la tienda.
+     * @param catalogue El catálogo de productos de la tienda; se copia, así que los cambios posteriores en la lista no
+     *                  afectan a la tienda.
      */
-    public Shop(String name, String description, int since, String businessModel,ArrayList<Catalogue> catalogue) {
+    public Shop(String name, String description, int since, String businessModel, List<Catalogue> catalogue) {
         this.name = name;
         this.description = description;
         this.since = since;
         this.businessModel = businessModel;
         this.earnings = 0.0;
-        this.catalogue = catalogue;
+        this.catalogue = new CatalogueSnapshot(catalogue, 0);
+        this.lastModified = System.currentTimeMillis();
     }
     /**
      * Obtiene el nombre de la tienda.
@@ -59,20 +62,57 @@ public abstract class Shop {
         return earnings;
     }
     /**
-     * Obtiene el catálogo de productos de la tienda.
-     * @return array del catálogo con sus productos
+     * Obtiene el catálogo de productos de la tienda. Es la versión publicada en este momento: se puede recorrer sin
+     * bloqueos mientras otros hilos modifican el catálogo, y no cambia aunque lo hagan.
+     * @return Lista no modificable con las entradas del catálogo
      */
-    public ArrayList<Catalogue> getCatalogue() {
+    public List<Catalogue> getCatalogue() {
+        return catalogue.getEntries();
+    }
+    /**
+     * Obtiene la versión publicada del catálogo junto con su número de versión.
+     * @return Versión actual del catálogo
+     */
+    public CatalogueSnapshot getCatalogueSnapshot() {
         return catalogue;
     }
     /**
-     * Agrega un producto al catálogo de la tienda con nombre y precio.
+     * Agrega un producto al catálogo de la tienda con nombre y precio. Si el producto ya está en el catálogo,
+     * solo se cambia su precio. Publica una versión nueva del catálogo.
      * @param productName Nombre del producto
      * @param priceAtShop Precio de ese producto en la tienda
+     * @return true si el producto se ha añadido, false si ya estaba y se ha cambiado su precio
      */
-    public void addToCatalogue(String productName, double priceAtShop){
+    public synchronized boolean addToCatalogue(String productName, double priceAtShop){
+        CatalogueSnapshot current = catalogue;
+        List<Catalogue> entries = current.getEntries();
         Catalogue product = new Catalogue(productName, priceAtShop);
-        catalogue.add(product);
+        for (int i = 0; i < entries.size(); i++) {
+            Catalogue entry = entries.get(i);
+            if (entry != null && productName.equalsIgnoreCase(entry.getProductName())) {
+                catalogue = current.withReplaced(i, product);
+                touch();
+                return false;
+            }
+        }
+        catalogue = current.withAdded(product);
+        touch();
+        return true;
+    }
+    /**
+     * Elimina un producto del catálogo de la tienda. Publica una versión nueva del catálogo.
+     * @param productName Nombre del producto a eliminar
+     * @return true si el producto estaba en el catálogo
+     */
+    public synchronized boolean removeFromCatalogue(String productName){
+        CatalogueSnapshot current = catalogue;
+        int index = current.lastIndexOf(productName);
+        if (index < 0) {
+            return false;
+        }
+        catalogue = current.withRemoved(index);
+        touch();
+        return true;
     }
     /**
      * Establece las ganancias de la tienda.
@@ -80,6 +120,27 @@ public abstract class Shop {
      */
     public void setEarnings(double earnings) {
         this.earnings = earnings;
+        touch();
+    }
+    /**
+     * Obtiene el instante de la última modificación de la tienda, usado para resolver conflictos al sincronizar.
+     * @return Milisegundos desde epoch de la última modificación, o 0 si se desconoce.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+    /**
+     * Restaura el instante de la última modificación, por ejemplo al leer la tienda de un fichero o de la API.
+     * @param lastModified Milisegundos desde epoch de la última modificación, o 0 si se desconoce.
+     */
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+    /**
+     * Marca la tienda como modificada en este instante.
+     */
+    public void touch() {
+        lastModified = Math.max(lastModified + 1, System.currentTimeMillis());
     }
     /**
      * Método abstracto para calcular el descuento aplicable a un producto. Debe ser implementado por las subclases.
@@ -1,47 +1,78 @@
 package business.shop;
 
 import business.Catalogue;
-import com.google.gson.JsonSyntaxException;
-import persistence.ApiException;
-import persistence.ShopApiJsonDAO;
+import business.CompletionIndex;
+import business.PendingChanges;
+import business.SalesLedger;
+import business.product.Product;
+import metrics.ActionAccounting;
+import metrics.Metrics;
+import metrics.Operation;
+import persistence.CatalogueLogDAO;
+import persistence.LoyaltyLogDAO;
+import persistence.PendingChangesJsonDAO;
 import persistence.ShopJsonDAO;
-import persistence.ApiHelper;
 
-import presentation.ConsoleUIManager;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 /**
  * La clase ShopManager gestiona las operaciones relacionadas con las tiendas en el sistema.
  * Esto incluye la creación, eliminación, búsqueda y manipulación de tiendas y sus catálogos.
+ * Todas las lecturas y escrituras se hacen sobre la réplica local (shops.json); los cambios quedan marcados como
+ * pendientes y SyncManager se encarga de enviarlos a la API y de traer los cambios remotos.
+ * Los cambios de catálogo no reescriben shops.json: se añaden a un registro (shops.catalogue.log) que se vuelve a
+ * aplicar al cargar y que se compacta cuando la sincronización los ha enviado.
+ * Un OfferIndex mantiene, para cada producto, las tiendas que lo venden ordenadas por precio, y se actualiza con
+ * cada cambio de catálogo.
+ * Lo que gasta cada cliente en las tiendas de fidelización se lleva en un LoyaltyTracker, que se carga al arrancar de
+ * un registro (shops.loyalty.log) al que cada cobro añade sus líneas, y cada línea cobrada se guarda en el libro de
+ * ventas (sales.ledger), del que se pueden reconstruir las ganancias.
+ * Los nombres de tienda se autocompletan, de más a menos ganancias, con un CompletionIndex que también sirve para
+ * comprobar si una tienda existe sin recorrer la lista.
+ * Mientras la réplica se carga en segundo plano (ver deferSavesUntilLoaded), los cambios no se escriben en shops.json:
+ * se guardan al integrar la lista cargada, para no sustituir el fichero por uno que solo tenga las tiendas creadas
+ * antes de leerlo.
  */
 public class ShopManager {
+    private static final String PENDING_FILE_PATH = "shops.pending.json";
+    private static final String CATALOGUE_LOG_PATH = "shops.catalogue.log";
+    private static final String LOYALTY_LOG_PATH = "shops.loyalty.log";
+    private static final long MIN_LOYALTY_LOG_LINES = 1024;
+    private static final String SALES_LEDGER_PATH = "sales.ledger";
     private final ShopJsonDAO shopJsonDAO;
-    private ArrayList<Shop> shopList;
-    private ApiHelper apiHelper;
-    private ShopApiJsonDAO shopApiJsonDAO;
-    private ConsoleUIManager consoleUIManager;
+    private final PendingChanges pendingChanges;
+    private final CatalogueLogDAO catalogueLogDAO;
+    private final ArrayList<CatalogueChange> pendingCatalogue;
+    private final OfferIndex offerIndex;
+    private final CompletionIndex shopNames;
+    private final LoyaltyLogDAO loyaltyLogDAO;
+    private final LoyaltyTracker loyaltyTracker;
+    private long loyaltyLogLines;
+    private final SalesLedger salesLedger;
+    private volatile ArrayList<Shop> shopList;
+    private boolean savesDeferred;
+    private boolean unsavedChanges;
 
     /** Constructor que inicializa un nuevo ShopManager. Carga las tiendas desde archivos JSON.
      **/
     public ShopManager(){
         this.shopJsonDAO = new ShopJsonDAO();
+        this.pendingChanges = new PendingChanges(new PendingChangesJsonDAO(PENDING_FILE_PATH));
+        this.catalogueLogDAO = new CatalogueLogDAO(CATALOGUE_LOG_PATH);
+        this.pendingCatalogue = new ArrayList<>(catalogueLogDAO.load());
+        this.loyaltyLogDAO = new LoyaltyLogDAO(LOYALTY_LOG_PATH);
+        this.loyaltyTracker = new LoyaltyTracker();
+        this.loyaltyLogLines = loyaltyLogDAO.loadInto(loyaltyTracker);
+        this.offerIndex = new OfferIndex(loyaltyTracker);
+        this.shopNames = new CompletionIndex();
+        this.salesLedger = new SalesLedger(SALES_LEDGER_PATH);
         this.shopList = new ArrayList<>();
-        this.apiHelper = new ApiHelper();
-        this.shopApiJsonDAO = new ShopApiJsonDAO();
-        this.consoleUIManager = new ConsoleUIManager();
-    }
-
-    /**
-     * Devuelve la lista de tiendas disponibles si está conectado a la API
-     * @return shopArrayList
-     */
-    public ArrayList<Shop> shopArrayList() {
-        ArrayList<Shop> shopArrayList = new ArrayList<>();
-        try {
-            shopArrayList = shopApiJsonDAO.loadShops();
-        } catch (ApiException | JsonSyntaxException e) {
-            System.out.println(e.getMessage());
-        }
-        return shopArrayList;
     }
 
     /**
@@ -50,23 +81,24 @@ public class ShopManager {
      * @return true si una tienda con el nombre especificado existe, false en caso contrario.
      */
     public boolean nameShopExists(String name) {
-        boolean exists = false;
-        ArrayList<Shop> shops = new ArrayList<>();
-        if(apiHelper.isConnected()){
-            shops = shopArrayList();
-        }else{
-            shops = getShopList();
+        String found = shopNames.find(name);
+        if (found == null) {
+            return false;
         }
-        for (Shop shop : shops) {
+        if (found.equals(name)) {
+            return true;
+        }
+        for (Shop shop : shopList) {
             if (shop.getName().equals(name)) {
-                exists = true;
+                return true;
             }
         }
-        return exists;
+        return false;
     }
 
     /**
-     * Crea y añade una nueva tienda basada en los parámetros dados y guarda los cambios tanto localmente como en la API.
+     * Crea y añade una nueva tienda basada en los parámetros dados, la guarda en la réplica local y la marca como
+     * pendiente de enviar a la API.
      * @param name Nombre de la tienda.
      * @param description Descripción de la tienda.
      * @param year Año de fundación de la tienda.
@@ -74,65 +106,198 @@ public class ShopManager {
      * @param catalogue Catálogo de productos de la tienda.
      * @param loyaltyThreshold Umbral de lealtad para tiendas de lealtad.
      * @param sponsorBrand Marca patrocinadora para tiendas patrocinadas.
-     * @return true si la tienda se crea con éxito, false en caso de error.
+     * @return true si la tienda se crea con éxito, false si el modelo de negocio no es válido.
      */
-    public boolean createShop(String name, String description, int year, String category, ArrayList<Catalogue> catalogue, double loyaltyThreshold, String sponsorBrand) {
-        if (apiHelper.isConnected()) {
+    public synchronized boolean createShop(String name, String description, int year, String category, ArrayList<Catalogue> catalogue, double loyaltyThreshold, String sponsorBrand) {
+        long start = System.nanoTime();
+        try {
+            Shop shop;
             if ("SPONSORED".equalsIgnoreCase(category)) {
                 SponsoredShop sponsoredShop = new SponsoredShop(name, description, year, catalogue, sponsorBrand);
                 sponsoredShop.setSponsorBrand(sponsorBrand);
-                try {
-                    shopList = shopArrayList();
-                    shopList.add(sponsoredShop);
-                    shopJsonDAO.saveShops(shopList);
-                    shopApiJsonDAO.saveShops(sponsoredShop);
-                } catch (ApiException e) {
-                    return false;
-                }
-            }
-            if ("MAX_PROFIT".equalsIgnoreCase(category)) {
-                MaxProfitShop maxProfitShop = new MaxProfitShop(name, description, year, catalogue);
-                try {
-                    shopList = shopArrayList();
-                    shopList.add(maxProfitShop);
-                    shopJsonDAO.saveShops(shopList);
-                    shopApiJsonDAO.saveShops(maxProfitShop);
-                } catch (ApiException e) {
-                    return false;
-                }
-            }
-            if ("LOYALTY".equalsIgnoreCase(category)) {
+                shop = sponsoredShop;
+            } else if ("MAX_PROFIT".equalsIgnoreCase(category)) {
+                shop = new MaxProfitShop(name, description, year, catalogue);
+            } else if ("LOYALTY".equalsIgnoreCase(category)) {
                 LoyaltyShop loyaltyShop = new LoyaltyShop(name, description, year, catalogue, loyaltyThreshold);
                 loyaltyShop.setLoyaltyThreshold(loyaltyThreshold);
-                try {
-                    shopList = shopArrayList();
-                    shopList.add(loyaltyShop);
-                    shopJsonDAO.saveShops(shopList);
-                    shopApiJsonDAO.saveShops(loyaltyShop);
-                } catch (ApiException e) {
-                    return false;
-                }
+                shop = loyaltyShop;
+            } else {
+                return false;
             }
-        } else {
-            if ("SPONSORED".equalsIgnoreCase(category)) {
-                SponsoredShop sponsoredShop = new SponsoredShop(name, description, year, catalogue, sponsorBrand);
-                sponsoredShop.setSponsorBrand(sponsorBrand);
-                shopList.add(sponsoredShop);
-                shopJsonDAO.saveShops(shopList);
+            ArrayList<Shop> updated = new ArrayList<>(shopList);
+            updated.add(shop);
+            shopList = updated;
+            saveShops(updated);
+            pendingChanges.markUpsert(name);
+            offerIndex.addShop(shop);
+            shopNames.put(name, Math.round(shop.getEarnings()));
+            return true;
+        } finally {
+            Metrics.recordOperation(Operation.SHOP_CREATE, start);
+        }
+    }
+
+    /**
+     * Carga la lista completa de tiendas de la réplica local (shops.json) y le vuelve a aplicar los cambios de
+     * catálogo registrados que aún no se han enviado.
+     * No modifica la lista gestionada; para ello se usa replaceShopList.
+     * @return Lista de tiendas leída.
+     * @throws IOException Si falla la lectura del fichero local.
+     */
+    public ArrayList<Shop> fetchShops() throws IOException {
+        ArrayList<Shop> shops = shopJsonDAO.loadShops();
+        for (CatalogueChange change : getPendingCatalogueChanges()) {
+            Shop shop = findByName(shops, change.getShopName());
+            if (shop != null) {
+                change.applyTo(shop);
             }
-            if ("MAX_PROFIT".equalsIgnoreCase(category)) {
-                MaxProfitShop maxProfitShop = new MaxProfitShop(name, description, year, catalogue);
-                shopList.add(maxProfitShop);
-                shopJsonDAO.saveShops(shopList);
+        }
+        return shops;
+    }
+
+    /**
+     * Sustituye la lista de tiendas gestionada por una lista recién cargada. Las tiendas creadas mientras se
+     * cargaba la lista y que no aparecen en ella se conservan al final.
+     * @param loaded Lista de tiendas cargada.
+     */
+    public synchronized void replaceShopList(ArrayList<Shop> loaded) {
+        for (Shop shop : shopList) {
+            if (findByName(loaded, shop.getName()) == null) {
+                loaded.add(shop);
             }
-            if ("LOYALTY".equalsIgnoreCase(category)) {
-                LoyaltyShop loyaltyShop = new LoyaltyShop(name, description, year, catalogue, loyaltyThreshold);
-                loyaltyShop.setLoyaltyThreshold(loyaltyThreshold);
-                shopList.add(loyaltyShop);
-                shopJsonDAO.saveShops(shopList);
+        }
+        shopList = loaded;
+        offerIndex.rebuild(loaded);
+        rebuildNames(loaded);
+        resumeSaves();
+    }
+
+    /**
+     * Deja de escribir shops.json hasta que se integre la lista cargada con replaceShopList (o se llame a
+     * resumeSaves). Se usa mientras la réplica se carga en segundo plano.
+     */
+    public synchronized void deferSavesUntilLoaded() {
+        savesDeferred = true;
+    }
+
+    /**
+     * Vuelve a escribir shops.json y guarda los cambios hechos mientras estaba aplazado. Se llama sola al integrar
+     * la lista cargada; si la carga falla hay que llamarla para no perder los cambios.
+     */
+    public synchronized void resumeSaves() {
+        savesDeferred = false;
+        if (unsavedChanges) {
+            unsavedChanges = false;
+            shopJsonDAO.saveShops(shopList);
+        }
+    }
+
+    /**
+     * Guarda una lista de tiendas en la réplica local, o solo anota que hay cambios mientras el guardado está
+     * aplazado.
+     * @param shops Lista de tiendas a guardar.
+     */
+    private void saveShops(List<Shop> shops) {
+        if (savesDeferred) {
+            unsavedChanges = true;
+            return;
+        }
+        shopJsonDAO.saveShops(shops);
+    }
+
+    /**
+     * Obtiene los cambios locales pendientes de enviar a la API.
+     * @return Copia de los cambios pendientes.
+     */
+    public PendingChanges.Snapshot getPendingChanges() {
+        return pendingChanges.snapshot();
+    }
+
+    /**
+     * Obtiene los cambios de catálogo pendientes de enviar a la API, en el orden en que se hicieron.
+     * @return Copia de los cambios pendientes.
+     */
+    public synchronized List<CatalogueChange> getPendingCatalogueChanges() {
+        return new ArrayList<>(pendingCatalogue);
+    }
+
+    /**
+     * Termina una sincronización: da por enviados los cambios indicados y sustituye la réplica por la lista remota,
+     * conservando la versión local de las tiendas que se han vuelto a modificar mientras se sincronizaba.
+     * El registro de cambios de catálogo se compacta y solo conserva los que han llegado durante la sincronización.
+     * @param remote Lista de tiendas de la API después de aplicar los cambios enviados.
+     * @param synced Cambios que se han enviado correctamente.
+     * @param syncedCatalogue Cambios de catálogo que se han enviado o descartado.
+     */
+    public synchronized void completeSync(ArrayList<Shop> remote, PendingChanges.Snapshot synced, List<CatalogueChange> syncedCatalogue) {
+        pendingChanges.acknowledge(synced);
+        Set<CatalogueChange> done = Collections.newSetFromMap(new IdentityHashMap<>());
+        done.addAll(syncedCatalogue);
+        pendingCatalogue.removeIf(done::contains);
+        ArrayList<Shop> merged = new ArrayList<>(remote.size());
+        for (Shop remoteShop : remote) {
+            String name = remoteShop.getName();
+            if (pendingChanges.isRemoval(name)) {
+                continue;
             }
+            Shop localShop = pendingChanges.isUpsert(name) || hasPendingCatalogue(name) ? findByName(shopList, name) : null;
+            merged.add(localShop != null ? localShop : remoteShop);
         }
-        return true;
+        for (Shop localShop : shopList) {
+            String name = localShop.getName();
+            if ((pendingChanges.isUpsert(name) || hasPendingCatalogue(name)) && findByName(merged, name) == null) {
+                merged.add(localShop);
+            }
+        }
+        shopList = merged;
+        saveShops(merged);
+        catalogueLogDAO.rewrite(pendingCatalogue);
+        offerIndex.rebuild(merged);
+        rebuildNames(merged);
+    }
+
+    /**
+     * Da por enviados unos cambios de catálogo sin terminar la sincronización, por ejemplo cuando el envío de una
+     * tienda se corta a medias, y los quita del registro local para que no se vuelvan a enviar.
+     * @param sent Cambios que ya han llegado a la API.
+     */
+    public synchronized void acknowledgeCatalogueChanges(List<CatalogueChange> sent) {
+        if (sent.isEmpty()) {
+            return;
+        }
+        Set<CatalogueChange> done = Collections.newSetFromMap(new IdentityHashMap<>());
+        done.addAll(sent);
+        pendingCatalogue.removeIf(done::contains);
+        catalogueLogDAO.rewrite(pendingCatalogue);
+    }
+
+    /**
+     * Indica si una tienda tiene cambios de catálogo pendientes de enviar.
+     * @param shopName Nombre de la tienda.
+     * @return true si hay algún cambio pendiente.
+     */
+    private boolean hasPendingCatalogue(String shopName) {
+        for (CatalogueChange change : pendingCatalogue) {
+            if (change.getShopName().equalsIgnoreCase(shopName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registra un cambio de catálogo como pendiente y lo añade al final del registro local.
+     * @param type Tipo de cambio.
+     * @param shop Tienda ya modificada.
+     * @param productName Nombre del producto.
+     * @param price Precio del producto en la tienda.
+     */
+    private void recordCatalogueChange(CatalogueChange.Type type, Shop shop, String productName, double price) {
+        CatalogueChange change = new CatalogueChange(type, shop.getName(), productName, price, shop.getLastModified(),
+                ActionAccounting.current());
+        pendingCatalogue.add(change);
+        catalogueLogDAO.append(change);
     }
 
     /**
@@ -149,74 +314,55 @@ public class ShopManager {
      * @return La tienda si se encuentra, null en caso contrario.
      */
     public Shop findShopByName(String name) {
-        ArrayList<Shop> shops = new ArrayList<>();
-        if(apiHelper.isConnected()){
-            shops = shopArrayList();
-        }else{
-            shops = shopList;
-        }
-        for (Shop shop :shops) {
-            if (shop.getName().equalsIgnoreCase(name)) {
-                return shop;
-            }
+        long start = System.nanoTime();
+        try {
+            return findByName(shopList, name);
+        } finally {
+            Metrics.recordOperation(Operation.SHOP_LOOKUP, start);
         }
-        return null;
     }
 
     /**
-     * Añade un producto al catálogo de una tienda especificada y guarda los cambios, teniendo en cuenta si está conectada a la API.
+     * Añade un producto al catálogo de una tienda especificada, o cambia su precio si ya estaba, y registra el cambio
+     * como pendiente de enviar a la API.
      * @param shopName El nombre de la tienda.
      * @param productName El nombre del producto a añadir.
      * @param price El precio del producto.
-     * @return true si el producto se añade con éxito, false en caso de error.
+     * @return true si el producto se añade con éxito, false si la tienda no existe.
      */
-    public boolean addToCatalogue(String shopName, String productName, double price) {
-        boolean add = false;
-        Shop shop = findShopByName(shopName);
-        if (shop != null) {
-            shop.addToCatalogue(productName, price);
-            add = true;
-            try {
-                shopJsonDAO.saveShops(shopList);
-                if (apiHelper.isConnected()) {
-                    shopApiJsonDAO.saveShops(shop);
-                }
-            } catch (ApiException e) {
-                add = false;
+    public synchronized boolean addToCatalogue(String shopName, String productName, double price) {
+        long start = System.nanoTime();
+        try {
+            Shop shop = findByName(shopList, shopName);
+            if (shop == null) {
+                return false;
             }
+            boolean added = shop.addToCatalogue(productName, price);
+            recordCatalogueChange(added ? CatalogueChange.Type.ADD : CatalogueChange.Type.PRICE, shop, productName, price);
+            offerIndex.update(shop, productName);
+            return true;
+        } finally {
+            Metrics.recordOperation(Operation.CATALOGUE_ADD, start);
         }
-        return add;
     }
 
     /**
-     * Elimina un producto del catálogo de una tienda especificada y guarda los cambios.
+     * Elimina un producto del catálogo de una tienda especificada y registra el cambio como pendiente.
      * @param shopName El nombre de la tienda.
      * @param productName El nombre del producto a eliminar.
      */
-    public void removeFromJsonCatalogue(String shopName, String productName) {
-        if (nameShopExists(shopName)) {
-            Shop shop = findShopByName(shopName);
-            if (shop != null) {
-                ArrayList<Catalogue> catalogues = shop.getCatalogue();
-                Catalogue productToRemove = null;
-
-                for (Catalogue item : catalogues) {
-                    if (item.getProductName().equalsIgnoreCase(productName)) {
-                        productToRemove = item;
-                    }
-                }
-                catalogues.remove(productToRemove);
-                try {
-                    shopJsonDAO.saveShops(shopList);
-                    if(apiHelper.isConnected()){
-                        shopApiJsonDAO.saveShops(shop);
-                    } else {
-                        shopJsonDAO.saveShops(shopList);
-                    }
-                }catch(ApiException e){
-                    consoleUIManager.showMessage("ERROR API EXCEPTION");
+    public synchronized void removeFromJsonCatalogue(String shopName, String productName) {
+        long start = System.nanoTime();
+        try {
+            if (nameShopExists(shopName)) {
+                Shop shop = findByName(shopList, shopName);
+                if (shop != null && shop.removeFromCatalogue(productName)) {
+                    recordCatalogueChange(CatalogueChange.Type.REMOVE, shop, productName, 0);
+                    offerIndex.update(shop, productName);
                 }
             }
+        } finally {
+            Metrics.recordOperation(Operation.CATALOGUE_REMOVE, start);
         }
     }
 
@@ -225,57 +371,155 @@ public class ShopManager {
      * @param shopName El nombre de la tienda de la cual obtener el catálogo.
      * @return El catálogo de la tienda, o una lista vacía si la tienda no existe.
      */
-    public ArrayList<Catalogue> getCatalogueFromShop(String shopName) {
-        Shop shop = findShopByName(shopName);
+    public List<Catalogue> getCatalogueFromShop(String shopName) {
+        Shop shop = findByName(shopList, shopName);
         if (shop != null) {
             return shop.getCatalogue();
         } else {
-            return new ArrayList<>();
+            return List.of();
         }
     }
 
     /**
-     * Actualiza los ingresos de una tienda basado en el precio de un producto vendido.
+     * Actualiza los ingresos de una tienda basado en el precio de un producto vendido. No reescribe shops.json ni
+     * marca la tienda para volver a subirla: las ganancias nuevas se registran como un cambio (EARNINGS) en el
+     * registro de catálogo, y la sincronización solo envía ese campo.
      * @param shop La tienda cuyos ingresos se van a actualizar.
      * @param price El precio del producto vendido.
      */
-    public void updateEarnings(Shop shop, double price) {
-        if(apiHelper.isConnected()){
-            try{
-                double current = shop.getEarnings();
-                double newIncome = current + price;
-                shop.setEarnings(newIncome);
-                shopApiJsonDAO.updateEarnings(shop, newIncome);
-                shopApiJsonDAO.saveShops(shop);
-
-            }catch(ApiException e){
-                System.out.println("\nERROR: Failed to update earnings in API: " + e.getMessage());
-            }
-        }else {
+    public synchronized void updateEarnings(Shop shop, double price) {
+        long start = System.nanoTime();
+        try {
             if (shop != null) {
                 double current = shop.getEarnings();
                 double newIncome = current + price;
                 shop.setEarnings(newIncome);
+                recordCatalogueChange(CatalogueChange.Type.EARNINGS, shop, "", newIncome);
+                shopNames.put(shop.getName(), Math.round(newIncome));
             }
+        } finally {
+            Metrics.recordOperation(Operation.EARNINGS_UPDATE, start);
         }
     }
 
     /**
-     * Carga y devuelve una lista de tiendas desde la API del DAO de tiendas.
-     * @return Una lista de objetos Shop cargados desde la API. Si ocurre una excepción, devuelve una lista vacía.
-     * @throws ApiException Si ocurre un error al cargar las tiendas desde la API.
+     * Obtiene el libro de ventas, donde se guarda cada línea cobrada.
+     * @return Libro de ventas.
      */
-    public ArrayList<Shop> loadShops() throws ApiException{
-        try{
-            ArrayList<Shop> shops = shopApiJsonDAO.loadShops();
-            shopList.clear();
-            shopList.addAll(shops);
-            return shops;
+    public SalesLedger getSalesLedger() {
+        return salesLedger;
+    }
 
-        } catch(ApiException e){
-            consoleUIManager.showMessage("Error loading shops from API: " + e.getMessage() + "\n");
-            return new ArrayList<>();
+    /**
+     * Suma a un cliente lo que ha gastado en cada tienda de fidelización en un cobro y lo añade al registro. Las
+     * tiendas de otros modelos de negocio se ignoran. El registro se compacta cuando tiene más del doble de líneas
+     * que parejas de cliente y tienda.
+     * @param customer Nombre del cliente.
+     * @param spentByShop Gasto por nombre de tienda.
+     */
+    public synchronized void recordLoyaltySpend(String customer, Map<String, Double> spentByShop) {
+        Map<String, Long> centsByShop = new HashMap<>();
+        for (Map.Entry<String, Double> entry : spentByShop.entrySet()) {
+            Shop shop = findByName(shopList, entry.getKey());
+            if (shop instanceof LoyaltyShop) {
+                long cents = LoyaltyTracker.toCents(entry.getValue());
+                loyaltyTracker.addSpend(customer, shop.getName(), cents);
+                centsByShop.merge(shop.getName(), cents, Long::sum);
+            }
+        }
+        if (centsByShop.isEmpty()) {
+            return;
+        }
+        loyaltyLogLines += centsByShop.size();
+        if (loyaltyLogLines > Math.max(MIN_LOYALTY_LOG_LINES, 2L * loyaltyTracker.size())) {
+            loyaltyLogDAO.rewrite(loyaltyTracker);
+            loyaltyLogLines = loyaltyTracker.size();
+        } else {
+            loyaltyLogDAO.append(customer, centsByShop);
         }
+    }
 
+    /**
+     * Indica si un cliente es habitual en una tienda: solo puede serlo en las de fidelización, cuando lo que ha
+     * gastado en ella llega a su umbral.
+     * @param customer Nombre del cliente.
+     * @param shop La tienda.
+     * @return true si el cliente es habitual en la tienda.
+     */
+    public boolean isRegularCustomer(String customer, Shop shop) {
+        return shop instanceof LoyaltyShop loyaltyShop && loyaltyTracker.isRegular(customer, loyaltyShop);
+    }
+
+    /**
+     * Obtiene las tiendas que venden un producto, de la más barata a la más cara para un cliente según el modelo de
+     * negocio de cada tienda.
+     * @param product El producto.
+     * @param customer Nombre del cliente.
+     * @return Ofertas ordenadas por precio efectivo; vacía si ninguna tienda lo vende.
+     */
+    public List<Offer> getOffers(Product product, String customer) {
+        long start = System.nanoTime();
+        try {
+            return offerIndex.offers(product, customer);
+        } finally {
+            Metrics.recordOperation(Operation.OFFER_LOOKUP, start);
+        }
+    }
+
+    /**
+     * Obtiene la tienda donde un producto es más barato para un cliente.
+     * @param product El producto.
+     * @param customer Nombre del cliente.
+     * @return La oferta más barata, o null si ninguna tienda lo vende.
+     */
+    public Offer getBestOffer(Product product, String customer) {
+        long start = System.nanoTime();
+        try {
+            return offerIndex.best(product, customer);
+        } finally {
+            Metrics.recordOperation(Operation.OFFER_LOOKUP, start);
+        }
+    }
+
+    /**
+     * Autocompleta un nombre de tienda: obtiene los nombres que empiezan por un texto, de más a menos ganancias.
+     * @param prefix Principio del nombre, sin distinguir mayúsculas.
+     * @param k Número máximo de nombres.
+     * @return Hasta k nombres de tienda.
+     */
+    public List<String> completeShopName(String prefix, int k) {
+        long start = System.nanoTime();
+        try {
+            return shopNames.complete(prefix, k);
+        } finally {
+            Metrics.recordOperation(Operation.NAME_COMPLETE, start);
+        }
+    }
+
+    /**
+     * Vuelve a construir el índice de nombres con una lista de tiendas completa.
+     * @param shops Lista de tiendas actual.
+     */
+    private void rebuildNames(ArrayList<Shop> shops) {
+        Map<String, Long> earningsByName = new HashMap<>(shops.size() * 2);
+        for (Shop shop : shops) {
+            earningsByName.putIfAbsent(shop.getName(), Math.round(shop.getEarnings()));
+        }
+        shopNames.rebuild(earningsByName);
+    }
+
+    /**
+     * Busca una tienda por nombre, sin distinguir mayúsculas, en una lista dada.
+     * @param shops Lista donde buscar.
+     * @param name Nombre de la tienda.
+     * @return La primera tienda con ese nombre, o null si no hay ninguna.
+     */
+    private static Shop findByName(ArrayList<Shop> shops, String name) {
+        for (Shop shop : shops) {
+            if (shop.getName().equalsIgnoreCase(name)) {
+                return shop;
+            }
+        }
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -2,7 +2,7 @@ package business.shop;
 
 import business.Catalogue;
 import business.product.Product;
-import java.util.ArrayList;
+import java.util.List;
 /**
  * Herencia de Shop para implementar funcionalidad para una tienda patrocinada por una marca específica,
  * ofreciendo descuentos en productos de esa marca.
@@ -17,10 +17,17 @@ public class SponsoredShop extends Shop{
      * @param catalogue El catálogo de productos ofrecidos por la tienda.
      * @param sponsorBrand La marca patrocinadora de la tienda, ofreciendo descuentos en sus productos.
      */
-    public SponsoredShop(String name, String description, int since, ArrayList<Catalogue> catalogue, String sponsorBrand) {
+    public SponsoredShop(String name, String description, int since, List<Catalogue> catalogue, String sponsorBrand) {
         super(name, description, since, "SPONSORED",catalogue);
         this.sponsorBrand = sponsorBrand;
     }
+    /**
+     * Obtiene la marca patrocinadora de la tienda.
+     * @return La marca patrocinadora.
+     */
+    public String getSponsorBrand() {
+        return sponsorBrand;
+    }
     /**
      * Establece la marca patrocinadora de la tienda.
      * @param sponsorBrand La nueva marca patrocinadora.
@@ -0,0 +1,294 @@
+package business.simulation;
+
+import business.Catalogue;
+import business.product.Product;
+import business.shop.LoyaltyShop;
+import business.shop.Shop;
+import metrics.LatencyHistogram;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Simula millones de clientes comprando en las tiendas para comparar los modelos de negocio (MAX_PROFIT, LOYALTY y
+ * SPONSORED) sin sesiones manuales. Cada cliente hace varias compras; en cada una elige productos según el peso de
+ * su marca y, para cada producto, una de las tiendas que lo venden. La tienda gana lo que da su calculateDiscount,
+ * igual que al cobrar un carrito, y el cliente paga el precio de catálogo salvo en las tiendas de fidelización en
+ * las que ya es habitual, es decir, en las que lo que ha hecho ganar a la tienda llega al umbral.
+ * Los clientes se reparten entre los hilos con fork/join. Los números aleatorios de cada cliente salen de la
+ * semilla y de su posición, y las cantidades se suman en céntimos, así que el resultado no depende de cuántos hilos
+ * haya ni de cómo se repartan.
+ */
+public class MarketSimulator {
+    private static final int CUSTOMERS_PER_TASK = 4096;
+
+    private final Shop[] shops;
+    private final String[] models;
+    private final int[] shopModel;
+    private final long[] loyaltyThresholdCents;
+    private final Product[] products;
+    private final int[][] offerShops;
+    private final long[][] offerPriceCents;
+    private final long[][] offerNetCents;
+
+    /**
+     * Constructor. Prepara, para cada producto que se vende en alguna tienda, sus ofertas con el precio de catálogo y
+     * lo que gana la tienda con cada una, calculado una sola vez con calculateDiscount.
+     * @param productList Productos.
+     * @param shopList Tiendas con sus catálogos.
+     */
+    public MarketSimulator(List<Product> productList, List<Shop> shopList) {
+        this.shops = shopList.toArray(new Shop[0]);
+        this.shopModel = new int[shops.length];
+        this.loyaltyThresholdCents = new long[shops.length];
+        Map<String, Integer> modelIndex = new LinkedHashMap<>();
+        for (int i = 0; i < shops.length; i++) {
+            shopModel[i] = modelIndex.computeIfAbsent(shops[i].businessModel, model -> modelIndex.size());
+            loyaltyThresholdCents[i] = shops[i] instanceof LoyaltyShop loyaltyShop
+                    ? toCents(loyaltyShop.getLoyaltyThreshold()) : Long.MAX_VALUE;
+        }
+        this.models = modelIndex.keySet().toArray(new String[0]);
+
+        Map<String, Product> productsByName = new HashMap<>();
+        for (Product product : productList) {
+            productsByName.putIfAbsent(product.getName().toLowerCase(Locale.ROOT), product);
+        }
+        Map<Product, Map<Integer, Double>> offers = new LinkedHashMap<>();
+        for (int i = 0; i < shops.length; i++) {
+            for (Catalogue item : shops[i].getCatalogue()) {
+                Product product = productsByName.get(item.getProductName().toLowerCase(Locale.ROOT));
+                if (product != null) {
+                    offers.computeIfAbsent(product, p -> new LinkedHashMap<>()).put(i, item.getPriceAtShop());
+                }
+            }
+        }
+        this.products = new Product[offers.size()];
+        this.offerShops = new int[offers.size()][];
+        this.offerPriceCents = new long[offers.size()][];
+        this.offerNetCents = new long[offers.size()][];
+        int p = 0;
+        for (Map.Entry<Product, Map<Integer, Double>> entry : offers.entrySet()) {
+            Product product = entry.getKey();
+            int size = entry.getValue().size();
+            products[p] = product;
+            offerShops[p] = new int[size];
+            offerPriceCents[p] = new long[size];
+            offerNetCents[p] = new long[size];
+            int k = 0;
+            for (Map.Entry<Integer, Double> offer : entry.getValue().entrySet()) {
+                Shop shop = shops[offer.getKey()];
+                offerShops[p][k] = offer.getKey();
+                offerPriceCents[p][k] = toCents(offer.getValue());
+                offerNetCents[p][k] = toCents(shop.calculateDiscount(offer.getValue(), product));
+                k++;
+            }
+            p++;
+        }
+    }
+
+    /**
+     * Ejecuta una simulación.
+     * @param config Parámetros de la simulación.
+     * @param parallelism Número de hilos.
+     * @return Ganancias por tienda y por modelo de negocio, y lo que ha gastado cada cliente en cada modelo.
+     */
+    public SimulationResult run(SimulationConfig config, int parallelism) {
+        double[] cumulativeWeights = new double[products.length];
+        double total = 0;
+        for (int p = 0; p < products.length; p++) {
+            total += config.getBrandWeight(products[p].getBrand());
+            cumulativeWeights[p] = total;
+        }
+        long start = System.nanoTime();
+        Partial partial;
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            partial = pool.invoke(new CustomerTask(config, cumulativeWeights, 0, config.getCustomers()));
+        } finally {
+            pool.shutdown();
+        }
+        return new SimulationResult(shops, shopModel, models, partial.shopEarnings, partial.shopItems,
+                partial.shopCustomers, partial.modelSpend, config.getCustomers(), partial.purchases,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Simula los clientes de un tramo.
+     * @param config Parámetros de la simulación.
+     * @param cumulativeWeights Pesos acumulados de los productos.
+     * @param from Primer cliente del tramo.
+     * @param to Cliente siguiente al último del tramo.
+     * @return Resultados del tramo.
+     */
+    private Partial simulate(SimulationConfig config, double[] cumulativeWeights, long from, long to) {
+        Partial partial = new Partial(shops.length, models.length);
+        double totalWeight = cumulativeWeights.length == 0 ? 0 : cumulativeWeights[cumulativeWeights.length - 1];
+        if (totalWeight <= 0) {
+            return partial;
+        }
+        long[] customerSpend = new long[shops.length];
+        long[] modelSpend = new long[models.length];
+        int[] touched = new int[shops.length];
+        boolean cheapest = config.getShopChoice() == SimulationConfig.ShopChoice.CHEAPEST;
+        int basketRange = config.getMaxBasket() - config.getMinBasket() + 1;
+
+        for (long customer = from; customer < to; customer++) {
+            SplittableRandom random = new SplittableRandom(customerSeed(config.getSeed(), customer));
+            int touchedCount = 0;
+            for (int visit = 0; visit < config.getVisits(); visit++) {
+                int basket = config.getMinBasket() + random.nextInt(basketRange);
+                for (int item = 0; item < basket; item++) {
+                    int p = Arrays.binarySearch(cumulativeWeights, random.nextDouble() * totalWeight);
+                    p = p < 0 ? -p - 1 : p + 1;
+                    if (p >= products.length) {
+                        p = products.length - 1;
+                    }
+                    int k = cheapest ? cheapestOffer(p, customerSpend) : random.nextInt(offerShops[p].length);
+                    int shop = offerShops[p][k];
+                    long net = offerNetCents[p][k];
+                    if (customerSpend[shop] == 0) {
+                        touched[touchedCount++] = shop;
+                    }
+                    customerSpend[shop] += net;
+                    partial.shopEarnings[shop] += net;
+                    partial.shopItems[shop]++;
+                    partial.purchases++;
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int shop = touched[i];
+                partial.shopCustomers[shop]++;
+                modelSpend[shopModel[shop]] += customerSpend[shop];
+                customerSpend[shop] = 0;
+            }
+            for (int m = 0; m < modelSpend.length; m++) {
+                if (modelSpend[m] > 0) {
+                    partial.modelSpend[m].record(modelSpend[m]);
+                    modelSpend[m] = 0;
+                }
+            }
+        }
+        return partial;
+    }
+
+    /**
+     * Elige la oferta más barata de un producto para un cliente. En las tiendas de fidelización donde ya es habitual
+     * paga lo que gana la tienda; en el resto, el precio de catálogo. Con el mismo precio gana la primera tienda.
+     * @param p Producto.
+     * @param customerSpend Lo que el cliente ha hecho ganar hasta ahora a cada tienda, en céntimos.
+     * @return Posición de la oferta elegida.
+     */
+    private int cheapestOffer(int p, long[] customerSpend) {
+        int[] offerShop = offerShops[p];
+        int best = 0;
+        long bestPrice = Long.MAX_VALUE;
+        for (int k = 0; k < offerShop.length; k++) {
+            int shop = offerShop[k];
+            long price = customerSpend[shop] >= loyaltyThresholdCents[shop] ? offerNetCents[p][k] : offerPriceCents[p][k];
+            if (price < bestPrice) {
+                bestPrice = price;
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Deriva la semilla de un cliente de la semilla de la simulación y de su posición (mezcla de SplitMix64).
+     * @param seed Semilla de la simulación.
+     * @param customer Posición del cliente.
+     * @return Semilla del cliente.
+     */
+    private static long customerSeed(long seed, long customer) {
+        long z = seed + (customer + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Convierte un importe a céntimos.
+     * @param amount Importe.
+     * @return Importe redondeado a céntimos.
+     */
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    /**
+     * Tramo de clientes que se divide en dos mientras es grande y se simula cuando es pequeño.
+     */
+    private final class CustomerTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final SimulationConfig config;
+        private final double[] cumulativeWeights;
+        private final long from;
+        private final long to;
+
+        private CustomerTask(SimulationConfig config, double[] cumulativeWeights, long from, long to) {
+            this.config = config;
+            this.cumulativeWeights = cumulativeWeights;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= CUSTOMERS_PER_TASK) {
+                return simulate(config, cumulativeWeights, from, to);
+            }
+            long middle = from + (to - from) / 2;
+            CustomerTask left = new CustomerTask(config, cumulativeWeights, from, middle);
+            left.fork();
+            Partial right = new CustomerTask(config, cumulativeWeights, middle, to).compute();
+            return left.join().add(right);
+        }
+    }
+
+    /**
+     * Resultados acumulados de un tramo de clientes.
+     */
+    private static final class Partial {
+        private final long[] shopEarnings;
+        private final long[] shopItems;
+        private final long[] shopCustomers;
+        private final LatencyHistogram[] modelSpend;
+        private long purchases;
+
+        private Partial(int shops, int models) {
+            this.shopEarnings = new long[shops];
+            this.shopItems = new long[shops];
+            this.shopCustomers = new long[shops];
+            this.modelSpend = new LatencyHistogram[models];
+            for (int m = 0; m < models; m++) {
+                modelSpend[m] = new LatencyHistogram();
+            }
+        }
+
+        /**
+         * Suma a este tramo los resultados de otro.
+         * @param other Otro tramo.
+         * @return Este tramo.
+         */
+        private Partial add(Partial other) {
+            for (int i = 0; i < shopEarnings.length; i++) {
+                shopEarnings[i] += other.shopEarnings[i];
+                shopItems[i] += other.shopItems[i];
+                shopCustomers[i] += other.shopCustomers[i];
+            }
+            for (int m = 0; m < modelSpend.length; m++) {
+                modelSpend[m].merge(other.modelSpend[m]);
+            }
+            purchases += other.purchases;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package business.simulation;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parámetros de una simulación de clientes: cuántos hay, cuántas veces compran, cuántos productos lleva cada cesta,
+ * qué marcas prefieren y cómo eligen la tienda. Con la misma configuración y la misma semilla la simulación da
+ * siempre el mismo resultado, se ejecute con los hilos que se ejecute.
+ */
+public class SimulationConfig {
+    /**
+     * Cómo elige el cliente la tienda donde compra cada producto.
+     */
+    public enum ShopChoice {
+        /** La tienda donde el producto le sale más barato, teniendo en cuenta si ya es cliente habitual. */
+        CHEAPEST,
+        /** Cualquier tienda que venda el producto, al azar. */
+        RANDOM
+    }
+
+    private final long customers;
+    private final int visits;
+    private final int minBasket;
+    private final int maxBasket;
+    private final long seed;
+    private final ShopChoice shopChoice;
+    private final Map<String, Double> brandWeights;
+
+    /**
+     * Constructor de la clase SimulationConfig.
+     * @param customers Número de clientes simulados.
+     * @param visits Número de compras que hace cada cliente.
+     * @param minBasket Número mínimo de productos de cada compra.
+     * @param maxBasket Número máximo de productos de cada compra.
+     * @param seed Semilla de la que se derivan los números aleatorios de cada cliente.
+     * @param shopChoice Cómo elige el cliente la tienda.
+     * @param brandWeights Peso relativo de cada marca al elegir productos (las marcas que no aparecen pesan 1), sin
+     *                     distinguir mayúsculas.
+     * @throws IllegalArgumentException Si algún valor está fuera de rango.
+     */
+    public SimulationConfig(long customers, int visits, int minBasket, int maxBasket, long seed, ShopChoice shopChoice,
+                            Map<String, Double> brandWeights) {
+        if (customers < 0 || visits < 1 || minBasket < 1 || maxBasket < minBasket) {
+            throw new IllegalArgumentException("Invalid simulation configuration");
+        }
+        this.customers = customers;
+        this.visits = visits;
+        this.minBasket = minBasket;
+        this.maxBasket = maxBasket;
+        this.seed = seed;
+        this.shopChoice = shopChoice;
+        this.brandWeights = new HashMap<>();
+        for (Map.Entry<String, Double> entry : brandWeights.entrySet()) {
+            if (entry.getValue() < 0) {
+                throw new IllegalArgumentException("Invalid weight for brand " + entry.getKey());
+            }
+            this.brandWeights.put(entry.getKey().toLowerCase(Locale.ROOT), entry.getValue());
+        }
+    }
+
+    /**
+     * Obtiene el número de clientes simulados.
+     * @return Número de clientes.
+     */
+    public long getCustomers() {
+        return customers;
+    }
+
+    /**
+     * Obtiene el número de compras que hace cada cliente.
+     * @return Número de compras.
+     */
+    public int getVisits() {
+        return visits;
+    }
+
+    /**
+     * Obtiene el número mínimo de productos de cada compra.
+     * @return Tamaño mínimo de la cesta.
+     */
+    public int getMinBasket() {
+        return minBasket;
+    }
+
+    /**
+     * Obtiene el número máximo de productos de cada compra.
+     * @return Tamaño máximo de la cesta.
+     */
+    public int getMaxBasket() {
+        return maxBasket;
+    }
+
+    /**
+     * Obtiene la semilla de la simulación.
+     * @return Semilla.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Obtiene cómo elige el cliente la tienda.
+     * @return Criterio de elección.
+     */
+    public ShopChoice getShopChoice() {
+        return shopChoice;
+    }
+
+    /**
+     * Obtiene el peso relativo de una marca al elegir productos.
+     * @param brand Marca.
+     * @return Peso de la marca, 1 si no se ha configurado.
+     */
+    public double getBrandWeight(String brand) {
+        if (brand == null) {
+            return 1;
+        }
+        return brandWeights.getOrDefault(brand.toLowerCase(Locale.ROOT), 1.0);
+    }
+}
@@ -0,0 +1,152 @@
+package business.simulation;
+
+import business.shop.Shop;
+import metrics.LatencyHistogram;
+
+import java.util.Locale;
+
+/**
+ * Resultado de una simulación de clientes: lo que ha ganado cada tienda y cada modelo de negocio, cuántos productos
+ * ha vendido y a cuántos clientes, y la distribución de lo que ha gastado cada cliente en las tiendas de cada modelo.
+ * Los importes se guardan en céntimos; las distribuciones usan LatencyHistogram con céntimos en lugar de nanosegundos.
+ */
+public class SimulationResult {
+    private final Shop[] shops;
+    private final int[] shopModel;
+    private final String[] models;
+    private final long[] shopEarnings;
+    private final long[] shopItems;
+    private final long[] shopCustomers;
+    private final LatencyHistogram[] modelSpend;
+    private final long customers;
+    private final long purchases;
+    private final long elapsedNanos;
+
+    /**
+     * Constructor de la clase SimulationResult.
+     * @param shops Tiendas simuladas.
+     * @param shopModel Posición en models del modelo de negocio de cada tienda.
+     * @param models Modelos de negocio presentes.
+     * @param shopEarnings Ganancias de cada tienda, en céntimos.
+     * @param shopItems Productos vendidos por cada tienda.
+     * @param shopCustomers Clientes que han comprado en cada tienda.
+     * @param modelSpend Gasto de cada cliente en las tiendas de cada modelo, en céntimos.
+     * @param customers Número de clientes simulados.
+     * @param purchases Número total de productos vendidos.
+     * @param elapsedNanos Duración de la simulación.
+     */
+    public SimulationResult(Shop[] shops, int[] shopModel, String[] models, long[] shopEarnings, long[] shopItems,
+                            long[] shopCustomers, LatencyHistogram[] modelSpend, long customers, long purchases,
+                            long elapsedNanos) {
+        this.shops = shops;
+        this.shopModel = shopModel;
+        this.models = models;
+        this.shopEarnings = shopEarnings;
+        this.shopItems = shopItems;
+        this.shopCustomers = shopCustomers;
+        this.modelSpend = modelSpend;
+        this.customers = customers;
+        this.purchases = purchases;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Obtiene las ganancias de una tienda.
+     * @param shopName Nombre de la tienda.
+     * @return Ganancias de la tienda, o 0 si no se ha simulado.
+     */
+    public double getShopEarnings(String shopName) {
+        for (int i = 0; i < shops.length; i++) {
+            if (shops[i].getName().equalsIgnoreCase(shopName)) {
+                return shopEarnings[i] / 100.0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Obtiene las ganancias de todas las tiendas de un modelo de negocio.
+     * @param model Modelo de negocio.
+     * @return Ganancias del modelo, o 0 si ninguna tienda lo usa.
+     */
+    public double getModelEarnings(String model) {
+        long cents = 0;
+        for (int i = 0; i < shops.length; i++) {
+            if (models[shopModel[i]].equalsIgnoreCase(model)) {
+                cents += shopEarnings[i];
+            }
+        }
+        return cents / 100.0;
+    }
+
+    /**
+     * Obtiene el número total de productos vendidos.
+     * @return Productos vendidos.
+     */
+    public long getPurchases() {
+        return purchases;
+    }
+
+    /**
+     * Obtiene la duración de la simulación.
+     * @return Duración en nanosegundos.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Genera el informe de la simulación: una tabla por modelo de negocio con las ganancias y los percentiles de
+     * gasto por cliente, y otra por tienda. No incluye la duración, de modo que dos ejecuciones con la misma
+     * configuración dan el mismo texto.
+     * @return Informe.
+     */
+    public String format() {
+        StringBuilder report = new StringBuilder();
+        long totalEarnings = 0;
+        for (long earnings : shopEarnings) {
+            totalEarnings += earnings;
+        }
+        report.append(String.format(Locale.ROOT, "%d customers, %d items sold, %.2f earned%n",
+                customers, purchases, totalEarnings / 100.0));
+
+        report.append(String.format(Locale.ROOT, "%n%-12s %6s %14s %7s %10s %10s %9s %9s %9s %9s%n", "model",
+                "shops", "earnings", "share", "items", "customers", "mean", "p50", "p90", "p99"));
+        for (int m = 0; m < models.length; m++) {
+            int shopCount = 0;
+            long earnings = 0;
+            long items = 0;
+            for (int i = 0; i < shops.length; i++) {
+                if (shopModel[i] == m) {
+                    shopCount++;
+                    earnings += shopEarnings[i];
+                    items += shopItems[i];
+                }
+            }
+            LatencyHistogram spend = modelSpend[m];
+            report.append(String.format(Locale.ROOT, "%-12s %6d %14.2f %6.1f%% %10d %10d %9.2f %9.2f %9.2f %9.2f%n",
+                    models[m], shopCount, earnings / 100.0, share(earnings, totalEarnings), items, spend.getCount(),
+                    spend.getMean() / 100.0, spend.percentile(0.50) / 100.0, spend.percentile(0.90) / 100.0,
+                    spend.percentile(0.99) / 100.0));
+        }
+
+        report.append(String.format(Locale.ROOT, "%n%-24s %-12s %14s %7s %10s %10s%n", "shop", "model", "earnings",
+                "share", "items", "customers"));
+        for (int i = 0; i < shops.length; i++) {
+            report.append(String.format(Locale.ROOT, "%-24s %-12s %14.2f %6.1f%% %10d %10d%n", shops[i].getName(),
+                    models[shopModel[i]], shopEarnings[i] / 100.0, share(shopEarnings[i], totalEarnings),
+                    shopItems[i], shopCustomers[i]));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Calcula el porcentaje de una parte sobre el total.
+     * @param part Parte.
+     * @param total Total.
+     * @return Porcentaje, o 0 si el total es 0.
+     */
+    private static double share(long part, long total) {
+        return total == 0 ? 0 : part * 100.0 / total;
+    }
+}
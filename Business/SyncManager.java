@@ -0,0 +1,414 @@
+package business;
+
+import business.product.Product;
+import business.product.ProductManager;
+import business.shop.CatalogueChange;
+import business.shop.Shop;
+import business.shop.ShopManager;
+import com.google.gson.JsonParseException;
+import metrics.ActionAccounting;
+import metrics.CallBudgetExceededException;
+import metrics.Metrics;
+import metrics.Operation;
+import persistence.ApiException;
+import persistence.ApiHelper;
+import persistence.ProductApiJsonDAO;
+import persistence.ShopApiJsonDAO;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+/**
+ * Esta clase sincroniza en segundo plano la réplica local de productos y tiendas con la API.
+ * En cada ciclo descarga la lista remota, envía los cambios locales pendientes y sustituye la réplica por el
+ * resultado. Los conflictos se resuelven por entidad con la última escritura: si la versión remota es más reciente
+ * que la local, el cambio local se descarta.
+ * Las llamadas con que se envía cada cambio se cargan a la ejecución de la acción que lo hizo (ActionAccounting), no a
+ * la sincronización. Si en modo estricto esa ejecución supera su presupuesto, el cambio no se envía y sigue pendiente
+ * para el siguiente ciclo, que lo envía a cargo de la sincronización; en las tiendas, como una sustitución a medias deja las posiciones remotas sin confirmar,
+ * también se dejan para el siguiente ciclo los cambios de tiendas que quedaban por enviar.
+ */
+public class SyncManager {
+    private static final String GROUP_ID = "P1-G70";
+    private final ProductManager productManager;
+    private final ShopManager shopManager;
+    private final ApiHelper apiHelper;
+    private final ProductApiJsonDAO productApiJsonDAO;
+    private final ShopApiJsonDAO shopApiJsonDAO;
+    private ScheduledExecutorService scheduler;
+    private volatile String lastStatus;
+    private CallBudgetExceededException heldBack;
+
+    /**
+     * Constructor de la clase SyncManager.
+     * @param productManager El gestor de productos cuya réplica se sincroniza.
+     * @param shopManager El gestor de tiendas cuya réplica se sincroniza.
+     * @param apiHelper Ayudante de API usado para comprobar si hay conexión.
+     */
+    public SyncManager(ProductManager productManager, ShopManager shopManager, ApiHelper apiHelper) {
+        this.productManager = productManager;
+        this.shopManager = shopManager;
+        this.apiHelper = apiHelper;
+        this.productApiJsonDAO = new ProductApiJsonDAO();
+        this.shopApiJsonDAO = new ShopApiJsonDAO();
+        this.lastStatus = "Not synchronized yet";
+    }
+
+    /**
+     * Empieza a sincronizar periódicamente en un hilo de fondo. La primera sincronización se lanza enseguida.
+     * @param periodSeconds Segundos entre el final de una sincronización y el inicio de la siguiente.
+     */
+    public synchronized void start(long periodSeconds) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::syncNow, 0, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Detiene la sincronización periódica. Una sincronización en curso termina normalmente.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Obtiene el resultado de la última sincronización.
+     * @return Texto descriptivo del último resultado.
+     */
+    public String getLastStatus() {
+        return lastStatus;
+    }
+
+    /**
+     * Sincroniza productos y tiendas una vez. Si la API no responde no se hace nada: las lecturas siguen
+     * sirviéndose desde la réplica y los cambios esperan al siguiente ciclo.
+     * @return true si la sincronización se ha completado.
+     */
+    public synchronized boolean syncNow() {
+        long start = System.nanoTime();
+        boolean synced = false;
+        heldBack = null;
+        ActionAccounting.Scope scope = ActionAccounting.begin("sync", false);
+        try {
+            if (!apiHelper.checkConnection()) {
+                lastStatus = "API unavailable, working offline";
+                return false;
+            }
+            syncProducts();
+            syncShops();
+            lastStatus = heldBack == null ? "Synchronized"
+                    : "Synchronized, some changes held back: " + heldBack.getMessage();
+            synced = true;
+            return true;
+        } catch (ApiException | JsonParseException e) {
+            lastStatus = "Synchronization failed: " + e.getMessage();
+            return false;
+        } finally {
+            scope.close();
+            Metrics.recordOperation(Operation.SYNC, start, !synced);
+        }
+    }
+
+    /**
+     * Envía los cambios pendientes de productos y actualiza la réplica con la lista remota. Un cambio cuya acción
+     * supera su presupuesto se deja pendiente y se sigue con los demás: cada llamada actualiza la lista remota antes
+     * de la siguiente, así que las posiciones siguen siendo válidas.
+     * @throws ApiException Si falla alguna operación con la API.
+     */
+    private void syncProducts() throws ApiException {
+        PendingChanges.Snapshot changes = productManager.getPendingChanges();
+        ArrayList<Product> remote = productApiJsonDAO.loadProducts();
+        ArrayList<String> withheld = new ArrayList<>();
+
+        TreeMap<Integer, String> positions = new TreeMap<>();
+        for (String name : changes.getRemovals()) {
+            int position = indexOfProduct(remote, name);
+            if (position != -1) {
+                positions.put(position, name);
+            }
+        }
+        for (Map.Entry<Integer, String> entry : positions.descendingMap().entrySet()) {
+            ActionAccounting.Scope charge = ActionAccounting.chargeTo(changes.getOrigin(entry.getValue()));
+            try {
+                productApiJsonDAO.removeProduct(GROUP_ID, entry.getKey());
+                remote.remove((int) entry.getKey());
+            } catch (CallBudgetExceededException e) {
+                holdBack(e, withheld, entry.getValue());
+            } finally {
+                charge.close();
+            }
+        }
+
+        for (String name : changes.getUpserts()) {
+            Product local = productManager.getProductByName(name);
+            if (local == null) {
+                continue;
+            }
+            int position = indexOfProduct(remote, name);
+            if (position != -1 && remote.get(position).getLastModified() > local.getLastModified()) {
+                continue;
+            }
+            ActionAccounting.Scope charge = ActionAccounting.chargeTo(changes.getOrigin(name));
+            try {
+                if (position != -1) {
+                    productApiJsonDAO.removeProduct(GROUP_ID, position);
+                    remote.remove(position);
+                }
+                productApiJsonDAO.saveProduct(local);
+                remote.add(local);
+            } catch (CallBudgetExceededException e) {
+                holdBack(e, withheld, name);
+            } finally {
+                charge.close();
+            }
+        }
+        for (String name : withheld) {
+            changes.withhold(name);
+            changes.releaseOrigin(name);
+        }
+        productManager.completeSync(remote, changes);
+    }
+
+    /**
+     * Anota un cambio que no se ha enviado porque la acción que lo hizo ha superado su presupuesto.
+     * @param e Excepción del presupuesto superado.
+     * @param withheld Nombres de los cambios que se dejan pendientes.
+     * @param name Nombre de la entidad del cambio.
+     */
+    private void holdBack(CallBudgetExceededException e, List<String> withheld, String name) {
+        heldBack = e;
+        withheld.add(name);
+    }
+
+    /**
+     * Envía los cambios pendientes de tiendas y actualiza la réplica con la lista remota.
+     * Las tiendas se localizan por su posición en la lista cruda de la API, que es la que usan los borrados.
+     * Las tiendas que solo tienen cambios de catálogo no se vuelven a subir enteras: se envían solo esos cambios.
+     * Cuando una acción supera su presupuesto, su cambio y los que quedan por enviar se dejan pendientes. Los cambios
+     * de catálogo se dan por enviados uno a uno, así que si el envío de una tienda se corta a medias (por el
+     * presupuesto o por un error de la API) los que ya han llegado no se vuelven a enviar.
+     * @throws ApiException Si falla alguna operación con la API.
+     */
+    private void syncShops() throws ApiException {
+        PendingChanges.Snapshot changes = shopManager.getPendingChanges();
+        List<CatalogueChange> catalogueChanges = shopManager.getPendingCatalogueChanges();
+        ArrayList<String> positions = new ArrayList<>();
+        ArrayList<Shop> remote = shopApiJsonDAO.loadShops(positions);
+        Set<String> replaced = new HashSet<>();
+        ArrayList<String> withheld = new ArrayList<>();
+        ArrayList<String> deferred = new ArrayList<>();
+
+        for (String name : changes.getRemovals()) {
+            int position = indexOfName(positions, name);
+            if (position == -1) {
+                continue;
+            }
+            if (!withheld.isEmpty()) {
+                deferred.add(name);
+                continue;
+            }
+            ActionAccounting.Scope charge = ActionAccounting.chargeTo(changes.getOrigin(name));
+            try {
+                shopApiJsonDAO.deleteExistingShop(position);
+                positions.remove(position);
+                remote.removeIf(shop -> shop.getName().equalsIgnoreCase(name));
+            } catch (CallBudgetExceededException e) {
+                holdBack(e, withheld, name);
+            } finally {
+                charge.close();
+            }
+        }
+
+        for (String name : changes.getUpserts()) {
+            replaced.add(name.toLowerCase());
+            Shop local = shopManager.findShopByName(name);
+            if (local == null) {
+                continue;
+            }
+            Shop remoteShop = findShop(remote, name);
+            if (remoteShop != null && remoteShop.getLastModified() > local.getLastModified()) {
+                continue;
+            }
+            if (!withheld.isEmpty()) {
+                deferred.add(name);
+                continue;
+            }
+            ActionAccounting.Scope charge = ActionAccounting.chargeTo(changes.getOrigin(name));
+            try {
+                replaceShop(local, remoteShop, positions, remote);
+            } catch (CallBudgetExceededException e) {
+                holdBack(e, withheld, name);
+            } finally {
+                charge.close();
+            }
+        }
+
+        LinkedHashMap<String, List<CatalogueChange>> changesByShop = new LinkedHashMap<>();
+        for (CatalogueChange change : catalogueChanges) {
+            String key = change.getShopName().toLowerCase();
+            if (!replaced.contains(key)) {
+                changesByShop.computeIfAbsent(key, k -> new ArrayList<>()).add(change);
+            }
+        }
+        for (List<CatalogueChange> shopChanges : changesByShop.values()) {
+            if (!withheld.isEmpty()) {
+                catalogueChanges.removeAll(shopChanges);
+                continue;
+            }
+            String name = shopChanges.get(0).getShopName();
+            Shop local = shopManager.findShopByName(name);
+            if (local == null) {
+                continue;
+            }
+            ActionAccounting.Scope charge = ActionAccounting.chargeTo(shopChanges.get(shopChanges.size() - 1).getOrigin());
+            List<CatalogueChange> sent = new ArrayList<>();
+            try {
+                sendCatalogueChanges(local, shopChanges, positions, remote, sent);
+            } catch (CallBudgetExceededException e) {
+                holdBack(e, withheld, name);
+                List<CatalogueChange> unsent = new ArrayList<>(shopChanges);
+                unsent.removeAll(sent);
+                catalogueChanges.removeAll(unsent);
+                unsent.forEach(CatalogueChange::clearOrigin);
+            } catch (ApiException e) {
+                shopManager.acknowledgeCatalogueChanges(sent);
+                throw e;
+            } finally {
+                charge.close();
+            }
+        }
+        for (String name : withheld) {
+            changes.withhold(name);
+            changes.releaseOrigin(name);
+        }
+        for (String name : deferred) {
+            changes.withhold(name);
+        }
+        shopManager.completeSync(remote, changes, catalogueChanges);
+    }
+
+    /**
+     * Envía los cambios de catálogo de una tienda, o la tienda completa si no está en la API, y actualiza las listas
+     * de posiciones y de tiendas remotas. Cada cambio se carga a la acción que lo hizo; el resto de llamadas, a la
+     * ejecución activa. Si el envío se corta a medias, la tienda remota se sustituye igualmente por la local en la
+     * lista, porque la de la API ya tiene parte de los cambios.
+     * @param local Versión local de la tienda.
+     * @param shopChanges Cambios de catálogo de la tienda, en orden.
+     * @param positions Nombres por posición en la lista de la API.
+     * @param remote Lista de tiendas remotas.
+     * @param sent Lista donde se añaden los cambios que han llegado a la API (o que ya no hace falta enviar).
+     * @throws ApiException Si falla alguna operación con la API.
+     */
+    private void sendCatalogueChanges(Shop local, List<CatalogueChange> shopChanges, ArrayList<String> positions,
+                                      ArrayList<Shop> remote, List<CatalogueChange> sent) throws ApiException {
+        Shop remoteShop = findShop(remote, local.getName());
+        int position = indexOfName(positions, local.getName());
+        if (remoteShop == null || position == -1) {
+            replaceShop(local, remoteShop, positions, remote);
+            sent.addAll(shopChanges);
+        } else if (remoteShop.getLastModified() <= local.getLastModified()) {
+            boolean moved;
+            try {
+                moved = shopApiJsonDAO.sendCatalogueChanges(position, local, shopChanges, remoteShop.getCatalogue(), sent);
+            } catch (ApiException | CallBudgetExceededException e) {
+                if (!sent.isEmpty()) {
+                    remote.set(remote.indexOf(remoteShop), local);
+                }
+                throw e;
+            }
+            if (moved) {
+                positions.remove(position);
+                positions.add(local.getName());
+                remote.remove(remoteShop);
+                remote.add(local);
+            } else {
+                remote.set(remote.indexOf(remoteShop), local);
+            }
+        } else {
+            sent.addAll(shopChanges);
+        }
+    }
+
+    /**
+     * Sustituye una tienda completa en la API y actualiza las listas de posiciones y de tiendas remotas. Las listas
+     * se actualizan después de cada llamada, para que sigan siendo válidas si la segunda no se llega a hacer.
+     * @param local Versión local de la tienda.
+     * @param remoteShop Versión remota de la tienda, o null si no existe.
+     * @param positions Nombres por posición en la lista de la API.
+     * @param remote Lista de tiendas remotas.
+     * @throws ApiException Si falla alguna operación con la API.
+     */
+    private void replaceShop(Shop local, Shop remoteShop, ArrayList<String> positions, ArrayList<Shop> remote) throws ApiException {
+        int position = indexOfName(positions, local.getName());
+        if (position != -1) {
+            shopApiJsonDAO.deleteExistingShop(position);
+            positions.remove(position);
+            remote.remove(remoteShop);
+        }
+        shopApiJsonDAO.replaceShop(local, -1);
+        positions.add(local.getName());
+        remote.remove(remoteShop);
+        remote.add(local);
+    }
+
+    /**
+     * Busca una tienda por nombre, sin distinguir mayúsculas.
+     * @param shops Lista de tiendas.
+     * @param name Nombre de la tienda.
+     * @return La tienda, o null si no está.
+     */
+    private Shop findShop(ArrayList<Shop> shops, String name) {
+        for (Shop shop : shops) {
+            if (shop.getName().equalsIgnoreCase(name)) {
+                return shop;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Busca la posición de un producto por nombre.
+     * @param products Lista de productos.
+     * @param name Nombre del producto.
+     * @return Posición del producto o -1 si no está.
+     */
+    private int indexOfProduct(ArrayList<Product> products, String name) {
+        for (int i = 0; i < products.size(); i++) {
+            if (products.get(i).getName().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Busca la posición de un nombre en una lista de nombres por posición.
+     * @param names Lista de nombres, con null en las posiciones sin nombre.
+     * @param name Nombre a buscar.
+     * @return Posición del nombre o -1 si no está.
+     */
+    private int indexOfName(ArrayList<String> names, String name) {
+        for (int i = 0; i < names.size(); i++) {
+            if (name.equalsIgnoreCase(names.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,155 @@
+package business;
+
+import business.product.Product;
+import business.product.ProductManager;
+import business.shop.Shop;
+import business.shop.ShopManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+/**
+ * Esta clase se encarga de precargar en segundo plano los productos y las tiendas de la réplica local al arrancar la aplicación.
+ * Ambas cargas se ejecutan en paralelo y se anotan los tiempos de cada fase para poder mostrarlos después.
+ * Mientras cargan, los gestores no escriben sus ficheros, para que lo que se cree desde el menú entretanto no
+ * sustituya la réplica antes de leerla; lo guardan al integrar la lista cargada, o al fallar la carga.
+ */
+public class WarmUpManager {
+    private final ProductManager productManager;
+    private final ShopManager shopManager;
+    private final Map<String, String> phases;
+    private CompletableFuture<Void> completion;
+    private long startNanos;
+    private volatile long totalMillis;
+
+    /**
+     * Constructor de la clase WarmUpManager.
+     * @param productManager El gestor de productos que recibirá los productos cargados.
+     * @param shopManager El gestor de tiendas que recibirá las tiendas cargadas.
+     */
+    public WarmUpManager(ProductManager productManager, ShopManager shopManager) {
+        this.productManager = productManager;
+        this.shopManager = shopManager;
+        this.phases = new LinkedHashMap<>();
+    }
+
+    /**
+     * Lanza la carga de productos y tiendas en hilos de fondo y vuelve inmediatamente.
+     */
+    public synchronized void start() {
+        if (completion != null) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        startNanos = System.nanoTime();
+        productManager.deferSavesUntilLoaded();
+        shopManager.deferSavesUntilLoaded();
+        CompletableFuture<Void> products = CompletableFuture.runAsync(this::loadProducts, executor);
+        CompletableFuture<Void> shops = CompletableFuture.runAsync(this::loadShops, executor);
+        completion = CompletableFuture.allOf(products, shops).whenComplete((ignored, error) -> {
+            totalMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            executor.shutdown();
+        });
+    }
+
+    /**
+     * Indica si la precarga ya ha terminado, con o sin errores.
+     * @return true si ha terminado, false si no ha empezado o sigue en curso.
+     */
+    public synchronized boolean isDone() {
+        return completion != null && completion.isDone();
+    }
+
+    /**
+     * Ejecuta una acción cuando la precarga termine, con o sin errores. Si ya ha terminado se ejecuta enseguida.
+     * @param action Acción a ejecutar.
+     */
+    public synchronized void whenDone(Runnable action) {
+        if (completion == null) {
+            throw new IllegalStateException("Warm-up has not been started");
+        }
+        completion.whenComplete((ignored, error) -> action.run());
+    }
+
+    /**
+     * Bloquea hasta que la precarga termine.
+     */
+    public void await() {
+        CompletableFuture<Void> future;
+        synchronized (this) {
+            future = completion;
+        }
+        if (future != null) {
+            future.exceptionally(error -> null).join();
+        }
+    }
+
+    /**
+     * Devuelve un resumen con los tiempos de cada fase de la precarga.
+     * @return Texto con una línea por fase y el tiempo total.
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder("\nWarm-up finished in ").append(totalMillis).append(" ms\n");
+        synchronized (phases) {
+            for (Map.Entry<String, String> phase : phases.entrySet()) {
+                report.append("\t- ").append(phase.getKey()).append(": ").append(phase.getValue()).append("\n");
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * Carga los productos y los entrega al gestor de productos, midiendo la lectura y la integración por separado.
+     */
+    private void loadProducts() {
+        long start = System.nanoTime();
+        try {
+            ArrayList<Product> products = productManager.fetchProducts();
+            long loaded = System.nanoTime();
+            recordPhase("products load", start, loaded, products.size() + " items");
+            productManager.replaceProductList(products);
+            recordPhase("products merge", loaded, System.nanoTime(), null);
+        } catch (Exception e) {
+            recordPhase("products load", start, System.nanoTime(), "ERROR " + e.getMessage());
+            productManager.resumeSaves();
+        }
+    }
+
+    /**
+     * Carga las tiendas y las entrega al gestor de tiendas, midiendo la lectura y la integración por separado.
+     */
+    private void loadShops() {
+        long start = System.nanoTime();
+        try {
+            ArrayList<Shop> shops = shopManager.fetchShops();
+            long loaded = System.nanoTime();
+            recordPhase("shops load", start, loaded, shops.size() + " items");
+            shopManager.replaceShopList(shops);
+            recordPhase("shops merge", loaded, System.nanoTime(), null);
+        } catch (Exception e) {
+            recordPhase("shops load", start, System.nanoTime(), "ERROR " + e.getMessage());
+            shopManager.resumeSaves();
+        }
+    }
+
+    /**
+     * Anota la duración de una fase.
+     * @param name Nombre de la fase.
+     * @param from Instante de inicio en nanosegundos.
+     * @param to Instante de fin en nanosegundos.
+     * @param detail Información adicional de la fase, o null.
+     */
+    private void recordPhase(String name, long from, long to, String detail) {
+        String value = ((to - from) / 1_000_000) + " ms" + (detail != null ? " (" + detail + ")" : "");
+        synchronized (phases) {
+            phases.put(name, value);
+        }
+    }
+}
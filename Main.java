@@ -1,26 +1,34 @@
+import business.SyncManager;
+import business.WarmUpManager;
 import business.product.ProductManager;
 import business.shop.ShopManager;
+import metrics.ActionAccounting;
 import persistence.ApiHelper;
-import persistence.ProductApiJsonDAO;
 import presentation.ConsoleUIManager;
 import presentation.Controller;
+import presentation.ScriptRunner;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * La clase Main sirve como punto de entrada para la aplicación elCofre Digital Shopping Experiences.
  * Inicializa los componentes necesarios y lanza la aplicación.
  */
 public class Main {
+    private static final long SYNC_PERIOD_SECONDS = 30;
+    private static final String CALLS_REPORT_PROPERTY = "elcofre.calls.report";
     /**
      * El método principal de la aplicación, responsable de iniciar elCofre Digital Shopping Experiences.
      *
-     * @param args Los argumentos de línea de comandos (sin usar en esta aplicación).
+     * @param args Los argumentos de línea de comandos. Con {@code --script <fichero>} se ejecutan las órdenes del
+     *             fichero con ScriptRunner en lugar de abrir los menús.
      */
     public static void main(String[] args) {
 
         ConsoleUIManager uiManager = new ConsoleUIManager();
         uiManager.showPrincipalMessage();
+        uiManager.flush();
         ApiHelper apiHelper = new ApiHelper();
 
         if(!apiHelper.isConnected()){
@@ -31,14 +39,45 @@ public class Main {
         try {
             ProductManager productManager = new ProductManager();
             ShopManager shopManager = new ShopManager();
-            ProductApiJsonDAO ProductApiJsonDAO = new ProductApiJsonDAO();
+            SyncManager syncManager = new SyncManager(productManager, shopManager, apiHelper);
+            WarmUpManager warmUpManager = new WarmUpManager(productManager, shopManager);
+            warmUpManager.start();
+            warmUpManager.whenDone(() -> syncManager.start(SYNC_PERIOD_SECONDS));
 
-            Controller controller = new Controller(uiManager, productManager, shopManager, apiHelper, ProductApiJsonDAO);
-            controller.run();
+            Path script = getScriptPath(args);
+            if (script != null) {
+                warmUpManager.await();
+                new ScriptRunner(uiManager, productManager, shopManager).run(script);
+            } else {
+                Controller controller = new Controller(uiManager, productManager, shopManager, warmUpManager);
+                controller.run();
+            }
+            syncManager.stop();
+            warmUpManager.await();
+            syncManager.syncNow();
+            if (Boolean.getBoolean(CALLS_REPORT_PROPERTY)) {
+                uiManager.showMessage(ActionAccounting.formatSummary());
+            }
         } catch (FileNotFoundException fileNotFoundException) {
             uiManager.showMessage("\n\nVerifying local files...\nError: The products.json file can’t be accessed.\n\nShutting down...");
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            uiManager.flush();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Busca la opción --script entre los argumentos.
+     * @param args Los argumentos de línea de comandos.
+     * @return Ruta del fichero de órdenes, o null si no se ha indicado.
+     */
+    private static Path getScriptPath(String[] args) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--script")) {
+                return Path.of(args[i + 1]);
+            }
+        }
+        return null;
+    }
+}
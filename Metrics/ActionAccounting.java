@@ -0,0 +1,260 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contabiliza las llamadas a la API según la acción que las ha provocado. El Controller abre un ámbito por cada
+ * acción del usuario; ApiHelper anota en el ámbito del hilo actual cada llamada, sus bytes y su duración, y al cerrar
+ * el ámbito los totales se acumulan en el resumen de la acción. Las llamadas hechas fuera de cualquier acción se
+ * agrupan en "(no action)", una ejecución por llamada.
+ * Los cambios que una acción deja pendientes se envían después, desde la sincronización: quien los registra guarda la
+ * ejecución en curso (current) y la sincronización le carga las llamadas de cada cambio con chargeTo, así que cuentan
+ * para la acción que los provocó y para el presupuesto de esa misma ejecución.
+ * Cada acción puede tener un presupuesto de llamadas: {@code elcofre.calls.budget} fija el de todas y
+ * {@code elcofre.calls.budget.<acción>} el de una en concreto. Con {@code elcofre.calls.strict=true}, la llamada que
+ * supera el presupuesto lanza CallBudgetExceededException; si no, solo se cuenta en el resumen.
+ */
+public final class ActionAccounting {
+    private static final String UNTAGGED = "(no action)";
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+    private static final ConcurrentHashMap<String, ActionSummary> SUMMARIES = new ConcurrentHashMap<>();
+
+    private ActionAccounting() {
+    }
+
+    /**
+     * Empieza una acción en el hilo actual, aplicando su presupuesto.
+     * @param action Nombre de la acción.
+     * @return Ámbito que hay que cerrar al terminar la acción.
+     */
+    public static Scope begin(String action) {
+        return begin(action, true);
+    }
+
+    /**
+     * Empieza una acción en el hilo actual. Las acciones anidadas se contabilizan aparte y, al cerrarse, vuelve a
+     * quedar activa la exterior.
+     * @param action Nombre de la acción.
+     * @param enforceBudget false para acciones de fondo, como la sincronización, que no deben fallar por presupuesto.
+     * @return Ámbito que hay que cerrar al terminar la acción.
+     */
+    public static Scope begin(String action, boolean enforceBudget) {
+        Scope scope = new Scope(action, enforceBudget ? budgetOf(action) : Integer.MAX_VALUE, CURRENT.get(), true, null);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Obtiene la ejecución en curso en el hilo actual, para cargarle más tarde las llamadas que provoque.
+     * @return Ámbito de la acción en curso, o null si no hay ninguna.
+     */
+    public static Scope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Carga a la ejecución de una acción, aunque ya haya terminado, las llamadas que se hagan en el hilo actual hasta
+     * cerrar el ámbito devuelto. Cuentan para el presupuesto de esa ejecución y se suman al resumen de su acción sin
+     * contar una ejecución más; en modo estricto, la llamada que lo supera lanza CallBudgetExceededException.
+     * @param origin Ejecución que ha provocado las llamadas, o null para cargarlas a la acción en curso.
+     * @return Ámbito que hay que cerrar al terminar las llamadas.
+     */
+    public static Scope chargeTo(Scope origin) {
+        Scope parent = CURRENT.get();
+        Scope target = origin != null ? origin : parent;
+        if (target != null && target.origin != null) {
+            target = target.origin;
+        }
+        Scope scope = target != null
+                ? new Scope(target.action, target.budget, parent, true, target)
+                : new Scope(UNTAGGED, Integer.MAX_VALUE, null, true, null);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Obtiene el ámbito donde anotar una llamada: el de la acción en curso o, si no hay ninguna, uno nuevo para
+     * "(no action)" que quien llama debe cerrar.
+     * @return Ámbito de la llamada.
+     */
+    public static Scope currentOrUntagged() {
+        Scope scope = CURRENT.get();
+        return scope != null ? scope : new Scope(UNTAGGED, Integer.MAX_VALUE, null, false, null);
+    }
+
+    /**
+     * Obtiene los resúmenes de todas las acciones, ordenados por número de llamadas.
+     * @return Resúmenes de las acciones.
+     */
+    public static ArrayList<ActionSummary> getSummaries() {
+        ArrayList<ActionSummary> summaries = new ArrayList<>(SUMMARIES.values());
+        summaries.sort(Comparator.comparingLong(ActionSummary::getCalls).reversed());
+        return summaries;
+    }
+
+    /**
+     * Da formato de tabla a los resúmenes.
+     * @return Texto con una fila por acción.
+     */
+    public static String formatSummary() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%n%-28s %6s %7s %9s %11s %10s %7s%n", "action", "runs", "calls", "max/run", "bytes", "remote ms", "over"));
+        for (ActionSummary summary : getSummaries()) {
+            text.append(String.format("%-28s %6d %7d %9d %11d %10.1f %7d%n", summary.getAction(), summary.getExecutions(),
+                    summary.getCalls(), summary.getMaxCallsPerExecution(), summary.getBytes(), summary.getRemoteMillis(),
+                    summary.getBudgetExceeded()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Obtiene el presupuesto configurado para una acción.
+     * @param action Nombre de la acción.
+     * @return Número máximo de llamadas, o Integer.MAX_VALUE si no hay límite.
+     */
+    private static int budgetOf(String action) {
+        String value = System.getProperty("elcofre.calls.budget." + action, System.getProperty("elcofre.calls.budget"));
+        if (value == null) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Obtiene el resumen de una acción, creándolo y publicándolo por JMX la primera vez.
+     * @param action Nombre de la acción.
+     * @return Resumen de la acción.
+     */
+    private static ActionSummary summaryOf(String action) {
+        return SUMMARIES.computeIfAbsent(action, name -> {
+            ActionSummary summary = new ActionSummary(name);
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(summary, new ObjectName("elcofre:type=Action,name=" + ObjectName.quote(name)));
+            } catch (JMException e) {
+                // El resumen sigue disponible desde getSummaries.
+            }
+            return summary;
+        });
+    }
+
+    /**
+     * Ejecución de una acción, o llamadas cargadas más tarde a una ejecución (ver chargeTo). Las llamadas se pueden
+     * anotar desde otros hilos (por ejemplo, los GET duplicados), por eso los contadores son atómicos.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final String action;
+        private final int budget;
+        private final Scope parent;
+        private final boolean installed;
+        private final Scope origin;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong chargedCalls = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+        private final AtomicBoolean overBudgetCounted = new AtomicBoolean();
+        private volatile boolean overBudget;
+
+        /**
+         * Constructor.
+         * @param action Nombre de la acción.
+         * @param budget Número máximo de llamadas.
+         * @param parent Ámbito que estaba activo antes, o null.
+         * @param installed true si el ámbito está instalado como el actual del hilo.
+         * @param origin Ejecución a la que se cargan las llamadas, o null si el ámbito es una ejecución.
+         */
+        private Scope(String action, int budget, Scope parent, boolean installed, Scope origin) {
+            this.action = action;
+            this.budget = budget;
+            this.parent = parent;
+            this.installed = installed;
+            this.origin = origin;
+        }
+
+        /**
+         * Anota el inicio de una llamada y comprueba el presupuesto de la ejecución, contando también las llamadas
+         * que se le han cargado después.
+         * @throws CallBudgetExceededException En modo estricto, si la llamada supera el presupuesto.
+         */
+        public void beginCall() {
+            calls.incrementAndGet();
+            if (origin != null) {
+                origin.chargedCalls.incrementAndGet();
+                origin.checkBudget();
+            } else {
+                checkBudget();
+            }
+        }
+
+        /**
+         * Comprueba si la ejecución ha superado su presupuesto con la última llamada.
+         * @throws CallBudgetExceededException En modo estricto, si lo ha superado.
+         */
+        private void checkBudget() {
+            if (calls.get() + chargedCalls.get() > budget) {
+                overBudget = true;
+                if (Boolean.getBoolean("elcofre.calls.strict")) {
+                    throw new CallBudgetExceededException(action, budget);
+                }
+            }
+        }
+
+        /**
+         * Anota los bytes de una solicitud HTTP de la llamada en curso.
+         * @param count Bytes enviados más recibidos.
+         */
+        public void addBytes(long count) {
+            bytes.addAndGet(count);
+        }
+
+        /**
+         * Anota el final de una llamada.
+         * @param elapsedNanos Duración de la llamada.
+         */
+        public void endCall(long elapsedNanos) {
+            nanos.addAndGet(elapsedNanos);
+        }
+
+        /**
+         * Indica si el ámbito está instalado en el hilo; los de "(no action)" no lo están y los cierra quien los pide.
+         * @return true si es el ámbito de una acción.
+         */
+        public boolean isAction() {
+            return installed;
+        }
+
+        /**
+         * Termina la ejecución o las llamadas cargadas: acumula sus totales en el resumen de la acción y restaura el
+         * ámbito anterior. Una ejecución que supera su presupuesto se cuenta una sola vez, la primera que se ve.
+         */
+        @Override
+        public void close() {
+            if (installed) {
+                if (parent != null) {
+                    CURRENT.set(parent);
+                } else {
+                    CURRENT.remove();
+                }
+            }
+            if (origin != null) {
+                boolean newlyOver = origin.overBudget && origin.overBudgetCounted.compareAndSet(false, true);
+                summaryOf(action).addCharged(calls.get(), bytes.get(), nanos.get(),
+                        origin.calls.get() + origin.chargedCalls.get(), newlyOver);
+            } else {
+                boolean newlyOver = overBudget && overBudgetCounted.compareAndSet(false, true);
+                summaryOf(action).add(calls.get(), bytes.get(), nanos.get(), newlyOver);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Totales de las llamadas a la API hechas por todas las ejecuciones de una acción.
+ */
+public class ActionSummary implements ActionSummaryMBean {
+    private final String action;
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong maxCalls = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicLong budgetExceeded = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param action Nombre de la acción.
+     */
+    ActionSummary(String action) {
+        this.action = action;
+    }
+
+    /**
+     * Añade una ejecución terminada.
+     * @param executionCalls Llamadas hechas.
+     * @param executionBytes Bytes enviados y recibidos.
+     * @param executionNanos Tiempo pasado en llamadas a la API.
+     * @param overBudget true si ha superado su presupuesto.
+     */
+    void add(long executionCalls, long executionBytes, long executionNanos, boolean overBudget) {
+        executions.incrementAndGet();
+        calls.addAndGet(executionCalls);
+        maxCalls.accumulateAndGet(executionCalls, Math::max);
+        bytes.addAndGet(executionBytes);
+        nanos.addAndGet(executionNanos);
+        if (overBudget) {
+            budgetExceeded.incrementAndGet();
+        }
+    }
+
+    /**
+     * Añade llamadas hechas más tarde por cuenta de una ejecución, por ejemplo al sincronizar sus cambios, sin
+     * contar una ejecución más.
+     * @param chargedCalls Llamadas cargadas.
+     * @param chargedBytes Bytes enviados y recibidos.
+     * @param chargedNanos Tiempo pasado en esas llamadas.
+     * @param executionCalls Llamadas de la ejecución contando las cargadas hasta ahora.
+     * @param overBudget true si la ejecución acaba de superar su presupuesto.
+     */
+    void addCharged(long chargedCalls, long chargedBytes, long chargedNanos, long executionCalls, boolean overBudget) {
+        calls.addAndGet(chargedCalls);
+        maxCalls.accumulateAndGet(executionCalls, Math::max);
+        bytes.addAndGet(chargedBytes);
+        nanos.addAndGet(chargedNanos);
+        if (overBudget) {
+            budgetExceeded.incrementAndGet();
+        }
+    }
+
+    /**
+     * Obtiene el nombre de la acción.
+     * @return Nombre de la acción.
+     */
+    public String getAction() {
+        return action;
+    }
+
+    @Override
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public long getMaxCallsPerExecution() {
+        return maxCalls.get();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public double getRemoteMillis() {
+        return nanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public long getBudgetExceeded() {
+        return budgetExceeded.get();
+    }
+}
@@ -0,0 +1,18 @@
+package metrics;
+
+/**
+ * Atributos JMX del resumen de llamadas a la API de una acción.
+ */
+public interface ActionSummaryMBean {
+    long getExecutions();
+
+    long getCalls();
+
+    long getMaxCallsPerExecution();
+
+    long getBytes();
+
+    double getRemoteMillis();
+
+    long getBudgetExceeded();
+}
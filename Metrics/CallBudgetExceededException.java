@@ -0,0 +1,38 @@
+package metrics;
+
+/**
+ * Se lanza en modo estricto cuando una acción intenta hacer más llamadas a la API de las que permite su presupuesto.
+ */
+public class CallBudgetExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String action;
+    private final int budget;
+
+    /**
+     * Constructor.
+     * @param action Acción que ha superado el presupuesto.
+     * @param budget Número máximo de llamadas permitidas.
+     */
+    public CallBudgetExceededException(String action, int budget) {
+        super("Action \"" + action + "\" exceeded its budget of " + budget + " remote calls");
+        this.action = action;
+        this.budget = budget;
+    }
+
+    /**
+     * Obtiene la acción que ha superado el presupuesto.
+     * @return Nombre de la acción.
+     */
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * Obtiene el presupuesto superado.
+     * @return Número máximo de llamadas permitidas.
+     */
+    public int getBudget() {
+        return budget;
+    }
+}
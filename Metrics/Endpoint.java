@@ -0,0 +1,100 @@
+package metrics;
+
+/**
+ * Plantillas de los endpoints de la API. Las URL se clasifican recorriendo sus segmentos sin crear cadenas nuevas,
+ * así que se puede hacer en cada solicitud sin reservar memoria.
+ */
+public enum Endpoint {
+    ROOT("/"),
+    PRODUCTS("/{group}/products"),
+    PRODUCT("/{group}/products/{index}"),
+    SHOPS("/{group}/shops"),
+    SHOP("/{group}/shops/{index}"),
+    SHOP_CATALOGUE("/{group}/shops/{index}/catalogue"),
+    SHOP_CATALOGUE_ENTRY("/{group}/shops/{index}/catalogue/{index}"),
+    OTHER("other");
+
+    private final String template;
+
+    Endpoint(String template) {
+        this.template = template;
+    }
+
+    /**
+     * Obtiene la plantilla del endpoint.
+     * @return Plantilla, por ejemplo /{group}/products/{index}.
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Clasifica una URL completa. Se busca el primer segmento products o shops y se cuentan los que le siguen,
+     * de modo que el prefijo de la URL base (por ejemplo /dpoo) no importa.
+     * @param url URL de la solicitud.
+     * @return Plantilla que corresponde a la URL.
+     */
+    public static Endpoint classify(String url) {
+        int scheme = url.indexOf("://");
+        int position = url.indexOf('/', scheme < 0 ? 0 : scheme + 3);
+        if (position < 0) {
+            return ROOT;
+        }
+        int end = url.indexOf('?', position);
+        if (end < 0) {
+            end = url.length();
+        }
+        int collection = -1;
+        int following = 0;
+        boolean catalogue = false;
+        int segments = 0;
+        while (position < end) {
+            int start = position + 1;
+            int next = url.indexOf('/', start);
+            if (next < 0 || next > end) {
+                next = end;
+            }
+            if (next > start) {
+                segments++;
+                if (collection == -1) {
+                    if (segmentEquals(url, start, next, "products")) {
+                        collection = 0;
+                    } else if (segmentEquals(url, start, next, "shops")) {
+                        collection = 1;
+                    }
+                } else {
+                    following++;
+                    if (following == 2) {
+                        catalogue = segmentEquals(url, start, next, "catalogue");
+                    }
+                }
+            }
+            position = next;
+        }
+        if (collection == -1) {
+            return segments <= 1 ? ROOT : OTHER;
+        }
+        if (collection == 0) {
+            return following == 0 ? PRODUCTS : following == 1 ? PRODUCT : OTHER;
+        }
+        if (following <= 1) {
+            return following == 0 ? SHOPS : SHOP;
+        }
+        if (!catalogue) {
+            return OTHER;
+        }
+        return following == 2 ? SHOP_CATALOGUE : following == 3 ? SHOP_CATALOGUE_ENTRY : OTHER;
+    }
+
+    /**
+     * Compara un segmento de la URL con un literal sin extraerlo.
+     * @param url URL completa.
+     * @param start Inicio del segmento.
+     * @param end Fin (exclusivo) del segmento.
+     * @param literal Texto esperado.
+     * @return true si el segmento es exactamente el literal.
+     */
+    private static boolean segmentEquals(String url, int start, int end, String literal) {
+        return end - start == literal.length() && url.regionMatches(start, literal, 0, literal.length());
+    }
+}
@@ -0,0 +1,24 @@
+package metrics;
+
+/**
+ * Métodos HTTP que se distinguen en las estadísticas de solicitudes.
+ */
+public enum HttpMethod {
+    GET, POST, PUT, DELETE, HEAD, OTHER;
+
+    /**
+     * Obtiene el método correspondiente a un nombre sin crear objetos.
+     * @param method Nombre del método, por ejemplo GET.
+     * @return Método, u OTHER si no es uno de los conocidos.
+     */
+    public static HttpMethod of(String method) {
+        return switch (method) {
+            case "GET" -> GET;
+            case "POST" -> POST;
+            case "PUT" -> PUT;
+            case "DELETE" -> DELETE;
+            case "HEAD" -> HEAD;
+            default -> OTHER;
+        };
+    }
+}
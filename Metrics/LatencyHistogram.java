@@ -0,0 +1,143 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias sin bloqueos ni reservas de memoria al registrar. Los valores (en nanosegundos) se agrupan
+ * en cubos logarítmicos con 8 subdivisiones por potencia de dos, lo que da un error relativo máximo del 12,5 %,
+ * y cubre hasta unos 18 minutos; los valores mayores van al último cubo.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT + 1) * SUB_BUCKETS;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Registra un valor.
+     * @param nanos Duración en nanosegundos; los negativos cuentan como 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Obtiene el número de valores registrados.
+     * @return Número de valores.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Obtiene la media de los valores registrados.
+     * @return Media en nanosegundos, o 0 si no hay valores.
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / (double) n;
+    }
+
+    /**
+     * Obtiene el mayor valor registrado.
+     * @return Máximo en nanosegundos.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Calcula un percentil aproximado a partir de los cubos.
+     * @param percentile Percentil entre 0 y 1 (por ejemplo 0.999).
+     * @return Valor aproximado en nanosegundos, o 0 si no hay valores.
+     */
+    public long percentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(valueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Suma a este histograma todos los valores de otro, por ejemplo para juntar los que han registrado varios hilos
+     * por separado.
+     * @param other Histograma a sumar.
+     */
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucket = other.counts.get(i);
+            if (bucket != 0) {
+                counts.addAndGet(i, bucket);
+            }
+        }
+        count.addAndGet(other.count.get());
+        sum.addAndGet(other.sum.get());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * Pone a cero el histograma. Los valores registrados a la vez que se reinicia pueden perderse.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Calcula el cubo de un valor.
+     * @param value Valor no negativo.
+     * @return Índice del cubo.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Calcula el valor representativo (el punto medio) de un cubo.
+     * @param bucket Índice del cubo.
+     * @return Valor en nanosegundos.
+     */
+    private static long valueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lower = (1L << exponent) + subBucket * width;
+        return lower + width / 2;
+    }
+}
@@ -0,0 +1,112 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Punto central de la instrumentación. Guarda estadísticas por método HTTP y plantilla de endpoint y por operación
+ * de los gestores, y las publica como MBeans en el dominio {@code elcofre} la primera vez que se usan, de modo que
+ * se pueden consultar con jconsole o VisualVM.
+ * Registrar una medida no reserva memoria: las estadísticas se crean al cargar la clase y solo se actualizan
+ * contadores atómicos.
+ */
+public final class Metrics {
+    private static final String DOMAIN = "elcofre";
+    private static final RequestStats[][] REQUESTS = new RequestStats[HttpMethod.values().length][Endpoint.values().length];
+    private static final TimerStats[] OPERATIONS = new TimerStats[Operation.values().length];
+
+    static {
+        for (HttpMethod method : HttpMethod.values()) {
+            for (Endpoint endpoint : Endpoint.values()) {
+                REQUESTS[method.ordinal()][endpoint.ordinal()] = new RequestStats();
+            }
+        }
+        for (Operation operation : Operation.values()) {
+            OPERATIONS[operation.ordinal()] = new TimerStats();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Registra una solicitud HTTP.
+     * @param method Método HTTP.
+     * @param url URL completa de la solicitud.
+     * @param startNanos Instante de inicio (System.nanoTime).
+     * @param bytesSent Bytes enviados en el cuerpo.
+     * @param bytesReceived Bytes recibidos en el cuerpo.
+     * @param failed true si la solicitud ha fallado.
+     */
+    public static void recordRequest(String method, String url, long startNanos, long bytesSent, long bytesReceived, boolean failed) {
+        HttpMethod httpMethod = HttpMethod.of(method);
+        Endpoint endpoint = Endpoint.classify(url);
+        RequestStats stats = REQUESTS[httpMethod.ordinal()][endpoint.ordinal()];
+        stats.record(System.nanoTime() - startNanos, bytesSent, bytesReceived, failed);
+        if (!stats.registered) {
+            register(stats, "type=Endpoint,method=" + httpMethod + ",endpoint=" + ObjectName.quote(endpoint.getTemplate()));
+        }
+    }
+
+    /**
+     * Registra una ejecución correcta de una operación.
+     * @param operation Operación.
+     * @param startNanos Instante de inicio (System.nanoTime).
+     */
+    public static void recordOperation(Operation operation, long startNanos) {
+        recordOperation(operation, startNanos, false);
+    }
+
+    /**
+     * Registra una ejecución de una operación.
+     * @param operation Operación.
+     * @param startNanos Instante de inicio (System.nanoTime).
+     * @param failed true si la operación ha fallado.
+     */
+    public static void recordOperation(Operation operation, long startNanos, boolean failed) {
+        TimerStats stats = OPERATIONS[operation.ordinal()];
+        stats.record(System.nanoTime() - startNanos, failed);
+        if (!stats.registered) {
+            register(stats, "type=Operation,name=" + operation.getDisplayName());
+        }
+    }
+
+    /**
+     * Obtiene las estadísticas de un método y endpoint.
+     * @param method Método HTTP.
+     * @param endpoint Plantilla del endpoint.
+     * @return Estadísticas acumuladas.
+     */
+    public static RequestStatsMBean getRequestStats(HttpMethod method, Endpoint endpoint) {
+        return REQUESTS[method.ordinal()][endpoint.ordinal()];
+    }
+
+    /**
+     * Obtiene las estadísticas de una operación.
+     * @param operation Operación.
+     * @return Estadísticas acumuladas.
+     */
+    public static TimerStatsMBean getOperationStats(Operation operation) {
+        return OPERATIONS[operation.ordinal()];
+    }
+
+    /**
+     * Publica unas estadísticas en el servidor de MBeans de la plataforma. Solo ocurre una vez por estadística.
+     * @param stats Estadísticas a publicar.
+     * @param properties Propiedades del nombre del MBean.
+     */
+    private static synchronized void register(TimerStats stats, String properties) {
+        if (stats.registered) {
+            return;
+        }
+        stats.registered = true;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(stats, new ObjectName(DOMAIN + ":" + properties));
+        } catch (JMException e) {
+            // Sin JMX las estadísticas siguen disponibles desde getRequestStats y getOperationStats.
+        }
+    }
+}
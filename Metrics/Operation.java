@@ -0,0 +1,38 @@
+package metrics;
+
+/**
+ * Operaciones de los gestores cuyo tiempo se mide.
+ */
+public enum Operation {
+    PRODUCT_CREATE("ProductManager.createProduct"),
+    PRODUCT_LOOKUP("ProductManager.getProductByName"),
+    PRODUCT_BATCH_LOOKUP("ProductManager.getProductsByNames"),
+    PRODUCT_SEARCH("ProductManager.searchProducts"),
+    PRODUCT_TOP_RATED("ProductManager.getTopRated"),
+    PRODUCT_REMOVE("ProductManager.removeProduct"),
+    PRODUCT_REVIEW("ProductManager.addProductReview"),
+    NAME_COMPLETE("CompletionIndex.complete"),
+    SHOP_CREATE("ShopManager.createShop"),
+    SHOP_LOOKUP("ShopManager.findShopByName"),
+    OFFER_LOOKUP("ShopManager.getOffers"),
+    CATALOGUE_ADD("ShopManager.addToCatalogue"),
+    CATALOGUE_REMOVE("ShopManager.removeFromJsonCatalogue"),
+    EARNINGS_UPDATE("ShopManager.updateEarnings"),
+    CART_CHECKOUT("CartManager.checkout"),
+    SYNC("SyncManager.syncNow"),
+    REPORT_EXPORT("ReportManager.exportReport");
+
+    private final String displayName;
+
+    Operation(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Obtiene el nombre con el que se publica la operación.
+     * @return Clase y método de la operación.
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+}
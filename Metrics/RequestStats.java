@@ -0,0 +1,42 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Estadísticas de las solicitudes HTTP a un endpoint con un método concreto: las de TimerStats más los bytes
+ * enviados y recibidos (tal como viajan, es decir, comprimidos si se usa gzip).
+ */
+public class RequestStats extends TimerStats implements RequestStatsMBean {
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /**
+     * Registra una solicitud.
+     * @param nanos Duración en nanosegundos.
+     * @param sent Bytes enviados en el cuerpo.
+     * @param received Bytes recibidos en el cuerpo.
+     * @param failed true si la solicitud ha fallado.
+     */
+    void record(long nanos, long sent, long received, boolean failed) {
+        record(nanos, failed);
+        bytesSent.addAndGet(sent);
+        bytesReceived.addAndGet(received);
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        bytesSent.set(0);
+        bytesReceived.set(0);
+    }
+}
@@ -0,0 +1,10 @@
+package metrics;
+
+/**
+ * Atributos JMX de las estadísticas de un método y endpoint de la API.
+ */
+public interface RequestStatsMBean extends TimerStatsMBean {
+    long getBytesSent();
+
+    long getBytesReceived();
+}
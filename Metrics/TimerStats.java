@@ -0,0 +1,66 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Número de ejecuciones, errores e histograma de latencias de una operación.
+ */
+public class TimerStats implements TimerStatsMBean {
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+    volatile boolean registered;
+
+    /**
+     * Registra una ejecución.
+     * @param nanos Duración en nanosegundos.
+     * @param failed true si la ejecución ha fallado.
+     */
+    void record(long nanos, boolean failed) {
+        histogram.record(nanos);
+        if (failed) {
+            errors.incrementAndGet();
+        }
+    }
+
+    @Override
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return histogram.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return histogram.percentile(0.50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return histogram.percentile(0.99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP999Millis() {
+        return histogram.percentile(0.999) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return histogram.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public void reset() {
+        histogram.reset();
+        errors.set(0);
+    }
+}
@@ -0,0 +1,22 @@
+package metrics;
+
+/**
+ * Atributos JMX comunes a las estadísticas de tiempos.
+ */
+public interface TimerStatsMBean {
+    long getCount();
+
+    long getErrors();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+
+    void reset();
+}
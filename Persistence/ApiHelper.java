@@ -1,9 +1,21 @@
 package persistence;
 
+import metrics.ActionAccounting;
+import metrics.Metrics;
+
 import java.io.*;
 import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 /**
  * Define operaciones básicas de API (GET, POST, DELETE) para interactuar con un servidor remoto.
  * Incluye métodos para solicitudes HTTP y obtener datos de un grupo específico.
@@ -18,33 +30,88 @@ interface ApiOperations {
 
 /**
  * La clase ApiHelper implementa la interfaz ApiOperations y proporciona una implementación concreta para interactuar con una API remota.
+ * Las respuestas se piden comprimidas con gzip. Los cuerpos grandes de las solicitudes solo se comprimen si se activa
+ * con {@code elcofre.api.gzipRequests=true}, porque que el servidor comprima sus respuestas no significa que acepte
+ * cuerpos comprimidos; si rechaza uno con cualquier error 4xx, se vuelve a enviar sin comprimir y se deja de comprimir.
+ * Las solicitudes idempotentes (GET y PUT) se reintentan con espera exponencial y jitter, los GET lentos pueden
+ * duplicarse y cada llamada tiene un plazo total, según la RetryPolicy configurada.
+ * Los GET idénticos que coinciden en el tiempo comparten una sola solicitud; una escritura terminada hace que los
+ * GET posteriores ya no se unan a las lecturas empezadas antes de ella.
+ * Cada solicitud HTTP enviada (incluidos reintentos y duplicados) se registra en Metrics por método y endpoint, y
+ * cada llamada se anota en la acción en curso de ActionAccounting.
  */
 public class ApiHelper implements ApiOperations{
     private static final String BASE_URL = "https://balandrau.salle.url.edu/dpoo";
-    private boolean isConnected;
-    private String lastError;
+    private static final String BASE_URL_PROPERTY = "elcofre.api.url";
+    private static final int DEFAULT_TIMEOUT_MILLIS = 10000;
+    private static final int MIN_GZIP_BYTES = 1024;
+    private static final String GZIP_REQUESTS_PROPERTY = "elcofre.api.gzipRequests";
+    private static final ExecutorService HEDGE_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "api-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final SingleFlight<String> GET_FLIGHTS = new SingleFlight<>();
+    private static final AtomicLong WRITE_GENERATION = new AtomicLong();
+    private final LatencyWindow getLatencies = new LatencyWindow(128);
+    private volatile RetryPolicy retryPolicy = RetryPolicy.defaults();
+    private volatile boolean gzipRequests = Boolean.getBoolean(GZIP_REQUESTS_PROPERTY);
+    private volatile boolean isConnected;
+    private volatile String lastError;
 
     /**
      * Constructor. Verifica la conexión a la API y establece el estado de conexión.
      */
     public ApiHelper(){
-        this.isConnected = false;
+        checkConnection();
+    }
+    /**
+     * Obtiene la URL base de la API. Por defecto es la del servidor de la asignatura; con la propiedad del sistema
+     * {@code elcofre.api.url} se puede apuntar a otro servidor, por ejemplo a tools.StandInApiServer.
+     * @return URL base sin barra final.
+     */
+    public static String getBaseUrl() {
+        String url = System.getProperty(BASE_URL_PROPERTY, BASE_URL).trim();
+        while (url.endsWith("/")) {
+            url = url.substring(0, url.length() - 1);
+        }
+        return url;
+    }
+    /**
+     * Vuelve a comprobar la conexión con la API y actualiza el estado de conexión y el último error.
+     * @return true si la API responde, false en caso contrario.
+     */
+    public boolean checkConnection() {
+        boolean connected = false;
+        long start = System.nanoTime();
+        String baseUrl = getBaseUrl();
+        ActionAccounting.Scope scope = ActionAccounting.currentOrUntagged();
+        scope.beginCall();
         try {
-            URL url = new URL(BASE_URL);
+            URL url = new URL(baseUrl);
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
             connection.setRequestMethod("HEAD");
+            connection.setConnectTimeout(DEFAULT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(DEFAULT_TIMEOUT_MILLIS);
 
             int responseCode = connection.getResponseCode();
             if (responseCode == HttpURLConnection.HTTP_OK) {
-                isConnected = true;
+                connected = true;
             } else {
                 lastError = "\nERROR: Server is unreachable. Response code: " + responseCode;
             }
-        } catch (MalformedURLException e) {
+        } catch (java.net.MalformedURLException e) {
             lastError = "ERROR:Malformed URL for API\n";
         } catch (IOException e) {
             lastError = "Error: The API isn’t available.\n";
         }
+        Metrics.recordRequest("HEAD", baseUrl, start, 0, 0, !connected);
+        scope.endCall(System.nanoTime() - start);
+        if (!scope.isAction()) {
+            scope.close();
+        }
+        isConnected = connected;
+        return connected;
     }
     /**
      * Comprueba si hay conexión con la API.
@@ -61,64 +128,350 @@ public class ApiHelper implements ApiOperations{
         return lastError;
     }
     /**
-     * Envía una solicitud HTTP a la API.
+     * Establece la política de reintentos, duplicación y plazos usada en las siguientes solicitudes.
+     * @param retryPolicy Nueva política.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+    /**
+     * Envía una solicitud HTTP a la API y la anota como una llamada de la acción en curso.
      * @param apiUrl URL completa de la API a la que se envía la solicitud.
-     * @param method Método HTTP de la solicitud (GET, POST, DELETE).
-     * @param body Cuerpo de la solicitud para métodos POST y DELETE, si es necesario.
-     * @throws ApiException Si la solicitud falla.
+     * @param method Método HTTP de la solicitud (GET, POST, PUT, DELETE).
+     * @param body Cuerpo de la solicitud para métodos POST, PUT y DELETE, si es necesario.
+     * @return Cuerpo de la respuesta.
+     * @throws ApiException Si la solicitud falla tras agotar los intentos o el plazo.
      */
-
     private String sendHttpRequest(String apiUrl, String method, String body) throws ApiException {
+        ActionAccounting.Scope scope = ActionAccounting.currentOrUntagged();
+        scope.beginCall();
+        long start = System.nanoTime();
+        try {
+            return sendWithRetries(apiUrl, method, body, scope);
+        } finally {
+            scope.endCall(System.nanoTime() - start);
+            if (!scope.isAction()) {
+                scope.close();
+            }
+        }
+    }
+
+    /**
+     * Envía una solicitud HTTP a la API aplicando la política de reintentos. Solo GET y PUT se reintentan:
+     * POST no es idempotente y DELETE trabaja por posición, así que repetirlo podría borrar otro elemento.
+     * @param apiUrl URL completa de la API a la que se envía la solicitud.
+     * @param method Método HTTP de la solicitud (GET, POST, PUT, DELETE).
+     * @param body Cuerpo de la solicitud para métodos POST, PUT y DELETE, si es necesario.
+     * @param scope Acción a la que se anotan los bytes de cada intento.
+     * @return Cuerpo de la respuesta.
+     * @throws ApiException Si la solicitud falla tras agotar los intentos o el plazo.
+     */
+    private String sendWithRetries(String apiUrl, String method, String body, ActionAccounting.Scope scope) throws ApiException {
+        RetryPolicy policy = retryPolicy;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getDeadlineMillis());
+        boolean idempotent = "GET".equals(method) || "PUT".equals(method);
+        int attempt = 0;
+        while (true) {
+            try {
+                if ("GET".equals(method) && policy.isHedgingEnabled()) {
+                    return sendHedged(apiUrl, policy, deadline, scope);
+                }
+                return sendOnce(apiUrl, method, body, deadline, scope);
+            } catch (ApiException e) {
+                attempt++;
+                if (!idempotent || !isRetriable(e) || attempt >= policy.getMaxAttempts()) {
+                    throw e;
+                }
+                long delay = policy.backoffMillis(attempt);
+                if (TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()) <= delay) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new ConnectionInterruptedException(apiUrl, new InterruptedIOException("Interrupted while waiting to retry"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Envía un GET y, si no ha respondido cuando se alcanza el percentil de latencia configurado, lanza un
+     * segundo GET idéntico y se queda con la primera respuesta correcta.
+     * @param apiUrl URL completa de la API.
+     * @param policy Política con el percentil a usar.
+     * @param deadline Instante límite (System.nanoTime) de la llamada.
+     * @param scope Acción a la que se anotan los bytes.
+     * @return Cuerpo de la primera respuesta correcta.
+     * @throws ApiException Si fallan todas las solicitudes o se agota el plazo.
+     */
+    private String sendHedged(String apiUrl, RetryPolicy policy, long deadline, ActionAccounting.Scope scope) throws ApiException {
+        long hedgeDelay = getLatencies.percentile(policy.getHedgePercentile());
+        if (hedgeDelay < 0) {
+            return sendOnce(apiUrl, "GET", null, deadline, scope);
+        }
+        ExecutorCompletionService<String> completion = new ExecutorCompletionService<>(HEDGE_EXECUTOR);
+        List<Future<String>> requests = new ArrayList<>(2);
+        requests.add(completion.submit(() -> sendOnce(apiUrl, "GET", null, deadline, scope)));
+        try {
+            Future<String> done = completion.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+            if (done == null) {
+                requests.add(completion.submit(() -> sendOnce(apiUrl, "GET", null, deadline, scope)));
+            }
+            ApiException lastError = null;
+            for (int pending = requests.size(); pending > 0; pending--) {
+                if (done == null) {
+                    done = completion.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        throw new ConnectionInterruptedException(apiUrl, new SocketTimeoutException("Deadline exceeded"));
+                    }
+                }
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    lastError = e.getCause() instanceof ApiException apiException
+                            ? apiException
+                            : new ApiException("Failed to make HTTP request to " + apiUrl, e.getCause(), apiUrl);
+                }
+                done = null;
+            }
+            throw lastError;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionInterruptedException(apiUrl, new InterruptedIOException("Interrupted while waiting for response"));
+        } finally {
+            for (Future<String> request : requests) {
+                request.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Envía una única solicitud HTTP, con los tiempos de espera recortados al plazo restante, y traduce el
+     * resultado a las excepciones de ApiException.
+     * @param apiUrl URL completa de la API.
+     * @param method Método HTTP de la solicitud.
+     * @param body Cuerpo de la solicitud, o null.
+     * @param deadline Instante límite (System.nanoTime) de la llamada.
+     * @param scope Acción a la que se anotan los bytes.
+     * @return Cuerpo de la respuesta.
+     * @throws ApiException Si la solicitud falla o el servidor responde con un código de error.
+     */
+    private String sendOnce(String apiUrl, String method, String body, long deadline, ActionAccounting.Scope scope) throws ApiException {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+            throw new ConnectionInterruptedException(apiUrl, new SocketTimeoutException("Deadline exceeded"));
+        }
+        int timeout = (int) Math.min(DEFAULT_TIMEOUT_MILLIS, remaining);
+        long start = System.nanoTime();
+        long bytesSent = 0;
+        CountingInputStream received = null;
+        boolean failed = true;
         HttpURLConnection connection = null;
         try {
-            URL url = new URL(apiUrl);
+            URL url = new URI(apiUrl).toURL();
             connection = (HttpURLConnection) url.openConnection();
             connection.setRequestMethod(method);
             connection.setRequestProperty("Content-Type", "application/json");
-            connection.setConnectTimeout(10000);
-            connection.setReadTimeout(10000);
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
 
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+
+            boolean compressed = false;
             if (("POST".equals(method) || "PUT".equals(method) || "DELETE".equals(method)) && body != null && !body.isEmpty()) {
+                byte[] payload = body.getBytes(StandardCharsets.UTF_8);
+                if (gzipRequests && payload.length >= MIN_GZIP_BYTES) {
+                    payload = gzip(payload);
+                    compressed = true;
+                    connection.setRequestProperty("Content-Encoding", "gzip");
+                }
                 connection.setDoOutput(true);
+                connection.setFixedLengthStreamingMode(payload.length);
                 try (OutputStream os = connection.getOutputStream()) {
-                    os.write(body.getBytes("UTF-8"));
+                    os.write(payload);
                     os.flush();
                 }
+                bytesSent = payload.length;
             }
 
             int responseCode = connection.getResponseCode();
-
-            if (responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_NO_CONTENT) {
-                try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"))) {
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        response.append(line);
-                    }
-                    return response.toString();
-                }
-            } else {
-                try (BufferedReader br = new BufferedReader(new InputStreamReader(connection.getErrorStream(), "UTF-8"))) {
-                    StringBuilder errorResponse = new StringBuilder();
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        errorResponse.append(line);
-                    }
-                } catch (ApiException ignored) {
+            String contentEncoding = connection.getContentEncoding();
+            if (responseCode >= 200 && responseCode < 300) {
+                received = new CountingInputStream(connection.getInputStream());
+                String response = readBody(received, contentEncoding);
+                if ("GET".equals(method)) {
+                    getLatencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
                 }
+                failed = false;
+                return response;
+            }
+            InputStream errorStream = connection.getErrorStream();
+            if (errorStream != null) {
+                received = new CountingInputStream(errorStream);
+            }
+            readBody(received, contentEncoding);
+            if (compressed && responseCode >= 400 && responseCode < 500) {
+                gzipRequests = false;
+                connection.disconnect();
+                connection = null;
+                return sendOnce(apiUrl, method, body, deadline, scope);
             }
-        } catch (MalformedURLException e) {
-            System.err.println("MalformedURLException: " + e.getMessage());
-            throw new ApiException("Malformed URL: " + apiUrl, e, apiUrl);
+            throw statusException(apiUrl, responseCode);
+        } catch (URISyntaxException e) {
+            throw new MalformedURLException(apiUrl, e);
+        } catch (IllegalArgumentException e) {
+            throw new MalformedURLException(apiUrl, new URISyntaxException(apiUrl, String.valueOf(e.getMessage())));
+        } catch (ApiException e) {
+            throw e;
+        } catch (InterruptedIOException e) {
+            throw new ConnectionInterruptedException(apiUrl, e);
         } catch (IOException e) {
-            System.err.println("IOException: " + e.getMessage());
-            throw new ApiException("Failed to make HTTP request to " + apiUrl, e, apiUrl);
+            throw new UnreachableServerException(apiUrl, e);
         } finally {
+            long bytesReceived = received != null ? received.getCount() : 0;
+            Metrics.recordRequest(method, apiUrl, start, bytesSent, bytesReceived, failed);
+            scope.addBytes(bytesSent + bytesReceived);
             if (connection != null) {
                 connection.disconnect();
             }
         }
-        return "";
+    }
+
+    /**
+     * Flujo que cuenta los bytes leídos, para medir el tamaño de las respuestas tal como llegan por la red.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        /**
+         * Constructor.
+         * @param in Flujo a leer.
+         */
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        /**
+         * Obtiene los bytes leídos hasta ahora.
+         * @return Número de bytes.
+         */
+        private long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Lee por completo un flujo de respuesta como texto UTF-8, descomprimiéndolo si viene en gzip.
+     * @param stream Flujo a leer, puede ser null.
+     * @param contentEncoding Valor de la cabecera Content-Encoding de la respuesta, puede ser null.
+     * @return Contenido leído, o una cadena vacía si no hay flujo.
+     * @throws IOException Si falla la lectura.
+     */
+    private String readBody(InputStream stream, String contentEncoding) throws IOException {
+        if (stream == null) {
+            return "";
+        }
+        if ("gzip".equalsIgnoreCase(contentEncoding)) {
+            stream = new GZIPInputStream(stream);
+        }
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            StringBuilder response = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                response.append(buffer, 0, read);
+            }
+            return response.toString();
+        }
+    }
+
+    /**
+     * Comprime un cuerpo de solicitud con gzip.
+     * @param payload Bytes sin comprimir.
+     * @return Bytes comprimidos.
+     * @throws IOException Si falla la compresión.
+     */
+    private byte[] gzip(byte[] payload) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, payload.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(payload);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Traduce un código de estado HTTP de error a la excepción correspondiente.
+     * 408 y 429 se tratan como indisponibilidad temporal, el resto de 4xx como solicitud incorrecta y los 5xx como API no disponible.
+     * @param apiUrl URL de la solicitud.
+     * @param statusCode Código de estado recibido.
+     * @return Excepción a lanzar.
+     */
+    private StatusCodeException statusException(String apiUrl, int statusCode) {
+        if (statusCode == 408 || statusCode == 429 || statusCode >= 500) {
+            return new UnavailableApiException(apiUrl, statusCode);
+        }
+        if (statusCode >= 400) {
+            return new IncorrectRequestException(apiUrl, statusCode);
+        }
+        return new StatusCodeException("Unexpected response status " + statusCode, statusCode, apiUrl);
+    }
+
+    /**
+     * Indica si un error es transitorio y la solicitud puede repetirse.
+     * @param e Error recibido.
+     * @return true si se puede reintentar.
+     */
+    private boolean isRetriable(ApiException e) {
+        return e instanceof ConnectionInterruptedException
+                || e instanceof UnreachableServerException
+                || e instanceof UnavailableApiException;
+    }
+
+    /**
+     * Obtiene la clave con la que se agrupan las lecturas de una URL. Incluye el número de escrituras terminadas,
+     * así que una lectura que empieza después de una escritura nunca recibe un resultado obtenido antes de ella.
+     * @param url URL de la lectura.
+     * @return Clave de agrupación.
+     */
+    static String readKey(String url) {
+        return url + '#' + WRITE_GENERATION.get();
+    }
+
+    /**
+     * Envía una solicitud que modifica datos y, al terminar (bien o mal), invalida las lecturas en curso para
+     * las siguientes llamadas.
+     * @param url URL completa de la solicitud.
+     * @param method Método HTTP de escritura.
+     * @param body Cuerpo de la solicitud, si lo hay.
+     * @return Cuerpo de la respuesta.
+     * @throws ApiException Si la solicitud falla.
+     */
+    private String sendWrite(String url, String method, String body) throws ApiException {
+        try {
+            return sendHttpRequest(url, method, body);
+        } finally {
+            WRITE_GENERATION.incrementAndGet();
+        }
     }
 
     /**
@@ -129,7 +482,7 @@ public class ApiHelper implements ApiOperations{
      */
     @Override
     public String getFromUrl(String url) throws ApiException {
-        return sendHttpRequest(url, "GET", null);
+        return GET_FLIGHTS.execute(readKey(url), () -> sendHttpRequest(url, "GET", null));
     }
     /**
      * Realiza una solicitud POST a una URL específica.
@@ -140,7 +493,7 @@ public class ApiHelper implements ApiOperations{
      */
     @Override
     public String postToUrl(String url, String body) throws ApiException {
-        return sendHttpRequest(url, "POST", body);
+        return sendWrite(url, "POST", body);
     }
     /**
      * Realiza una solicitud DELETE a una URL específica.
@@ -150,7 +503,7 @@ public class ApiHelper implements ApiOperations{
      */
     @Override
     public String deleteFromUrl(String url) throws ApiException {
-        return sendHttpRequest(url, "DELETE", null);
+        return sendWrite(url, "DELETE", null);
     }
     /**
      * Realiza una solicitud GET para obtener datos de un grupo específico desde la API.
@@ -162,8 +515,8 @@ public class ApiHelper implements ApiOperations{
     public String getFromUrlGroup(String id) throws ApiException{
         String productsEndpoint = "/products";
         String shopEndpoint = "/shops";
-        String finalUrl = BASE_URL + "/" + id + productsEndpoint;
-        return sendHttpRequest(finalUrl, "GET", null);
+        String finalUrl = getBaseUrl() + "/" + id + productsEndpoint;
+        return getFromUrl(finalUrl);
     }
 
     /**
@@ -175,6 +528,6 @@ public class ApiHelper implements ApiOperations{
      */
     @Override
     public String putToUrl(String url, String body) throws ApiException {
-        return sendHttpRequest(url, "PUT", body);
+        return sendWrite(url, "PUT", body);
     }
 }
@@ -0,0 +1,147 @@
+package persistence;
+
+import business.shop.CatalogueChange;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registro de cambios de catálogo pendientes de enviar a la API. Cada cambio se añade al final del fichero como una
+ * línea JSON, así que guardar un cambio cuesta lo mismo sea cual sea el tamaño del catálogo. Al cargar las tiendas
+ * los cambios se vuelven a aplicar sobre shops.json, y cuando se han enviado se compacta el registro reescribiéndolo
+ * solo con los que quedan.
+ */
+public class CatalogueLogDAO {
+    private final Path path;
+
+    /**
+     * Constructor.
+     * @param filePath Ruta del fichero de registro.
+     */
+    public CatalogueLogDAO(String filePath) {
+        this.path = Path.of(filePath);
+    }
+
+    /**
+     * Añade un cambio al final del registro.
+     * @param change Cambio a guardar.
+     */
+    public void append(CatalogueChange change) {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writeLine(writer, change);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Carga todos los cambios del registro, en el orden en que se guardaron. Las líneas que no se pueden leer
+     * (por ejemplo, una última línea a medio escribir) se descartan.
+     * @return Lista de cambios, vacía si el fichero no existe.
+     */
+    public List<CatalogueChange> load() {
+        List<CatalogueChange> changes = new ArrayList<>();
+        if (Files.notExists(path)) {
+            return changes;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                CatalogueChange change = parseLine(line);
+                if (change != null) {
+                    changes.add(change);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return changes;
+    }
+
+    /**
+     * Sustituye el contenido del registro por los cambios indicados. Se escribe primero en un fichero temporal que
+     * luego reemplaza al registro, para que una interrupción no deje el registro a medias.
+     * @param changes Cambios que deben quedar en el registro.
+     */
+    public void rewrite(List<CatalogueChange> changes) {
+        try {
+            if (changes.isEmpty()) {
+                Files.deleteIfExists(path);
+                return;
+            }
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                for (CatalogueChange change : changes) {
+                    writeLine(writer, change);
+                }
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Escribe un cambio como una línea JSON.
+     * @param writer Destino.
+     * @param change Cambio a escribir.
+     * @throws IOException Si falla la escritura.
+     */
+    private static void writeLine(Writer writer, CatalogueChange change) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.beginObject();
+        json.name("type").value(change.getType().name());
+        json.name("shopName").value(change.getShopName());
+        json.name("productName").value(change.getProductName());
+        json.name("priceAtShop").value(change.getPriceAtShop());
+        json.name("lastModified").value(change.getLastModified());
+        json.endObject();
+        json.flush();
+        writer.write('\n');
+    }
+
+    /**
+     * Lee un cambio de una línea JSON.
+     * @param line Línea del registro.
+     * @return Cambio leído, o null si la línea no es válida.
+     */
+    private static CatalogueChange parseLine(String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try (JsonReader reader = JsonSupport.newReader(new StringReader(line))) {
+            CatalogueChange.Type type = null;
+            String shopName = null;
+            String productName = null;
+            double priceAtShop = 0;
+            long lastModified = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "type" -> type = CatalogueChange.Type.valueOf(ProductTypeAdapter.readString(reader));
+                    case "shopName" -> shopName = ProductTypeAdapter.readString(reader);
+                    case "productName" -> productName = ProductTypeAdapter.readString(reader);
+                    case "priceAtShop" -> priceAtShop = ProductTypeAdapter.readDouble(reader, priceAtShop);
+                    case "lastModified" -> lastModified = ProductTypeAdapter.readLong(reader, lastModified);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (type == null || shopName == null || productName == null) {
+                return null;
+            }
+            return new CatalogueChange(type, shopName, productName, priceAtShop, lastModified);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
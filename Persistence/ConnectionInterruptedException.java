@@ -0,0 +1,13 @@
+package persistence;
+import java.io.InterruptedIOException;
+
+/**
+ * Excepción específica para manejar interrupciones en la conexión durante las operaciones de API.
+ */
+class ConnectionInterruptedException extends ApiException {
+    private static final long serialVersionUID = 1L;
+
+    public ConnectionInterruptedException(String url, InterruptedIOException cause) {
+        super(cause.getMessage(), cause, url);
+    }
+}
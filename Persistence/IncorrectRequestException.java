@@ -0,0 +1,12 @@
+package persistence;
+
+/**
+ * Excepción para solicitudes incorrectas, subclase de StatusCodeException con un mensaje predeterminado.
+ */
+class IncorrectRequestException extends StatusCodeException {
+    private static final long serialVersionUID = 1L;
+
+    public IncorrectRequestException(String url, int statusCode) {
+        super("Request is incorrect", statusCode, url);
+    }
+}
@@ -0,0 +1,121 @@
+package persistence;
+
+import business.product.Product;
+import business.shop.Shop;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+
+/**
+ * Instancias de Gson compartidas por toda la persistencia. Tienen registrados los adaptadores de productos y
+ * tiendas (ProductTypeAdapter y ShopTypeAdapter), así que ninguna conversión de entidades usa reflexión.
+ * Gson es seguro entre hilos, por lo que no hace falta crear una instancia por DAO ni por llamada.
+ */
+public final class JsonSupport {
+    static final ProductTypeAdapter PRODUCT_ADAPTER = new ProductTypeAdapter();
+    static final ShopTypeAdapter SHOP_ADAPTER = new ShopTypeAdapter();
+    private static final Gson COMPACT = builder().create();
+    private static final Gson PRETTY = builder().setPrettyPrinting().create();
+
+    private JsonSupport() {
+    }
+
+    /**
+     * Crea un constructor de Gson con los adaptadores de entidades registrados para toda su jerarquía.
+     * @return Constructor de Gson.
+     */
+    private static GsonBuilder builder() {
+        return new GsonBuilder()
+                .registerTypeHierarchyAdapter(Product.class, PRODUCT_ADAPTER)
+                .registerTypeHierarchyAdapter(Shop.class, SHOP_ADAPTER);
+    }
+
+    /**
+     * Obtiene la instancia compartida que escribe JSON sin espacios.
+     * @return Instancia de Gson.
+     */
+    public static Gson gson() {
+        return COMPACT;
+    }
+
+    /**
+     * Obtiene la instancia compartida que escribe JSON con sangrado.
+     * @return Instancia de Gson.
+     */
+    public static Gson prettyGson() {
+        return PRETTY;
+    }
+
+    /**
+     * Convierte un array JSON de productos, como el que devuelve la API, en una lista de objetos Product. No necesita
+     * conexión con la API.
+     * @param json Texto JSON a convertir.
+     * @return Lista de objetos Product.
+     */
+    public static ArrayList<Product> parseProducts(String json) {
+        try (JsonReader reader = newReader(new StringReader(json))) {
+            return ProductApiJsonDAO.convertJsonToProducts(reader, PRODUCT_ADAPTER);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * Convierte un array JSON de tiendas, como el que devuelve la API, en una lista de objetos Shop. No necesita
+     * conexión con la API.
+     * @param json Texto JSON a convertir.
+     * @return Lista de objetos Shop.
+     */
+    public static ArrayList<Shop> parseShops(String json) {
+        try (JsonReader reader = newReader(new StringReader(json))) {
+            return ShopApiJsonDAO.convertJsonToShops(reader);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * Crea un lector de JSON en flujo con las mismas reglas permisivas que usaba JsonParser.
+     * @param reader Origen del texto.
+     * @return Lector de JSON.
+     */
+    static JsonReader newReader(Reader reader) {
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setStrictness(Strictness.LENIENT);
+        return jsonReader;
+    }
+
+    /**
+     * Comprueba que el documento empieza por un array.
+     * @param in Lector de JSON.
+     * @throws IOException Si falla la lectura.
+     * @throws JsonParseException Si el documento no es un array.
+     */
+    static void expectArray(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            throw new JsonParseException("Response is not a JSON Array");
+        }
+    }
+
+    /**
+     * Comprueba que no queda nada después del valor leído.
+     * @param in Lector de JSON.
+     * @throws IOException Si falla la lectura.
+     * @throws JsonSyntaxException Si hay contenido sobrante.
+     */
+    static void expectEnd(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.END_DOCUMENT) {
+            throw new JsonSyntaxException("Did not consume the entire document.");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package persistence;
+
+import java.util.Arrays;
+
+/**
+ * Guarda las últimas latencias observadas en un buffer circular de tamaño fijo y calcula percentiles sobre ellas.
+ * ApiHelper lo usa para decidir a partir de qué tiempo merece la pena duplicar un GET.
+ */
+class LatencyWindow {
+    private static final int MIN_SAMPLES = 20;
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    /**
+     * Constructor.
+     * @param capacity Número de latencias que se recuerdan.
+     */
+    LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * Anota una latencia.
+     * @param millis Latencia en milisegundos.
+     */
+    synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Calcula un percentil de las latencias recordadas.
+     * @param percentile Percentil entre 0 y 1.
+     * @return Latencia en milisegundos, o -1 si aún no hay suficientes muestras.
+     */
+    long percentile(double percentile) {
+        long[] copy;
+        synchronized (this) {
+            if (size < MIN_SAMPLES) {
+                return -1;
+            }
+            copy = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(percentile * copy.length) - 1;
+        return copy[Math.max(0, Math.min(index, copy.length - 1))];
+    }
+}
@@ -0,0 +1,157 @@
+package persistence;
+
+import business.shop.LoyaltyTracker;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Registro de lo que gasta cada cliente en las tiendas de fidelización. Cada cobro añade al final del fichero una
+ * línea JSON por tienda con el cliente, la tienda y el importe en céntimos, así que guardar un cobro cuesta lo mismo
+ * sea cual sea el número de clientes. Al arrancar las líneas se suman en un LoyaltyTracker, y cuando el registro
+ * tiene muchas más líneas que parejas de cliente y tienda se compacta reescribiéndolo con una línea por pareja.
+ */
+public class LoyaltyLogDAO {
+    private final Path path;
+
+    /**
+     * Constructor.
+     * @param filePath Ruta del fichero de registro.
+     */
+    public LoyaltyLogDAO(String filePath) {
+        this.path = Path.of(filePath);
+    }
+
+    /**
+     * Añade al final del registro lo que ha gastado un cliente en cada tienda en un cobro.
+     * @param customer Nombre del cliente.
+     * @param centsByShop Gasto en céntimos por nombre de tienda.
+     */
+    public void append(String customer, Map<String, Long> centsByShop) {
+        if (centsByShop.isEmpty()) {
+            return;
+        }
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Map.Entry<String, Long> entry : centsByShop.entrySet()) {
+                writeLine(writer, customer, entry.getKey(), entry.getValue());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Suma todas las líneas del registro en un LoyaltyTracker. Las líneas que no se pueden leer (por ejemplo, una
+     * última línea a medio escribir) se descartan.
+     * @param tracker Registro en memoria donde sumar los gastos.
+     * @return Número de líneas leídas, 0 si el fichero no existe.
+     */
+    public long loadInto(LoyaltyTracker tracker) {
+        long lines = 0;
+        if (Files.notExists(path)) {
+            return lines;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (parseLine(line, tracker)) {
+                    lines++;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return lines;
+    }
+
+    /**
+     * Sustituye el contenido del registro por una línea por pareja de cliente y tienda con su gasto total. Se
+     * escribe primero en un fichero temporal que luego reemplaza al registro, para que una interrupción no deje el
+     * registro a medias.
+     * @param tracker Registro en memoria con los gastos actuales.
+     */
+    public void rewrite(LoyaltyTracker tracker) {
+        try {
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                IOException[] failure = new IOException[1];
+                tracker.forEach((customer, shopName, cents) -> {
+                    if (failure[0] == null) {
+                        try {
+                            writeLine(writer, customer, shopName, cents);
+                        } catch (IOException e) {
+                            failure[0] = e;
+                        }
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Escribe un gasto como una línea JSON.
+     * @param writer Destino.
+     * @param customer Nombre del cliente.
+     * @param shopName Nombre de la tienda.
+     * @param cents Gasto en céntimos.
+     * @throws IOException Si falla la escritura.
+     */
+    private static void writeLine(Writer writer, String customer, String shopName, long cents) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.beginObject();
+        json.name("customer").value(customer);
+        json.name("shopName").value(shopName);
+        json.name("cents").value(cents);
+        json.endObject();
+        json.flush();
+        writer.write('\n');
+    }
+
+    /**
+     * Lee un gasto de una línea JSON y lo suma al registro en memoria.
+     * @param line Línea del registro.
+     * @param tracker Registro en memoria.
+     * @return true si la línea era válida.
+     */
+    private static boolean parseLine(String line, LoyaltyTracker tracker) {
+        if (line.isBlank()) {
+            return false;
+        }
+        try (JsonReader reader = JsonSupport.newReader(new StringReader(line))) {
+            String customer = null;
+            String shopName = null;
+            long cents = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "customer" -> customer = ProductTypeAdapter.readString(reader);
+                    case "shopName" -> shopName = ProductTypeAdapter.readString(reader);
+                    case "cents" -> cents = ProductTypeAdapter.readLong(reader, cents);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (customer == null || shopName == null) {
+                return false;
+            }
+            tracker.addSpend(customer, shopName, cents);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package persistence;
+import java.net.URISyntaxException;
+
+/**
+ * Excepción específica para manejar URLs mal formadas en las solicitudes de API.
+ */
+class MalformedURLException extends ApiException {
+    private static final long serialVersionUID = 1L;
+
+    public MalformedURLException(String url, URISyntaxException cause) {
+        super(cause.getMessage(), cause, url);
+    }
+}
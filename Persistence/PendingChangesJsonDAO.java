@@ -0,0 +1,83 @@
+package persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+/**
+ * Guarda en un pequeño fichero JSON los nombres de las entidades modificadas o eliminadas localmente que aún no
+ * se han enviado a la API, para que los cambios hechos sin conexión sobrevivan a un reinicio.
+ */
+public class PendingChangesJsonDAO {
+    private static final Type NAMES_TYPE = new TypeToken<List<String>>() {}.getType();
+    private final String filePath;
+    private final Gson gson;
+
+    /**
+     * Constructor.
+     * @param filePath Ruta del fichero de cambios pendientes.
+     */
+    public PendingChangesJsonDAO(String filePath) {
+        this.filePath = filePath;
+        this.gson = JsonSupport.gson();
+    }
+
+    /**
+     * Carga los nombres pendientes de enviar como altas o modificaciones.
+     * @return Lista de nombres, vacía si el fichero no existe o no se puede leer.
+     */
+    public List<String> loadUpserts() {
+        return loadNames("upserts");
+    }
+
+    /**
+     * Carga los nombres pendientes de eliminar en la API.
+     * @return Lista de nombres, vacía si el fichero no existe o no se puede leer.
+     */
+    public List<String> loadRemovals() {
+        return loadNames("removals");
+    }
+
+    /**
+     * Guarda los cambios pendientes, sustituyendo el contenido anterior del fichero.
+     * @param upserts Nombres pendientes de enviar.
+     * @param removals Nombres pendientes de eliminar.
+     */
+    public void save(List<String> upserts, List<String> removals) {
+        JsonObject state = new JsonObject();
+        state.add("upserts", gson.toJsonTree(upserts));
+        state.add("removals", gson.toJsonTree(removals));
+        try (Writer writer = new FileWriter(filePath)) {
+            gson.toJson(state, writer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lee una de las listas del fichero.
+     * @param property Nombre de la lista.
+     * @return Lista de nombres, vacía si no existe.
+     */
+    private List<String> loadNames(String property) {
+        if (!new File(filePath).exists()) {
+            return new ArrayList<>();
+        }
+        try (Reader reader = new FileReader(filePath)) {
+            JsonObject state = JsonParser.parseReader(reader).getAsJsonObject();
+            if (!state.has(property)) {
+                return new ArrayList<>();
+            }
+            List<String> names = gson.fromJson(state.get(property), NAMES_TYPE);
+            return names != null ? names : new ArrayList<>();
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            return new ArrayList<>();
+        }
+    }
+}
@@ -1,32 +1,32 @@
 package persistence;
 
-import business.product.GeneralProduct;
 import business.product.Product;
-import business.product.ReducedProduct;
-import business.product.SuperReducedProduct;
-import business.shop.Shop;
 import com.google.gson.*;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
 
-import java.lang.reflect.Array;
-import java.lang.reflect.Type;
+import java.io.EOFException;
+import java.io.IOException;
 import java.util.ArrayList;
 /**
  * Gestiona operaciones CRUD de productos con una API remota, serializando y deserializando datos JSON.
  */
 public class ProductApiJsonDAO {
+    private static final SingleFlight<ArrayList<Product>> LOAD_FLIGHTS = new SingleFlight<>();
     private final ApiHelper apiHelper;
     private final Gson gson;
-    private final String baseUrl = "https://balandrau.salle.url.edu/dpoo";
+    private final String baseUrl;
     /**
-     * Constructor. Inicializa el ayudante de API y el analizador Gson.
+     * Constructor. Inicializa el ayudante de API y toma la instancia de Gson compartida.
      */
     public ProductApiJsonDAO() {
         this.apiHelper = new ApiHelper();
-        this.gson = new Gson();
+        this.gson = JsonSupport.gson();
+        this.baseUrl = ApiHelper.getBaseUrl();
     }
     /**
-     * Guarda un producto en la API.
+     * Guarda un producto en la API. Si falla no se toca nada más en la API, así que quien llama puede dejar el cambio
+     * pendiente y reintentarlo.
      * @param product Producto a guardar.
      * @throws ApiException Si hay un problema relacionado con la API.
      */
@@ -36,22 +36,23 @@ public class ProductApiJsonDAO {
         try{
             apiHelper.postToUrl(baseUrl + endpoint, jsonProduct);
         }catch (ApiException e){
-            apiHelper.deleteFromUrl("https://balandrau.salle.url.edu/dpoo/P1-G70/shops/4");
             throw new ApiException("ERROR: API: " + e.getMessage(), e, baseUrl + endpoint);
         }
     }
 
     /**
-     * Carga los productos desde la API.
+     * Carga los productos desde la API. Las llamadas simultáneas comparten una sola descarga y un solo análisis;
+     * cada una recibe su propia lista, aunque los productos que contiene son los mismos objetos.
      * @return Representación en cadena JSON de los productos.
      * @throws ApiException Si hay un problema relacionado con la API.
      * @throws JsonSyntaxException Si falla el análisis de JSON.
      */
     public ArrayList<Product> loadProducts() throws ApiException, JsonSyntaxException {
         String endpoint = ("/P1-G70/products");
-        String response = apiHelper.getFromUrl(baseUrl + endpoint);
-        ArrayList<Product> products = convertJsonToProducts(response);
-        return products;
+        String url = baseUrl + endpoint;
+        ArrayList<Product> products = LOAD_FLIGHTS.execute(ApiHelper.readKey(url),
+                () -> convertJsonToProducts(apiHelper.getFromUrl(url)));
+        return new ArrayList<>(products);
     }
     /**
      * Elimina un producto específico basado en ID y productId de la API.
@@ -68,50 +69,40 @@ public class ProductApiJsonDAO {
         }
     }
     /**
-     * Convierte una respuesta JSON en una lista de objetos Product.
+     * Convierte una respuesta JSON en una lista de objetos Product (ver JsonSupport.parseProducts).
      * @param jsonResponse Respuesta JSON a convertir.
      * @return Lista de objetos Product.
      */
     public ArrayList<Product> convertJsonToProducts(String jsonResponse) {
-        ArrayList<Product> products = new ArrayList<>();
-        JsonElement jsonElement = JsonParser.parseString(jsonResponse);
-
-        if (!jsonElement.isJsonArray()) {
-            throw new JsonParseException("Response is not a JSON Array");
-        }
-        JsonArray jsonArray = jsonElement.getAsJsonArray();
-        for (JsonElement element : jsonArray) {
-            Product product = parseProduct(element);
-            if (product != null) {
-                products.add(product);
-            }
-        }
-        return products;
+        return JsonSupport.parseProducts(jsonResponse);
     }
 
     /**
-     * Analiza un elemento JSON para crear un objeto Product.
-     * @param jsonElement Elemento JSON a analizar.
-     * @return Objeto Product o null si el análisis falla.
+     * Convierte en una lista de objetos Product el array JSON que se lee en flujo, sin construir un árbol intermedio.
+     * Se comparte con ProductJsonDAO para leer el fichero local con las mismas reglas.
+     * @param reader Lector situado al inicio del documento.
+     * @param adapter Adaptador con el que se lee cada producto, completo o como proyección.
+     * @return Lista de objetos Product.
+     * @throws IOException Si falla la lectura del origen.
+     * @throws JsonParseException Si el documento no es un array de productos válidos.
      */
-    private Product parseProduct(JsonElement jsonElement) {
-        JsonObject jsonObject = jsonElement.getAsJsonObject();
-        JsonElement categoryElement = jsonObject.get("category");
-
-        if (categoryElement == null) {
-            throw new JsonParseException("Missing category property in JSON object");
-        }
-        String category = categoryElement.getAsString();
-        switch (category) {
-            case "GENERAL":
-                return gson.fromJson(jsonObject, GeneralProduct.class);
-            case "REDUCED":
-                return gson.fromJson(jsonObject, ReducedProduct.class);
-            case "SUPER_REDUCED":
-                return gson.fromJson(jsonObject, SuperReducedProduct.class);
-            default:
-                throw new JsonParseException("Invalid category: " + category);
+    static ArrayList<Product> convertJsonToProducts(JsonReader reader, ProductTypeAdapter adapter) throws IOException {
+        ArrayList<Product> products = new ArrayList<>();
+        try {
+            JsonSupport.expectArray(reader);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Product product = adapter.read(reader);
+                if (product != null) {
+                    products.add(product);
+                }
+            }
+            reader.endArray();
+            JsonSupport.expectEnd(reader);
+        } catch (MalformedJsonException | EOFException e) {
+            throw new JsonSyntaxException(e);
         }
+        return products;
     }
 
     /**
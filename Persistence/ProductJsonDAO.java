@@ -1,4 +1,5 @@
 package persistence;
+import business.Review;
 import business.product.GeneralProduct;
 import business.product.Product;
 import business.product.ReducedProduct;
@@ -10,13 +11,18 @@ import java.io.*;
 import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.FileReader;
 import java.io.IOException;
@@ -27,27 +33,104 @@ import java.io.Reader;
 public class ProductJsonDAO {
     private static final String FILE_PATH = "products.json";
     private Gson gson;
+    private final StorageFormat storageFormat;
+    private final ProductTypeAdapter projectionAdapter;
 
     /**
-     * Constructor de la clase. Inicializa una instancia de Gson para manejar la conversión de objetos a JSON y viceversa.
+     * Constructor de la clase. Inicializa una instancia de Gson para manejar la conversión de objetos a JSON y viceversa,
+     * usando el formato de escritura configurado (ver StorageFormat).
      * @throws FileNotFoundException
      */
     public ProductJsonDAO() throws FileNotFoundException {
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.storageFormat = StorageFormat.configured();
+        this.gson = storageFormat.createGson();
+        this.projectionAdapter = new ProductTypeAdapter(this::loadReviews);
         if (!Files.exists(Path.of(FILE_PATH))) {
             throw new FileNotFoundException("El archivo 'products.json' no se encuentra.");
         }
     }
 
     /**
-     * Guarda una lista de productos en el archivo JSON "products.json"
+     * Guarda una lista de productos en el archivo JSON "products.json". Se escribe primero en un fichero temporal
+     * que luego sustituye al anterior, para que quien esté leyendo reseñas del fichero no lo vea a medias.
+     * Las reseñas de los productos que no las tienen cargadas se copian del fichero anterior mientras se escribe,
+     * sin cargarlas. Si las de algún producto no se encuentran, el fichero anterior se conserva.
      * @param products Lista de productos para guardar
+     * @return true si se ha guardado el fichero
      */
-    public void saveProducts(List<Product> products) {
-        try (Writer writer = new FileWriter(FILE_PATH)) {
-            gson.toJson(products, writer);
-        } catch (IOException e) {
+    public boolean saveProducts(List<Product> products) {
+        Path temporary = Path.of(FILE_PATH + ".tmp");
+        try {
+            try (Writer writer = storageFormat.openWriter(temporary.toString());
+                 StoredReviews storedReviews = new StoredReviews(FILE_PATH)) {
+                JsonWriter out = gson.newJsonWriter(writer);
+                out.setStrictness(Strictness.LENIENT);
+                out.beginArray();
+                for (Product product : products) {
+                    JsonSupport.PRODUCT_ADAPTER.write(out, product, storedReviews);
+                }
+                out.endArray();
+                out.flush();
+            }
+            Files.move(temporary, Path.of(FILE_PATH), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | RuntimeException e) {
             e.printStackTrace();
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Carga la lista de productos guardada en el archivo JSON "products.json" como proyecciones ligeras: sin las
+     * reseñas, que cada producto lee de este fichero con loadReviews la primera vez que se piden.
+     * @return Lista de productos leídos del archivo
+     * @throws IOException Si el archivo no se puede leer
+     * @throws JsonParseException Si el contenido del archivo no es válido
+     */
+    public ArrayList<Product> loadProducts() throws IOException {
+        try (JsonReader reader = JsonSupport.newReader(StorageFormat.openReader(FILE_PATH))) {
+            return ProductApiJsonDAO.convertJsonToProducts(reader, projectionAdapter);
+        }
+    }
+
+    /**
+     * Lee del fichero las reseñas de un producto, saltando sin analizar las de los demás.
+     * @param productName Nombre del producto.
+     * @return Reseñas del producto (vacía si no tiene o no está en el fichero), o null si no se ha podido leer.
+     */
+    public ArrayList<Review> loadReviews(String productName) {
+        try (JsonReader reader = JsonSupport.newReader(StorageFormat.openReader(FILE_PATH))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                String name = null;
+                ArrayList<Review> reviews = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String field = reader.nextName();
+                    if (field.equals("name")) {
+                        name = ProductTypeAdapter.readString(reader);
+                    } else if (field.equals("reviews") && (name == null || name.equals(productName))) {
+                        reviews = ProductTypeAdapter.readReviews(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                if (productName.equals(name)) {
+                    return reviews != null ? reviews : new ArrayList<>();
+                }
+            }
+            return new ArrayList<>();
+        } catch (IOException | RuntimeException e) {
+            return null;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,294 @@
+package persistence;
+
+import business.Review;
+import business.product.GeneralProduct;
+import business.product.Product;
+import business.product.ReducedProduct;
+import business.product.ReviewLoader;
+import business.product.SuperReducedProduct;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Convierte productos de cualquier categoría a JSON y de JSON sin reflexión ni árbol intermedio. Lee los campos
+ * directamente del flujo y crea la subclase que indica "category"; al escribir produce los mismos nombres de campo
+ * que Gson generaba por reflexión, así que los ficheros y la API existentes siguen siendo compatibles.
+ * Si se crea con un ReviewLoader, lee los productos como proyección ligera: de las reseñas solo cuenta cuántas hay y
+ * suma sus valoraciones, sin crearlas, y deja que el producto las cargue con ese cargador cuando se pidan.
+ * Un producto cuyas reseñas no se pueden cargar no se escribe sin ellas: la escritura falla para no perderlas.
+ */
+class ProductTypeAdapter extends TypeAdapter<Product> {
+    private final ReviewLoader reviewLoader;
+
+    /**
+     * Crea un adaptador que lee los productos completos, con sus reseñas.
+     */
+    ProductTypeAdapter() {
+        this(null);
+    }
+
+    /**
+     * Crea un adaptador.
+     * @param reviewLoader Cargador de reseñas para leer proyecciones, o null para leer los productos completos.
+     */
+    ProductTypeAdapter(ReviewLoader reviewLoader) {
+        this.reviewLoader = reviewLoader;
+    }
+
+    /**
+     * Escribe un producto.
+     * @param out Destino JSON.
+     * @param product Producto a escribir, o null.
+     * @throws IOException Si falla la escritura.
+     */
+    @Override
+    public void write(JsonWriter out, Product product) throws IOException {
+        write(out, product, null);
+    }
+
+    /**
+     * Escribe un producto, copiando del fichero guardado las reseñas que no tenga cargadas.
+     * @param out Destino JSON.
+     * @param product Producto a escribir, o null.
+     * @param storedReviews Fichero del que copiar las reseñas no cargadas, o null para cargarlas.
+     * @throws IOException Si falla la escritura o no se pueden obtener las reseñas de un producto que las tiene.
+     */
+    void write(JsonWriter out, Product product, StoredReviews storedReviews) throws IOException {
+        if (product == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (product instanceof ReducedProduct reducedProduct) {
+            out.name("averageRating").value(reducedProduct.getAverageRating());
+        }
+        out.name("name").value(product.getName());
+        out.name("brand").value(product.getBrand());
+        out.name("mrp").value(product.getMrp());
+        out.name("category").value(product.getCategory());
+        if (storedReviews != null && !product.hasReviewsLoaded()) {
+            out.name("reviews");
+            if (!storedReviews.copy(product.getName(), out)) {
+                if (product.getReviewCount() > 0) {
+                    throw new IOException("Reviews of \"" + product.getName() + "\" are missing from the saved file");
+                }
+                out.beginArray().endArray();
+            }
+            out.name("lastModified").value(product.getLastModified());
+            out.endObject();
+            return;
+        }
+        ArrayList<Review> reviews = product.getReviews();
+        if (reviews == null && product.getReviewCount() > 0) {
+            throw new IOException("Reviews of \"" + product.getName() + "\" could not be loaded");
+        }
+        if (reviews != null) {
+            out.name("reviews").beginArray();
+            for (Review review : reviews) {
+                if (review == null) {
+                    out.nullValue();
+                    continue;
+                }
+                out.beginObject();
+                out.name("rating").value(review.getRating());
+                out.name("comment").value(review.getComment());
+                out.endObject();
+            }
+            out.endArray();
+        }
+        out.name("lastModified").value(product.getLastModified());
+        out.endObject();
+    }
+
+    /**
+     * Lee un producto.
+     * @param in Origen JSON, situado al inicio del objeto.
+     * @return Producto de la subclase indicada por su categoría, o null si el valor es null.
+     * @throws IOException Si falla la lectura.
+     * @throws JsonParseException Si falta la categoría o no es válida.
+     */
+    @Override
+    public Product read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String name = null;
+        String brand = null;
+        String category = null;
+        double mrp = 0;
+        double averageRating = 0;
+        long lastModified = 0;
+        ArrayList<Review> reviews = null;
+        int reviewCount = 0;
+        long ratingSum = 0;
+        boolean hasCategory = false;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "name" -> name = readString(in);
+                case "brand" -> brand = readString(in);
+                case "mrp" -> mrp = readDouble(in, mrp);
+                case "category" -> {
+                    hasCategory = true;
+                    category = readString(in);
+                }
+                case "averageRating" -> averageRating = readDouble(in, averageRating);
+                case "lastModified" -> lastModified = readLong(in, lastModified);
+                case "reviews" -> {
+                    if (reviewLoader == null) {
+                        reviews = readReviews(in);
+                    } else if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            int rating = readRating(in);
+                            if (rating >= 0) {
+                                reviewCount++;
+                                ratingSum += rating;
+                            }
+                        }
+                        in.endArray();
+                    }
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (!hasCategory) {
+            throw new JsonParseException("Missing category property in JSON object");
+        }
+        if (category == null) {
+            throw new JsonParseException("Invalid category: null");
+        }
+        Product product = switch (category) {
+            case "GENERAL" -> new GeneralProduct(name, brand, mrp);
+            case "REDUCED" -> new ReducedProduct(name, brand, mrp, averageRating);
+            case "SUPER_REDUCED" -> new SuperReducedProduct(name, brand, mrp);
+            default -> throw new JsonParseException("Invalid category: " + category);
+        };
+        if (reviewLoader != null) {
+            product.setReviewSummary(reviewCount, ratingSum, reviewLoader);
+        } else if (reviews != null) {
+            product.setReviews(reviews);
+        }
+        product.setLastModified(lastModified);
+        return product;
+    }
+
+    /**
+     * Lee la lista de reseñas de un producto.
+     * @param in Origen JSON, situado al inicio del array.
+     * @return Lista de reseñas, o null si el valor es null.
+     * @throws IOException Si falla la lectura.
+     */
+    static ArrayList<Review> readReviews(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ArrayList<Review> reviews = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            int rating = 0;
+            String comment = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "rating" -> rating = (int) readLong(in, rating);
+                    case "comment" -> comment = readString(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            reviews.add(new Review(rating, comment));
+        }
+        in.endArray();
+        return reviews;
+    }
+
+    /**
+     * Lee solo la valoración de una reseña, saltando el comentario sin crearlo.
+     * @param in Origen JSON, situado al inicio de la reseña.
+     * @return Valoración, o -1 si la reseña es null.
+     * @throws IOException Si falla la lectura.
+     */
+    private static int readRating(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return -1;
+        }
+        int rating = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals("rating")) {
+                rating = (int) readLong(in, rating);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return rating;
+    }
+
+    /**
+     * Lee un valor de texto. Acepta números y booleanos como texto, igual que Gson.
+     * @param in Origen JSON.
+     * @return Texto leído, o null si el valor es null.
+     * @throws IOException Si falla la lectura.
+     */
+    static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    /**
+     * Lee un valor decimal.
+     * @param in Origen JSON.
+     * @param fallback Valor a devolver si el valor es null.
+     * @return Número leído.
+     * @throws IOException Si falla la lectura.
+     */
+    static double readDouble(JsonReader in, double fallback) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return fallback;
+        }
+        return in.nextDouble();
+    }
+
+    /**
+     * Lee un valor entero.
+     * @param in Origen JSON.
+     * @param fallback Valor a devolver si el valor es null.
+     * @return Número leído.
+     * @throws IOException Si falla la lectura.
+     */
+    static long readLong(JsonReader in, long fallback) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return fallback;
+        }
+        return in.nextLong();
+    }
+}
@@ -0,0 +1,209 @@
+package persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Escribe el informe de ganancias y catálogos en formato CSV directamente sobre un FileChannel.
+ * Cada fila se compone en un buffer reutilizable y se codifica a un ByteBuffer de tamaño fijo,
+ * por lo que la memoria usada no depende del número de filas exportadas.
+ */
+public class ReportCsvWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder;
+    private final StringBuilder line;
+    private CharBuffer charBuffer;
+    private long rows;
+
+    /**
+     * Constructor. Abre (o trunca) el fichero de destino y escribe la cabecera del informe.
+     * @param path Ruta del fichero donde se escribirá el informe.
+     * @throws IOException Si no se puede abrir o escribir el fichero.
+     */
+    public ReportCsvWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.encoder = StandardCharsets.UTF_8.newEncoder();
+        this.line = new StringBuilder(256);
+        this.charBuffer = CharBuffer.allocate(256);
+        charBuffer.flip();
+        line.append("# SHOP,shop,businessModel,earnings\n");
+        line.append("# ITEM,shop,product,brand,category,gross,net\n");
+        writeLine();
+    }
+
+    /**
+     * Escribe una fila con las ganancias acumuladas de una tienda.
+     * @param shopName Nombre de la tienda.
+     * @param businessModel Modelo de negocio de la tienda.
+     * @param earnings Ganancias acumuladas.
+     * @throws IOException Si falla la escritura.
+     */
+    public void writeShop(String shopName, String businessModel, double earnings) throws IOException {
+        line.append("SHOP,");
+        appendField(shopName).append(',');
+        appendField(businessModel).append(',');
+        appendMoney(earnings).append('\n');
+        writeLine();
+        rows++;
+    }
+
+    /**
+     * Escribe una fila de catálogo con su precio bruto en la tienda y el precio neto calculado.
+     * @param shopName Nombre de la tienda.
+     * @param productName Nombre del producto.
+     * @param brand Marca del producto.
+     * @param category Categoría del producto.
+     * @param gross Precio del producto en la tienda.
+     * @param net Precio después de aplicar las reglas de la tienda.
+     * @throws IOException Si falla la escritura.
+     */
+    public void writeItem(String shopName, String productName, String brand, String category, double gross, double net) throws IOException {
+        line.append("ITEM,");
+        appendField(shopName).append(',');
+        appendField(productName).append(',');
+        appendField(brand).append(',');
+        appendField(category).append(',');
+        appendMoney(gross).append(',');
+        appendMoney(net).append('\n');
+        writeLine();
+        rows++;
+    }
+
+    /**
+     * Obtiene el número de filas de datos escritas hasta el momento.
+     * @return Número de filas, sin contar la cabecera.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Termina la codificación, vuelca lo que queda en el buffer y cierra el fichero.
+     * @throws IOException Si falla la escritura.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            encode(true);
+            while (true) {
+                CoderResult result = encoder.flush(buffer);
+                if (!result.isOverflow()) {
+                    break;
+                }
+                drain();
+            }
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Añade un campo al CSV, entrecomillándolo solo si contiene separadores o comillas.
+     * @param value Valor del campo.
+     * @return El buffer de la línea actual.
+     */
+    private StringBuilder appendField(String value) {
+        if (value == null) {
+            return line;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return line.append(value);
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        return line.append('"');
+    }
+
+    /**
+     * Añade un importe con dos decimales sin pasar por String.format.
+     * @param value Importe a escribir.
+     * @return El buffer de la línea actual.
+     */
+    private StringBuilder appendMoney(double value) {
+        long cents = Math.round(value * 100.0);
+        if (cents < 0) {
+            line.append('-');
+            cents = -cents;
+        }
+        long decimals = cents % 100;
+        line.append(cents / 100).append('.');
+        if (decimals < 10) {
+            line.append('0');
+        }
+        return line.append(decimals);
+    }
+
+    /**
+     * Codifica la línea actual en el buffer de bytes, volcándolo al canal cuando se llena. Los caracteres que el
+     * codificador no ha podido consumir todavía (la primera mitad de un par sustituto) se conservan delante.
+     * @throws IOException Si falla la escritura.
+     */
+    private void writeLine() throws IOException {
+        charBuffer.compact();
+        int length = line.length();
+        if (length > charBuffer.remaining()) {
+            CharBuffer grown = CharBuffer.allocate(Math.max(charBuffer.position() + length, charBuffer.capacity() * 2));
+            charBuffer.flip();
+            grown.put(charBuffer);
+            charBuffer = grown;
+        }
+        line.getChars(0, length, charBuffer.array(), charBuffer.position());
+        charBuffer.position(charBuffer.position() + length);
+        line.setLength(0);
+        charBuffer.flip();
+        encode(false);
+    }
+
+    /**
+     * Codifica los caracteres pendientes en el buffer de bytes, volcándolo al canal cuando se llena.
+     * @param endOfInput true si no van a llegar más caracteres.
+     * @throws IOException Si falla la escritura o hay caracteres que no se pueden codificar.
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(charBuffer, buffer, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                break;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    /**
+     * Escribe en el canal todo el contenido pendiente del buffer de bytes.
+     * @throws IOException Si falla la escritura.
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,101 @@
+package persistence;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Define cómo ApiHelper reintenta y acota en el tiempo las solicitudes a la API: número máximo de intentos,
+ * espera exponencial con jitter entre intentos, plazo total por llamada y percentil de latencia a partir del
+ * cual se lanza un GET duplicado.
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long deadlineMillis;
+    private final double hedgePercentile;
+
+    /**
+     * Constructor.
+     * @param maxAttempts Número máximo de intentos por llamada, incluido el primero.
+     * @param baseDelayMillis Espera base antes del primer reintento, que se duplica en cada intento.
+     * @param maxDelayMillis Espera máxima entre dos intentos.
+     * @param deadlineMillis Tiempo total máximo de una llamada, incluidos todos sus intentos.
+     * @param hedgePercentile Percentil (entre 0 y 1) de la latencia observada tras el cual se duplica un GET, o 0 para no duplicar.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long deadlineMillis, double hedgePercentile) {
+        if (maxAttempts < 1 || baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis || deadlineMillis <= 0
+                || hedgePercentile < 0 || hedgePercentile >= 1) {
+            throw new IllegalArgumentException("Invalid retry policy");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.deadlineMillis = deadlineMillis;
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * Política por defecto: 3 intentos, espera entre 200 ms y 2 s, plazo de 15 s y GET duplicado tras el percentil 95.
+     * @return Política por defecto.
+     */
+    public static RetryPolicy defaults() {
+        return new RetryPolicy(3, 200, 2000, 15000, 0.95);
+    }
+
+    /**
+     * Política que nunca reintenta ni duplica solicitudes, con el mismo plazo que la política por defecto.
+     * @return Política sin reintentos.
+     */
+    public static RetryPolicy noRetries() {
+        return new RetryPolicy(1, 0, 0, 15000, 0);
+    }
+
+    /**
+     * Obtiene el número máximo de intentos.
+     * @return Número máximo de intentos.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Obtiene el plazo total de una llamada.
+     * @return Plazo en milisegundos.
+     */
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * Obtiene el percentil de latencia usado para duplicar solicitudes GET.
+     * @return Percentil entre 0 y 1, o 0 si está desactivado.
+     */
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * Indica si se deben duplicar las solicitudes GET lentas.
+     * @return true si está activado.
+     */
+    public boolean isHedgingEnabled() {
+        return hedgePercentile > 0;
+    }
+
+    /**
+     * Calcula la espera antes de un reintento usando backoff exponencial con jitter completo, de modo que
+     * varios clientes que fallan a la vez no reintenten al mismo tiempo.
+     * @param attempt Número de intentos ya fallidos (1 para el primer reintento).
+     * @return Espera en milisegundos.
+     */
+    public long backoffMillis(int attempt) {
+        long ceiling = maxDelayMillis;
+        if (attempt - 1 < 30) {
+            ceiling = Math.min(maxDelayMillis, baseDelayMillis << (attempt - 1));
+        }
+        if (ceiling <= 0) {
+            return 0;
+        }
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
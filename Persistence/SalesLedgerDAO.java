@@ -0,0 +1,287 @@
+package persistence;
+
+import business.RevenueRollup;
+import business.Sale;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Libro de ventas: fichero binario al que solo se añaden registros, uno por producto cobrado. El fichero se proyecta
+ * en memoria por tramos de 16 MB, así que añadir una venta es copiar unos bytes sin llamadas al sistema. Para que
+ * las ventas lleguen a disco se llama a sync, que agrupa a todos los hilos que esperan: el primero fuerza a disco
+ * todo lo escrito hasta ese momento y los que llegan mientras tanto ya encuentran sus ventas guardadas.
+ * Cada registro lleva su longitud y un CRC32; al abrir el libro se leen los registros hasta el primero incompleto o
+ * dañado (una escritura interrumpida) y el fichero se recorta ahí. El final del último tramo está lleno de ceros,
+ * que marcan el final del libro. Para solo consultarlo se usa read, que lee los mismos registros sin abrir el fichero
+ * para escribir, sin recortarlo y sin proyectarlo.
+ */
+public class SalesLedgerDAO implements Closeable {
+    private static final int MAGIC = 0x454C4331;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final long REGION_SIZE = 16L << 20;
+
+    private final Path path;
+    private final Object commitLock;
+    private final CRC32 crc;
+    private ByteBuffer scratch;
+    private FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long end;
+    private long durable;
+
+    /**
+     * Constructor. El fichero no se abre hasta que se lee o se escribe.
+     * @param filePath Ruta del libro de ventas.
+     */
+    public SalesLedgerDAO(String filePath) {
+        this.path = Path.of(filePath);
+        this.commitLock = new Object();
+        this.crc = new CRC32();
+        this.scratch = ByteBuffer.allocate(256);
+    }
+
+    /**
+     * Abre el libro y suma todas sus ventas en unos acumulados. Tiene que llamarse antes de añadir ventas.
+     * @param rollup Acumulados donde sumar las ventas.
+     * @return Número de ventas leídas.
+     * @throws IOException Si no se puede abrir o leer el fichero.
+     */
+    public synchronized long replay(RevenueRollup rollup) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        long records = readRecords(channel, rollup);
+        if (end < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(0, MAGIC);
+            channel.truncate(0);
+            channel.write(header, 0);
+            end = HEADER_SIZE;
+        }
+        channel.truncate(end);
+        durable = end;
+        mapRegion(end);
+        return records;
+    }
+
+    /**
+     * Suma en unos acumulados las ventas del libro sin modificarlo: el fichero se abre solo para leer, no se recorta
+     * ni se proyecta en memoria, y se cierra al terminar. Un registro incompleto al final (un cobro en curso en otro
+     * proceso) se ignora. Después no se pueden añadir ventas con este objeto.
+     * @param rollup Acumulados donde sumar las ventas.
+     * @return Número de ventas leídas; 0 si el fichero no existe.
+     * @throws IOException Si el libro ya está abierto para escribir o no se puede leer el fichero.
+     */
+    public synchronized long read(RevenueRollup rollup) throws IOException {
+        if (channel != null) {
+            throw new IOException("The sales ledger is already open for writing");
+        }
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readRecords(source, rollup);
+        }
+    }
+
+    /**
+     * Lee los registros del libro hasta el primero incompleto o dañado y deja en end dónde acaba el último válido,
+     * o 0 si el fichero no empieza con la cabecera del libro.
+     * @param source Canal abierto para leer.
+     * @param rollup Acumulados donde sumar las ventas.
+     * @return Número de ventas leídas.
+     * @throws IOException Si no se puede leer el fichero.
+     */
+    private long readRecords(FileChannel source, RevenueRollup rollup) throws IOException {
+        long size = source.size();
+        long records = 0;
+        long position = HEADER_SIZE;
+        DataInputStream input = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(source.position(0)), 1 << 16));
+        if (size < HEADER_SIZE || input.readInt() != MAGIC) {
+            end = 0;
+            return 0;
+        }
+        input.readInt();
+        byte[] body = new byte[256];
+        while (position + RECORD_HEADER_SIZE <= size) {
+            int length = input.readInt();
+            int checksum = input.readInt();
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+            if (body.length < length) {
+                body = new byte[Math.max(length, body.length * 2)];
+            }
+            input.readFully(body, 0, length);
+            crc.reset();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            rollup.add(decode(ByteBuffer.wrap(body, 0, length)));
+            records++;
+            position += RECORD_HEADER_SIZE + length;
+        }
+        end = position;
+        return records;
+    }
+
+    /**
+     * Añade las ventas de un cobro al final del libro. Quedan en memoria compartida con el fichero, a salvo si el
+     * proceso termina, pero no si se cae el sistema hasta que se llama a sync.
+     * @param sales Ventas a añadir.
+     * @return Posición del final del libro después de añadirlas, para pasarla a sync.
+     * @throws IOException Si el libro no se ha abierto o no se puede ampliar.
+     */
+    public synchronized long append(List<Sale> sales) throws IOException {
+        if (channel == null) {
+            throw new IOException("The sales ledger has not been opened");
+        }
+        for (Sale sale : sales) {
+            int length = encode(sale);
+            crc.reset();
+            crc.update(scratch.array(), 0, length);
+            if (end + RECORD_HEADER_SIZE + length > regionStart + region.capacity()) {
+                region.force();
+                mapRegion(end);
+            }
+            int offset = (int) (end - regionStart);
+            region.put(offset + RECORD_HEADER_SIZE, scratch.array(), 0, length);
+            region.putInt(offset + 4, (int) crc.getValue());
+            region.putInt(offset, length);
+            end += RECORD_HEADER_SIZE + length;
+        }
+        return end;
+    }
+
+    /**
+     * Espera a que el libro esté en disco hasta una posición. Si otro hilo está forzando el libro a disco se espera
+     * a que termine, y si con eso ya se ha llegado a la posición no se vuelve a forzar.
+     * @param position Posición devuelta por append.
+     * @throws IOException Si falla la escritura a disco.
+     */
+    public void sync(long position) throws IOException {
+        synchronized (commitLock) {
+            if (durable >= position) {
+                return;
+            }
+            MappedByteBuffer target;
+            long start;
+            long limit;
+            synchronized (this) {
+                target = region;
+                start = regionStart;
+                limit = end;
+            }
+            int from = (int) (Math.max(durable, start) - start);
+            target.force(from, (int) (limit - start) - from);
+            durable = limit;
+        }
+    }
+
+    /**
+     * Fuerza a disco lo que quede y cierra el fichero.
+     * @throws IOException Si falla la escritura a disco.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            region.force();
+            channel.close();
+            channel = null;
+            region = null;
+        }
+    }
+
+    /**
+     * Proyecta en memoria el tramo del fichero que empieza en una posición. El fichero crece hasta el final del
+     * tramo, con ceros.
+     * @param start Posición de inicio del tramo.
+     * @throws IOException Si no se puede proyectar el fichero.
+     */
+    private void mapRegion(long start) throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_SIZE);
+        regionStart = start;
+    }
+
+    /**
+     * Codifica una venta en el buffer de trabajo: momento, precio en tienda, ganancia, descuento y, con su longitud
+     * delante, los nombres de la tienda, del producto y del cliente en UTF-8.
+     * @param sale Venta.
+     * @return Número de bytes escritos.
+     */
+    private int encode(Sale sale) {
+        byte[] shop = sale.getShopName().getBytes(StandardCharsets.UTF_8);
+        byte[] product = sale.getProductName().getBytes(StandardCharsets.UTF_8);
+        byte[] customer = sale.getCustomer().getBytes(StandardCharsets.UTF_8);
+        int length = 8 + 8 + 8 + 1 + 6 + shop.length + product.length + customer.length;
+        if (scratch.capacity() < length) {
+            scratch = ByteBuffer.allocate(Math.max(length, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        scratch.putLong(sale.getTimestamp());
+        scratch.putDouble(sale.getGross());
+        scratch.putDouble(sale.getNet());
+        scratch.put((byte) (sale.isDiscounted() ? 1 : 0));
+        putString(shop);
+        putString(product);
+        putString(customer);
+        return length;
+    }
+
+    /**
+     * Escribe un texto con su longitud delante.
+     * @param bytes Texto en UTF-8.
+     */
+    private void putString(byte[] bytes) {
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Name too long for the sales ledger: " + bytes.length + " bytes");
+        }
+        scratch.putShort((short) bytes.length);
+        scratch.put(bytes);
+    }
+
+    /**
+     * Lee una venta codificada por encode.
+     * @param body Bytes del registro.
+     * @return Venta leída.
+     */
+    private static Sale decode(ByteBuffer body) {
+        long timestamp = body.getLong();
+        double gross = body.getDouble();
+        double net = body.getDouble();
+        boolean discounted = body.get() != 0;
+        String shop = getString(body);
+        String product = getString(body);
+        String customer = getString(body);
+        return new Sale(timestamp, shop, product, customer, gross, net, discounted);
+    }
+
+    /**
+     * Lee un texto con su longitud delante.
+     * @param body Bytes del registro.
+     * @return Texto leído.
+     */
+    private static String getString(ByteBuffer body) {
+        int length = Short.toUnsignedInt(body.getShort());
+        String value = new String(body.array(), body.position(), length, StandardCharsets.UTF_8);
+        body.position(body.position() + length);
+        return value;
+    }
+}
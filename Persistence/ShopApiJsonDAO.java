@@ -1,28 +1,36 @@
 package persistence;
 
-import business.shop.LoyaltyShop;
-import business.shop.MaxProfitShop;
+import business.Catalogue;
+import business.shop.CatalogueChange;
 import business.shop.Shop;
-import business.shop.SponsoredShop;
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import metrics.ActionAccounting;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Gestiona operaciones CRUD de tiendas con una API remota, serializando y deserializando datos JSON.
  */
 public class ShopApiJsonDAO {
+    private static final SingleFlight<ArrayList<Shop>> LOAD_FLIGHTS = new SingleFlight<>();
     private ApiHelper apiHelper;
     private Gson gson;
-    private final String baseUrl = "https://balandrau.salle.url.edu/dpoo";
+    private final String baseUrl;
 
     /**
-     * Constructor. Inicializa el ayudante de API y el analizador Gson.
+     * Constructor. Inicializa el ayudante de API y toma la instancia de Gson compartida.
      */
     public ShopApiJsonDAO()  {
         this.apiHelper = new ApiHelper();
-        this.gson = new Gson();
+        this.gson = JsonSupport.gson();
+        this.baseUrl = ApiHelper.getBaseUrl();
     }
 
     /**
@@ -31,10 +39,19 @@ public class ShopApiJsonDAO {
      * @throws ApiException Si hay un problema relacionado con la API.
      */
     public void saveShops(Shop shop) throws ApiException {
+        replaceShop(shop, getShopPosition(shop));
+    }
+
+    /**
+     * Guarda una tienda en la API sustituyendo la que ocupa una posición ya conocida, sin volver a descargar la lista.
+     * @param shop Tienda a guardar.
+     * @param position Posición de la versión anterior de la tienda, o -1 si es nueva.
+     * @throws ApiException Si hay un problema relacionado con la API.
+     */
+    public void replaceShop(Shop shop, int position) throws ApiException {
         String jsonShops = gson.toJson(shop);
         String endpoint = "/P1-G70/shops";
 
-        int position = getShopPosition(shop);
         if (position != -1) {
             deleteExistingShop(position);
         }
@@ -45,6 +62,107 @@ public class ShopApiJsonDAO {
         }
     }
 
+    /**
+     * Envía a la API solo los cambios de catálogo de una tienda que ya existe en ella, en lugar de volver a subir la
+     * tienda entera: cada alta se añade al array del catálogo, cada cambio de precio sustituye su entrada, cada baja
+     * elimina la suya y las ganancias se sustituyen en su campo (solo las últimas, si hay varias). Si la API rechaza
+     * las rutas anidadas (error 4xx), se sustituye la tienda completa.
+     * Cada cambio se añade a sent en cuanto la API lo acepta, para que si la llamada se interrumpe a medias solo
+     * queden pendientes los que no han llegado y una baja ya aplicada no se vuelva a enviar.
+     * @param position Posición de la tienda en la lista de la API.
+     * @param shop Versión local de la tienda, con los cambios ya aplicados.
+     * @param changes Cambios a enviar, en orden.
+     * @param remoteCatalogue Catálogo de la tienda en la API antes de los cambios, usado para calcular las posiciones.
+     * @param sent Lista donde se añaden los cambios enviados (o que ya no hace falta enviar).
+     * @return true si se ha tenido que sustituir la tienda completa (y por tanto ha pasado al final de la lista).
+     * @throws ApiException Si hay un problema relacionado con la API.
+     */
+    public boolean sendCatalogueChanges(int position, Shop shop, List<CatalogueChange> changes, List<Catalogue> remoteCatalogue,
+                                        List<CatalogueChange> sent) throws ApiException {
+        String shopUrl = baseUrl + "/P1-G70/shops/" + position;
+        ArrayList<String> names = new ArrayList<>(remoteCatalogue.size());
+        for (Catalogue entry : remoteCatalogue) {
+            names.add(entry.getProductName());
+        }
+        int lastEarnings = -1;
+        for (int i = 0; i < changes.size(); i++) {
+            if (changes.get(i).getType() == CatalogueChange.Type.EARNINGS) {
+                lastEarnings = i;
+            }
+        }
+        try {
+            for (int i = 0; i < changes.size(); i++) {
+                CatalogueChange change = changes.get(i);
+                if (change.getType() == CatalogueChange.Type.EARNINGS && i != lastEarnings) {
+                    sent.add(change);
+                    continue;
+                }
+                ActionAccounting.Scope charge = ActionAccounting.chargeTo(change.getOrigin());
+                try {
+                    sendCatalogueChange(shopUrl, names, change);
+                    sent.add(change);
+                } finally {
+                    charge.close();
+                }
+            }
+            apiHelper.putToUrl(shopUrl + "/lastModified", Long.toString(shop.getLastModified()));
+            return false;
+        } catch (IncorrectRequestException e) {
+            replaceShop(shop, position);
+            sent.clear();
+            sent.addAll(changes);
+            return true;
+        }
+    }
+
+    /**
+     * Envía un cambio de catálogo a la API.
+     * @param shopUrl URL de la tienda.
+     * @param names Nombres del catálogo remoto por posición; se actualiza con el cambio.
+     * @param change Cambio a enviar.
+     * @throws ApiException Si falla la llamada a la API.
+     */
+    private void sendCatalogueChange(String shopUrl, ArrayList<String> names, CatalogueChange change) throws ApiException {
+        if (change.getType() == CatalogueChange.Type.EARNINGS) {
+            apiHelper.putToUrl(shopUrl + "/earnings", Double.toString(change.getPriceAtShop()));
+            return;
+        }
+        if (change.getType() == CatalogueChange.Type.REMOVE) {
+            int index = indexOf(names, change.getProductName(), true);
+            if (index != -1) {
+                apiHelper.deleteFromUrl(shopUrl + "/catalogue/" + index);
+                names.remove(index);
+            }
+            return;
+        }
+        int index = indexOf(names, change.getProductName(), false);
+        String entry = gson.toJson(new Catalogue(change.getProductName(), change.getPriceAtShop()));
+        if (index == -1) {
+            apiHelper.postToUrl(shopUrl + "/catalogue", entry);
+            names.add(change.getProductName());
+        } else {
+            apiHelper.putToUrl(shopUrl + "/catalogue/" + index, entry);
+        }
+    }
+
+    /**
+     * Busca la posición de un producto en una lista de nombres del catálogo sin distinguir mayúsculas. Las bajas
+     * buscan la última aparición y las altas y los cambios de precio la primera, igual que Shop.
+     * @param names Nombres del catálogo por posición.
+     * @param productName Nombre del producto.
+     * @param last true para buscar la última aparición.
+     * @return Posición, o -1 si no está.
+     */
+    private static int indexOf(List<String> names, String productName, boolean last) {
+        for (int i = 0; i < names.size(); i++) {
+            int index = last ? names.size() - 1 - i : i;
+            if (productName.equalsIgnoreCase(names.get(index))) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Elimina una tienda existente de la API basada en su posición.
      * @param position Posición de la tienda a eliminar.
@@ -66,97 +184,156 @@ public class ShopApiJsonDAO {
      * @throws ApiException Si hay un problema relacionado con la API.
      */
     private int getShopPosition(Shop shop) throws ApiException {
-        String endpoint = "/P1-G70/shops";
-        try {
-            String response = apiHelper.getFromUrl(baseUrl + endpoint);
-            JsonArray shopsArray = gson.fromJson(response, JsonArray.class);
-            for (int i = 0; i < shopsArray.size(); i++) {
-                JsonObject shopObject = shopsArray.get(i).getAsJsonObject();
+        return loadShopNames().indexOf(shop.getName());
+    }
 
-                if (shopObject.get("name").getAsString().equals(shop.getName())) {
+    /**
+     * Obtiene el nombre de cada elemento de la lista de tiendas de la API según su posición, tal y como la usan las
+     * operaciones de borrado y actualización. Las posiciones que no contienen una tienda con nombre quedan a null.
+     * @return Lista de nombres por posición.
+     * @throws ApiException Si hay un problema relacionado con la API.
+     */
+    public ArrayList<String> loadShopNames() throws ApiException {
+        String url = baseUrl + "/P1-G70/shops";
+        return parseShopNames(apiHelper.getFromUrl(url), url);
+    }
 
-                    return i;
+    /**
+     * Carga las tiendas desde la API y, de la misma respuesta, el nombre de cada posición de la lista, con una sola
+     * descarga: así las posiciones corresponden exactamente a las tiendas leídas. No comparte la descarga con otras
+     * llamadas simultáneas, como hace loadShops.
+     * @param positions Lista donde se añaden los nombres por posición, como los devuelve loadShopNames.
+     * @return Lista de tiendas con nombre, como la devuelve loadShops.
+     * @throws ApiException Si hay un problema relacionado con la API.
+     * @throws JsonSyntaxException Si falla el análisis de JSON.
+     */
+    public ArrayList<Shop> loadShops(ArrayList<String> positions) throws ApiException, JsonSyntaxException {
+        String url = baseUrl + "/P1-G70/shops";
+        String response = apiHelper.getFromUrl(url);
+        positions.addAll(parseShopNames(response, url));
+        ArrayList<Shop> shops = convertJsonToShops(response);
+        shops.removeIf(shop -> shop.getName() == null || shop.getName().isEmpty());
+        return shops;
+    }
+
+    /**
+     * Obtiene el nombre de cada posición de una respuesta con la lista de tiendas.
+     * @param response Respuesta JSON de la API.
+     * @param url URL de la que se ha obtenido, usada en los mensajes de error.
+     * @return Lista de nombres por posición.
+     * @throws ApiException Si la respuesta no es un array de tiendas válido.
+     */
+    private static ArrayList<String> parseShopNames(String response, String url) throws ApiException {
+        try (JsonReader reader = JsonSupport.newReader(new StringReader(response))) {
+            return readShopNames(reader);
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            throw new ApiException("ERROR: Failed to retrieve shops: " + e.getMessage(), e, url);
+        }
+    }
+
+    /**
+     * Lee en flujo el nombre de cada elemento de un array de tiendas, saltando el resto de campos sin analizarlos.
+     * @param reader Lector situado al inicio del array.
+     * @return Lista de nombres por posición, con null donde no hay una tienda con nombre.
+     * @throws IOException Si falla la lectura.
+     */
+    private static ArrayList<String> readShopNames(JsonReader reader) throws IOException {
+        ArrayList<String> names = new ArrayList<>();
+        JsonSupport.expectArray(reader);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                names.add(null);
+                continue;
+            }
+            String name = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("name")) {
+                    name = ProductTypeAdapter.readString(reader);
+                } else {
+                    reader.skipValue();
                 }
             }
-        } catch (ApiException | JsonSyntaxException e) {
-            throw new ApiException("ERROR: Failed to retrieve shops: " + e.getMessage(), e, baseUrl + endpoint);
+            reader.endObject();
+            names.add(name);
         }
-        return -1;
+        reader.endArray();
+        return names;
     }
 
     /**
-     * Carga las tiendas desde la API.
+     * Carga las tiendas desde la API. Las llamadas simultáneas comparten una sola descarga y un solo análisis;
+     * cada una recibe su propia lista, aunque las tiendas que contiene son los mismos objetos.
      * @return Representación en cadena JSON de las tiendas.
      * @throws ApiException Si hay un problema relacionado con la API.
      * @throws JsonSyntaxException Si falla el análisis de JSON.
      */
     public ArrayList<Shop> loadShops() throws ApiException, JsonSyntaxException {
         String endpoint = ("/P1-G70/shops");
-        String response = apiHelper.getFromUrl(baseUrl + endpoint);
-        ArrayList<Shop> shops = convertJsonToShops(response);
-
-        shops.removeIf(shop -> shop.getName() == null || shop.getName().isEmpty());
-
-        return shops;
+        String url = baseUrl + endpoint;
+        ArrayList<Shop> shops = LOAD_FLIGHTS.execute(ApiHelper.readKey(url), () -> {
+            ArrayList<Shop> parsed = convertJsonToShops(apiHelper.getFromUrl(url));
+            parsed.removeIf(shop -> shop.getName() == null || shop.getName().isEmpty());
+            return parsed;
+        });
+        return new ArrayList<>(shops);
     }
 
     /**
-     * Convierte una respuesta JSON en una lista de objetos Shop.
+     * Convierte una respuesta JSON en una lista de objetos Shop (ver JsonSupport.parseShops).
      * @param jsonResponse Respuesta JSON a convertir.
      * @return Lista de objetos Shop.
      */
     public ArrayList<Shop> convertJsonToShops (String jsonResponse) {
-        ArrayList<Shop> shops = new ArrayList<>();
-
-        JsonElement jsonElement = JsonParser.parseString(jsonResponse);
+        return JsonSupport.parseShops(jsonResponse);
+    }
 
-        if (!jsonElement.isJsonArray()) {
-            throw new JsonParseException("Response is not a JSON Array");
-        }
-        JsonArray jsonArray = jsonElement.getAsJsonArray();
-        for (JsonElement element : jsonArray) {
-            if (element.isJsonArray()) {
-                for (JsonElement innerElement : element.getAsJsonArray()) {
-                    Shop shop= parseShop(innerElement);
-                    if (shop != null) {
-                        shops.add(shop);
+    /**
+     * Convierte en una lista de objetos Shop el array JSON que se lee en flujo, sin construir un árbol intermedio.
+     * Los arrays anidados se aplanan y las tiendas sin modelo de negocio se descartan.
+     * Se comparte con ShopJsonDAO para leer el fichero local con las mismas reglas.
+     * @param reader Lector situado al inicio del documento.
+     * @return Lista de objetos Shop.
+     * @throws IOException Si falla la lectura del origen.
+     * @throws JsonParseException Si el documento no es un array o alguna tienda no es válida.
+     */
+    static ArrayList<Shop> convertJsonToShops(JsonReader reader) throws IOException {
+        ArrayList<Shop> shops = new ArrayList<>();
+        try {
+            JsonSupport.expectArray(reader);
+            reader.beginArray();
+            while (reader.hasNext()) {
+                JsonToken token = reader.peek();
+                if (token == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        addShop(shops, JsonSupport.SHOP_ADAPTER.read(reader));
                     }
-                }
-            } else if (element.isJsonObject()) {
-               Shop shop = parseShop(element);
-                if (shop != null) {
-                    shops.add(shop);
+                    reader.endArray();
+                } else if (token == JsonToken.BEGIN_OBJECT) {
+                    addShop(shops, JsonSupport.SHOP_ADAPTER.read(reader));
                 } else {
-                    System.out.println("Invalid shop data found: " + element);
+                    reader.skipValue();
                 }
             }
+            reader.endArray();
+            JsonSupport.expectEnd(reader);
+        } catch (MalformedJsonException | EOFException e) {
+            throw new JsonSyntaxException(e);
         }
         return shops;
     }
 
     /**
-     * Analiza un elemento JSON para crear un objeto Shop.
-     * @param jsonElement Elemento JSON a analizar.
-     * @return Objeto Shop o null si el análisis falla.
+     * Añade una tienda leída a la lista si se ha podido crear.
+     * @param shops Lista de tiendas.
+     * @param shop Tienda leída, o null si se ha descartado.
      */
-    private Shop parseShop(JsonElement jsonElement) {
-        JsonObject jsonObject = jsonElement.getAsJsonObject();
-        JsonElement categoryElement = jsonObject.get("businessModel");
-
-        if (categoryElement == null || categoryElement.isJsonNull()) {
-            System.out.println("Warning: Found a shop without 'businessModel' property. Skipping this shop.");
-            return null;
-        }
-        String businessModel = categoryElement.getAsString();
-        switch (businessModel) {
-            case "MAX_PROFIT":
-                return gson.fromJson(jsonObject, MaxProfitShop.class);
-            case "LOYALTY":
-                return gson.fromJson(jsonObject, LoyaltyShop.class);
-            case "SPONSORED":
-                return gson.fromJson(jsonObject, SponsoredShop.class);
-            default:
-                throw new JsonParseException("Invalid category: " + businessModel);
+    private static void addShop(ArrayList<Shop> shops, Shop shop) {
+        if (shop != null) {
+            shops.add(shop);
         }
     }
 
@@ -169,7 +346,7 @@ public class ShopApiJsonDAO {
      */
     public void updateEarnings(Shop shop, double earnings) throws ApiException {
         shop.setEarnings(earnings);
-        String shopJsonUpdate = new Gson().toJson(shop);
+        String shopJsonUpdate = gson.toJson(shop);
         int position = getPositionOfShop(shop.getName());
         if (position == -1) {
             throw new ApiException("Shop not found: " + shop.getName(), null, null);
@@ -3,10 +3,15 @@ package persistence;
 import business.shop.Shop;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 import com.google.gson.reflect.TypeToken;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 /**
@@ -15,12 +20,15 @@ import java.util.List;
 public class ShopJsonDAO {
     private static final String FILE_PATH = "shops.json";
     private Gson gson;
+    private final StorageFormat storageFormat;
 
     /**
-     * Constructor de la clase. Inicializa una instancia de Gson para manejar la conversión de objetos a JSON y viceversa.
+     * Constructor de la clase. Inicializa una instancia de Gson para manejar la conversión de objetos a JSON y viceversa,
+     * usando el formato de escritura configurado (ver StorageFormat).
      */
     public ShopJsonDAO(){
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.storageFormat = StorageFormat.configured();
+        this.gson = storageFormat.createGson();
         initializeShopsFileIfNotExists();
     }
 
@@ -43,14 +51,37 @@ public class ShopJsonDAO {
     }
 
     /**
-     * Guarda una lista de tiendas en el archivo JSON "shops.json".
+     * Guarda una lista de tiendas en el archivo JSON "shops.json". Se escribe primero en un fichero temporal que
+     * luego sustituye al anterior, para que quien esté leyendo el fichero no lo vea a medias.
      * @param shops lista de tiendas para guardar
      */
     public void saveShops(List<Shop> shops) {
-        try (Writer writer = new FileWriter(FILE_PATH)) {
-            gson.toJson(shops, writer);
-        } catch (IOException e) {
+        Path temporary = Path.of(FILE_PATH + ".tmp");
+        try {
+            try (Writer writer = storageFormat.openWriter(temporary.toString())) {
+                gson.toJson(shops, writer);
+            }
+            Files.move(temporary, Path.of(FILE_PATH), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
             e.printStackTrace();
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Carga la lista de tiendas guardada en el archivo JSON "shops.json".
+     * @return lista de tiendas leídas del archivo
+     * @throws IOException Si el archivo no se puede leer
+     * @throws JsonParseException Si el contenido del archivo no es válido
+     */
+    public ArrayList<Shop> loadShops() throws IOException {
+        try (JsonReader reader = JsonSupport.newReader(StorageFormat.openReader(FILE_PATH))) {
+            ArrayList<Shop> shops = ShopApiJsonDAO.convertJsonToShops(reader);
+            shops.removeIf(shop -> shop.getName() == null || shop.getName().isEmpty());
+            return shops;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package persistence;
+
+import business.Catalogue;
+import business.shop.LoyaltyShop;
+import business.shop.MaxProfitShop;
+import business.shop.Shop;
+import business.shop.SponsoredShop;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Convierte tiendas de cualquier modelo de negocio a JSON y de JSON sin reflexión ni árbol intermedio. Lee los
+ * campos directamente del flujo y crea la subclase que indica "businessModel"; al escribir produce los mismos
+ * nombres de campo que Gson generaba por reflexión.
+ */
+class ShopTypeAdapter extends TypeAdapter<Shop> {
+
+    /**
+     * Escribe una tienda.
+     * @param out Destino JSON.
+     * @param shop Tienda a escribir, o null.
+     * @throws IOException Si falla la escritura.
+     */
+    @Override
+    public void write(JsonWriter out, Shop shop) throws IOException {
+        if (shop == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (shop instanceof LoyaltyShop loyaltyShop) {
+            out.name("loyaltyThreshold").value(loyaltyShop.getLoyaltyThreshold());
+        } else if (shop instanceof SponsoredShop sponsoredShop) {
+            out.name("sponsorBrand").value(sponsoredShop.getSponsorBrand());
+        }
+        out.name("name").value(shop.getName());
+        out.name("description").value(shop.getDescription());
+        out.name("since").value(shop.getSince());
+        out.name("earnings").value(shop.getEarnings());
+        out.name("businessModel").value(shop.businessModel);
+        List<Catalogue> catalogue = shop.getCatalogue();
+        if (catalogue != null) {
+            out.name("catalogue").beginArray();
+            for (Catalogue entry : catalogue) {
+                if (entry == null) {
+                    out.nullValue();
+                    continue;
+                }
+                out.beginObject();
+                out.name("productName").value(entry.getProductName());
+                out.name("priceAtShop").value(entry.getPriceAtShop());
+                out.endObject();
+            }
+            out.endArray();
+        }
+        out.name("lastModified").value(shop.getLastModified());
+        out.endObject();
+    }
+
+    /**
+     * Lee una tienda.
+     * @param in Origen JSON, situado al inicio del objeto.
+     * @return Tienda de la subclase indicada por su modelo de negocio, o null si el valor es null o la tienda no
+     * tiene modelo de negocio (en ese caso se avisa por consola y se descarta, como hasta ahora).
+     * @throws IOException Si falla la lectura.
+     * @throws JsonParseException Si el modelo de negocio no es válido.
+     */
+    @Override
+    public Shop read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String name = null;
+        String description = null;
+        String businessModel = null;
+        String sponsorBrand = null;
+        int since = 0;
+        double earnings = 0;
+        double loyaltyThreshold = 0;
+        long lastModified = 0;
+        ArrayList<Catalogue> catalogue = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "name" -> name = ProductTypeAdapter.readString(in);
+                case "description" -> description = ProductTypeAdapter.readString(in);
+                case "since" -> since = (int) ProductTypeAdapter.readLong(in, since);
+                case "earnings" -> earnings = ProductTypeAdapter.readDouble(in, earnings);
+                case "businessModel" -> businessModel = ProductTypeAdapter.readString(in);
+                case "catalogue" -> catalogue = readCatalogue(in);
+                case "lastModified" -> lastModified = ProductTypeAdapter.readLong(in, lastModified);
+                case "loyaltyThreshold" -> loyaltyThreshold = ProductTypeAdapter.readDouble(in, loyaltyThreshold);
+                case "sponsorBrand" -> sponsorBrand = ProductTypeAdapter.readString(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (businessModel == null) {
+            System.out.println("Warning: Found a shop without 'businessModel' property. Skipping this shop.");
+            return null;
+        }
+        if (catalogue == null) {
+            catalogue = new ArrayList<>();
+        }
+        Shop shop = switch (businessModel) {
+            case "MAX_PROFIT" -> new MaxProfitShop(name, description, since, catalogue);
+            case "LOYALTY" -> new LoyaltyShop(name, description, since, catalogue, loyaltyThreshold);
+            case "SPONSORED" -> new SponsoredShop(name, description, since, catalogue, sponsorBrand);
+            default -> throw new JsonParseException("Invalid category: " + businessModel);
+        };
+        shop.setEarnings(earnings);
+        shop.setLastModified(lastModified);
+        return shop;
+    }
+
+    /**
+     * Lee el catálogo de una tienda.
+     * @param in Origen JSON, situado al inicio del array.
+     * @return Entradas del catálogo, o null si el valor es null.
+     * @throws IOException Si falla la lectura.
+     */
+    private static ArrayList<Catalogue> readCatalogue(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        ArrayList<Catalogue> catalogue = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            String productName = null;
+            double priceAtShop = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "productName" -> productName = ProductTypeAdapter.readString(in);
+                    case "priceAtShop" -> priceAtShop = ProductTypeAdapter.readDouble(in, priceAtShop);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            catalogue.add(new Catalogue(productName, priceAtShop));
+        }
+        in.endArray();
+        return catalogue;
+    }
+}
@@ -0,0 +1,79 @@
+package persistence;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Agrupa llamadas idénticas que se hacen a la vez: la primera llamada con una clave se ejecuta y las que llegan
+ * mientras sigue en curso esperan y reciben el mismo resultado (o el mismo error, incluidos los Error como
+ * OutOfMemoryError, para que nunca se queden esperando) en lugar de repetir el trabajo.
+ * En cuanto la llamada termina, la clave queda libre y la siguiente vuelve a ejecutarse.
+ * @param <T> Tipo del resultado compartido.
+ */
+class SingleFlight<T> {
+    private final ConcurrentHashMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Llamada que se puede agrupar.
+     * @param <T> Tipo del resultado.
+     */
+    interface Call<T> {
+        T call() throws ApiException;
+    }
+
+    /**
+     * Ejecuta la llamada o se une a la que ya esté en curso con la misma clave.
+     * @param key Clave que identifica llamadas equivalentes.
+     * @param call Llamada a ejecutar si no hay ninguna en curso.
+     * @return Resultado de la llamada, compartido con las demás que se hayan unido.
+     * @throws ApiException Si la llamada falla.
+     */
+    T execute(String key, Call<T> call) throws ApiException {
+        CompletableFuture<T> own = new CompletableFuture<>();
+        CompletableFuture<T> existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            return await(key, existing);
+        }
+        try {
+            T result = call.call();
+            own.complete(result);
+            return result;
+        } catch (Throwable e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * Espera el resultado de una llamada en curso.
+     * @param key Clave de la llamada, usada en los mensajes de error.
+     * @param future Resultado pendiente.
+     * @return Resultado de la llamada.
+     * @throws ApiException Si la llamada falla o se interrumpe la espera. Las excepciones no comprobadas y los Error
+     * de la llamada se relanzan tal cual.
+     */
+    private T await(String key, CompletableFuture<T> future) throws ApiException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionInterruptedException(key, new InterruptedIOException("Interrupted while waiting for a shared request"));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ApiException apiException) {
+                throw apiException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new ApiException("Shared request failed: " + cause, cause, key);
+        }
+    }
+}
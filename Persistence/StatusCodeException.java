@@ -0,0 +1,23 @@
+package persistence;
+
+/**
+ * Excepción que representa errores de estado de respuesta HTTP específicos en operaciones de API.
+ * Incluye el código de estado HTTP específico que causó el error.
+ */
+class StatusCodeException extends ApiException {
+    private static final long serialVersionUID = 1L;
+
+    private int statusCode;
+
+    public StatusCodeException(String message, int statusCode, String url) {
+        super(message, null, url);
+        this.statusCode = statusCode;
+    }
+    /**
+     * Obtiene el código de estado HTTP de la excepción.
+     * @return Código de estado HTTP.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
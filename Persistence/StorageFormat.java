@@ -0,0 +1,81 @@
+package persistence;
+
+import com.google.gson.Gson;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formatos en los que se pueden guardar los ficheros locales (products.json y shops.json).
+ * Al leer, el formato se detecta automáticamente por la cabecera del fichero, así que se puede cambiar de formato
+ * sin convertir los ficheros existentes. El formato de escritura se elige con la propiedad del sistema
+ * {@code elcofre.storage.format} (pretty, compact o gzip); por defecto es pretty.
+ */
+public enum StorageFormat {
+    /** JSON con sangrado, legible a mano. */
+    PRETTY,
+    /** JSON sin espacios. */
+    COMPACT,
+    /** JSON sin espacios comprimido con gzip. */
+    GZIP;
+
+    private static final String PROPERTY = "elcofre.storage.format";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Obtiene el formato configurado mediante la propiedad del sistema.
+     * @return Formato configurado, o PRETTY si no se ha configurado o no es válido.
+     */
+    public static StorageFormat configured() {
+        String value = System.getProperty(PROPERTY, "pretty");
+        for (StorageFormat format : values()) {
+            if (format.name().equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        return PRETTY;
+    }
+
+    /**
+     * Obtiene la instancia de Gson adecuada para escribir en este formato. Son las instancias compartidas de
+     * JsonSupport, que convierten productos y tiendas sin reflexión.
+     * @return Instancia de Gson.
+     */
+    public Gson createGson() {
+        return this == PRETTY ? JsonSupport.prettyGson() : JsonSupport.gson();
+    }
+
+    /**
+     * Abre un fichero para escribir en este formato.
+     * @param path Ruta del fichero.
+     * @return Writer con buffer; al cerrarlo se completa la compresión si la hay.
+     * @throws IOException Si no se puede abrir el fichero.
+     */
+    public Writer openWriter(String path) throws IOException {
+        OutputStream output = new FileOutputStream(path);
+        if (this == GZIP) {
+            output = new GZIPOutputStream(output, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Abre un fichero para leerlo, descomprimiéndolo si empieza por la cabecera de gzip.
+     * @param path Ruta del fichero.
+     * @return Reader con buffer sobre el contenido JSON.
+     * @throws IOException Si no se puede abrir el fichero.
+     */
+    public static Reader openReader(String path) throws IOException {
+        InputStream input = new BufferedInputStream(new FileInputStream(path), BUFFER_SIZE);
+        input.mark(2);
+        int first = input.read();
+        int second = input.read();
+        input.reset();
+        if (first == 0x1f && second == 0x8b) {
+            input = new GZIPInputStream(input, BUFFER_SIZE);
+        }
+        return new InputStreamReader(input, StandardCharsets.UTF_8);
+    }
+}
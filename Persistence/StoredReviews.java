@@ -0,0 +1,149 @@
+package persistence;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Copia, desde un fichero de productos ya guardado, las reseñas de los productos que no las tienen cargadas, token a
+ * token y sin crear las reseñas ni los productos. El fichero se recorre en orden: como la lista que se guarda suele
+ * tener los productos en el mismo orden, cada uno se encuentra avanzando desde el anterior, y solo si no aparece se
+ * vuelve a buscar desde el principio.
+ */
+final class StoredReviews implements Closeable {
+    private final String path;
+    private JsonReader reader;
+
+    /**
+     * Constructor. El fichero no se abre hasta que se pide la primera copia.
+     * @param path Ruta del fichero de productos guardado.
+     */
+    StoredReviews(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Escribe las reseñas guardadas de un producto.
+     * @param productName Nombre del producto.
+     * @param out Destino, situado donde va el valor de "reviews".
+     * @return true si el producto está en el fichero y se han escrito sus reseñas (un array vacío si no tenía);
+     * false si no está, y entonces no se escribe nada.
+     * @throws IOException Si falla la lectura del fichero o la escritura.
+     */
+    boolean copy(String productName, JsonWriter out) throws IOException {
+        if (reader != null && copyForward(productName, out)) {
+            return true;
+        }
+        close();
+        reader = JsonSupport.newReader(StorageFormat.openReader(path));
+        reader.beginArray();
+        return copyForward(productName, out);
+    }
+
+    /**
+     * Avanza por el fichero hasta el producto indicado y escribe sus reseñas.
+     * @param productName Nombre del producto.
+     * @param out Destino.
+     * @return true si se ha encontrado antes del final del fichero.
+     * @throws IOException Si falla la lectura o la escritura.
+     */
+    private boolean copyForward(String productName, JsonWriter out) throws IOException {
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            String name = null;
+            JsonElement reviewsBeforeName = null;
+            boolean copied = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String field = reader.nextName();
+                if (field.equals("name")) {
+                    name = ProductTypeAdapter.readString(reader);
+                } else if (!field.equals("reviews") || copied) {
+                    reader.skipValue();
+                } else if (name == null) {
+                    reviewsBeforeName = JsonParser.parseReader(reader);
+                } else if (name.equals(productName)) {
+                    copyValue(out);
+                    copied = true;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (productName.equals(name)) {
+                if (copied) {
+                    return true;
+                }
+                if (reviewsBeforeName != null && reviewsBeforeName.isJsonArray()) {
+                    JsonSupport.gson().toJson(reviewsBeforeName, out);
+                } else {
+                    out.beginArray().endArray();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copia el siguiente valor del fichero, con todo lo que contiene, al destino.
+     * @param out Destino.
+     * @throws IOException Si falla la lectura o la escritura.
+     */
+    private void copyValue(JsonWriter out) throws IOException {
+        int depth = 0;
+        do {
+            switch (reader.peek()) {
+                case BEGIN_ARRAY -> {
+                    reader.beginArray();
+                    out.beginArray();
+                    depth++;
+                }
+                case END_ARRAY -> {
+                    reader.endArray();
+                    out.endArray();
+                    depth--;
+                }
+                case BEGIN_OBJECT -> {
+                    reader.beginObject();
+                    out.beginObject();
+                    depth++;
+                }
+                case END_OBJECT -> {
+                    reader.endObject();
+                    out.endObject();
+                    depth--;
+                }
+                case NAME -> out.name(reader.nextName());
+                case STRING -> out.value(reader.nextString());
+                case NUMBER -> out.jsonValue(reader.nextString());
+                case BOOLEAN -> out.value(reader.nextBoolean());
+                case NULL -> {
+                    reader.nextNull();
+                    out.nullValue();
+                }
+                default -> throw new IOException("Unexpected end of " + path);
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * Cierra el fichero si está abierto.
+     * @throws IOException Si falla el cierre.
+     */
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package persistence;
+
+/**
+ * Excepción para errores de API no disponible, subclase de StatusCodeException con un mensaje predeterminado.
+ */
+class UnavailableApiException extends StatusCodeException {
+    private static final long serialVersionUID = 1L;
+
+    public UnavailableApiException(String url, int statusCode) {
+        super("API is unavailable", statusCode, url);
+    }
+}
@@ -0,0 +1,13 @@
+package persistence;
+import java.io.IOException;
+
+/**
+ * Excepción específica para manejar casos donde el servidor de la API es inalcanzable.
+ */
+class UnreachableServerException extends ApiException {
+    private static final long serialVersionUID = 1L;
+
+    public UnreachableServerException(String url, IOException cause) {
+        super(cause.getMessage(), cause, url);
+    }
+}
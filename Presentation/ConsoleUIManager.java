@@ -1,43 +1,67 @@
 package presentation;
 import java.util.InputMismatchException;
+import java.util.List;
 import java.util.Scanner;
 /**
  * Se encarga de gestionar la interfaz de usuario en una aplicación.
+ * Los mensajes no se escriben en la consola uno a uno: se acumulan en un ScreenBuffer y la pantalla completa se
+ * escribe de una vez justo antes de leer la siguiente entrada del usuario (o al llamar a flush()).
  */
 public class ConsoleUIManager {
+    private static final String PAGE_SIZE_PROPERTY = "elcofre.page.size";
+    private static final int DEFAULT_PAGE_SIZE = 20;
     private static Scanner scanner;
+    private final ScreenBuffer screen;
+    private final int pageSize;
+
+    /**
+     * Pinta una fila de una lista paginada.
+     * @param <T> Tipo de los elementos de la lista.
+     */
+    public interface RowRenderer<T> {
+        /**
+         * Añade una fila a la pantalla.
+         * @param screen Pantalla en la que se escribe.
+         * @param index Posición del elemento en la lista, empezando por 0.
+         * @param item Elemento a pintar.
+         */
+        void render(ScreenBuffer screen, int index, T item);
+    }
+
     /**
      * Este constructor para la clase ConsoleUIManager inicializa un objeto Scanner para la entrada estándar del sistema (System.in).
      * Básicamente, se utiliza para recibir la entrada del usuario desde la consola.
      */
     public ConsoleUIManager() {
         this.scanner = new Scanner(System.in);
+        this.screen = new ScreenBuffer();
+        this.pageSize = Math.max(0, Integer.getInteger(PAGE_SIZE_PROPERTY, DEFAULT_PAGE_SIZE));
     }
     /**
      * Muestra un mensaje de bienvenida y verifica archivos locales.
      */
     public void showPrincipalMessage(){
-        System.out.println("       ________     ____ \n" +
+        screen.appendLine("       ________     ____ \n" +
                 "  ___ / / ____/___ / __/_______\n" +
                 " / _ \\/ / / / __ \\/ /_/ ___/ _ \\\n" +
                 "/ __/ / /___/ /_/ / __/ / / __/ \n" +
                 "\\___/_/\\____/\\____/_/ /_/ \\___/\n");
-        System.out.println("Welcome to elCofre Digital Shopping Experiences.\n");
-        System.out.println("\nChecking API status...");
+        screen.appendLine("Welcome to elCofre Digital Shopping Experiences.\n");
+        screen.appendLine("\nChecking API status...");
     }
     /**
      *  Muestra un mensaje de inicio correcto.
      */
     public void showCorrectMessage(){
-        System.out.println("\n\nVerifying local files...");
-        System.out.println("Starting program...");
+        screen.appendLine("\n\nVerifying local files...");
+        screen.appendLine("Starting program...");
     }
 
     /**
      * Muestra el menú principal de la aplicación con opciones.
      */
     public void showMainMenu(){
-        System.out.println("\n\t1) Manage Products\n\t2) Manage Shops\n\t3) Search Products\n\t4) List Shops\n\t5) Your Cart\n\n\t6) Exit");
+        screen.appendLine("\n\t1) Manage Products\n\t2) Manage Shops\n\t3) Search Products\n\t4) List Shops\n\t5) Your Cart\n\n\t6) Exit");
     }
 
     /**
@@ -46,10 +70,11 @@ public class ConsoleUIManager {
     public int getOption(String message){
         while(true){
             try{
-                System.out.print(message);
+                screen.append(message);
+                screen.flush();
                 return scanner.nextInt();
             } catch( InputMismatchException e){
-                System.out.println("ERROR: option must be an integer!\n");
+                screen.appendLine("ERROR: option must be an integer!\n");
             } finally {
                 scanner.nextLine();
             }
@@ -57,18 +82,58 @@ public class ConsoleUIManager {
     }
 
     /**
-     * Muestra un mensaje en la consola.
+     * Muestra un mensaje en la consola. El mensaje se añade a la pantalla actual y se escribe junto con ella.
      * @param message El mensaje que se quiere mostrar
      */
     public void showMessage(String message){
-        System.out.print(message);
+        screen.append(message);
+    }
+
+    /**
+     * Devuelve la pantalla en composición, para añadir varios fragmentos sin concatenarlos antes.
+     * @return ScreenBuffer de la pantalla actual
+     */
+    public ScreenBuffer screen(){
+        return screen;
+    }
+
+    /**
+     * Escribe en la consola todo lo que se ha mostrado y aún no se ha escrito.
+     */
+    public void flush(){
+        screen.flush();
+    }
+
+    /**
+     * Muestra una lista larga por páginas. Las filas conservan su numeración global, así que las opciones de los
+     * menús que vienen después siguen siendo las mismas. Tras cada página se escribe la pantalla y se pregunta si
+     * seguir; si el usuario para, el resto de filas ni siquiera se pinta. El tamaño de página se configura con
+     * -Delcofre.page.size (0 muestra la lista entera).
+     * @param items Elementos a mostrar
+     * @param renderer Pinta cada fila
+     * @param <T> Tipo de los elementos
+     * @return Número de filas mostradas
+     */
+    public <T> int showPaged(List<T> items, RowRenderer<T> renderer){
+        int size = items.size();
+        for (int i = 0; i < size; i++) {
+            if (pageSize > 0 && i > 0 && i % pageSize == 0) {
+                screen.append("\n-- ").append(i).append('/').append(size).append(" shown, Enter for more, q to stop -- ");
+                screen.flush();
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    return i;
+                }
+            }
+            renderer.render(screen, i, items.get(i));
+        }
+        return size;
     }
 
     /**
      * Muestra un menú relacionado con la gestión de productos.
      */
     public void showProductMenu(){
-        System.out.println("\n\t1) Create a Product\n\t2) Remove a Product\n\n\t3) Back");
+        screen.appendLine("\n\t1) Create a Product\n\t2) Remove a Product\n\n\t3) Back");
     }
 
     /**
@@ -77,7 +142,8 @@ public class ConsoleUIManager {
      * @return String devuelve la string que se lee
      */
     public String askForString(String message) {
-        System.out.print(message);
+        screen.append(message);
+        screen.flush();
         return scanner.nextLine();
     }
 
@@ -87,14 +153,15 @@ public class ConsoleUIManager {
      * @return Double devuelve el numero double que se lee
      */
     public double askForNumber(String message) {
-        System.out.print(message);
+        screen.append(message);
         while (true) {
+            screen.flush();
             String input = scanner.nextLine();
             try {
                 return Double.parseDouble(input);
             } catch (NumberFormatException e) {
-                System.out.println("ERROR: Number not valid.");
-                System.out.print(message);
+                screen.appendLine("ERROR: Number not valid.");
+                screen.append(message);
             }
         }
     }
@@ -106,14 +173,16 @@ public class ConsoleUIManager {
     public String getCategory(){
         Scanner scanner = new Scanner(System.in);
         String category;
-        System.out.println("\nThe system supports the following product categories:\n");
-        System.out.println("\tA) General\n\tB) Reduced Taxes\n\tC) Superreduced Taxes\n");
+        screen.appendLine("\nThe system supports the following product categories:\n");
+        screen.appendLine("\tA) General\n\tB) Reduced Taxes\n\tC) Superreduced Taxes\n");
 
-        System.out.print("Please pick the product’s category: ");
+        screen.append("Please pick the product’s category: ");
+        screen.flush();
         category = scanner.nextLine().toUpperCase();
         while(!(category.equals("A") || category.equals("B") || category.equals("C"))){
-            System.out.println("ERROR: Invalid category. Please enter a valid category\n");
-            System.out.print("Please pick the product’s category: ");
+            screen.appendLine("ERROR: Invalid category. Please enter a valid category\n");
+            screen.append("Please pick the product’s category: ");
+            screen.flush();
             category = scanner.nextLine().toUpperCase();
         }
         switch(category){
@@ -134,15 +203,17 @@ public class ConsoleUIManager {
     public String getBusinessModel(){
         Scanner scanner = new Scanner(System.in);
         String model;
-        System.out.println("\nThe system supports the following business models:\n");
-        System.out.println("\tA) Maximum Benefits\n\tB) Loyalty\n\tC) Sponsored\n");
+        screen.appendLine("\nThe system supports the following business models:\n");
+        screen.appendLine("\tA) Maximum Benefits\n\tB) Loyalty\n\tC) Sponsored\n");
 
-        System.out.print("Please pick the shop’s business model: ");
+        screen.append("Please pick the shop’s business model: ");
+        screen.flush();
         model = scanner.nextLine().toUpperCase();
 
         while(!(model.equals("A") || model.equals("B") || model.equals("C"))){
-            System.out.println("ERROR: Invalid business model.\n");
-            System.out.print("Please try again: ");
+            screen.appendLine("ERROR: Invalid business model.\n");
+            screen.append("Please try again: ");
+            screen.flush();
             model = scanner.nextLine().toUpperCase();
         }
         switch(model){
@@ -160,7 +231,7 @@ public class ConsoleUIManager {
      * Muestra un menú relacionado con la gestión de tiendas.
      */
     public void showManageShopMenu(){
-        System.out.println("\n\t1) Create a Shop\n\t2) Expand a Shop's Catalogue\n\t3) Reduce a Shop's Catalogue\n\n\t4) Back");
+        screen.appendLine("\n\t1) Create a Shop\n\t2) Expand a Shop's Catalogue\n\t3) Reduce a Shop's Catalogue\n\n\t4) Back");
     }
 
     /**
@@ -168,21 +239,21 @@ public class ConsoleUIManager {
      * @return String la categoría del producto
      */
     public void showReviewProduct(){
-        System.out.println("\n\t1) Read Reviews\n\t2) Review Product\n\n\t3) Back");
+        screen.appendLine("\n\t1) Read Reviews\n\t2) Review Product\n\n\t3) Back");
     }
 
     /**
      * Muestra un menú relacionado con la gestión de productos en un catálogo de tienda.
      */
     public void showProductCatalogueMenu(){
-        System.out.println("\n\t1) Read Reviews\n\t2) Review Product\n\t3) Add to a cart\n\n\t4) Back");
+        screen.appendLine("\n\t1) Read Reviews\n\t2) Review Product\n\t3) Add to a cart\n\n\t4) Back");
     }
 
     /**
      * Muestra un menú relacionado con el carrito de compras del usuario.
      */
     public void showCartMenu () {
-        System.out.println("\n\t1) Checkout\n\t2) Clear Cart\n\n\t3) Back");
+        screen.appendLine("\n\t1) Checkout\n\t2) Clear Cart\n\n\t3) Back");
     }
 
 }
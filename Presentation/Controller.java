@@ -2,30 +2,29 @@ package presentation;
 import business.*;
 import business.product.*;
 import business.shop.*;
-import com.google.gson.JsonSyntaxException;
-import persistence.ApiException;
-import persistence.ApiHelper;
-import persistence.ProductApiJsonDAO;
-import persistence.ShopApiJsonDAO;
+import metrics.ActionAccounting;
 
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
 
 /**
  * Este constructor Java para la clase Controller recibe instancias de ConsoleUIManager, ProductManager y ShopManager como parámetros,
  * las asigna a las variables correspondientes en la clase. Presumiblemente, se utiliza para establecer la interfaz de usuario y los gestores de productos y tiendas en el controlador.
  */
 public class Controller {
-    private final ShopApiJsonDAO shopApiJsonDAO;
-    private final ProductApiJsonDAO productApiJsonDAO;
+    private static final int MAX_SUGGESTIONS = 3;
     private final ConsoleUIManager consoleUIManager;
     private final ProductManager productManager;
     private final ShopManager shopManager;
     private final DealerManager dealerManager;
-    private final ApiHelper apiHelper;
+    private final WarmUpManager warmUpManager;
+    private boolean warmUpReported;
     private CartManager cartManager;
     private ArrayList<Cart> carts;
 
@@ -35,19 +34,17 @@ public class Controller {
      * @param ui necesario para intractuar con el usuario
      * @param productManager necesario para trabajar con los productos y sus reseñas
      * @param shopManager necesario para trabajar con las tiendas y sus catálogos
-     * @param apiHelper necsario para la relación con la API
-     * @param productApiJsonDAO necesario para comunicarnos con la API de productoa
+     * @param warmUpManager precarga de productos y tiendas en segundo plano, o null si no se usa
      */
-    public Controller(ConsoleUIManager ui, ProductManager productManager, ShopManager shopManager, ApiHelper apiHelper, ProductApiJsonDAO productApiJsonDAO) {
+    public Controller(ConsoleUIManager ui, ProductManager productManager, ShopManager shopManager, WarmUpManager warmUpManager) {
         this.consoleUIManager = ui;
         this.productManager = productManager;
         this.shopManager = shopManager;
         this.dealerManager = new DealerManager(shopManager, productManager);
         this.carts = new ArrayList<>();
-        this.cartManager = new CartManager(carts);
-        this.apiHelper = apiHelper;
-        this.productApiJsonDAO = productApiJsonDAO;
-        this.shopApiJsonDAO = new ShopApiJsonDAO();
+        this.cartManager = new CartManager(carts, productManager, shopManager);
+        this.cartManager.setCustomer(System.getProperty("elcofre.customer", LoyaltyTracker.GUEST));
+        this.warmUpManager = warmUpManager;
     }
 
     /**
@@ -58,10 +55,36 @@ public class Controller {
         consoleUIManager.showCorrectMessage();
         int option;
         do {
+            showWarmUpReport();
             consoleUIManager.showMainMenu();
             option = consoleUIManager.getOption("\nChoose a Digital Shopping Experience: ");
             executeOption(option);
         } while (option != 6);
+        consoleUIManager.flush();
+    }
+
+    /**
+     *  Muestra una única vez los tiempos de la precarga cuando esta ha terminado.
+     */
+    private void showWarmUpReport() {
+        if (warmUpManager != null && !warmUpReported && warmUpManager.isDone()) {
+            warmUpReported = true;
+            consoleUIManager.showMessage(warmUpManager.getReport());
+        }
+    }
+
+    /**
+     *  Ejecuta una acción del usuario anotando en ActionAccounting las llamadas a la API que provoque.
+     * @param action nombre de la acción
+     * @param body la acción a ejecutar
+     */
+    private void runAction(String action, Runnable body) {
+        ActionAccounting.Scope scope = ActionAccounting.begin(action);
+        try {
+            body.run();
+        } finally {
+            scope.close();
+        }
     }
 
     /**
@@ -77,13 +100,13 @@ public class Controller {
                 manageShopsMenu();
                 break;
             case 3:
-                searchProducts();
+                runAction("searchProducts", this::searchProducts);
                 break;
             case 4:
-                listShops();
+                runAction("listShops", this::listShops);
                 break;
             case 5:
-                showUserCart();
+                runAction("showUserCart", this::showUserCart);
                 break;
             case 6:
                 consoleUIManager.showMessage("\nWe hope to see you again!\n");
@@ -110,10 +133,10 @@ public class Controller {
     private void executeProductOption(int productOption) {
         switch (productOption) {
             case 1:
-                createProduct();
+                runAction("createProduct", this::createProduct);
                 break;
             case 2:
-                removeProduct();
+                runAction("removeProduct", this::removeProduct);
                 break;
             case 3:
                 break;
@@ -144,39 +167,16 @@ public class Controller {
      *  Permite la eliminación de un producto existente.
      */
     public void removeProduct() {
-        try{
-            if(apiHelper.isConnected()){
-                ArrayList<Product> products = productApiJsonDAO.loadProducts();
-                if(!products.isEmpty()){
-                    consoleUIManager.showMessage("These are the currently available products:\n\n");
-                    for(int i= 0; i<products.size(); i++){
-                        consoleUIManager.showMessage("\n" + (i + 1) + ") " + products.get(i).getName());
-                    }
-                    int apiIndex = consoleUIManager.getOption("\nWhich one would you like to remove? ");
-                    try {
-                        confirmationApiRemove(apiIndex - 1, products);
-
-                    }catch (ApiException e){
-                        consoleUIManager.showMessage("ERROR Api: " + e.getMessage());
-                    }
-                }else{
-                    consoleUIManager.showMessage("\nERROR: There are no products to remove...\n\n");
-                }
-            }else{
-                if (productManager.getProductList().isEmpty()) {
-                    consoleUIManager.showMessage("\nERROR: There are no products to remove...\n\n");
-                } else {
-                    showProductList();
-                    int index = consoleUIManager.getOption("\nWhich one would you like to remove? ");
-                    if (index > 0 && index <= productManager.getProductList().size()) {
-                        confirmProductRemove(index - 1);
-                    } else {
-                        consoleUIManager.showMessage("\nERROR: please enter a valid number\n\n");
-                    }
-                }
+        if (productManager.getProductList().isEmpty()) {
+            consoleUIManager.showMessage("\nERROR: There are no products to remove...\n\n");
+        } else {
+            showProductList();
+            int index = consoleUIManager.getOption("\nWhich one would you like to remove? ");
+            if (index > 0 && index <= productManager.getProductList().size()) {
+                confirmProductRemove(index - 1);
+            } else {
+                consoleUIManager.showMessage("\nERROR: please enter a valid number\n\n");
             }
-        }catch(ApiException e){
-            consoleUIManager.showMessage("ERROR with API");
         }
     }
 
@@ -186,35 +186,12 @@ public class Controller {
     public void showProductList() {
         consoleUIManager.showMessage("These are the currently available products:\n\n");
         ArrayList<Product> products = productManager.getProductList();
-        for (int i = 0; i < products.size(); i++) {
-            Product product = products.get(i);
-            consoleUIManager.showMessage("\t" + (i + 1) + ") \"" + product.getName() + "\" by \"" + product.getBrand() + "\"\n");
-        }
+        consoleUIManager.showPaged(products, (screen, i, product) -> screen.append("\t").append(i + 1)
+                .append(") \"").append(product.getName()).append("\" by \"").append(product.getBrand()).append("\"\n"));
         int backOption = products.size() + 1;
         consoleUIManager.showMessage("\n\t" + backOption + ") Back\n\n");
     }
 
-    /**
-     *  Espera la confirmación del usuario a eliminar el producto
-     * @param apiIndex la posición que se encuentra el producto que desea eliminar
-     * @param products array de la lista de productos que se encuentran en la api
-     * @throws ApiException controla las exepciones que puede haber en la API.
-     */
-    private void confirmationApiRemove(int apiIndex, ArrayList<Product> products) throws ApiException {
-        if (apiIndex >= 0 && apiIndex < products.size()) {
-            Product productToRemove = products.get(apiIndex);
-            String confirmation = consoleUIManager.askForString("\nAre you sure you want to remove \"" + productToRemove.getName() + "\" by \"" + productToRemove.getBrand() + "\"? ");
-            if (confirmation.equalsIgnoreCase("yes")) {
-                productManager.removeProductFromApi(apiIndex, products);
-                productManager.removeProduct(apiIndex + 1);
-                consoleUIManager.showMessage("\n\"" + productToRemove.getName() + "\" by \"" + productToRemove.getBrand() + "\" has been withdrawn from sale.\n");
-            } else {
-                consoleUIManager.showMessage("\nRemoval canceled!\n");
-            }
-        } else {
-            consoleUIManager.showMessage("\nERROR: please enter a valid number.\n");
-        }
-    }
     /**
      *  Espera la confirmación del usuario a eliminar el producto
      * @param index la posición que se encuentra el producto que desea eliminar
@@ -266,13 +243,13 @@ public class Controller {
     private void executeShopsOption(int shopOption) {
         switch (shopOption) {
             case 1:
-                createShop();
+                runAction("createShop", this::createShop);
                 break;
             case 2:
-                expandCatalogueShop();
+                runAction("expandCatalogueShop", this::expandCatalogueShop);
                 break;
             case 3:
-                reduceCatalogueShop();
+                runAction("reduceCatalogueShop", this::reduceCatalogueShop);
                 break;
             case 4:
                 break;
@@ -301,7 +278,7 @@ public class Controller {
                 sponsorBrand = consoleUIManager.askForString("Please enter the shop’s sponsoring brand:");
             }
             if (shopManager.createShop(name, description, year, businessModel, catalogue, loyaltyThreshold, sponsorBrand)) {
-                System.out.println("\n\"" + name + "\" is now part of elCofre family.\n");
+                consoleUIManager.showMessage("\n\"" + name + "\" is now part of elCofre family.\n\n");
             }
 
 
@@ -333,9 +310,11 @@ public class Controller {
                 }
             } else {
                 consoleUIManager.showMessage("\nERROR: Product does not exists!\n");
+                showSuggestions(productName, productManager::completeProductName);
             }
         } else {
             consoleUIManager.showMessage("\nERROR: shop does not exists!\n");
+            showSuggestions(shopName, shopManager::completeShopName);
         }
     }
 
@@ -350,9 +329,8 @@ public class Controller {
                 consoleUIManager.showMessage("\nThis shop sells the following products:\n");
                 int option = 0;
                 do {
-                    for (int i = 0; i < catalogue.size(); i++) {
-                        consoleUIManager.showMessage("\n\t" + (i + 1) + ") \"" + catalogue.get(i).getName() + "\" by \"" + catalogue.get(i).getBrand() + "\"");
-                    }
+                    consoleUIManager.showPaged(catalogue, (screen, i, product) -> screen.append("\n\t").append(i + 1)
+                            .append(") \"").append(product.getName()).append("\" by \"").append(product.getBrand()).append('"'));
                     consoleUIManager.showMessage("\n\n\t" + (catalogue.size() + 1) + ") Back\n");
                     option = consoleUIManager.getOption("\nWhich one would you like to remove? ");
 
@@ -370,6 +348,7 @@ public class Controller {
             }
         } else {
             consoleUIManager.showMessage("\nERROR: Wrong shop name or this shop does not exists.\n");
+            showSuggestions(shopName, shopManager::completeShopName);
         }
     }
 
@@ -383,19 +362,20 @@ public class Controller {
             consoleUIManager.showMessage("\nSorry, there's no results for your search\n");
         }  else {
             consoleUIManager.showMessage("\nThe following products where found:\n\n");
-            for (int i = 0; i < results.size(); i++) {
-                Product product = results.get(i);
-                consoleUIManager.showMessage("\t" + (i + 1) + ") \"" + product.getName() + "\" by \"" + product.getBrand() + "\"\n");
-                ArrayList<Shop> shops = dealerManager.showInfoShops(product);
-                if(!shops.isEmpty()){
-                    consoleUIManager.showMessage("\t\tSold at:");
-                    for(Shop shop: shops){
-                        consoleUIManager.showMessage("\n\t\t\t- " + shop.getName() + ": " + getPriceProduct(shop, product)+ "\n");
+            consoleUIManager.showPaged(results, (screen, i, product) -> {
+                screen.append("\t").append(i + 1).append(") \"").append(product.getName()).append("\" by \"")
+                        .append(product.getBrand()).append("\"\n");
+                List<Offer> offers = shopManager.getOffers(product, cartManager.getCustomer());
+                if(!offers.isEmpty()){
+                    screen.append("\t\tSold at:");
+                    for(Offer offer: offers){
+                        screen.append("\n\t\t\t- ").append(offer.getShop().getName()).append(": ")
+                                .append(String.format("%.2f", offer.getEffectivePrice())).append('\n');
                     }
                 }else{
-                    consoleUIManager.showMessage("\tThis product is not currently being sold in any shops.\n");
+                    screen.append("\tThis product is not currently being sold in any shops.\n");
                 }
-            }
+            });
             consoleUIManager.showMessage("\n\t" + (results.size() + 1) + ") Back\n");
 
             int reviewOption = consoleUIManager.getOption("\nWhich one would you like to review? ");
@@ -429,8 +409,11 @@ public class Controller {
                         }
                     }
                     String comment = consoleUIManager.askForString("Please add a comment to your review: ");
-                    productManager.addProductReview(rating, comment, reviewedProduct);
-                    consoleUIManager.showMessage("\nThank you for your review of \"" + reviewedProduct.getName() + "\" by \"" + reviewedProduct.getBrand() + "\".\n");
+                    if (productManager.addProductReview(rating, comment, reviewedProduct)) {
+                        consoleUIManager.showMessage("\nThank you for your review of \"" + reviewedProduct.getName() + "\" by \"" + reviewedProduct.getBrand() + "\".\n");
+                    } else {
+                        consoleUIManager.showMessage("\nERROR: The product's reviews could not be read, please try again.\n");
+                    }
 
                 }
             } else if(reviewOption == results.size()+1) {
@@ -441,6 +424,22 @@ public class Controller {
         }
     }
 
+    /**
+     *  Sugiere nombres parecidos a uno que no existe: los más populares que empiezan por el principio más largo de lo
+     *  escrito que tenga alguno.
+     * @param typed el nombre escrito por el usuario
+     * @param complete la función que autocompleta los nombres
+     */
+    private void showSuggestions(String typed, BiFunction<String, Integer, List<String>> complete) {
+        for (int length = typed.length(); length > 0; length--) {
+            List<String> suggestions = complete.apply(typed.substring(0, length), MAX_SUGGESTIONS);
+            if (!suggestions.isEmpty()) {
+                consoleUIManager.showMessage("Did you mean: \"" + String.join("\", \"", suggestions) + "\"?\n");
+                return;
+            }
+        }
+    }
+
     /**
      *  Calcula el promedio de calificaciones de las reseñas de un producto.
      * @param reviews la lista de reviews
@@ -462,13 +461,7 @@ public class Controller {
      * @param product el producto para comparar en todo el catálogo
      */
     public double getPriceProduct(Shop shop, Product product){
-        double priceShop = 0.0;
-        for(Catalogue catalogueItem: shop.getCatalogue()){
-            if(catalogueItem.getProductName().equalsIgnoreCase(product.getName())){
-                priceShop = catalogueItem.getPriceAtShop();
-            }
-        }
-        return priceShop;
+        return CartManager.getPriceAtShop(shop, product);
     }
 
     /**
@@ -494,64 +487,42 @@ public class Controller {
         boolean exit = false;
         do {
             List<Shop> shops = shopManager.getShopList();
-            ArrayList<Cart> cartProducts = cartManager.getCartProducts();
             if(!shops.isEmpty()){
                 consoleUIManager.showMessage("\nThe elCofre family is formed by the following shops: \n");
-                try{
-                    if(apiHelper.isConnected()) {
-                        shops = shopManager.loadShops();
-                    } else {
-                        shops = shopManager.getShopList();
-                    }
-                } catch(ApiException | JsonSyntaxException e){
-                    consoleUIManager.showMessage("Error loading shops from API: " + e.getMessage() + "\n");
-                    return;
-                }
             }else{
-                try{
-                    if(apiHelper.isConnected()) {
-                        shops = shopManager.loadShops();
-                        if(shops.isEmpty()){
-                            consoleUIManager.showMessage("\nNo shops available in API\n");
-                        }else{
-                            consoleUIManager.showMessage("\nThe elCofre family is formed by the following shops: \n");
-                        }
-                    }else{
-                        consoleUIManager.showMessage("\nNo shops available\n");
-                    }
-                } catch(ApiException | JsonSyntaxException e){
-                    consoleUIManager.showMessage("Error loading shops from API: " + e.getMessage() + "\n");
-                    return;
-                }
-            }
-            for (int i = 0; i < shops.size(); i++) {
-                consoleUIManager.showMessage("\n\t" + (i + 1) + ") " + shops.get(i).getName());
+                consoleUIManager.showMessage("\nNo shops available\n");
             }
+            consoleUIManager.showPaged(shops, (screen, i, listedShop) -> screen.append("\n\t").append(i + 1).append(") ")
+                    .append(listedShop.getName()));
             consoleUIManager.showMessage("\n\n\t" + (shops.size() + 1) + ") Back\n");
             int shopIndex = consoleUIManager.getOption("\nWhich catalogue do you want to see? ");
             if (shopIndex > 0 && shopIndex <= shops.size()) {
                 Shop shop = shops.get(shopIndex - 1);
                 consoleUIManager.showMessage("\n" + shop.getName() + " - " + "Since " + shop.getSince());
                 consoleUIManager.showMessage("\n" + shop.getDescription() + "\n");
-                ArrayList<Catalogue> catalogueList = shopManager.getCatalogueFromShop(shop.getName());
+                List<Catalogue> catalogueList = shopManager.getCatalogueFromShop(shop.getName());
                 if (!catalogueList.isEmpty()) {
                     int option;
                     do {
-                        for (int i = 0; i < catalogueList.size(); i++) {
-                            Catalogue catalogue = catalogueList.get(i);
-                            Product productCatalogue = productManager.getProductByName(catalogue.getProductName());
+                        ArrayList<String> productNames = new ArrayList<>(catalogueList.size());
+                        for (Catalogue catalogue : catalogueList) {
+                            productNames.add(catalogue.getProductName());
+                        }
+                        ArrayList<Product> catalogueProducts = productManager.getProductsByNames(productNames);
+                        consoleUIManager.showPaged(catalogueList, (screen, i, catalogue) -> {
+                            Product productCatalogue = catalogueProducts.get(i);
                             if (productCatalogue != null) {
-                                consoleUIManager.showMessage("\n\t" + (i + 1) + ") \"" + productCatalogue.getName() + "\" by \"" + productCatalogue.getBrand() + "\"");
-                                consoleUIManager.showMessage("\n\t" + "Price: " + catalogue.getPriceAtShop() + "\n");
+                                screen.append("\n\t").append(i + 1).append(") \"").append(productCatalogue.getName())
+                                        .append("\" by \"").append(productCatalogue.getBrand()).append('"');
+                                screen.append("\n\tPrice: ").append(catalogue.getPriceAtShop()).append('\n');
                             }else{
-                                consoleUIManager.showMessage("IS NULL");
+                                screen.append("IS NULL");
                             }
-                        }
+                        });
                         consoleUIManager.showMessage("\n\n\t" + (catalogueList.size() + 1) + ") Back\n");
                         option = consoleUIManager.getOption("\nWhich one are you interested in? ");
                         if (option > 0 && option <= catalogueList.size()) {
-                            Catalogue selected = catalogueList.get(option - 1);
-                            Product productReview = productManager.getProductByName(selected.getProductName());
+                            Product productReview = catalogueProducts.get(option - 1);
                             consoleUIManager.showProductCatalogueMenu();
                             int subMenuOption = consoleUIManager.getOption("\nChoose an option: ");
                             if (subMenuOption == 1) {
@@ -569,16 +540,17 @@ public class Controller {
                                 int rating = countStars(star);
                                 if (rating >= 1 && rating <= 5) {
                                     String comment = consoleUIManager.askForString("Please add a comment to your review: ");
-                                    productManager.addProductReview(rating, comment, productReview);
-                                    consoleUIManager.showMessage("\nThank you for your review of \"" + productReview.getName() + "\" by \"" + productReview.getBrand() + "\".\n");
+                                    if (productManager.addProductReview(rating, comment, productReview)) {
+                                        consoleUIManager.showMessage("\nThank you for your review of \"" + productReview.getName() + "\" by \"" + productReview.getBrand() + "\".\n");
+                                    } else {
+                                        consoleUIManager.showMessage("\nERROR: The product's reviews could not be read, please try again.\n");
+                                    }
                                 } else {
                                     consoleUIManager.showMessage("\nERROR: Invalid rating\n");
                                 }
                             } else if (subMenuOption == 3) {
-                                Catalogue auxName = catalogueList.get(option - 1);
-                                Product productToAddCart = productManager.getProductByName(auxName.getProductName());
-                                Cart ItemToAdd = new Cart(productToAddCart.getName(), shop.getName());
-                                cartProducts.add(ItemToAdd);
+                                Product productToAddCart = catalogueProducts.get(option - 1);
+                                cartManager.addToCart(productToAddCart.getName(), shop.getName());
                                 consoleUIManager.showMessage("\n1x \"" + productToAddCart.getName() + "\" by \"" + productToAddCart.getBrand() + "\" has been added to your cart.\n");
                             }
                         }
@@ -624,25 +596,16 @@ public class Controller {
             int cartOption = consoleUIManager.getOption("\nChoose an option: ");
             // Procesar el checkout.
             if (cartOption == 1) {
-                boolean ok = false;
-                HashMap<String, Double> shopTotalEarningsWithoutIVA = new HashMap<>();
                 String answer = consoleUIManager.askForString("\nAre you sure you want to checkout? ");
 
                 if (answer.equalsIgnoreCase("YES")) {
-                    ArrayList<Cart> cartList = cartManager.getCartProducts();
-                    for (Cart cart : cartList) {
-                        String productName = cart.getProductName();
-                        String shopName = cart.getShopName();
-                        Product product = productManager.getProductByName(productName);
-                        Shop shop = shopManager.findShopByName(shopName);
-
-                        if (product != null && shop != null) {
-                            double priceAtShop = getPriceProduct(shop, product);
-                            double priceWithoutIVA= shop.calculateDiscount(priceAtShop, product);
-                            shopTotalEarningsWithoutIVA.merge(shopName, priceWithoutIVA, Double::sum);
-                            shopManager.updateEarnings(shop, priceWithoutIVA);
-                            }
+                    Set<String> regularBefore = new HashSet<>();
+                    for (String shopName : shopEarningsMap.keySet()) {
+                        if (isHabitualCustomer(shopManager.findShopByName(shopName))) {
+                            regularBefore.add(shopName);
                         }
+                    }
+                    HashMap<String, Double> shopTotalEarningsWithoutIVA = cartManager.checkout();
                     for (Map.Entry<String, Double> entry : shopTotalEarningsWithoutIVA.entrySet()) {
                         Shop shop = shopManager.findShopByName(entry.getKey());
                         double totalEarnings = entry.getValue();
@@ -652,12 +615,10 @@ public class Controller {
 
                         consoleUIManager.showMessage("\n\"" + shop.getName() + "\" has earned " + totalEarningsFormat + " for a historic total of " + earningShopFormat + ".\n");
 
-                        if (shop instanceof LoyaltyShop loyaltyShop && !ok && loyaltyShop.getEarnings() >= loyaltyShop.getLoyaltyThreshold()) {
-                            ok = true;
+                        if (!regularBefore.contains(entry.getKey()) && isHabitualCustomer(shop)) {
                             consoleUIManager.showMessage("You are now a regular at \"" + shop.getName() + "\".\n");
                         }
                     }
-                    cartList.clear();
                 } else {
                     consoleUIManager.showMessage("\nCancelling Checkout...\n");
                 }
@@ -673,26 +634,21 @@ public class Controller {
     }
 
     /**
-     * Comprueba si el cliente es habitual, por lo que ha superado el umbral que ponía la tienda
+     * Comprueba si el cliente es habitual, por lo que lo que ha gastado en la tienda ha superado el umbral que ponía
      * @param shop la tienda a la que se refiere
      * @return boolean, ya que valida si es true o false
      */
     public boolean isHabitualCustomer(Shop shop){
-    if(shop instanceof LoyaltyShop loyaltyShop){
-        return loyaltyShop.getEarnings() >= loyaltyShop.getLoyaltyThreshold();
-    }
-    return false;
+    return shopManager.isRegularCustomer(cartManager.getCustomer(), shop);
 }
     /**
      * Limpia el carrito de compras del usuario.
      */
     public void emptyCart(){
-        ArrayList<Cart> cartProducts = cartManager.getCartProducts();
-        if (cartProducts.isEmpty()) {
-            consoleUIManager.showMessage("\nYour cart is already empty.\n");
-        } else {
-            cartProducts.clear();
+        if (cartManager.clearCart()) {
             consoleUIManager.showMessage("\nYour cart has been cleared.\n");
+        } else {
+            consoleUIManager.showMessage("\nYour cart is already empty.\n");
         }
     }
 }
\ No newline at end of file
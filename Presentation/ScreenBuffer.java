@@ -0,0 +1,93 @@
+package presentation;
+
+/**
+ * Compone en memoria todo lo que se va a mostrar en una pantalla y lo escribe en la consola de una sola vez.
+ * El mismo StringBuilder se reutiliza entre pantallas, de modo que pintar una lista larga no crea una cadena ni
+ * hace una escritura por cada fragmento. Si una pantalla muy grande lo hace crecer demasiado, se libera al vaciarlo.
+ */
+public class ScreenBuffer {
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    private StringBuilder builder;
+
+    /**
+     * Constructor. Crea el buffer vacío.
+     */
+    public ScreenBuffer() {
+        this.builder = new StringBuilder(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Añade texto a la pantalla.
+     * @param text Texto a añadir.
+     * @return Este buffer, para encadenar llamadas.
+     */
+    public ScreenBuffer append(String text) {
+        builder.append(text);
+        return this;
+    }
+
+    /**
+     * Añade un carácter a la pantalla.
+     * @param c Carácter a añadir.
+     * @return Este buffer, para encadenar llamadas.
+     */
+    public ScreenBuffer append(char c) {
+        builder.append(c);
+        return this;
+    }
+
+    /**
+     * Añade un número entero a la pantalla sin convertirlo antes en cadena.
+     * @param value Número a añadir.
+     * @return Este buffer, para encadenar llamadas.
+     */
+    public ScreenBuffer append(int value) {
+        builder.append(value);
+        return this;
+    }
+
+    /**
+     * Añade un número decimal a la pantalla con el mismo formato que la concatenación de cadenas.
+     * @param value Número a añadir.
+     * @return Este buffer, para encadenar llamadas.
+     */
+    public ScreenBuffer append(double value) {
+        builder.append(value);
+        return this;
+    }
+
+    /**
+     * Añade texto seguido de un salto de línea.
+     * @param text Texto a añadir.
+     * @return Este buffer, para encadenar llamadas.
+     */
+    public ScreenBuffer appendLine(String text) {
+        builder.append(text).append('\n');
+        return this;
+    }
+
+    /**
+     * Indica si hay texto pendiente de escribir.
+     * @return true si el buffer está vacío.
+     */
+    public boolean isEmpty() {
+        return builder.length() == 0;
+    }
+
+    /**
+     * Escribe en la consola todo el texto acumulado con una sola escritura y deja el buffer vacío.
+     */
+    public void flush() {
+        if (builder.length() == 0) {
+            return;
+        }
+        System.out.print(builder);
+        System.out.flush();
+        if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+            builder = new StringBuilder(INITIAL_CAPACITY);
+        } else {
+            builder.setLength(0);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package presentation;
+
+import business.CartManager;
+import business.Catalogue;
+import business.CompletionIndex;
+import business.DealerManager;
+import business.product.Product;
+import business.product.ProductManager;
+import business.shop.Shop;
+import business.shop.ShopManager;
+import metrics.ActionAccounting;
+import metrics.LatencyHistogram;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ejecuta sin preguntas un fichero de órdenes contra los mismos gestores que usa Controller, para repetir una
+ * sesión realista o el tráfico de un día y medir cuánto tarda cada orden. Cada línea es una orden seguida de sus
+ * argumentos separados por "|"; las líneas vacías y las que empiezan por "#" se ignoran:
+ * <pre>
+ * customer Alice
+ * createProduct Toaster | Acme | 39.90 | GENERAL
+ * createShop Acme Store | Kitchen things | 1999 | LOYALTY | 150
+ * expandCatalogueShop Acme Store | Toaster | 35
+ * searchProducts toast
+ * complete product | Toa
+ * listShops Acme Store
+ * addToCart Acme Store | Toaster
+ * reviewProduct Toaster | 4 | Works fine
+ * topRated 10 | category | REDUCED
+ * checkout
+ * clearCart
+ * </pre>
+ * La orden customer cambia el cliente que compra a partir de esa línea; sin ella se compra como invitado.
+ * listShops sin argumento resuelve los productos del catálogo de todas las tiendas, como si se abrieran una tras otra
+ * desde el menú; con una tienda, solo los de esa.
+ * Las órdenes se ejecutan a máxima velocidad y sin pintar pantallas; al final se muestra, por orden, cuántas veces
+ * se ha ejecutado, cuántas han fallado y sus percentiles de tiempo, y el rendimiento total.
+ */
+public class ScriptRunner {
+    private static final String[] COMMANDS = {"customer", "createProduct", "createShop", "expandCatalogueShop", "searchProducts",
+            "complete", "listShops", "addToCart", "reviewProduct", "topRated", "checkout", "clearCart"};
+
+    private final ConsoleUIManager consoleUIManager;
+    private final ProductManager productManager;
+    private final ShopManager shopManager;
+    private final DealerManager dealerManager;
+    private final CartManager cartManager;
+    private final Map<String, LatencyHistogram> timings;
+    private final Map<String, Integer> failures;
+
+    /**
+     * Constructor.
+     * @param ui usado para mostrar los errores de las líneas y el resumen final
+     * @param productManager gestor de productos
+     * @param shopManager gestor de tiendas
+     */
+    public ScriptRunner(ConsoleUIManager ui, ProductManager productManager, ShopManager shopManager) {
+        this.consoleUIManager = ui;
+        this.productManager = productManager;
+        this.shopManager = shopManager;
+        this.dealerManager = new DealerManager(shopManager, productManager);
+        this.cartManager = new CartManager(new ArrayList<>(), productManager, shopManager);
+        this.timings = new LinkedHashMap<>();
+        this.failures = new LinkedHashMap<>();
+        for (String command : COMMANDS) {
+            timings.put(command, new LatencyHistogram());
+            failures.put(command, 0);
+        }
+    }
+
+    /**
+     * Ejecuta todas las órdenes del fichero y muestra el resumen.
+     * @param script ruta del fichero de órdenes
+     * @throws IOException si no se puede leer el fichero
+     */
+    public void run(Path script) throws IOException {
+        int lineNumber = 0;
+        int invalid = 0;
+        long start = System.nanoTime();
+        try (BufferedReader reader = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                String command = space < 0 ? line : line.substring(0, space);
+                String[] args = space < 0 ? new String[0] : line.substring(space + 1).split("\\|");
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = args[i].trim();
+                }
+                LatencyHistogram histogram = timings.get(command);
+                if (histogram == null) {
+                    invalid++;
+                    consoleUIManager.showMessage("Line " + lineNumber + ": unknown command \"" + command + "\"\n");
+                    continue;
+                }
+                long commandStart = System.nanoTime();
+                boolean ok;
+                ActionAccounting.Scope scope = ActionAccounting.begin(command);
+                try {
+                    ok = execute(command, args);
+                } catch (IllegalArgumentException e) {
+                    invalid++;
+                    consoleUIManager.showMessage("Line " + lineNumber + ": " + e.getMessage() + "\n");
+                    continue;
+                } catch (RuntimeException e) {
+                    ok = false;
+                    consoleUIManager.showMessage("Line " + lineNumber + ": " + command + " failed: " + e + "\n");
+                } finally {
+                    scope.close();
+                }
+                histogram.record(System.nanoTime() - commandStart);
+                if (!ok) {
+                    failures.merge(command, 1, Integer::sum);
+                }
+            }
+        }
+        showSummary(script, System.nanoTime() - start, invalid);
+    }
+
+    /**
+     * Ejecuta una orden.
+     * @param command nombre de la orden
+     * @param args argumentos de la orden
+     * @return true si la orden ha tenido efecto, false si los gestores la han rechazado (producto o tienda que ya
+     * existe o no existe, carrito vacío...)
+     * @throws IllegalArgumentException si faltan argumentos o no tienen el formato esperado
+     */
+    private boolean execute(String command, String[] args) {
+        switch (command) {
+            case "customer": {
+                requireArgs(command, args, 1);
+                cartManager.setCustomer(args[0]);
+                return true;
+            }
+            case "createProduct": {
+                requireArgs(command, args, 4);
+                if (productManager.nameProductExists(args[0])) {
+                    return false;
+                }
+                return productManager.createProduct(args[0], args[1], parseNumber(args[2]), args[3], 0);
+            }
+            case "createShop": {
+                requireArgs(command, args, 4);
+                if (shopManager.nameShopExists(args[0])) {
+                    return false;
+                }
+                double loyaltyThreshold = 0;
+                String sponsorBrand = null;
+                if (args[3].equalsIgnoreCase("LOYALTY")) {
+                    requireArgs(command, args, 5);
+                    loyaltyThreshold = parseNumber(args[4]);
+                } else if (args[3].equalsIgnoreCase("SPONSORED")) {
+                    requireArgs(command, args, 5);
+                    sponsorBrand = args[4];
+                }
+                return shopManager.createShop(args[0], args[1], (int) parseNumber(args[2]), args[3], new ArrayList<>(),
+                        loyaltyThreshold, sponsorBrand);
+            }
+            case "expandCatalogueShop": {
+                requireArgs(command, args, 3);
+                double price = parseNumber(args[2]);
+                if (!shopManager.nameShopExists(args[0]) || !productManager.nameProductExists(args[1])
+                        || !productManager.priceProductExceed(price)) {
+                    return false;
+                }
+                return shopManager.addToCatalogue(args[0], args[1], price);
+            }
+            case "searchProducts": {
+                requireArgs(command, args, 1);
+                ArrayList<Product> results = productManager.searchProducts(args[0]);
+                for (Product product : results) {
+                    dealerManager.showInfoShops(product, cartManager.getCustomer());
+                }
+                return !results.isEmpty();
+            }
+            case "complete": {
+                requireArgs(command, args, 2);
+                int k = CompletionIndex.MAX_SUGGESTIONS;
+                if (args[0].equalsIgnoreCase("product")) {
+                    return !productManager.completeProductName(args[1], k).isEmpty();
+                }
+                if (args[0].equalsIgnoreCase("brand")) {
+                    return !productManager.completeBrand(args[1], k).isEmpty();
+                }
+                if (args[0].equalsIgnoreCase("shop")) {
+                    return !shopManager.completeShopName(args[1], k).isEmpty();
+                }
+                throw new IllegalArgumentException("complete expects 'product', 'brand' or 'shop'");
+            }
+            case "listShops": {
+                ArrayList<Shop> shops = shopManager.getShopList();
+                if (args.length == 0) {
+                    for (Shop shop : shops) {
+                        List<Catalogue> catalogue = shop.getCatalogue();
+                        ArrayList<String> productNames = new ArrayList<>(catalogue.size());
+                        for (Catalogue entry : catalogue) {
+                            productNames.add(entry.getProductName());
+                        }
+                        productManager.getProductsByNames(productNames);
+                    }
+                    return !shops.isEmpty();
+                }
+                return shopManager.nameShopExists(args[0]) && !dealerManager.getProductList(args[0]).isEmpty();
+            }
+            case "addToCart": {
+                requireArgs(command, args, 2);
+                Shop shop = shopManager.findShopByName(args[0]);
+                Product product = productManager.getProductByName(args[1]);
+                if (shop == null || product == null || !isInCatalogue(shop, product)) {
+                    return false;
+                }
+                cartManager.addToCart(product.getName(), shop.getName());
+                return true;
+            }
+            case "reviewProduct": {
+                requireArgs(command, args, 3);
+                int rating = (int) parseNumber(args[1]);
+                Product product = productManager.getProductByName(args[0]);
+                if (product == null || rating < 1 || rating > 5) {
+                    return false;
+                }
+                return productManager.addProductReview(rating, args[2], product);
+            }
+            case "topRated": {
+                requireArgs(command, args, 1);
+                int k = (int) parseNumber(args[0]);
+                if (args.length < 3) {
+                    return !productManager.getTopRated(k).isEmpty();
+                }
+                if (args[1].equalsIgnoreCase("category")) {
+                    return !productManager.getTopRatedByCategory(args[2], k).isEmpty();
+                }
+                if (args[1].equalsIgnoreCase("brand")) {
+                    return !productManager.getTopRatedByBrand(args[2], k).isEmpty();
+                }
+                throw new IllegalArgumentException("topRated filters by 'category' or 'brand'");
+            }
+            case "checkout":
+                return !cartManager.checkout().isEmpty();
+            case "clearCart":
+                return cartManager.clearCart();
+            default:
+                throw new IllegalArgumentException("unknown command \"" + command + "\"");
+        }
+    }
+
+    /**
+     * Comprueba si un producto está en el catálogo de una tienda.
+     * @param shop la tienda
+     * @param product el producto
+     * @return true si la tienda vende el producto
+     */
+    private static boolean isInCatalogue(Shop shop, Product product) {
+        for (Catalogue item : shop.getCatalogue()) {
+            if (item.getProductName().equalsIgnoreCase(product.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Comprueba que una orden tiene al menos los argumentos necesarios.
+     * @param command nombre de la orden
+     * @param args argumentos recibidos
+     * @param count número mínimo de argumentos
+     * @throws IllegalArgumentException si faltan argumentos
+     */
+    private static void requireArgs(String command, String[] args, int count) {
+        if (args.length < count) {
+            throw new IllegalArgumentException(command + " expects " + count + " arguments separated by '|'");
+        }
+    }
+
+    /**
+     * Lee un número de un argumento.
+     * @param value texto del argumento
+     * @return número leído
+     * @throws IllegalArgumentException si el texto no es un número
+     */
+    private static double parseNumber(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("\"" + value + "\" is not a number");
+        }
+    }
+
+    /**
+     * Muestra, por orden, las ejecuciones, fallos y percentiles de tiempo, y el rendimiento total.
+     * @param script fichero ejecutado
+     * @param elapsed tiempo total en nanosegundos
+     * @param invalid número de líneas que no se han podido ejecutar
+     */
+    private void showSummary(Path script, long elapsed, int invalid) {
+        ScreenBuffer screen = consoleUIManager.screen();
+        screen.append(String.format("%n%-20s %8s %7s %9s %9s %9s %10s%n", "command", "runs", "failed", "p50 ms",
+                "p99 ms", "max ms", "total ms"));
+        long total = 0;
+        for (Map.Entry<String, LatencyHistogram> entry : timings.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            long count = histogram.getCount();
+            if (count == 0) {
+                continue;
+            }
+            total += count;
+            screen.append(String.format("%-20s %8d %7d %9.3f %9.3f %9.3f %10.1f%n", entry.getKey(), count,
+                    failures.get(entry.getKey()), histogram.percentile(0.50) / 1e6, histogram.percentile(0.99) / 1e6,
+                    histogram.getMax() / 1e6, histogram.getMean() * count / 1e6));
+        }
+        double seconds = elapsed / 1e9;
+        screen.append(String.format("%s: %d commands in %.3f s (%.1f commands/s), %d invalid lines%n",
+                script.getFileName(), total, seconds, seconds > 0 ? total / seconds : 0, invalid));
+        consoleUIManager.flush();
+    }
+}
@@ -0,0 +1,450 @@
+package tools;
+
+import business.Catalogue;
+import business.Review;
+import business.product.GeneralProduct;
+import business.product.Product;
+import business.product.ReducedProduct;
+import business.product.SuperReducedProduct;
+import business.shop.LoyaltyShop;
+import business.shop.MaxProfitShop;
+import business.shop.Shop;
+import business.shop.SponsoredShop;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import persistence.ApiException;
+import persistence.ApiHelper;
+import persistence.JsonSupport;
+import persistence.StorageFormat;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Genera conjuntos de datos sintéticos grandes (por ejemplo un millón de productos y cien mil tiendas con cien
+ * millones de entradas de catálogo) para probar ProductManager, ShopManager y los DAO a escala.
+ * Los productos son de las tres categorías y tienen reseñas; las tiendas son de los tres modelos de negocio y sus
+ * catálogos eligen los productos con una distribución de Zipf, de modo que unos pocos productos están en muchas
+ * tiendas y la mayoría en pocas. Cada producto y cada tienda salen de la semilla y de su posición, así que con la
+ * misma semilla se obtienen siempre los mismos datos (la fecha de modificación se deja a 0, como en los ficheros
+ * antiguos), y se escriben uno a uno sin tener la lista en memoria.
+ * Los argumentos son pares clave=valor, por ejemplo
+ * {@code products=1000000 shops=100000 catalogue=1000 reviews=3 skew=1.0 seed=1}.
+ */
+public class DataGenerator {
+    private static final String GROUP = "P1-G70";
+    private static final String[] COMMENTS = {"Great value", "Works as expected", "Not bad", "Could be better",
+            "Excellent quality", "Arrived late", "Would buy again", "Too expensive for what it is"};
+    private static final int[] RATING_WEIGHTS = {5, 7, 15, 33, 40};
+    private static final int MAX_REVIEWS = 1000;
+
+    private final int products;
+    private final int shops;
+    private final int catalogueSize;
+    private final double reviews;
+    private final long seed;
+    private final ZipfSampler productPopularity;
+    private final ZipfSampler brandPopularity;
+    private final TypeAdapter<Product> productAdapter;
+    private final TypeAdapter<Shop> shopAdapter;
+
+    /**
+     * Constructor de la clase DataGenerator.
+     * @param products Número de productos.
+     * @param shops Número de tiendas.
+     * @param catalogueSize Número medio de entradas del catálogo de cada tienda.
+     * @param reviews Número medio de reseñas de cada producto.
+     * @param brands Número de marcas distintas.
+     * @param skew Exponente de la distribución de Zipf con la que se eligen los productos de los catálogos y las
+     *             marcas; 0 reparte por igual.
+     * @param seed Semilla de la que se derivan todos los datos.
+     * @throws IllegalArgumentException Si algún valor está fuera de rango.
+     */
+    public DataGenerator(int products, int shops, int catalogueSize, double reviews, int brands, double skew, long seed) {
+        if (products < 1 || shops < 0 || catalogueSize < 0 || reviews < 0 || brands < 1 || skew < 0) {
+            throw new IllegalArgumentException("Invalid generator configuration");
+        }
+        this.products = products;
+        this.shops = shops;
+        this.catalogueSize = Math.min(catalogueSize, products);
+        this.reviews = reviews;
+        this.seed = seed;
+        this.productPopularity = new ZipfSampler(products, skew);
+        this.brandPopularity = new ZipfSampler(brands, skew);
+        Gson gson = JsonSupport.gson();
+        this.productAdapter = gson.getAdapter(Product.class);
+        this.shopAdapter = gson.getAdapter(Shop.class);
+    }
+
+    /**
+     * Crea el producto de una posición.
+     * @param index Posición del producto.
+     * @return Producto con sus reseñas.
+     */
+    public Product product(int index) {
+        SplittableRandom random = new SplittableRandom(mix(seed, index));
+        double mrp = mrp(random);
+        String brand = brandName(brandPopularity.sample(random));
+        ArrayList<Review> productReviews = new ArrayList<>();
+        int count = reviewCount(random);
+        long ratingSum = 0;
+        for (int i = 0; i < count; i++) {
+            int rating = rating(random);
+            ratingSum += rating;
+            productReviews.add(new Review(rating, COMMENTS[random.nextInt(COMMENTS.length)]));
+        }
+        String name = productName(index);
+        Product product = switch (random.nextInt(3)) {
+            case 0 -> new GeneralProduct(name, brand, mrp);
+            case 1 -> new ReducedProduct(name, brand, mrp, count == 0 ? 0 : ratingSum / (double) count);
+            default -> new SuperReducedProduct(name, brand, mrp);
+        };
+        product.setReviews(productReviews);
+        product.setLastModified(0);
+        return product;
+    }
+
+    /**
+     * Crea la tienda de una posición. Su catálogo no repite productos y cada precio está por debajo del precio
+     * máximo de venta al público del producto.
+     * @param index Posición de la tienda.
+     * @return Tienda con su catálogo.
+     */
+    public Shop shop(int index) {
+        SplittableRandom random = new SplittableRandom(mix(~seed, index));
+        int size = catalogueSize == 0 ? 0 : catalogueSize / 2 + random.nextInt(catalogueSize + 1);
+        size = Math.min(size, products);
+        ArrayList<Catalogue> catalogue = new ArrayList<>(size);
+        IntSet chosen = new IntSet(size);
+        for (int attempts = 0; catalogue.size() < size && attempts < size * 8; attempts++) {
+            int product = productPopularity.sample(random);
+            if (chosen.add(product)) {
+                double mrp = mrp(new SplittableRandom(mix(seed, product)));
+                double price = Math.max(0.01, Math.round(mrp * (50 + random.nextInt(51))) / 100.0);
+                catalogue.add(new Catalogue(productName(product), Math.min(price, mrp)));
+            }
+        }
+        String name = "Shop " + index;
+        String description = "Generated shop " + index;
+        int since = 1950 + random.nextInt(75);
+        Shop shop = switch (random.nextInt(3)) {
+            case 0 -> new MaxProfitShop(name, description, since, catalogue);
+            case 1 -> new LoyaltyShop(name, description, since, catalogue, 100 + random.nextInt(4901));
+            default -> new SponsoredShop(name, description, since, catalogue,
+                    brandName(brandPopularity.sample(random)));
+        };
+        shop.setLastModified(0);
+        return shop;
+    }
+
+    /**
+     * Escribe los productos y las tiendas en products.json y shops.json con el formato configurado (ver
+     * StorageFormat). Cada fichero se escribe primero en uno temporal que luego sustituye al anterior.
+     * @param directory Directorio de destino.
+     * @return Número de entradas de catálogo escritas.
+     * @throws IOException Si falla la escritura.
+     */
+    public long writeFiles(Path directory) throws IOException {
+        StorageFormat format = StorageFormat.configured();
+        try (JsonWriter out = openArray(format, directory.resolve("products.json.tmp"))) {
+            for (int i = 0; i < products; i++) {
+                productAdapter.write(out, product(i));
+            }
+            out.endArray();
+        }
+        long entries = 0;
+        try (JsonWriter out = openArray(format, directory.resolve("shops.json.tmp"))) {
+            for (int i = 0; i < shops; i++) {
+                Shop shop = shop(i);
+                entries += shop.getCatalogue().size();
+                shopAdapter.write(out, shop);
+            }
+            out.endArray();
+        }
+        Files.move(directory.resolve("products.json.tmp"), directory.resolve("products.json"),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(directory.resolve("shops.json.tmp"), directory.resolve("shops.json"),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return entries;
+    }
+
+    /**
+     * Añade los productos y las tiendas a la API configurada (por ejemplo un StandInApiServer), uno por petición,
+     * como hacen los DAO de la API. Con varios hilos las peticiones se solapan y los elementos quedan en la API en
+     * un orden que puede variar de una ejecución a otra; con un hilo quedan en el mismo orden que en los ficheros.
+     * @param apiHelper Cliente de la API.
+     * @param baseUrl URL base de la API.
+     * @param threads Número de peticiones simultáneas.
+     * @return Número de entradas de catálogo enviadas.
+     * @throws ApiException Si la API rechaza alguna petición.
+     * @throws InterruptedException Si se interrumpe la espera.
+     */
+    public long post(ApiHelper apiHelper, String baseUrl, int threads) throws ApiException, InterruptedException {
+        Gson gson = JsonSupport.gson();
+        String productsUrl = baseUrl + "/" + GROUP + "/products";
+        String shopsUrl = baseUrl + "/" + GROUP + "/shops";
+        AtomicLong entries = new AtomicLong();
+        postAll(products, i -> apiHelper.postToUrl(productsUrl, gson.toJson(product(i), Product.class)), threads);
+        postAll(shops, i -> {
+            Shop shop = shop(i);
+            entries.addAndGet(shop.getCatalogue().size());
+            apiHelper.postToUrl(shopsUrl, gson.toJson(shop, Shop.class));
+        }, threads);
+        return entries.get();
+    }
+
+    /**
+     * Envía los elementos de 0 a count - 1 repartiéndolos entre varios hilos. Al primer error los hilos dejan de
+     * coger elementos nuevos.
+     * @param count Número de elementos.
+     * @param request Petición que envía un elemento.
+     * @param threads Número de hilos.
+     * @throws ApiException El primer error de la API.
+     * @throws InterruptedException Si se interrumpe la espera.
+     */
+    private static void postAll(int count, Request request, int threads) throws ApiException, InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<ApiException> failure = new AtomicReference<>();
+        Thread[] workers = new Thread[Math.max(1, threads)];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                for (int i = next.getAndIncrement(); i < count && failure.get() == null; i = next.getAndIncrement()) {
+                    try {
+                        request.send(i);
+                    } catch (ApiException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }, "generator-" + t);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * Petición que envía a la API el elemento de una posición.
+     */
+    private interface Request {
+        void send(int index) throws ApiException;
+    }
+
+    /**
+     * Abre un fichero y empieza el array de elementos.
+     * @param format Formato de escritura.
+     * @param path Ruta del fichero.
+     * @return Escritor JSON con el array abierto.
+     * @throws IOException Si no se puede abrir el fichero.
+     */
+    private static JsonWriter openArray(StorageFormat format, Path path) throws IOException {
+        Writer writer = format.openWriter(path.toString());
+        JsonWriter out = new JsonWriter(writer);
+        if (format == StorageFormat.PRETTY) {
+            out.setIndent("  ");
+        }
+        out.beginArray();
+        return out;
+    }
+
+    /**
+     * Obtiene el nombre del producto de una posición.
+     * @param index Posición del producto.
+     * @return Nombre del producto.
+     */
+    private static String productName(int index) {
+        return "Product " + index;
+    }
+
+    /**
+     * Obtiene el nombre de una marca.
+     * @param index Posición de la marca.
+     * @return Nombre de la marca.
+     */
+    private static String brandName(int index) {
+        return "Brand " + index;
+    }
+
+    /**
+     * Genera un precio máximo de venta al público entre 1 y 500, con más productos baratos que caros. Es siempre el
+     * primer valor que se saca del generador del producto, para que las tiendas puedan obtenerlo sin crear el
+     * producto entero.
+     * @param random Generador del producto.
+     * @return Precio redondeado a céntimos.
+     */
+    private static double mrp(SplittableRandom random) {
+        return Math.round(Math.exp(random.nextDouble() * Math.log(500)) * 100) / 100.0;
+    }
+
+    /**
+     * Genera el número de reseñas de un producto con una distribución geométrica de media la configurada.
+     * @param random Generador del producto.
+     * @return Número de reseñas.
+     */
+    private int reviewCount(SplittableRandom random) {
+        if (reviews == 0) {
+            return 0;
+        }
+        double continueProbability = reviews / (reviews + 1);
+        double count = Math.floor(Math.log(1 - random.nextDouble()) / Math.log(continueProbability));
+        return (int) Math.min(MAX_REVIEWS, count);
+    }
+
+    /**
+     * Genera una valoración entre 1 y 5 según RATING_WEIGHTS.
+     * @param random Generador del producto.
+     * @return Valoración.
+     */
+    private static int rating(SplittableRandom random) {
+        int value = random.nextInt(100);
+        for (int i = 0; i < RATING_WEIGHTS.length; i++) {
+            value -= RATING_WEIGHTS[i];
+            if (value < 0) {
+                return i + 1;
+            }
+        }
+        return RATING_WEIGHTS.length;
+    }
+
+    /**
+     * Deriva la semilla de un elemento de la semilla general y de su posición (mezcla de SplitMix64).
+     * @param seed Semilla general.
+     * @param index Posición del elemento.
+     * @return Semilla del elemento.
+     */
+    private static long mix(long seed, long index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Elige posiciones entre 0 y n - 1 con probabilidad proporcional a 1 / (posición + 1)^exponente, buscando en la
+     * tabla de probabilidades acumuladas.
+     */
+    private static final class ZipfSampler {
+        private final int size;
+        private final double[] cumulative;
+
+        private ZipfSampler(int size, double exponent) {
+            this.size = size;
+            if (exponent == 0) {
+                this.cumulative = null;
+                return;
+            }
+            this.cumulative = new double[size];
+            double total = 0;
+            for (int i = 0; i < size; i++) {
+                total += Math.pow(i + 1, -exponent);
+                cumulative[i] = total;
+            }
+        }
+
+        private int sample(SplittableRandom random) {
+            if (cumulative == null) {
+                return random.nextInt(size);
+            }
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[size - 1]);
+            index = index < 0 ? -index - 1 : index + 1;
+            return Math.min(index, size - 1);
+        }
+    }
+
+    /**
+     * Conjunto de enteros no negativos con direccionamiento abierto, para no repetir productos en un catálogo sin
+     * crear un objeto por entrada.
+     */
+    private static final class IntSet {
+        private final int[] slots;
+        private final int mask;
+
+        private IntSet(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+            this.slots = new int[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(slots, -1);
+        }
+
+        private boolean add(int value) {
+            int slot = (value * 0x9E3779B9) >>> 1 & mask;
+            while (slots[slot] != -1) {
+                if (slots[slot] == value) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = value;
+            return true;
+        }
+    }
+
+    /**
+     * Punto de entrada. Claves admitidas: products, shops, catalogue (entradas medias por tienda), reviews (reseñas
+     * medias por producto), brands, skew, seed, output (files o api), dir (directorio de los ficheros), overwrite
+     * (true para sustituir ficheros existentes) y threads (peticiones simultáneas con output=api). Con output=api los datos se envían a la URL de
+     * {@code elcofre.api.url}; para volúmenes grandes es más rápido generar los ficheros y arrancar
+     * StandInApiServer en ese directorio, que los carga al empezar.
+     * @param args Pares clave=valor.
+     * @throws IOException Si falla la escritura de los ficheros.
+     * @throws ApiException Si la API rechaza alguna petición.
+     * @throws InterruptedException Si se interrumpe la espera.
+     */
+    public static void main(String[] args) throws IOException, ApiException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals > 0) {
+                options.put(arg.substring(0, equals), arg.substring(equals + 1));
+            }
+        }
+        int products = Integer.parseInt(options.getOrDefault("products", "10000"));
+        int shops = Integer.parseInt(options.getOrDefault("shops", "1000"));
+        int catalogue = Integer.parseInt(options.getOrDefault("catalogue", "100"));
+        double reviews = Double.parseDouble(options.getOrDefault("reviews", "3"));
+        int brands = Integer.parseInt(options.getOrDefault("brands", "200"));
+        double skew = Double.parseDouble(options.getOrDefault("skew", "1.0"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        String output = options.getOrDefault("output", "files");
+
+        DataGenerator generator = new DataGenerator(products, shops, catalogue, reviews, brands, skew, seed);
+        long start = System.nanoTime();
+        long entries;
+        if (output.equalsIgnoreCase("api")) {
+            String baseUrl = ApiHelper.getBaseUrl();
+            int threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+            entries = generator.post(new ApiHelper(), baseUrl, threads);
+            System.out.printf("Posted to %s%n", baseUrl);
+        } else {
+            Path directory = Path.of(options.getOrDefault("dir", "."));
+            boolean overwrite = Boolean.parseBoolean(options.getOrDefault("overwrite", "false"));
+            if (!overwrite && (Files.exists(directory.resolve("products.json"))
+                    || Files.exists(directory.resolve("shops.json")))) {
+                System.out.println("products.json or shops.json already exists in " + directory.toAbsolutePath()
+                        + "; pass overwrite=true to replace them.");
+                return;
+            }
+            entries = generator.writeFiles(directory);
+            System.out.printf("Wrote %s and %s (%s)%n", directory.resolve("products.json"),
+                    directory.resolve("shops.json"), StorageFormat.configured());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d products, %d shops, %d catalogue entries, skew %.2f, seed %d in %.1f s%n",
+                products, shops, entries, skew, seed, seconds);
+    }
+}
@@ -0,0 +1,67 @@
+package tools;
+
+import business.RevenueRollup;
+import business.SalesLedger;
+import business.shop.Shop;
+import business.shop.ShopManager;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lee el libro de ventas desde el principio y muestra las ganancias de cada tienda que se deducen de él, junto a las
+ * que guarda la réplica local (shops.json), y los ingresos por hora de las últimas horas. Abre el libro solo para
+ * leer, así que no modifica los ficheros y se puede usar mientras la aplicación está cobrando.
+ * Los argumentos son pares clave=valor, por ejemplo {@code file=sales.ledger hours=24}.
+ */
+public class LedgerReport {
+    /**
+     * Punto de entrada. Claves admitidas: file (ruta del libro) y hours (horas de ingresos a mostrar).
+     * @param args Pares clave=valor.
+     * @throws IOException Si no se pueden leer los ficheros locales.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals > 0) {
+                options.put(arg.substring(0, equals), arg.substring(equals + 1));
+            }
+        }
+        String file = options.getOrDefault("file", "sales.ledger");
+        int hours = Integer.parseInt(options.getOrDefault("hours", "24"));
+
+        long start = System.nanoTime();
+        SalesLedger ledger = new SalesLedger(file, true);
+        Map<String, RevenueRollup.Bucket> totals = ledger.getShopTotals();
+        System.out.printf("%d sales replayed from %s in %.3f s%n%n", ledger.getReplayedSales(), file,
+                (System.nanoTime() - start) / 1e9);
+
+        ArrayList<Shop> shops = new ShopManager().fetchShops();
+        System.out.printf("%-30s %10s %14s %14s %14s%n", "shop", "lines", "gross", "net (ledger)", "earnings");
+        for (Shop shop : shops) {
+            RevenueRollup.Bucket total = totals.remove(shop.getName());
+            System.out.printf("%-30s %10d %14.2f %14.2f %14.2f%n", shop.getName(),
+                    total == null ? 0 : total.getLines(), total == null ? 0 : total.getGross(),
+                    total == null ? 0 : total.getNet(), shop.getEarnings());
+        }
+        for (Map.Entry<String, RevenueRollup.Bucket> entry : totals.entrySet()) {
+            RevenueRollup.Bucket total = entry.getValue();
+            System.out.printf("%-30s %10d %14.2f %14.2f %14s%n", entry.getKey(), total.getLines(), total.getGross(),
+                    total.getNet(), "-");
+        }
+
+        long now = System.currentTimeMillis();
+        List<RevenueRollup.Bucket> hourly = ledger.getHourlyRevenue(now - hours * RevenueRollup.HOUR, now + 1);
+        System.out.printf("%n%-22s %10s %10s %14s %14s%n", "hour (UTC)", "lines", "regular", "gross", "net");
+        for (RevenueRollup.Bucket bucket : hourly) {
+            System.out.printf("%-22s %10d %10d %14.2f %14.2f%n", Instant.ofEpochMilli(bucket.getStart()),
+                    bucket.getLines(), bucket.getDiscountedLines(), bucket.getGross(), bucket.getNet());
+        }
+        ledger.close();
+    }
+}
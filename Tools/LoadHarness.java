@@ -0,0 +1,283 @@
+package tools;
+
+import business.Catalogue;
+import business.product.GeneralProduct;
+import business.product.Product;
+import business.product.ReducedProduct;
+import business.product.SuperReducedProduct;
+import business.shop.LoyaltyShop;
+import business.shop.MaxProfitShop;
+import business.shop.Shop;
+import business.shop.SponsoredShop;
+import com.google.gson.Gson;
+import persistence.ApiException;
+import persistence.ApiHelper;
+import persistence.JsonSupport;
+import persistence.ProductApiJsonDAO;
+import persistence.ShopApiJsonDAO;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prueba de carga de la capa de persistencia contra StandInApiServer. Varios hilos mezclan durante un tiempo fijo
+ * descargas de productos y tiendas a través de los DAO, lecturas de un solo producto con ApiHelper y actualizaciones
+ * de ganancias, y al final se muestran el rendimiento y los percentiles de latencia de cada operación.
+ * Los argumentos son pares clave=valor, por ejemplo {@code threads=16 seconds=20 latency=5 jitter=20 errors=0.02}.
+ */
+public class LoadHarness {
+    private static final String GROUP = "P1-G70";
+    private static final String[] OPERATIONS = {"load products", "load shops", "get product", "update earnings"};
+    private static final int[] WEIGHTS = {45, 30, 20, 5};
+
+    private final ProductApiJsonDAO productApiJsonDAO;
+    private final ShopApiJsonDAO shopApiJsonDAO;
+    private final ApiHelper apiHelper;
+    private final String baseUrl;
+    private final int products;
+    private final int shops;
+
+    /**
+     * Constructor. Los DAO se crean una sola vez y se comparten entre los hilos, como en la aplicación.
+     * @param products Número de productos cargados en el servidor.
+     * @param shops Número de tiendas cargadas en el servidor.
+     */
+    public LoadHarness(int products, int shops) {
+        this.productApiJsonDAO = new ProductApiJsonDAO();
+        this.shopApiJsonDAO = new ShopApiJsonDAO();
+        this.apiHelper = new ApiHelper();
+        this.baseUrl = ApiHelper.getBaseUrl();
+        this.products = products;
+        this.shops = shops;
+    }
+
+    /**
+     * Ejecuta la carga.
+     * @param threads Número de hilos cliente.
+     * @param seconds Duración en segundos.
+     * @return Resultados de cada operación, en el orden de OPERATIONS.
+     * @throws InterruptedException Si se interrumpe la espera.
+     */
+    public Samples[] run(int threads, int seconds) throws InterruptedException {
+        Samples[][] perThread = new Samples[threads][];
+        CountDownLatch done = new CountDownLatch(threads);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        for (int t = 0; t < threads; t++) {
+            Samples[] samples = new Samples[OPERATIONS.length];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = new Samples();
+            }
+            perThread[t] = samples;
+            long seed = t;
+            Thread thread = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                while (System.nanoTime() < end) {
+                    int operation = pick(random);
+                    long start = System.nanoTime();
+                    boolean ok = execute(operation, random);
+                    samples[operation].add(System.nanoTime() - start, ok);
+                }
+                done.countDown();
+            }, "load-" + t);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        Samples[] merged = new Samples[OPERATIONS.length];
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = new Samples();
+            for (Samples[] samples : perThread) {
+                merged[i].addAll(samples[i]);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Elige una operación según los pesos.
+     * @param random Generador del hilo.
+     * @return Índice de la operación.
+     */
+    private static int pick(SplittableRandom random) {
+        int value = random.nextInt(100);
+        for (int i = 0; i < WEIGHTS.length; i++) {
+            value -= WEIGHTS[i];
+            if (value < 0) {
+                return i;
+            }
+        }
+        return WEIGHTS.length - 1;
+    }
+
+    /**
+     * Ejecuta una operación.
+     * @param operation Índice de la operación.
+     * @param random Generador del hilo.
+     * @return true si ha terminado bien.
+     */
+    private boolean execute(int operation, SplittableRandom random) {
+        try {
+            switch (operation) {
+                case 0 -> productApiJsonDAO.loadProducts();
+                case 1 -> shopApiJsonDAO.loadShops();
+                case 2 -> apiHelper.getFromUrl(baseUrl + "/" + GROUP + "/products/" + random.nextInt(products));
+                default -> {
+                    Shop shop = shopApiJsonDAO.loadShops().get(random.nextInt(shops));
+                    shopApiJsonDAO.updateEarnings(shop, shop.getEarnings() + random.nextInt(100));
+                }
+            }
+            return true;
+        } catch (ApiException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Genera el contenido inicial del servidor.
+     * @param server Servidor a cargar.
+     * @param products Número de productos.
+     * @param shops Número de tiendas.
+     */
+    static void seed(StandInApiServer server, int products, int shops) {
+        SplittableRandom random = new SplittableRandom(1);
+        String[] brands = {"Acme", "Nordia", "Solea", "Vinto", "Kalma"};
+        ArrayList<Product> productList = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            String name = "Product " + i;
+            String brand = brands[random.nextInt(brands.length)];
+            double mrp = 1 + random.nextInt(20000) / 100.0;
+            productList.add(switch (i % 3) {
+                case 0 -> new GeneralProduct(name, brand, mrp);
+                case 1 -> new ReducedProduct(name, brand, mrp, 3.5);
+                default -> new SuperReducedProduct(name, brand, mrp);
+            });
+        }
+        ArrayList<Shop> shopList = new ArrayList<>(shops);
+        for (int i = 0; i < shops; i++) {
+            ArrayList<Catalogue> catalogue = new ArrayList<>();
+            for (int j = 0; j < 20; j++) {
+                Product product = productList.get(random.nextInt(products));
+                catalogue.add(new Catalogue(product.getName(), product.getMrp() * 0.8));
+            }
+            String name = "Shop " + i;
+            shopList.add(switch (i % 3) {
+                case 0 -> new SponsoredShop(name, "Load test shop", 2000, catalogue, brands[0]);
+                case 1 -> new MaxProfitShop(name, "Load test shop", 2000, catalogue);
+                default -> new LoyaltyShop(name, "Load test shop", 2000, catalogue, 500);
+            });
+        }
+        Gson gson = JsonSupport.gson();
+        server.load(GROUP, "products", gson.toJson(productList));
+        server.load(GROUP, "shops", gson.toJson(shopList));
+    }
+
+    /**
+     * Latencias y errores de una operación.
+     */
+    static class Samples {
+        private long[] nanos = new long[1024];
+        private int size;
+        private int errors;
+
+        /**
+         * Registra una ejecución.
+         * @param elapsed Duración en nanosegundos.
+         * @param ok true si ha terminado bien.
+         */
+        void add(long elapsed, boolean ok) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = elapsed;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        /**
+         * Añade las ejecuciones de otro registro.
+         * @param other Registro a añadir.
+         */
+        void addAll(Samples other) {
+            if (size + other.size > nanos.length) {
+                nanos = Arrays.copyOf(nanos, Math.max(nanos.length * 2, size + other.size));
+            }
+            System.arraycopy(other.nanos, 0, nanos, size, other.size);
+            size += other.size;
+            errors += other.errors;
+        }
+
+        /**
+         * Calcula un percentil. Ordena las muestras la primera vez.
+         * @param percentile Percentil entre 0 y 1.
+         * @return Latencia en milisegundos.
+         */
+        double percentileMillis(double percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            Arrays.sort(nanos, 0, size);
+            int index = (int) Math.min(size - 1, Math.ceil(percentile * size) - 1);
+            return nanos[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+
+    /**
+     * Punto de entrada. Arranca un StandInApiServer embebido, apunta la aplicación a él y lanza la carga.
+     * Claves admitidas: threads, seconds, products, shops, latency (ms mínimos), jitter (ms extra máximos),
+     * errors (probabilidad de 503) y gzip (true/false).
+     * @param args Pares clave=valor.
+     * @throws IOException Si no se puede arrancar el servidor.
+     * @throws InterruptedException Si se interrumpe la espera.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals > 0) {
+                options.put(arg.substring(0, equals), arg.substring(equals + 1));
+            }
+        }
+        int threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+        int seconds = Integer.parseInt(options.getOrDefault("seconds", "10"));
+        int products = Integer.parseInt(options.getOrDefault("products", "500"));
+        int shops = Integer.parseInt(options.getOrDefault("shops", "50"));
+        int latency = Integer.parseInt(options.getOrDefault("latency", "2"));
+        int jitter = Integer.parseInt(options.getOrDefault("jitter", "8"));
+        double errors = Double.parseDouble(options.getOrDefault("errors", "0"));
+
+        StandInApiServer server = new StandInApiServer(0);
+        server.setLatency(latency, latency + jitter);
+        server.setErrorRate(errors, 503);
+        server.setGzipEnabled(Boolean.parseBoolean(options.getOrDefault("gzip", "true")));
+        seed(server, products, shops);
+        server.start();
+        System.setProperty("elcofre.api.url", server.getBaseUrl());
+
+        LoadHarness harness = new LoadHarness(products, shops);
+        long requestsBefore = server.getRequestCount();
+        Samples[] results = harness.run(threads, seconds);
+        long requests = server.getRequestCount() - requestsBefore;
+        server.stop();
+
+        System.out.printf("%d threads, %d s, %d products, %d shops, latency %d-%d ms, error rate %.3f%n",
+                threads, seconds, products, shops, latency, latency + jitter, errors);
+        System.out.printf("%-16s %9s %7s %9s %9s %9s %9s %9s%n", "operation", "ops", "errors", "ops/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        long total = 0;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            Samples samples = results[i];
+            total += samples.size;
+            System.out.printf("%-16s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", OPERATIONS[i], samples.size, samples.errors,
+                    samples.size / (double) seconds, samples.percentileMillis(0.50), samples.percentileMillis(0.90),
+                    samples.percentileMillis(0.99), samples.percentileMillis(1.0));
+        }
+        System.out.printf("total %d operations (%.1f ops/s), %d HTTP requests served, %d injected errors%n",
+                total, total / (double) seconds, requests, server.getInjectedErrors());
+    }
+}
@@ -0,0 +1,42 @@
+package tools;
+
+import business.ReportManager;
+import business.product.ProductManager;
+import business.shop.ShopManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exporta a CSV, con ReportManager, las ganancias de cada tienda y todas las entradas de sus catálogos con el precio
+ * bruto y el neto, a partir de la réplica local (products.json y shops.json). Los argumentos son pares clave=valor,
+ * por ejemplo {@code file=report.csv}.
+ */
+public class ReportExporter {
+    /**
+     * Punto de entrada. Clave admitida: file (ruta del informe).
+     * @param args Pares clave=valor.
+     * @throws IOException Si no se pueden leer los ficheros locales o escribir el informe.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals > 0) {
+                options.put(arg.substring(0, equals), arg.substring(equals + 1));
+            }
+        }
+        Path file = Path.of(options.getOrDefault("file", "report.csv"));
+
+        ProductManager productManager = new ProductManager();
+        productManager.replaceProductList(productManager.fetchProducts());
+        ShopManager shopManager = new ShopManager();
+        shopManager.replaceShopList(shopManager.fetchShops());
+
+        long start = System.nanoTime();
+        long rows = new ReportManager(shopManager, productManager).exportReport(file);
+        System.out.printf("%d rows written to %s in %.3f s%n", rows, file, (System.nanoTime() - start) / 1e9);
+    }
+}
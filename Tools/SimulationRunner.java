@@ -0,0 +1,69 @@
+package tools;
+
+import business.product.Product;
+import business.product.ProductManager;
+import business.shop.Shop;
+import business.shop.ShopManager;
+import business.simulation.MarketSimulator;
+import business.simulation.SimulationConfig;
+import business.simulation.SimulationResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Ejecuta una simulación de clientes sobre los productos y las tiendas de la réplica local (products.json y
+ * shops.json) y muestra las ganancias de cada modelo de negocio y de cada tienda. No modifica los ficheros.
+ * Los argumentos son pares clave=valor, por ejemplo
+ * {@code customers=2000000 visits=4 basket=1-6 seed=7 choice=cheapest threads=8 brand.Acme=3}.
+ */
+public class SimulationRunner {
+    /**
+     * Punto de entrada. Claves admitidas: customers, visits, basket (mínimo-máximo), seed, choice (cheapest o
+     * random), threads y brand.&lt;marca&gt; (peso de la marca; el resto pesan 1).
+     * @param args Pares clave=valor.
+     * @throws IOException Si no se pueden leer los ficheros locales.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        Map<String, Double> brandWeights = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals > 0) {
+                String key = arg.substring(0, equals);
+                String value = arg.substring(equals + 1);
+                if (key.startsWith("brand.")) {
+                    brandWeights.put(key.substring("brand.".length()), Double.parseDouble(value));
+                } else {
+                    options.put(key, value);
+                }
+            }
+        }
+        long customers = Long.parseLong(options.getOrDefault("customers", "1000000"));
+        int visits = Integer.parseInt(options.getOrDefault("visits", "4"));
+        String[] basket = options.getOrDefault("basket", "1-6").split("-");
+        int minBasket = Integer.parseInt(basket[0].trim());
+        int maxBasket = Integer.parseInt(basket[basket.length - 1].trim());
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        SimulationConfig.ShopChoice choice = SimulationConfig.ShopChoice.valueOf(
+                options.getOrDefault("choice", "cheapest").toUpperCase(Locale.ROOT));
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        ArrayList<Product> products = new ProductManager().fetchProducts();
+        ArrayList<Shop> shops = new ShopManager().fetchShops();
+        SimulationConfig config = new SimulationConfig(customers, visits, minBasket, maxBasket, seed, choice,
+                brandWeights);
+        SimulationResult result = new MarketSimulator(products, shops).run(config, threads);
+
+        System.out.printf("%d products, %d shops, %d visits of %d-%d items, choice %s, seed %d, %d threads%n",
+                products.size(), shops.size(), visits, minBasket, maxBasket, choice, seed, threads);
+        System.out.print(result.format());
+        double seconds = result.getElapsedNanos() / 1e9;
+        System.out.printf("%nsimulated in %.2f s (%.0f customers/s, %.0f items/s)%n",
+                seconds, customers / seconds, result.getPurchases() / seconds);
+    }
+}
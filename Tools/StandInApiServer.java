@@ -0,0 +1,481 @@
+package tools;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import persistence.StorageFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Servidor HTTP embebido que imita la API de la asignatura para poder trabajar sin conexión y hacer pruebas de carga.
+ * Guarda un árbol JSON en memoria con la misma semántica posicional que la API: cada grupo tiene colecciones
+ * ({@code /{grupo}/products}, {@code /{grupo}/shops}) que son arrays, POST añade al final y GET, PUT y DELETE trabajan
+ * sobre la posición indicada. Las rutas pueden seguir bajando por el árbol (por ejemplo
+ * {@code /{grupo}/shops/3/catalogue/0}), usando posiciones en los arrays y claves en los objetos.
+ * Se puede añadir una latencia aleatoria y hacer que una parte de las solicitudes falle con un código de estado dado.
+ * Las solicitudes HEAD (las que usa ApiHelper para comprobar la conexión) no sufren ni latencia ni errores.
+ */
+public class StandInApiServer {
+    private static final int MIN_GZIP_BYTES = 1024;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final JsonObject root;
+    private final AtomicLong requestCount;
+    private final AtomicLong injectedErrors;
+    private volatile int minLatencyMillis;
+    private volatile int maxLatencyMillis;
+    private volatile double errorRate;
+    private volatile int errorStatus;
+    private volatile boolean gzipEnabled;
+
+    /**
+     * Constructor. Crea el servidor en la interfaz local sin arrancarlo.
+     * @param port Puerto en el que escuchar, o 0 para usar uno libre.
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public StandInApiServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stand-in-api");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.root = new JsonObject();
+        this.requestCount = new AtomicLong();
+        this.injectedErrors = new AtomicLong();
+        this.errorStatus = 503;
+        this.gzipEnabled = true;
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Arranca el servidor.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Detiene el servidor sin esperar a las solicitudes en curso.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Obtiene la URL base que hay que configurar en {@code elcofre.api.url} para usar este servidor.
+     * @return URL base del servidor.
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Establece la latencia añadida a cada solicitud, elegida al azar de forma uniforme dentro del rango.
+     * @param minMillis Latencia mínima en milisegundos.
+     * @param maxMillis Latencia máxima en milisegundos.
+     */
+    public void setLatency(int minMillis, int maxMillis) {
+        this.minLatencyMillis = Math.max(0, minMillis);
+        this.maxLatencyMillis = Math.max(this.minLatencyMillis, maxMillis);
+    }
+
+    /**
+     * Hace que una parte de las solicitudes falle sin tocar los datos.
+     * @param rate Probabilidad de fallo entre 0 y 1.
+     * @param status Código de estado que se devuelve al fallar (por ejemplo 503 o 429).
+     */
+    public void setErrorRate(double rate, int status) {
+        this.errorRate = rate;
+        this.errorStatus = status;
+    }
+
+    /**
+     * Activa o desactiva gzip. Desactivado, las respuestas van sin comprimir y los cuerpos comprimidos se rechazan
+     * con 415, igual que haría un servidor que no lo soporta.
+     * @param gzipEnabled true para aceptar y enviar gzip.
+     */
+    public void setGzipEnabled(boolean gzipEnabled) {
+        this.gzipEnabled = gzipEnabled;
+    }
+
+    /**
+     * Obtiene el número de solicitudes recibidas, incluidas las que han fallado a propósito.
+     * @return Número de solicitudes.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Obtiene el número de solicitudes que han fallado a propósito.
+     * @return Número de errores inyectados.
+     */
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    /**
+     * Sustituye el contenido de una colección.
+     * @param group Grupo, por ejemplo P1-G70.
+     * @param collection Colección, por ejemplo products.
+     * @param json Array JSON con los elementos.
+     * @throws JsonParseException Si el texto no es un array JSON.
+     */
+    public synchronized void load(String group, String collection, String json) {
+        JsonElement elements = JsonParser.parseString(json);
+        if (!elements.isJsonArray()) {
+            throw new JsonParseException("Expected a JSON array for " + collection);
+        }
+        collectionOf(group, true).add(collection, elements);
+    }
+
+    /**
+     * Atiende una solicitud: aplica latencia y errores, ejecuta la operación y envía la respuesta.
+     * @param exchange Solicitud en curso.
+     * @throws IOException Si falla la comunicación con el cliente.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if ("HEAD".equals(method)) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            delay();
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                readRequestBody(exchange);
+                respond(exchange, errorStatus, "{\"error\":\"Injected failure\"}");
+                return;
+            }
+            boolean compressedBody = "gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            if (compressedBody && !gzipEnabled) {
+                readRequestBody(exchange);
+                respond(exchange, 415, "{\"error\":\"Unsupported Content-Encoding\"}");
+                return;
+            }
+            String body = readRequestBody(exchange);
+            String[] path = splitPath(exchange.getRequestURI().getPath());
+            Response response = switch (method) {
+                case "GET" -> get(path);
+                case "POST" -> post(path, body);
+                case "PUT" -> put(path, body);
+                case "DELETE" -> delete(path);
+                default -> new Response(405, "{\"error\":\"Method not allowed\"}");
+            };
+            respond(exchange, response.status, response.body);
+        }
+    }
+
+    /**
+     * Devuelve el elemento de la ruta. Una colección que no existe se devuelve como un array vacío.
+     * @param path Segmentos de la ruta.
+     * @return Respuesta.
+     */
+    private synchronized Response get(String[] path) {
+        if (path.length < 2) {
+            return notFound();
+        }
+        if (path.length == 2) {
+            JsonObject group = collectionOf(path[0], false);
+            JsonElement collection = group != null ? group.get(path[1]) : null;
+            return new Response(200, collection != null ? collection.toString() : "[]");
+        }
+        JsonElement element = resolve(path, path.length);
+        return element != null ? new Response(200, element.toString()) : notFound();
+    }
+
+    /**
+     * Añade el cuerpo al final del array de la ruta, creando la colección si no existe.
+     * @param path Segmentos de la ruta.
+     * @param body Cuerpo JSON.
+     * @return Respuesta.
+     */
+    private synchronized Response post(String[] path, String body) {
+        if (path.length < 2) {
+            return notFound();
+        }
+        JsonElement value = parse(body);
+        if (value == null) {
+            return badRequest();
+        }
+        JsonElement target;
+        if (path.length == 2) {
+            JsonObject group = collectionOf(path[0], true);
+            if (!group.has(path[1])) {
+                group.add(path[1], new JsonArray());
+            }
+            target = group.get(path[1]);
+        } else {
+            target = resolve(path, path.length);
+        }
+        if (target == null || !target.isJsonArray()) {
+            return notFound();
+        }
+        target.getAsJsonArray().add(value);
+        return new Response(201, value.toString());
+    }
+
+    /**
+     * Sustituye el elemento de la ruta por el cuerpo.
+     * @param path Segmentos de la ruta.
+     * @param body Cuerpo JSON.
+     * @return Respuesta.
+     */
+    private synchronized Response put(String[] path, String body) {
+        if (path.length < 3) {
+            return notFound();
+        }
+        JsonElement value = parse(body);
+        if (value == null) {
+            return badRequest();
+        }
+        JsonElement parent = resolve(path, path.length - 1);
+        String key = path[path.length - 1];
+        if (parent != null && parent.isJsonArray()) {
+            int index = parseIndex(key);
+            JsonArray array = parent.getAsJsonArray();
+            if (index < 0 || index >= array.size()) {
+                return notFound();
+            }
+            array.set(index, value);
+        } else if (parent != null && parent.isJsonObject()) {
+            parent.getAsJsonObject().add(key, value);
+        } else {
+            return notFound();
+        }
+        return new Response(200, value.toString());
+    }
+
+    /**
+     * Elimina el elemento de la ruta. En los arrays, los elementos siguientes pasan a ocupar una posición menos.
+     * @param path Segmentos de la ruta.
+     * @return Respuesta.
+     */
+    private synchronized Response delete(String[] path) {
+        if (path.length < 3) {
+            return notFound();
+        }
+        JsonElement parent = resolve(path, path.length - 1);
+        String key = path[path.length - 1];
+        JsonElement removed = null;
+        if (parent != null && parent.isJsonArray()) {
+            int index = parseIndex(key);
+            JsonArray array = parent.getAsJsonArray();
+            if (index >= 0 && index < array.size()) {
+                removed = array.remove(index);
+            }
+        } else if (parent != null && parent.isJsonObject()) {
+            removed = parent.getAsJsonObject().remove(key);
+        }
+        return removed != null ? new Response(200, removed.toString()) : notFound();
+    }
+
+    /**
+     * Recorre el árbol siguiendo los primeros segmentos de la ruta.
+     * @param path Segmentos de la ruta; los dos primeros son el grupo y la colección.
+     * @param length Número de segmentos a seguir.
+     * @return Elemento encontrado, o null si la ruta no existe.
+     */
+    private JsonElement resolve(String[] path, int length) {
+        JsonObject group = collectionOf(path[0], false);
+        JsonElement current = group != null ? group.get(path[1]) : null;
+        for (int i = 2; i < length && current != null; i++) {
+            if (current.isJsonArray()) {
+                int index = parseIndex(path[i]);
+                JsonArray array = current.getAsJsonArray();
+                current = index >= 0 && index < array.size() ? array.get(index) : null;
+            } else if (current.isJsonObject()) {
+                current = current.getAsJsonObject().get(path[i]);
+            } else {
+                current = null;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Obtiene el objeto que contiene las colecciones de un grupo.
+     * @param group Nombre del grupo.
+     * @param create true para crearlo si no existe.
+     * @return Objeto del grupo, o null si no existe y no se crea.
+     */
+    private JsonObject collectionOf(String group, boolean create) {
+        JsonElement element = root.get(group);
+        if (element == null && create) {
+            JsonObject created = new JsonObject();
+            root.add(group, created);
+            return created;
+        }
+        return element != null ? element.getAsJsonObject() : null;
+    }
+
+    /**
+     * Espera la latencia configurada.
+     */
+    private void delay() {
+        int min = minLatencyMillis;
+        int max = maxLatencyMillis;
+        if (max <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(min + ThreadLocalRandom.current().nextInt(max - min + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lee el cuerpo de la solicitud, descomprimiéndolo si viene en gzip.
+     * @param exchange Solicitud en curso.
+     * @return Cuerpo como texto UTF-8.
+     * @throws IOException Si falla la lectura.
+     */
+    private String readRequestBody(HttpExchange exchange) throws IOException {
+        InputStream input = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding")) && gzipEnabled) {
+            input = new GZIPInputStream(input);
+        }
+        return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Envía la respuesta, comprimida si el cliente la acepta y es lo bastante grande.
+     * @param exchange Solicitud en curso.
+     * @param status Código de estado.
+     * @param body Cuerpo JSON.
+     * @throws IOException Si falla la escritura.
+     */
+    private void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] payload = body.getBytes(StandardCharsets.UTF_8);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (gzipEnabled && payload.length >= MIN_GZIP_BYTES && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(payload.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+                gzip.write(payload);
+            }
+            payload = buffer.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, payload.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(payload);
+        }
+    }
+
+    /**
+     * Divide una ruta en segmentos, ignorando las barras repetidas.
+     * @param path Ruta de la solicitud.
+     * @return Segmentos no vacíos.
+     */
+    private static String[] splitPath(String path) {
+        String trimmed = path.replaceAll("^/+|/+$", "");
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("/+");
+    }
+
+    /**
+     * Interpreta un segmento como posición.
+     * @param segment Segmento de la ruta.
+     * @return Posición, o -1 si no es un número.
+     */
+    private static int parseIndex(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Interpreta un cuerpo JSON.
+     * @param body Texto recibido.
+     * @return Elemento JSON, o null si el texto no es JSON válido.
+     */
+    private static JsonElement parse(String body) {
+        try {
+            JsonElement element = JsonParser.parseString(body);
+            return element.isJsonNull() ? null : element;
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    private static Response notFound() {
+        return new Response(404, "{\"error\":\"Not found\"}");
+    }
+
+    private static Response badRequest() {
+        return new Response(400, "{\"error\":\"Invalid JSON body\"}");
+    }
+
+    /**
+     * Código de estado y cuerpo de una respuesta.
+     */
+    private record Response(int status, String body) {
+    }
+
+    /**
+     * Arranca el servidor de forma independiente. Si existen products.json y shops.json en el directorio de trabajo,
+     * se cargan como colecciones del grupo P1-G70.
+     * Uso: {@code java tools.StandInApiServer [puerto] [latenciaMin] [latenciaMax] [tasaDeError]}
+     * @param args Puerto (8080 por defecto), latencia en milisegundos y probabilidad de error.
+     * @throws IOException Si no se puede abrir el puerto.
+     * @throws InterruptedException Si se interrumpe el hilo principal.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        StandInApiServer server = new StandInApiServer(port);
+        if (args.length > 2) {
+            server.setLatency(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        }
+        if (args.length > 3) {
+            server.setErrorRate(Double.parseDouble(args[3]), 503);
+        }
+        seed(server, "products", "products.json");
+        seed(server, "shops", "shops.json");
+        server.start();
+        System.out.println("Stand-in API listening. Run the application with -Delcofre.api.url=" + server.getBaseUrl());
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Carga una colección del grupo P1-G70 desde un fichero local, si existe.
+     * @param server Servidor a cargar.
+     * @param collection Nombre de la colección.
+     * @param file Fichero JSON (en cualquiera de los formatos de StorageFormat).
+     * @throws IOException Si el fichero existe pero no se puede leer.
+     */
+    private static void seed(StandInApiServer server, String collection, String file) throws IOException {
+        if (!new File(file).exists()) {
+            return;
+        }
+        try (Reader reader = StorageFormat.openReader(file)) {
+            server.load("P1-G70", collection, JsonParser.parseReader(reader).toString());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package bench;
+
+import business.Catalogue;
+import business.product.GeneralProduct;
+import business.product.Product;
+import business.product.ReducedProduct;
+import business.product.SuperReducedProduct;
+import business.shop.LoyaltyShop;
+import business.shop.MaxProfitShop;
+import business.shop.Shop;
+import business.shop.SponsoredShop;
+import persistence.JsonSupport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Genera datos de prueba deterministas para los benchmarks: productos de las tres categorías, tiendas de los tres
+ * modelos de negocio con catálogos y su representación JSON tal como la guarda la API.
+ */
+final class BenchData {
+    static final String[] BRANDS = {"Acme", "Nordia", "Solea", "Vinto", "Kalma", "Brisa", "Orbe", "Tessa"};
+    static final String[] CATEGORIES = {"GENERAL", "REDUCED", "SUPER_REDUCED"};
+    static final String[] BUSINESS_MODELS = {"SPONSORED", "MAX_PROFIT", "LOYALTY"};
+    private static final long SEED = 42L;
+
+    private BenchData() {
+    }
+
+    /**
+     * Los gestores exigen que existan los ficheros de la réplica local en el directorio de trabajo. Si faltan se
+     * crean vacíos; los benchmarks nunca los sobrescriben porque cargan los datos directamente en memoria.
+     * @throws IOException Si no se pueden crear los ficheros.
+     */
+    static void ensureLocalFiles() throws IOException {
+        for (String file : new String[]{"products.json", "shops.json"}) {
+            Path path = Path.of(file);
+            if (Files.notExists(path)) {
+                Files.writeString(path, "[]");
+            }
+        }
+    }
+
+    /**
+     * Crea un producto de la categoría indicada.
+     * @param category Categoría (GENERAL, REDUCED o SUPER_REDUCED).
+     * @param name Nombre del producto.
+     * @param brand Marca del producto.
+     * @param mrp Precio máximo de venta al público.
+     * @return Producto creado.
+     */
+    static Product product(String category, String name, String brand, double mrp) {
+        return switch (category) {
+            case "REDUCED" -> new ReducedProduct(name, brand, mrp, 3.0 + (name.length() % 3));
+            case "SUPER_REDUCED" -> new SuperReducedProduct(name, brand, mrp);
+            default -> new GeneralProduct(name, brand, mrp);
+        };
+    }
+
+    /**
+     * Crea una tienda del modelo de negocio indicado.
+     * @param model Modelo de negocio (SPONSORED, MAX_PROFIT o LOYALTY).
+     * @param name Nombre de la tienda.
+     * @param catalogue Catálogo de la tienda.
+     * @return Tienda creada.
+     */
+    static Shop shop(String model, String name, ArrayList<Catalogue> catalogue) {
+        return switch (model) {
+            case "SPONSORED" -> new SponsoredShop(name, "Benchmark shop", 2000, catalogue, BRANDS[0]);
+            case "LOYALTY" -> new LoyaltyShop(name, "Benchmark shop", 2000, catalogue, 100.0);
+            default -> new MaxProfitShop(name, "Benchmark shop", 2000, catalogue);
+        };
+    }
+
+    /**
+     * Genera una lista de productos alternando categorías y marcas.
+     * @param size Número de productos.
+     * @return Lista de productos.
+     */
+    static ArrayList<Product> products(int size) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        ArrayList<Product> products = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String brand = BRANDS[random.nextInt(BRANDS.length)];
+            double mrp = 1 + random.nextInt(20000) / 100.0;
+            products.add(product(CATEGORIES[i % CATEGORIES.length], "Product " + i, brand, mrp));
+        }
+        return products;
+    }
+
+    /**
+     * Genera una lista de tiendas alternando modelos de negocio, cada una con un catálogo de productos tomados
+     * de la lista dada.
+     * @param size Número de tiendas.
+     * @param products Productos disponibles para los catálogos.
+     * @param catalogueSize Número de entradas de cada catálogo.
+     * @return Lista de tiendas.
+     */
+    static ArrayList<Shop> shops(int size, ArrayList<Product> products, int catalogueSize) {
+        SplittableRandom random = new SplittableRandom(SEED + 1);
+        ArrayList<Shop> shops = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ArrayList<Catalogue> catalogue = new ArrayList<>(catalogueSize);
+            for (int j = 0; j < catalogueSize; j++) {
+                Product product = products.get(random.nextInt(products.size()));
+                catalogue.add(new Catalogue(product.getName(), product.getMrp() * (0.5 + random.nextDouble() * 0.5)));
+            }
+            shops.add(shop(BUSINESS_MODELS[i % BUSINESS_MODELS.length], "Shop " + i, catalogue));
+        }
+        return shops;
+    }
+
+    /**
+     * Serializa una lista de entidades igual que las guardan los DAO de la API.
+     * @param entities Entidades a serializar.
+     * @return Array JSON con las entidades.
+     */
+    static String toJson(ArrayList<?> entities) {
+        return JsonSupport.gson().toJson(entities);
+    }
+}
@@ -0,0 +1,72 @@
+package bench;
+
+import business.Cart;
+import business.CartManager;
+import business.Catalogue;
+import business.Sale;
+import business.product.Product;
+import business.product.ProductManager;
+import business.shop.Shop;
+import business.shop.ShopManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el cálculo del cobro de un carrito con CartManager.calculateSales, el mismo con que checkout obtiene las
+ * líneas: resolver producto y tienda por nombre, buscar el precio en el catálogo, aplicar el modelo de negocio y
+ * comprobar si el cliente es habitual. No se llama a checkout para no escribir el libro de ventas ni shops.json en el
+ * directorio de trabajo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckoutBenchmark {
+    private static final int SHOPS = 30;
+    private static final int CATALOGUE_SIZE = 50;
+
+    @Param({"1", "10", "100"})
+    public int cartSize;
+
+    @Param({"100", "1000", "10000"})
+    public int products;
+
+    private ProductManager productManager;
+    private ShopManager shopManager;
+    private CartManager cartManager;
+
+    /**
+     * Carga las réplicas y llena el carrito con entradas de catálogo elegidas al azar.
+     * @throws IOException Si no se puede crear el gestor de productos.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ArrayList<Product> productList = BenchData.products(products);
+        ArrayList<Shop> shopList = BenchData.shops(SHOPS, productList, CATALOGUE_SIZE);
+        BenchData.ensureLocalFiles();
+        productManager = new ProductManager();
+        productManager.replaceProductList(productList);
+        shopManager = new ShopManager();
+        shopManager.replaceShopList(shopList);
+
+        SplittableRandom random = new SplittableRandom(7);
+        cartManager = new CartManager(new ArrayList<Cart>(cartSize), productManager, shopManager);
+        for (int i = 0; i < cartSize; i++) {
+            Shop shop = shopList.get(random.nextInt(shopList.size()));
+            Catalogue entry = shop.getCatalogue().get(random.nextInt(shop.getCatalogue().size()));
+            cartManager.addToCart(entry.getProductName(), shop.getName());
+        }
+    }
+
+    @Benchmark
+    public List<Sale> checkout() {
+        return cartManager.calculateSales(0);
+    }
+}
@@ -0,0 +1,60 @@
+package bench;
+
+import business.Catalogue;
+import business.product.Product;
+import business.shop.Shop;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide Shop.calculateDiscount para cada combinación de modelo de negocio y categoría de producto.
+ * Cada operación calcula el precio neto de un lote de precios, de modo que el tamaño del lote hace de tamaño de datos.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiscountBenchmark {
+
+    @Param({"SPONSORED", "MAX_PROFIT", "LOYALTY"})
+    public String businessModel;
+
+    @Param({"GENERAL", "REDUCED", "SUPER_REDUCED"})
+    public String category;
+
+    @Param({"1", "100", "10000"})
+    public int size;
+
+    private Shop shop;
+    private Product[] products;
+    private double[] prices;
+
+    /**
+     * Prepara una tienda y un lote de productos de la categoría indicada, la mitad de la marca patrocinada.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        shop = BenchData.shop(businessModel, "Discount shop", new ArrayList<Catalogue>());
+        products = new Product[size];
+        prices = new double[size];
+        for (int i = 0; i < size; i++) {
+            String brand = BenchData.BRANDS[i % 2];
+            double mrp = 5 + (i % 200);
+            products[i] = BenchData.product(category, "Product " + i, brand, mrp);
+            prices[i] = mrp * 0.8;
+        }
+    }
+
+    @Benchmark
+    public double calculateDiscount() {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += shop.calculateDiscount(prices[i], products[i]);
+        }
+        return total;
+    }
+}
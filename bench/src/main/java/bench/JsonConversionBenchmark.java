@@ -0,0 +1,49 @@
+package bench;
+
+import business.product.Product;
+import business.shop.Shop;
+import org.openjdk.jmh.annotations.*;
+import persistence.JsonSupport;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la conversión de las respuestas JSON de la API a productos y tiendas, con la misma lectura que usan los DAO
+ * (JsonSupport). No crea ningún DAO, así que no necesita conexión con la API.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonConversionBenchmark {
+    private static final int CATALOGUE_SIZE = 20;
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private String productsJson;
+    private String shopsJson;
+
+    /**
+     * Genera las respuestas JSON que se van a convertir.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        ArrayList<Product> products = BenchData.products(size);
+        productsJson = BenchData.toJson(products);
+        shopsJson = BenchData.toJson(BenchData.shops(size, products, CATALOGUE_SIZE));
+    }
+
+    @Benchmark
+    public ArrayList<Product> convertJsonToProducts() {
+        return JsonSupport.parseProducts(productsJson);
+    }
+
+    @Benchmark
+    public ArrayList<Shop> convertJsonToShops() {
+        return JsonSupport.parseShops(shopsJson);
+    }
+}
@@ -0,0 +1,84 @@
+package bench;
+
+import business.Catalogue;
+import business.CartManager;
+import business.product.Product;
+import business.shop.LoyaltyTracker;
+import business.shop.Offer;
+import business.shop.Shop;
+import business.shop.ShopManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide cómo se obtienen las tiendas que venden un producto ordenadas por precio: con el índice de ofertas de
+ * ShopManager frente a recorrer todos los catálogos como hacía DealerManager.showInfoShops y ordenar después.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OfferBenchmark {
+    private static final int PRODUCTS = 1000;
+    private static final int CATALOGUE_SIZE = 200;
+
+    @Param({"10", "100", "1000"})
+    public int shops;
+
+    private ShopManager shopManager;
+    private Product product;
+
+    /**
+     * Carga las tiendas en la réplica y elige un producto que está en el catálogo de la primera tienda.
+     * @throws IOException Si no se pueden crear los ficheros locales.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ArrayList<Product> productList = BenchData.products(PRODUCTS);
+        ArrayList<Shop> shopList = BenchData.shops(shops, productList, CATALOGUE_SIZE);
+        BenchData.ensureLocalFiles();
+        shopManager = new ShopManager();
+        shopManager.replaceShopList(shopList);
+        String soldName = shopList.get(0).getCatalogue().get(0).getProductName();
+        for (Product candidate : productList) {
+            if (candidate.getName().equals(soldName)) {
+                product = candidate;
+            }
+        }
+    }
+
+    /**
+     * Recorre todos los catálogos buscando el producto y ordena las tiendas por precio.
+     * @return Tiendas que venden el producto, de la más barata a la más cara.
+     */
+    @Benchmark
+    public List<Shop> soldAtScan() {
+        ArrayList<Shop> results = new ArrayList<>();
+        for (Shop shop : shopManager.getShopList()) {
+            for (Catalogue entry : shop.getCatalogue()) {
+                if (entry.getProductName().equalsIgnoreCase(product.getName())) {
+                    results.add(shop);
+                }
+            }
+        }
+        results.sort(Comparator.comparingDouble((Shop shop) -> CartManager.getPriceAtShop(shop, product)));
+        return results;
+    }
+
+    @Benchmark
+    public List<Offer> soldAtIndex() {
+        return shopManager.getOffers(product, LoyaltyTracker.GUEST);
+    }
+
+    @Benchmark
+    public Offer bestOffer() {
+        return shopManager.getBestOffer(product, LoyaltyTracker.GUEST);
+    }
+}
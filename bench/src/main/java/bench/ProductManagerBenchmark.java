@@ -0,0 +1,168 @@
+package bench;
+
+import business.Review;
+import business.product.Product;
+import business.product.ProductManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide las búsquedas de ProductManager sobre la réplica en memoria con distintos tamaños de catálogo.
+ * Cada producto tiene entre 0 y 7 reseñas para medir la clasificación por valoración.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductManagerBenchmark {
+    private static final int LOOKUPS = 64;
+    private static final int TOP = 10;
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private ProductManager productManager;
+    private String[] names;
+    private List<String> catalogueNames;
+    private int next;
+
+    /**
+     * Carga la réplica con productos generados y prepara nombres repartidos por toda la lista.
+     * @throws IOException Si no se puede crear el gestor.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ArrayList<Product> products = BenchData.products(size);
+        SplittableRandom random = new SplittableRandom(11);
+        for (Product product : products) {
+            ArrayList<Review> reviews = new ArrayList<>();
+            int count = random.nextInt(8);
+            for (int i = 0; i < count; i++) {
+                reviews.add(new Review(1 + random.nextInt(5), "Benchmark review"));
+            }
+            product.setReviews(reviews);
+        }
+        BenchData.ensureLocalFiles();
+        productManager = new ProductManager();
+        productManager.replaceProductList(products);
+        names = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            names[i] = products.get((int) ((long) i * size / LOOKUPS)).getName().toUpperCase();
+        }
+        catalogueNames = Arrays.asList(names);
+    }
+
+    @Benchmark
+    public ArrayList<Product> searchProductsByBrand() {
+        return productManager.searchProducts("acme");
+    }
+
+    @Benchmark
+    public ArrayList<Product> searchProductsByName() {
+        return productManager.searchProducts("product 1");
+    }
+
+    @Benchmark
+    public ArrayList<Product> searchProductsNoMatch() {
+        return productManager.searchProducts("does not exist");
+    }
+
+    /**
+     * Busca una marca con una errata, que no está en ningún nombre y se resuelve con el índice de erratas.
+     * @return Productos de la marca.
+     */
+    @Benchmark
+    public ArrayList<Product> searchProductsTypo() {
+        return productManager.searchProducts("akme");
+    }
+
+    /**
+     * Autocompleta un nombre de producto a partir de sus primeras letras.
+     * @return Nombres sugeridos.
+     */
+    @Benchmark
+    public List<String> completeProductName() {
+        return productManager.completeProductName("product 1", TOP);
+    }
+
+    @Benchmark
+    public boolean nameProductExists() {
+        boolean exists = productManager.nameProductExists(names[next]);
+        next = (next + 1) % LOOKUPS;
+        return exists;
+    }
+
+    @Benchmark
+    public void getProductByName(Blackhole blackhole) {
+        blackhole.consume(productManager.getProductByName(names[next]));
+        next = (next + 1) % LOOKUPS;
+    }
+
+    /**
+     * Resuelve un catálogo de LOOKUPS productos nombre a nombre, como se hacía al mostrar un catálogo.
+     * @param blackhole Consumidor de resultados.
+     */
+    @Benchmark
+    public void resolveCatalogueOneByOne(Blackhole blackhole) {
+        for (String name : catalogueNames) {
+            blackhole.consume(productManager.getProductByName(name));
+        }
+    }
+
+    @Benchmark
+    public ArrayList<Product> resolveCatalogueBatch() {
+        return productManager.getProductsByNames(catalogueNames);
+    }
+
+    @Benchmark
+    public List<Product> topRated() {
+        return productManager.getTopRated(TOP);
+    }
+
+    @Benchmark
+    public List<Product> topRatedByBrand() {
+        return productManager.getTopRatedByBrand("acme", TOP);
+    }
+
+    /**
+     * Calcula los mejor valorados recorriendo todos los productos y sus reseñas, como haría
+     * Controller.calculateAverageRating producto a producto.
+     * @return Los TOP productos mejor valorados.
+     */
+    @Benchmark
+    public List<Product> topRatedScan() {
+        ArrayList<Product> rated = new ArrayList<>();
+        ArrayList<Double> averages = new ArrayList<>();
+        for (Product product : productManager.getProductList()) {
+            ArrayList<Review> reviews = product.getReviews();
+            if (reviews != null && !reviews.isEmpty()) {
+                int total = 0;
+                for (Review review : reviews) {
+                    total += review.getRating();
+                }
+                rated.add(product);
+                averages.add((double) total / reviews.size());
+            }
+        }
+        Integer[] order = new Integer[rated.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> averages.get(i)).reversed());
+        List<Product> top = new ArrayList<>(TOP);
+        for (int i = 0; i < Math.min(TOP, order.length); i++) {
+            top.add(rated.get(order[i]));
+        }
+        return top;
+    }
+}